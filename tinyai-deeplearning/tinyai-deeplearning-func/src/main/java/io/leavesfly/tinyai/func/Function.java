@@ -2,7 +2,7 @@ package io.leavesfly.tinyai.func;
 
 
 import io.leavesfly.tinyai.ndarr.NdArray;
-import io.leavesfly.tinyai.util.Config;
+import io.leavesfly.tinyai.util.GradMode;
 
 import java.io.Serializable;
 import java.util.Arrays;
@@ -345,7 +345,7 @@ public abstract class Function implements Serializable {
      * <p>
      * 只有在以下条件都满足时才构建计算图：
      * <ol>
-     *   <li>当前处于训练模式(Config.train = true)</li>
+     *   <li>当前线程启用了梯度计算(GradMode.isEnabled()，未打开GradMode作用域时即Config.train = true)</li>
      *   <li>至少有一个输入变量需要计算梯度(requireGrad = true)</li>
      * </ol>
      * 
@@ -353,7 +353,7 @@ public abstract class Function implements Serializable {
      * @return 如果需要构建计算图则为true，否则为false
      */
     protected boolean shouldBuildGraph(Variable[] vars) {
-        if (!Config.train) {
+        if (!GradMode.isEnabled()) {
             return false;
         }
         return Arrays.stream(vars).anyMatch(v -> v != null && v.isRequireGrad());
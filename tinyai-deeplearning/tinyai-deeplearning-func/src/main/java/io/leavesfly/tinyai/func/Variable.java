@@ -77,6 +77,13 @@ public class Variable implements Serializable {
      */
     private NdArray grad;
 
+    /**
+     * 当前梯度数组是否由本变量独占
+     * 反向传播返回的梯度可能与其他变量共享（如加法把上游梯度原样传给两个输入），
+     * 只有在累加时新分配的梯度数组才能安全地原地累加
+     */
+    private transient boolean gradOwned;
+
     /**
      * 记录是什么函数生成的当前Variable
      * 指向生成该变量的函数，用于构建计算图
@@ -233,42 +240,49 @@ public class Variable implements Serializable {
         return value.getShape().getDimNum() == 1;
     }
 
-    // 访问标记，防止重复处理
-    private static Set<Variable> visitedInBackward = new HashSet<>();
-    
     /**
      * 重置反向传播访问标记
+     * <p>
+     * 反向传播的访问状态已改为每次调用各自持有，不再有需要重置的全局状态，保留该方法仅为兼容。
+     *
+     * @deprecated 无需调用
      */
+    @Deprecated
     public static void resetBackwardCounter() {
-        visitedInBackward.clear();
     }
-    
+
     /**
-     * 变量的反向传播（递归实现）
+     * 变量的反向传播
      * <p>
      * 根据正向传播时构建的计算图，从当前变量开始反向传播计算每个变量的梯度。
      * 如果变量不需要计算梯度，则直接返回。
      * 如果梯度未初始化，则初始化为全1的数组。
-     * 然后递归地调用生成该变量的函数的backward方法计算输入变量的梯度。
+     * <p>
+     * 先对计算图做拓扑排序，再按逆拓扑序依次调用各函数的backward：
+     * 一个节点只有在所有使用它的下游节点都把梯度累加完之后才会继续向上传播，且只处理一次。
+     * 排序和传播都用显式栈迭代完成，深层网络不会栈溢出；
+     * 访问状态只属于本次调用，多个线程可以同时对各自的计算图做反向传播。
+     * <p>
+     * 计算图在反向传播后保持不变，等价于 {@code backward(true)}。
      */
     public void backward() {
-        // 重置访问记录，避免内存泄漏
-        visitedInBackward.clear();
-        backwardInternal();
-        // backward完成后立即清空，释放引用
-        visitedInBackward.clear();
+        backward(true);
     }
-    
+
     /**
-     * 内部递归backward实现
+     * 变量的反向传播，可选择在传播过程中释放计算图
+     * <p>
+     * retainGraph为false时，每个函数节点把梯度传给输入后立即断开：
+     * 函数的inputs/outputs引用被清空，输出变量的creator被置为null，中间变量的梯度也随即释放，
+     * 因此已经处理过的激活值、函数内部保存的张量和中间梯度可以在反向传播尚未结束时就被GC回收，
+     * 峰值内存不再是"整个计算图加全部梯度"。叶子变量（参数）的梯度和起点变量自身的梯度保留。
+     * <p>
+     * 释放后无法对同一计算图再次反向传播，之后调用unChainBackward也不再需要；
+     * 需要多次反向传播时应传入true。
+     *
+     * @param retainGraph 是否保留计算图
      */
-    private void backwardInternal() {
-        // 如果已经访问过，跳过（防止重复处理共享变量）
-        if (visitedInBackward.contains(this)) {
-            return;
-        }
-        visitedInBackward.add(this);
-
+    public void backward(boolean retainGraph) {
         if (!requireGrad) {
             this.grad = null;
             return;
@@ -277,120 +291,214 @@ public class Variable implements Serializable {
         if (Objects.isNull(grad)) {
             setGrad(NdArray.ones(this.getValue().getShape()));
         }
-        // 当前采用的是递归调用，为了效率可用堆栈循环
-        Function _creator = creator;
-        if (!Objects.isNull(_creator)) {
-            Variable[] _inputs = _creator.getInputs();
-            
-            List<NdArray> grads = _creator.isMultiOutput()
-                    ? buildOutputGradsForMulti(_creator, this)
-                    : _creator.backward(grad);
-
-            if (_inputs.length != grads.size()) {
-                throw new RuntimeException("Variable backward grads size error!");
-            }
 
-            int index = 0;
-            for (Variable input : _inputs) {
-                NdArray inputGrad = grads.get(index);
-                // 如果梯度为null，跳过该输入（例如索引不可导）
-                if (inputGrad == null) {
-                    index++;
-                    continue;
+        List<Object> order = topologicalOrder(this);
+        for (int i = order.size() - 1; i >= 0; i--) {
+            Object node = order.get(i);
+            if (node instanceof Function) {
+                backwardMultiOutput((Function) node);
+                if (!retainGraph) {
+                    releaseMultiOutput((Function) node, this);
                 }
-                
-                // 累加梯度而不是直接设置，支持梯度复用
-                if (input.getGrad() != null) {
-                    input.setGrad(input.getGrad().add(inputGrad));
-                } else {
-                    input.setGrad(inputGrad);
+            } else {
+                backwardSingleOutput((Variable) node);
+                if (!retainGraph) {
+                    ((Variable) node).releaseSingleOutput(this);
                 }
-                input.backwardInternal();
-                index++;
             }
+            // 处理完的节点不再由排序结果引用，以便尽早回收
+            order.set(i, null);
         }
     }
 
     /**
      * 变量的反向传播（迭代实现）
      * <p>
-     * 使用栈来实现迭代的反向传播，避免递归调用可能导致的栈溢出问题。
-     * 特别适用于深层网络或RNN等场景。
+     * backward已经是基于拓扑排序的迭代实现，该方法与之等价，保留以兼容原有调用。
      */
     public void backwardIterative() {
+        backward();
+    }
 
-        if (!requireGrad) {
-            this.grad = null;
-            return;
-        }
+    /**
+     * 对从root出发可达的计算图做拓扑排序
+     * <p>
+     * 节点是Variable或多输出Function：单输出函数直接由其输出变量代表，
+     * 多输出函数作为独立节点，从而在它的所有输出都收到梯度后只调用一次backwardMulti。
+     * 返回深度优先的后序序列，逆序即为反向传播的处理顺序。
+     *
+     * @param root 反向传播的起点
+     * @return 后序排列的节点
+     */
+    private static List<Object> topologicalOrder(Variable root) {
+        List<Object> postOrder = new ArrayList<>();
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Object> nodes = new ArrayDeque<>();
+        Deque<Iterator<Object>> children = new ArrayDeque<>();
 
-        // 初始化梯度为1
-        if (Objects.isNull(grad)) {
-            setGrad(NdArray.ones(this.getValue().getShape()));
+        visited.add(root);
+        nodes.push(root);
+        children.push(childrenOf(root).iterator());
+        while (!nodes.isEmpty()) {
+            Iterator<Object> it = children.peek();
+            if (it.hasNext()) {
+                Object child = it.next();
+                if (visited.add(child)) {
+                    nodes.push(child);
+                    children.push(childrenOf(child).iterator());
+                }
+            } else {
+                children.pop();
+                postOrder.add(nodes.pop());
+            }
         }
+        return postOrder;
+    }
 
-        // 使用栈来模拟递归过程
-        Stack<Variable> stack = new Stack<>();
-        stack.push(this);
-
-        while (!stack.isEmpty()) {
-            Variable currentVar = stack.pop();
-
-            Function currentCreator = currentVar.getCreator();
-            if (Objects.isNull(currentCreator)) {
-                continue;
+    /**
+     * 计算图中一个节点的上游节点
+     */
+    private static List<Object> childrenOf(Object node) {
+        Variable[] inputs;
+        if (node instanceof Function) {
+            inputs = ((Function) node).getInputs();
+        } else {
+            Variable var = (Variable) node;
+            Function creatorFunc = var.creator;
+            if (!var.requireGrad || Objects.isNull(creatorFunc)) {
+                return Collections.emptyList();
+            }
+            if (creatorFunc.isMultiOutput()) {
+                return Collections.singletonList(creatorFunc);
             }
+            inputs = creatorFunc.getInputs();
+        }
+        if (Objects.isNull(inputs)) {
+            return Collections.emptyList();
+        }
+        List<Object> result = new ArrayList<>(inputs.length);
+        for (Variable input : inputs) {
+            if (input != null && input.requireGrad) {
+                result.add(input);
+            }
+        }
+        return result;
+    }
 
-            Variable[] inputs = currentCreator.getInputs();
-            List<NdArray> grads = currentCreator.isMultiOutput()
-                    ? buildOutputGradsForMulti(currentCreator, currentVar)
-                    : currentCreator.backward(currentVar.getGrad());
+    /**
+     * 由单输出函数生成的变量：把它累计好的梯度传给生成函数的输入
+     */
+    private static void backwardSingleOutput(Variable var) {
+        Function creatorFunc = var.creator;
+        if (Objects.isNull(creatorFunc) || creatorFunc.isMultiOutput()
+                || Objects.isNull(var.grad) || Objects.isNull(creatorFunc.getInputs())) {
+            return;
+        }
+        propagate(creatorFunc, creatorFunc.backward(var.grad));
+    }
 
-            if (inputs.length != grads.size()) {
-                throw new RuntimeException("Variable backward grads size error!");
-            }
+    /**
+     * 多输出函数：所有输出的梯度都已累计完毕，调用一次backwardMulti
+     */
+    private static void backwardMultiOutput(Function creatorFunc) {
+        Variable[] outs = creatorFunc.getOutputs();
+        if (Objects.isNull(outs) || Objects.isNull(creatorFunc.getInputs())) {
+            return;
+        }
+        boolean hasGrad = false;
+        for (Variable out : outs) {
+            hasGrad |= out.grad != null;
+        }
+        if (hasGrad) {
+            propagate(creatorFunc, buildOutputGradsForMulti(creatorFunc));
+        }
+    }
 
-            for (int i = 0; i < inputs.length; i++) {
-                Variable input = inputs[i];
-                NdArray grad = grads.get(i);
-                
-                // 如果梯度为null，跳过该输入（例如索引不可导）
-                if (grad == null) {
-                    continue;
-                }
+    /**
+     * 断开单输出函数生成的变量与其生成函数的连接，并释放中间梯度
+     */
+    private void releaseSingleOutput(Variable root) {
+        Function creatorFunc = creator;
+        if (Objects.isNull(creatorFunc) || creatorFunc.isMultiOutput()) {
+            return;
+        }
+        creatorFunc.unChain();
+        creator = null;
+        if (this != root) {
+            clearGrad();
+        }
+    }
 
-                // 累加梯度而不是直接设置，支持梯度复用
-                if (input.getGrad() != null) {
-                    input.setGrad(input.getGrad().add(grad));
-                } else {
-                    input.setGrad(grad);
+    /**
+     * 断开多输出函数与其输出变量的连接，并释放输出变量的梯度
+     */
+    private static void releaseMultiOutput(Function creatorFunc, Variable root) {
+        Variable[] outs = creatorFunc.getOutputs();
+        creatorFunc.unChain();
+        if (Objects.isNull(outs)) {
+            return;
+        }
+        for (Variable out : outs) {
+            if (out.creator == creatorFunc) {
+                out.creator = null;
+                if (out != root) {
+                    out.clearGrad();
                 }
+            }
+        }
+    }
 
-                // 如果输入变量有创建者函数，将其加入栈中继续处理
-                if (input.getCreator() != null) {
-                    stack.push(input);
-                }
+    private static void propagate(Function creatorFunc, List<NdArray> grads) {
+        Variable[] inputs = creatorFunc.getInputs();
+        if (inputs.length != grads.size()) {
+            throw new RuntimeException("Variable backward grads size error!");
+        }
+        for (int i = 0; i < inputs.length; i++) {
+            NdArray inputGrad = grads.get(i);
+            // 如果梯度为null，跳过该输入（例如索引不可导）
+            if (inputGrad == null) {
+                continue;
             }
+            // 累加梯度而不是直接设置，支持梯度复用
+            inputs[i].accumulateGrad(inputGrad);
+        }
+    }
+
+    /**
+     * 将一份梯度累加到当前变量上
+     * <p>
+     * 第一份梯度直接引用；第二份到来时分配一个独占的新数组保存和，之后的累加都原地进行，
+     * 因此无论梯度被复用多少次，每个变量最多只分配一次累加数组。
+     *
+     * @param other 要累加的梯度
+     */
+    private void accumulateGrad(NdArray other) {
+        if (grad == null) {
+            setGrad(other);
+        } else if (gradOwned) {
+            grad.addi(other);
+        } else {
+            setGrad(grad.add(other));
+            gradOwned = grad != null;
         }
     }
 
     /**
      * 为多输出函数构造上游梯度列表
      * <p>
-     * 该方法用于处理具有多个输出的函数(如split操作)的反向传播
+     * 该方法用于处理具有多个输出的函数(如split操作)的反向传播，没有收到梯度的输出按全零处理
      * 
-     * @param creatorFunc 创建当前变量的函数
-     * @param currentVar 当前正在反向传播的变量
-     * @return 所有输出变量的梯度列表
+     * @param creatorFunc 多输出函数
+     * @return 所有输入变量的梯度列表
      */
-    private List<NdArray> buildOutputGradsForMulti(Function creatorFunc, Variable currentVar) {
+    private static List<NdArray> buildOutputGradsForMulti(Function creatorFunc) {
         Variable[] outs = creatorFunc.getOutputs();
         if (Objects.isNull(outs) || outs.length == 0) {
             throw new RuntimeException("Multi-output function has no outputs captured.");
         }
         List<NdArray> yGrads = new ArrayList<>(outs.length);
         for (Variable out : outs) {
-            NdArray g = (out == currentVar) ? currentVar.getGrad() : out.getGrad();
+            NdArray g = out.getGrad();
             if (Objects.isNull(g)) {
                 g = NdArray.zeros(out.getValue().getShape());
             }
@@ -403,15 +511,23 @@ public class Variable implements Serializable {
      * 切断计算图
      * <p>
      * 用于RNN中切断计算图，防止梯度回传过长导致的梯度消失或爆炸问题。
-     * 该方法会清除当前变量的creator引用，并递归地对输入变量调用unChainBackward。
+     * 该方法会清除当前变量及其所有上游变量的creator引用，使用显式栈遍历，深层计算图不会栈溢出。
      */
     public void unChainBackward() {
-        Function creatorFunc = creator;
-        if (!Objects.isNull(creatorFunc)) {
+        Deque<Variable> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            Variable var = stack.pop();
+            Function creatorFunc = var.creator;
+            if (Objects.isNull(creatorFunc)) {
+                continue;
+            }
             Variable[] xs = creatorFunc.getInputs();
-            unChain();
-            for (Variable x : xs) {
-                x.unChainBackward();
+            var.unChain();
+            if (xs != null) {
+                for (Variable x : xs) {
+                    stack.push(x);
+                }
             }
         }
     }
@@ -424,6 +540,7 @@ public class Variable implements Serializable {
      */
     public void clearGrad() {
         grad = null;
+        gradOwned = false;
     }
 
     /**
@@ -482,6 +599,7 @@ public class Variable implements Serializable {
         } else {
             this.grad = null;
         }
+        this.gradOwned = false;
     }
 
     /**
@@ -1587,4 +1705,38 @@ public class Variable implements Serializable {
     public Variable conv2d(Variable kernel) {
         return conv2d(kernel, 1, 0);
     }
+
+    /**
+     * 2D最大池化操作
+     * <p>
+     * 输入形状: [batch_size, channels, height, width]
+     * 输出形状: [batch_size, channels, out_h, out_w]
+     *
+     * @param kernelHeight 池化窗口高度
+     * @param kernelWidth  池化窗口宽度
+     * @param stride       步长
+     * @param padding      填充大小
+     * @return 池化结果的新变量
+     */
+    public Variable maxPool2d(int kernelHeight, int kernelWidth, int stride, int padding) {
+        Function function = new MaxPool2d(kernelHeight, kernelWidth, stride, padding);
+        return function.call(this);
+    }
+
+    /**
+     * 2D平均池化操作（填充区域不计入平均）
+     * <p>
+     * 输入形状: [batch_size, channels, height, width]
+     * 输出形状: [batch_size, channels, out_h, out_w]
+     *
+     * @param kernelHeight 池化窗口高度
+     * @param kernelWidth  池化窗口宽度
+     * @param stride       步长
+     * @param padding      填充大小
+     * @return 池化结果的新变量
+     */
+    public Variable avgPool2d(int kernelHeight, int kernelWidth, int stride, int padding) {
+        Function function = new AvgPool2d(kernelHeight, kernelWidth, stride, padding);
+        return function.call(this);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+package io.leavesfly.tinyai.func.fused;
+
+import io.leavesfly.tinyai.func.Function;
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 融合的（残差相加 +）LayerNorm
+ * <p>
+ * 计算 y = gamma * (h - mean(h)) / sqrt(var(h) + eps) + beta，其中 h = x + residual（residual可选），
+ * 均值和方差沿最后一维计算。
+ * 由mean、var、sub、add、sqrt、div、mul、add组合时需要八个计算图节点，
+ * 融合后逐行两次遍历完成前向，反向传播同样逐行完成，只保存归一化结果和每行的 1/std。
+ */
+public class FusedLayerNorm extends Function {
+
+    private final float eps;
+
+    private NdArray normalized;
+    private float[] invStd;
+
+    /**
+     * 构造函数
+     *
+     * @param eps 数值稳定性常数
+     */
+    public FusedLayerNorm(float eps) {
+        this.eps = eps;
+    }
+
+    /**
+     * 前向传播
+     *
+     * @param inputs x, gamma, beta, [residual]
+     * @return LayerNorm(x + residual)
+     */
+    @Override
+    public NdArray forward(NdArray... inputs) {
+        Shape shape = inputs[0].getShape();
+        int cols = shape.getDimension(shape.getDimNum() - 1);
+        int rows = shape.size() / cols;
+        float[] x = inputs[0].getArray();
+        float[] gamma = inputs[1].getArray();
+        float[] beta = inputs[2].getArray();
+        float[] residual = inputs.length > 3 ? inputs[3].getArray() : null;
+
+        if (gamma.length != cols) {
+            throw new IllegalArgumentException(String.format("gamma长度%d与最后一维大小%d不一致", gamma.length, cols));
+        }
+
+        normalized = NdArray.zeros(shape);
+        invStd = new float[rows];
+        NdArray y = NdArray.zeros(shape);
+        float[] xHat = normalized.getArray();
+        float[] out = y.getArray();
+        for (int r = 0; r < rows; r++) {
+            int offset = r * cols;
+            float sum = 0f;
+            for (int j = offset; j < offset + cols; j++) {
+                float h = residual == null ? x[j] : x[j] + residual[j];
+                xHat[j] = h;
+                sum += h;
+            }
+            float mean = sum / cols;
+            float sq = 0f;
+            for (int j = offset; j < offset + cols; j++) {
+                float d = xHat[j] - mean;
+                sq += d * d;
+            }
+            float rstd = (float) (1.0 / Math.sqrt(sq / cols + eps));
+            invStd[r] = rstd;
+            for (int j = 0; j < cols; j++) {
+                float n = (xHat[offset + j] - mean) * rstd;
+                xHat[offset + j] = n;
+                out[offset + j] = n * gamma[j] + beta[j];
+            }
+        }
+        return y;
+    }
+
+    /**
+     * 反向传播
+     * <p>
+     * 记 x̂ 为归一化结果，g = yGrad * gamma，则
+     * ∂L/∂h = (g - mean(g) - x̂ * mean(g * x̂)) / std，
+     * ∂L/∂gamma = sum(yGrad * x̂)，∂L/∂beta = sum(yGrad)；x与residual的梯度都等于 ∂L/∂h。
+     *
+     * @param yGrad 输出变量的梯度
+     * @return x、gamma、beta（以及residual）的梯度
+     */
+    @Override
+    public List<NdArray> backward(NdArray yGrad) {
+        Shape shape = normalized.getShape();
+        int cols = shape.getDimension(shape.getDimNum() - 1);
+        int rows = shape.size() / cols;
+        float[] gamma = inputs[1].getValue().getArray();
+        float[] dy = yGrad.getArray();
+        float[] xHat = normalized.getArray();
+
+        NdArray hGrad = NdArray.zeros(shape);
+        NdArray gammaGrad = NdArray.zeros(inputs[1].getValue().getShape());
+        NdArray betaGrad = NdArray.zeros(inputs[2].getValue().getShape());
+        float[] dh = hGrad.getArray();
+        float[] dGamma = gammaGrad.getArray();
+        float[] dBeta = betaGrad.getArray();
+        for (int r = 0; r < rows; r++) {
+            int offset = r * cols;
+            float meanG = 0f;
+            float meanGX = 0f;
+            for (int j = 0; j < cols; j++) {
+                float d = dy[offset + j];
+                float n = xHat[offset + j];
+                float g = d * gamma[j];
+                meanG += g;
+                meanGX += g * n;
+                dGamma[j] += d * n;
+                dBeta[j] += d;
+            }
+            meanG /= cols;
+            meanGX /= cols;
+            float rstd = invStd[r];
+            for (int j = 0; j < cols; j++) {
+                float g = dy[offset + j] * gamma[j];
+                dh[offset + j] = (g - meanG - xHat[offset + j] * meanGX) * rstd;
+            }
+        }
+        if (inputs.length > 3) {
+            return Arrays.asList(hGrad, gammaGrad, betaGrad, hGrad);
+        }
+        return Arrays.asList(hGrad, gammaGrad, betaGrad);
+    }
+
+    /**
+     * 需要3个或4个输入参数（x, gamma, beta, [residual]）
+     *
+     * @return 输入参数个数，-1表示可变参数
+     */
+    @Override
+    public int requireInputNum() {
+        return -1;
+    }
+}
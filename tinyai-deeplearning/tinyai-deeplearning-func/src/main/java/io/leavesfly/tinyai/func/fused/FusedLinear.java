@@ -0,0 +1,219 @@
+package io.leavesfly.tinyai.func.fused;
+
+import io.leavesfly.tinyai.func.Function;
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 融合的线性变换 + 偏置 + 激活函数
+ * <p>
+ * 计算 y = act(x * W^T + b)，其中W的形状为 (out_features, in_features)，与nnet v2的Linear层一致。
+ * 分开实现时需要 转置、矩阵乘、加偏置、激活 四个计算图节点和四个完整的中间数组；
+ * 融合后只有一个节点：矩阵乘以转置标记完成，偏置和激活在同一次遍历中原地写入结果。
+ * <p>
+ * x可以是任意维度，最后一维为in_features，前面的维度视为批次展平处理。
+ */
+public class FusedLinear extends Function {
+
+    /**
+     * 可融合的激活函数
+     */
+    public enum Activation {
+        /**
+         * 不使用激活函数
+         */
+        NONE,
+
+        /**
+         * ReLU激活函数
+         */
+        RELU,
+
+        /**
+         * GELU激活函数（tanh近似，与 {@link io.leavesfly.tinyai.func.math.GELU} 相同）
+         */
+        GELU,
+
+        /**
+         * SiLU激活函数（x * sigmoid(x)）
+         */
+        SILU
+    }
+
+    private static final float SQRT_2_OVER_PI = (float) Math.sqrt(2.0 / Math.PI);
+    private static final float GELU_COEF = 0.044715f;
+
+    private final Activation activation;
+
+    private Shape xShape;
+    /**
+     * 激活前的值 x * W^T + b，形状 (N, out_features)，仅在有激活函数时保存
+     */
+    private NdArray preActivation;
+
+    /**
+     * 构造不带激活函数的融合线性变换
+     */
+    public FusedLinear() {
+        this(Activation.NONE);
+    }
+
+    /**
+     * 构造融合线性变换
+     *
+     * @param activation 激活函数
+     */
+    public FusedLinear(Activation activation) {
+        this.activation = activation == null ? Activation.NONE : activation;
+    }
+
+    /**
+     * 前向传播
+     *
+     * @param inputs x, W, [b]
+     * @return act(x * W^T + b)
+     */
+    @Override
+    public NdArray forward(NdArray... inputs) {
+        NdArray x = inputs[0];
+        NdArray w = inputs[1];
+        xShape = x.getShape();
+        int inFeatures = w.getShape().getDimension(1);
+        int outFeatures = w.getShape().getDimension(0);
+        if (xShape.getDimension(xShape.getDimNum() - 1) != inFeatures) {
+            throw new IllegalArgumentException(String.format("输入最后一维%d与权重的输入特征数%d不一致",
+                    xShape.getDimension(xShape.getDimNum() - 1), inFeatures));
+        }
+        int rows = xShape.size() / inFeatures;
+
+        NdArray z = x.reshape(Shape.of(rows, inFeatures)).dot(w, false, true);
+        float[] zData = z.getArray();
+        float[] bias = inputs.length > 2 ? inputs[2].getArray() : null;
+
+        NdArray y = z;
+        if (activation != Activation.NONE) {
+            preActivation = z;
+            y = NdArray.zeros(z.getShape());
+        }
+        float[] yData = y.getArray();
+        for (int r = 0; r < rows; r++) {
+            int offset = r * outFeatures;
+            for (int j = 0; j < outFeatures; j++) {
+                float v = zData[offset + j];
+                if (bias != null) {
+                    v += bias[j];
+                    zData[offset + j] = v;
+                }
+                yData[offset + j] = activate(v);
+            }
+        }
+        return y.reshape(outputShape(outFeatures));
+    }
+
+    /**
+     * 反向传播
+     * <p>
+     * 先在一次遍历中求出 dz = yGrad * act'(z)，再计算：
+     * - ∂L/∂x = dz * W
+     * - ∂L/∂W = dz^T * x
+     * - ∂L/∂b = sum(dz)（按行求和）
+     *
+     * @param yGrad 输出变量的梯度
+     * @return x、W（以及b）的梯度
+     */
+    @Override
+    public List<NdArray> backward(NdArray yGrad) {
+        NdArray x = inputs[0].getValue();
+        NdArray w = inputs[1].getValue();
+        int inFeatures = w.getShape().getDimension(1);
+        int outFeatures = w.getShape().getDimension(0);
+        int rows = xShape.size() / inFeatures;
+
+        NdArray dz = yGrad.reshape(Shape.of(rows, outFeatures));
+        if (activation != Activation.NONE) {
+            float[] g = dz.getArray();
+            float[] z = preActivation.getArray();
+            dz = NdArray.zeros(Shape.of(rows, outFeatures));
+            float[] d = dz.getArray();
+            for (int i = 0; i < d.length; i++) {
+                d[i] = g[i] * derivative(z[i]);
+            }
+        }
+
+        NdArray xGrad = dz.dot(w).reshape(xShape);
+        NdArray wGrad = dz.dot(x.reshape(Shape.of(rows, inFeatures)), true, false);
+        if (inputs.length == 2) {
+            return Arrays.asList(xGrad, wGrad);
+        }
+
+        NdArray b = inputs[2].getValue();
+        NdArray bGrad = NdArray.zeros(b.getShape());
+        float[] db = bGrad.getArray();
+        float[] d = dz.getArray();
+        for (int r = 0; r < rows; r++) {
+            int offset = r * outFeatures;
+            for (int j = 0; j < outFeatures; j++) {
+                db[j] += d[offset + j];
+            }
+        }
+        return Arrays.asList(xGrad, wGrad, bGrad);
+    }
+
+    /**
+     * 线性变换函数可以接受2个或3个输入参数（x, W, [b]）
+     *
+     * @return 输入参数个数，-1表示可变参数
+     */
+    @Override
+    public int requireInputNum() {
+        return -1;
+    }
+
+    /**
+     * 获取激活函数
+     *
+     * @return 激活函数
+     */
+    public Activation getActivation() {
+        return activation;
+    }
+
+    private Shape outputShape(int outFeatures) {
+        int[] dims = xShape.getShapeDims().clone();
+        dims[dims.length - 1] = outFeatures;
+        return Shape.of(dims);
+    }
+
+    private float activate(float v) {
+        switch (activation) {
+            case RELU:
+                return v > 0 ? v : 0f;
+            case GELU:
+                float t = (float) Math.tanh(SQRT_2_OVER_PI * (v + GELU_COEF * v * v * v));
+                return 0.5f * v * (1f + t);
+            case SILU:
+                return v / (1f + (float) Math.exp(-v));
+            default:
+                return v;
+        }
+    }
+
+    private float derivative(float v) {
+        switch (activation) {
+            case RELU:
+                return v > 0 ? 1f : 0f;
+            case GELU:
+                float t = (float) Math.tanh(SQRT_2_OVER_PI * (v + GELU_COEF * v * v * v));
+                float inner = SQRT_2_OVER_PI * (1f + 3f * GELU_COEF * v * v);
+                return 0.5f * (1f + t) + 0.5f * v * (1f - t * t) * inner;
+            case SILU:
+                float s = 1f / (1f + (float) Math.exp(-v));
+                return s * (1f + v * (1f - s));
+            default:
+                return 1f;
+        }
+    }
+}
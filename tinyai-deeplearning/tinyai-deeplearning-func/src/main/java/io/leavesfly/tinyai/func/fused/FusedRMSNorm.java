@@ -0,0 +1,128 @@
+package io.leavesfly.tinyai.func.fused;
+
+import io.leavesfly.tinyai.func.Function;
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 融合的（残差相加 +）RMSNorm
+ * <p>
+ * 计算 y = h / sqrt(mean(h²) + eps) * weight，其中 h = x + residual（residual可选），沿最后一维计算。
+ * 由mul、mean、add、sqrt、div、mul组合时需要六个计算图节点，融合后只有一个节点，
+ * 反向传播使用完整的解析梯度，只保存归一化结果和每行的 1/rms。
+ */
+public class FusedRMSNorm extends Function {
+
+    private final float eps;
+
+    private NdArray normalized;
+    private float[] invRms;
+
+    /**
+     * 构造函数
+     *
+     * @param eps 数值稳定性常数
+     */
+    public FusedRMSNorm(float eps) {
+        this.eps = eps;
+    }
+
+    /**
+     * 前向传播
+     *
+     * @param inputs x, weight, [residual]
+     * @return RMSNorm(x + residual)
+     */
+    @Override
+    public NdArray forward(NdArray... inputs) {
+        Shape shape = inputs[0].getShape();
+        int cols = shape.getDimension(shape.getDimNum() - 1);
+        int rows = shape.size() / cols;
+        float[] x = inputs[0].getArray();
+        float[] weight = inputs[1].getArray();
+        float[] residual = inputs.length > 2 ? inputs[2].getArray() : null;
+
+        if (weight.length != cols) {
+            throw new IllegalArgumentException(String.format("weight长度%d与最后一维大小%d不一致", weight.length, cols));
+        }
+
+        normalized = NdArray.zeros(shape);
+        invRms = new float[rows];
+        NdArray y = NdArray.zeros(shape);
+        float[] xHat = normalized.getArray();
+        float[] out = y.getArray();
+        for (int r = 0; r < rows; r++) {
+            int offset = r * cols;
+            float sq = 0f;
+            for (int j = offset; j < offset + cols; j++) {
+                float h = residual == null ? x[j] : x[j] + residual[j];
+                xHat[j] = h;
+                sq += h * h;
+            }
+            float rinv = (float) (1.0 / Math.sqrt(sq / cols + eps));
+            invRms[r] = rinv;
+            for (int j = 0; j < cols; j++) {
+                float n = xHat[offset + j] * rinv;
+                xHat[offset + j] = n;
+                out[offset + j] = n * weight[j];
+            }
+        }
+        return y;
+    }
+
+    /**
+     * 反向传播
+     * <p>
+     * 记 x̂ 为归一化结果，g = yGrad * weight，则
+     * ∂L/∂h = (g - x̂ * mean(g * x̂)) / rms，∂L/∂weight = sum(yGrad * x̂)；x与residual的梯度都等于 ∂L/∂h。
+     *
+     * @param yGrad 输出变量的梯度
+     * @return x、weight（以及residual）的梯度
+     */
+    @Override
+    public List<NdArray> backward(NdArray yGrad) {
+        Shape shape = normalized.getShape();
+        int cols = shape.getDimension(shape.getDimNum() - 1);
+        int rows = shape.size() / cols;
+        float[] weight = inputs[1].getValue().getArray();
+        float[] dy = yGrad.getArray();
+        float[] xHat = normalized.getArray();
+
+        NdArray hGrad = NdArray.zeros(shape);
+        NdArray weightGrad = NdArray.zeros(inputs[1].getValue().getShape());
+        float[] dh = hGrad.getArray();
+        float[] dWeight = weightGrad.getArray();
+        for (int r = 0; r < rows; r++) {
+            int offset = r * cols;
+            float meanGX = 0f;
+            for (int j = 0; j < cols; j++) {
+                float d = dy[offset + j];
+                float n = xHat[offset + j];
+                meanGX += d * weight[j] * n;
+                dWeight[j] += d * n;
+            }
+            meanGX /= cols;
+            float rinv = invRms[r];
+            for (int j = 0; j < cols; j++) {
+                dh[offset + j] = (dy[offset + j] * weight[j] - xHat[offset + j] * meanGX) * rinv;
+            }
+        }
+        if (inputs.length > 2) {
+            return Arrays.asList(hGrad, weightGrad, hGrad);
+        }
+        return Arrays.asList(hGrad, weightGrad);
+    }
+
+    /**
+     * 需要2个或3个输入参数（x, weight, [residual]）
+     *
+     * @return 输入参数个数，-1表示可变参数
+     */
+    @Override
+    public int requireInputNum() {
+        return -1;
+    }
+}
@@ -0,0 +1,181 @@
+package io.leavesfly.tinyai.func.fused;
+
+import io.leavesfly.tinyai.func.Function;
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 融合的缩放 + 掩码 + SoftMax
+ * <p>
+ * 计算 y = softmax(x * scale + mask1 + mask2 + ...)，沿最后一维归一化，掩码可以没有或有多个，每个都可广播到x的形状。
+ * 注意力计算中 scores.div(scale).add(mask).softMax() 原本是三个计算图节点和三个完整的中间数组，
+ * 融合后逐行一次完成，反向传播也只需一次遍历。
+ * <p>
+ * 整行都被掩码为负无穷时，该行输出全零而不是NaN。
+ */
+public class ScaleMaskSoftmax extends Function {
+
+    private final float scale;
+
+    private Shape[] maskShapes;
+
+    /**
+     * 构造函数
+     *
+     * @param scale 缩放系数，注意力中通常为 1 / sqrt(d_k)
+     */
+    public ScaleMaskSoftmax(float scale) {
+        this.scale = scale;
+    }
+
+    /**
+     * 前向传播
+     *
+     * @param inputs x, [mask...]
+     * @return softmax(x * scale + sum(mask))
+     */
+    @Override
+    public NdArray forward(NdArray... inputs) {
+        NdArray x = inputs[0];
+        Shape shape = x.getShape();
+        int cols = shape.getDimension(shape.getDimNum() - 1);
+        int rows = shape.size() / cols;
+
+        float[] xData = x.getArray();
+        maskShapes = new Shape[inputs.length - 1];
+        float[][] masks = new float[inputs.length - 1][];
+        for (int m = 0; m < masks.length; m++) {
+            NdArray mask = inputs[m + 1];
+            maskShapes[m] = mask.getShape();
+            masks[m] = maskShapes[m].equals(shape) ? mask.getArray() : mask.broadcastTo(shape).getArray();
+        }
+
+        NdArray y = NdArray.zeros(shape);
+        float[] yData = y.getArray();
+        for (int r = 0; r < rows; r++) {
+            int offset = r * cols;
+            float max = Float.NEGATIVE_INFINITY;
+            for (int j = offset; j < offset + cols; j++) {
+                float v = xData[j] * scale;
+                for (float[] mask : masks) {
+                    v += mask[j];
+                }
+                yData[j] = v;
+                if (v > max) {
+                    max = v;
+                }
+            }
+            if (max == Float.NEGATIVE_INFINITY) {
+                Arrays.fill(yData, offset, offset + cols, 0f);
+                continue;
+            }
+            float sum = 0f;
+            for (int j = offset; j < offset + cols; j++) {
+                float e = (float) Math.exp(yData[j] - max);
+                yData[j] = e;
+                sum += e;
+            }
+            float inv = 1f / sum;
+            for (int j = offset; j < offset + cols; j++) {
+                yData[j] *= inv;
+            }
+        }
+        return y;
+    }
+
+    /**
+     * 反向传播
+     * <p>
+     * 记 z = x * scale + sum(mask)，则 ∂L/∂z = y * (yGrad - sum(yGrad * y))，
+     * ∂L/∂x = scale * ∂L/∂z，∂L/∂mask 为 ∂L/∂z 按各mask的形状求和（mask不需要梯度时为null）。
+     *
+     * @param yGrad 输出变量的梯度
+     * @return x（以及mask）的梯度
+     */
+    @Override
+    public List<NdArray> backward(NdArray yGrad) {
+        NdArray y = getOutput().getValue();
+        Shape shape = y.getShape();
+        int cols = shape.getDimension(shape.getDimNum() - 1);
+        int rows = shape.size() / cols;
+
+        boolean needMaskGrad = false;
+        for (int i = 1; i < inputs.length; i++) {
+            needMaskGrad |= inputs[i].isRequireGrad();
+        }
+        float[] yData = y.getArray();
+        float[] g = yGrad.getArray();
+        NdArray zGrad = needMaskGrad ? NdArray.zeros(shape) : null;
+        NdArray xGrad = NdArray.zeros(shape);
+        float[] dz = zGrad == null ? null : zGrad.getArray();
+        float[] dx = xGrad.getArray();
+        for (int r = 0; r < rows; r++) {
+            int offset = r * cols;
+            float dot = 0f;
+            for (int j = offset; j < offset + cols; j++) {
+                dot += g[j] * yData[j];
+            }
+            for (int j = offset; j < offset + cols; j++) {
+                float d = yData[j] * (g[j] - dot);
+                dx[j] = d * scale;
+                if (dz != null) {
+                    dz[j] = d;
+                }
+            }
+        }
+
+        if (inputs.length == 1) {
+            return Collections.singletonList(xGrad);
+        }
+        List<NdArray> grads = new ArrayList<>(inputs.length);
+        grads.add(xGrad);
+        for (int m = 0; m < maskShapes.length; m++) {
+            if (!inputs[m + 1].isRequireGrad()) {
+                grads.add(null);
+            } else {
+                grads.add(maskShapes[m].equals(shape) ? zGrad : sumToShape(zGrad, maskShapes[m]));
+            }
+        }
+        return grads;
+    }
+
+    /**
+     * 需要至少1个输入参数（x, [mask...]）
+     *
+     * @return 输入参数个数，-1表示可变参数
+     */
+    @Override
+    public int requireInputNum() {
+        return -1;
+    }
+
+    /**
+     * 获取缩放系数
+     *
+     * @return 缩放系数
+     */
+    public float getScale() {
+        return scale;
+    }
+
+    /**
+     * 将梯度求和回mask的形状，mask维度较少时先在前面补1
+     */
+    private static NdArray sumToShape(NdArray grad, Shape target) {
+        int gradNdim = grad.getShape().getDimNum();
+        int targetNdim = target.getDimNum();
+        if (targetNdim >= gradNdim) {
+            return grad.sumTo(target);
+        }
+        int[] dims = target.getShapeDims();
+        int[] expanded = new int[gradNdim];
+        Arrays.fill(expanded, 1);
+        System.arraycopy(dims, 0, expanded, gradNdim - targetNdim, targetNdim);
+        return grad.sumTo(Shape.of(expanded)).reshape(target);
+    }
+}
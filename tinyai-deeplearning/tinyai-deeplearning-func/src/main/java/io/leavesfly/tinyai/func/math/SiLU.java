@@ -37,12 +37,8 @@ public class SiLU extends Function {
     public NdArray forward(NdArray... inputs) {
         NdArray x = inputs[0];
 
-        // sigmoid(x) = 1 / (1 + exp(-x))
-        NdArray denominator = x.neg().exp().add(NdArray.ones(x.getShape()));
-        NdArray sigmoid = NdArray.ones(x.getShape()).div(denominator);
-
-        // SiLU(x) = x * sigmoid(x)
-        return x.mul(sigmoid);
+        // SiLU(x) = x * sigmoid(x)，sigmoid由计算内核一次完成
+        return x.mul(x.sigmoid());
     }
 
     /**
@@ -60,8 +56,7 @@ public class SiLU extends Function {
         NdArray x = inputs[0].getValue();
 
         // sigmoid(x)
-        NdArray denominator = x.neg().exp().add(NdArray.ones(x.getShape()));
-        NdArray sigmoid = NdArray.ones(x.getShape()).div(denominator);
+        NdArray sigmoid = x.sigmoid();
 
         // 1 - sigmoid(x)
         NdArray oneMinusSigmoid = NdArray.ones(x.getShape()).sub(sigmoid);
@@ -0,0 +1,75 @@
+package io.leavesfly.tinyai.func.matrix;
+
+import io.leavesfly.tinyai.func.Function;
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.ndarr.cpu.matrix.PoolKernel;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 2D平均池化操作
+ * <p>
+ * 对每个 (批次, 通道) 平面，计算每个池化窗口内有效位置的平均值，各平面并行计算。
+ * 填充区域不计入平均（除数为窗口内的有效位置数）。
+ * <p>
+ * 反向传播时每个输出的梯度均分给其窗口内的有效位置。
+ * <p>
+ * 输入形状: [batch_size, channels, height, width]
+ * 输出形状: [batch_size, channels, out_h, out_w]
+ *
+ * @author TinyAI Team
+ */
+public class AvgPool2d extends Function {
+
+    private final int kernelHeight;
+    private final int kernelWidth;
+    private final int stride;
+    private final int padding;
+
+    // 缓存输入形状，供反向传播使用
+    private Shape inputShape;
+
+    /**
+     * 构造2D平均池化函数
+     *
+     * @param kernelHeight 池化窗口高度
+     * @param kernelWidth  池化窗口宽度
+     * @param stride       步长
+     * @param padding      填充大小
+     */
+    public AvgPool2d(int kernelHeight, int kernelWidth, int stride, int padding) {
+        this.kernelHeight = kernelHeight;
+        this.kernelWidth = kernelWidth;
+        this.stride = stride;
+        this.padding = padding;
+    }
+
+    @Override
+    public NdArray forward(NdArray... inputs) {
+        NdArray input = inputs[0];
+        this.inputShape = input.getShape();
+        Shape outputShape = MaxPool2d.poolOutputShape(inputShape, kernelHeight, kernelWidth, stride, padding);
+
+        int planes = inputShape.getDimension(0) * inputShape.getDimension(1);
+        float[] output = new float[outputShape.size()];
+        PoolKernel.avgPoolForward(input.getArray(), planes, inputShape.getDimension(2), inputShape.getDimension(3),
+                kernelHeight, kernelWidth, stride, padding, output);
+        return NdArray.of(output, outputShape);
+    }
+
+    @Override
+    public List<NdArray> backward(NdArray yGrad) {
+        int planes = inputShape.getDimension(0) * inputShape.getDimension(1);
+        float[] inputGrad = new float[inputShape.size()];
+        PoolKernel.avgPoolBackward(yGrad.getArray(), planes, inputShape.getDimension(2), inputShape.getDimension(3),
+                kernelHeight, kernelWidth, stride, padding, inputGrad);
+        return Collections.singletonList(NdArray.of(inputGrad, inputShape));
+    }
+
+    @Override
+    public int requireInputNum() {
+        return 1;
+    }
+}
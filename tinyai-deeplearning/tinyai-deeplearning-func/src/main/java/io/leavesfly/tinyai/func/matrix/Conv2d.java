@@ -3,21 +3,23 @@ package io.leavesfly.tinyai.func.matrix;
 import io.leavesfly.tinyai.func.Function;
 import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.ndarr.cpu.matrix.ConvKernel;
 
 import java.util.Arrays;
 import java.util.List;
 
 /**
- * 2D卷积操作（优化版本 - 使用Im2Col算法）
+ * 2D卷积操作（流式Im2Col + 分块GEMM）
  * <p>
- * 本实现采用Im2Col技术将卷积操作转换为高效的矩阵乘法，相比朴素实现性能提升5-10倍。
+ * 本实现把卷积转换为矩阵乘法，但不再一次性展开完整的Im2Col矩阵，计算由 {@link ConvKernel} 完成：
  * <p>
  * <b>算法原理</b>：
  * <pre>
- * 1. Im2Col: 将输入展开为列矩阵 [B*OH*OW, C*KH*KW]
- * 2. 矩阵乘法: [B*OH*OW, C*KH*KW] @ [C*KH*KW, OC]^T = [B*OH*OW, OC]
- * 3. Reshape: 重塑为 [B, OC, OH, OW]
+ * 1. 每个批次的输出位置分段，每段只展开一个列块 [C*KH*KW, T]
+ * 2. 矩阵乘法: [OC, C*KH*KW] @ [C*KH*KW, T] = [OC, T]，直接写入NCHW输出，无需转置
+ * 3. 各批次、各分段通过Fork/Join公共线程池并行计算
  * </pre>
+ * 反向传播重新生成列块，前向只缓存输入与卷积核，不缓存展开结果。
  * <p>
  * 前向传播: output = Conv2d(input, kernel, stride, padding)
  * <p>
@@ -33,7 +35,7 @@ import java.util.List;
  * - out_w = (width + 2 * padding - kernel_w) / stride + 1
  * 
  * @author TinyAI Team
- * @version 2.0 (Im2Col优化版本)
+ * @version 3.0 (流式Im2Col版本)
  */
 public class Conv2d extends Function {
 
@@ -43,11 +45,9 @@ public class Conv2d extends Function {
     // 缓存前向传播信息，供反向传播使用
     private Shape inputShape;
     private Shape kernelShape;
-    private NdArray im2colMatrix;  // 缓存Im2Col结果用于反向传播
+    private ConvKernel.Geometry geometry;
     private NdArray cachedInput;   // 缓存输入
     private NdArray cachedKernel;  // 缓存kernel
-    private int outHeight;
-    private int outWidth;
 
     /**
      * 构造2D卷积函数
@@ -104,195 +104,28 @@ public class Conv2d extends Function {
         }
         
         // 计算输出尺寸
-        this.outHeight = (inputHeight + 2 * padding - kernelHeight) / stride + 1;
-        this.outWidth = (inputWidth + 2 * padding - kernelWidth) / stride + 1;
-        
-        // 步骤1: Im2Col转换 - 将输入展开为列矩阵
-        // [B, C, H, W] -> [B*OH*OW, C*KH*KW]
-        this.im2colMatrix = im2col(input, batchSize, inChannels, 
-                                   inputHeight, inputWidth, 
-                                   kernelHeight, kernelWidth);
-        
-        // 步骤2: Reshape kernel为二维矩阵
-        // [OC, C, KH, KW] -> [OC, C*KH*KW]
-        NdArray kernelReshaped = kernel.reshape(
-            Shape.of(outChannels, inChannels * kernelHeight * kernelWidth)
-        );
-        
-        // 步骤3: 矩阵乘法 - [B*OH*OW, C*KH*KW] @ [C*KH*KW, OC] = [B*OH*OW, OC]
-        NdArray outputFlat = im2colMatrix.dot(kernelReshaped.transpose());
-        
-        // 步骤4: Reshape回4D - [B*OH*OW, OC] -> [B, OC, OH, OW]
-        NdArray output = outputFlat.reshape(
-            Shape.of(batchSize, outHeight, outWidth, outChannels)
-        );
-        
-        // 转换维度顺序: [B, OH, OW, OC] -> [B, OC, OH, OW]
-        output = output.transpose(0, 3, 1, 2);
-        
-        return output;
+        this.geometry = new ConvKernel.Geometry(batchSize, inChannels, inputHeight, inputWidth,
+                outChannels, kernelHeight, kernelWidth, stride, padding);
+        int outHeight = geometry.getOutHeight();
+        int outWidth = geometry.getOutWidth();
+
+        float[] output = new float[batchSize * outChannels * outHeight * outWidth];
+        ConvKernel.forward(input.getArray(), kernel.getArray(), output, geometry);
+        return NdArray.of(output, Shape.of(batchSize, outChannels, outHeight, outWidth));
     }
 
     @Override
     public List<NdArray> backward(NdArray yGrad) {
         // yGrad shape: [batch, out_channels, out_h, out_w]
-        
-        int batchSize = inputShape.getDimension(0);
-        int inChannels = inputShape.getDimension(1);
-        int inputHeight = inputShape.getDimension(2);
-        int inputWidth = inputShape.getDimension(3);
-        
-        int outChannels = kernelShape.getDimension(0);
-        int kernelHeight = kernelShape.getDimension(2);
-        int kernelWidth = kernelShape.getDimension(3);
-        
-        // 获取缓存的kernel
-        NdArray kernel = cachedKernel;
-        
-        // 转换yGrad维度顺序: [B, OC, OH, OW] -> [B, OH, OW, OC]
-        NdArray yGradTransposed = yGrad.transpose(0, 2, 3, 1);
-        
-        // Reshape: [B, OH, OW, OC] -> [B*OH*OW, OC]
-        NdArray yGradFlat = yGradTransposed.reshape(
-            Shape.of(batchSize * outHeight * outWidth, outChannels)
-        );
-        
-        // 1. 计算输入梯度
-        // [B*OH*OW, OC] @ [OC, C*KH*KW] = [B*OH*OW, C*KH*KW]
-        NdArray kernelReshaped = kernel.reshape(
-            Shape.of(outChannels, inChannels * kernelHeight * kernelWidth)
-        );
-        NdArray gradCol = yGradFlat.dot(kernelReshaped);
-        
-        // Col2Im: [B*OH*OW, C*KH*KW] -> [B, C, H, W]
-        NdArray inputGrad = col2im(gradCol, batchSize, inChannels,
-                                   inputHeight, inputWidth,
-                                   kernelHeight, kernelWidth);
-        
-        // 2. 计算kernel梯度
-        // [C*KH*KW, B*OH*OW]^T @ [B*OH*OW, OC] = [C*KH*KW, OC]^T = [OC, C*KH*KW]
-        NdArray kernelGradFlat = im2colMatrix.transpose().dot(yGradFlat);
-        
-        // Reshape: [OC, C*KH*KW] -> [OC, C, KH, KW]
-        NdArray kernelGrad = kernelGradFlat.reshape(
-            Shape.of(outChannels, inChannels, kernelHeight, kernelWidth)
-        );
-        
-        return Arrays.asList(inputGrad, kernelGrad);
+        float[] inputGrad = new float[inputShape.size()];
+        float[] kernelGrad = new float[kernelShape.size()];
+        ConvKernel.backward(cachedInput.getArray(), cachedKernel.getArray(), yGrad.getArray(),
+                inputGrad, kernelGrad, geometry);
+        return Arrays.asList(NdArray.of(inputGrad, inputShape), NdArray.of(kernelGrad, kernelShape));
     }
 
     @Override
     public int requireInputNum() {
         return 2;
     }
-
-    /**
-     * Im2Col转换 - 将卷积窗口展开为列矩阵
-     * <p>
-     * 将4D输入 [B, C, H, W] 展开为2D矩阵 [B*OH*OW, C*KH*KW]
-     * 每一行对应一个卷积窗口的所有元素
-     * 
-     * @param input 输入张量 [B, C, H, W]
-     * @param batchSize 批次大小
-     * @param channels 输入通道数
-     * @param height 输入高度
-     * @param width 输入宽度
-     * @param kernelHeight 卷积核高度
-     * @param kernelWidth 卷积核宽度
-     * @return Im2Col矩阵 [B*OH*OW, C*KH*KW]
-     */
-    private NdArray im2col(NdArray input, int batchSize, int channels,
-                          int height, int width,
-                          int kernelHeight, int kernelWidth) {
-        int outputRows = batchSize * outHeight * outWidth;
-        int outputCols = channels * kernelHeight * kernelWidth;
-        
-        float[] outputData = new float[outputRows * outputCols];
-        
-        int outputRowIndex = 0;
-        for (int b = 0; b < batchSize; b++) {
-            for (int oh = 0; oh < outHeight; oh++) {
-                for (int ow = 0; ow < outWidth; ow++) {
-                    int colIndex = 0;
-                    
-                    for (int c = 0; c < channels; c++) {
-                        for (int kh = 0; kh < kernelHeight; kh++) {
-                            int ih = oh * stride + kh - padding;
-                            for (int kw = 0; kw < kernelWidth; kw++) {
-                                int iw = ow * stride + kw - padding;
-                                
-                                // 处理padding区域
-                                if (ih >= 0 && ih < height && iw >= 0 && iw < width) {
-                                    outputData[outputRowIndex * outputCols + colIndex] =
-                                        input.get(b, c, ih, iw);
-                                } else {
-                                    // 填充区域为0
-                                    outputData[outputRowIndex * outputCols + colIndex] = 0.0f;
-                                }
-                                colIndex++;
-                            }
-                        }
-                    }
-                    outputRowIndex++;
-                }
-            }
-        }
-        
-        return NdArray.of(outputData, Shape.of(outputRows, outputCols));
-    }
-
-    /**
-     * Col2Im转换 - 将列矩阵重组回卷积输入格式
-     * <p>
-     * Im2Col的逆操作，用于反向传播
-     * 将2D矩阵 [B*OH*OW, C*KH*KW] 重组为4D张量 [B, C, H, W]
-     * 
-     * @param gradCol 列矩阵梯度 [B*OH*OW, C*KH*KW]
-     * @param batchSize 批次大小
-     * @param channels 输入通道数
-     * @param height 输入高度
-     * @param width 输入宽度
-     * @param kernelHeight 卷积核高度
-     * @param kernelWidth 卷积核宽度
-     * @return 输入梯度 [B, C, H, W]
-     */
-    private NdArray col2im(NdArray gradCol, int batchSize, int channels,
-                          int height, int width,
-                          int kernelHeight, int kernelWidth) {
-        NdArray inputGrad = NdArray.zeros(Shape.of(batchSize, channels, height, width));
-        
-        int outputCols = channels * kernelHeight * kernelWidth;
-        int outputRowIndex = 0;
-        
-        for (int b = 0; b < batchSize; b++) {
-            for (int oh = 0; oh < outHeight; oh++) {
-                for (int ow = 0; ow < outWidth; ow++) {
-                    int colIndex = 0;
-                    
-                    for (int c = 0; c < channels; c++) {
-                        for (int kh = 0; kh < kernelHeight; kh++) {
-                            int ih = oh * stride + kh - padding;
-                            for (int kw = 0; kw < kernelWidth; kw++) {
-                                int iw = ow * stride + kw - padding;
-                                
-                                // 只处理有效区域（非padding）
-                                if (ih >= 0 && ih < height && iw >= 0 && iw < width) {
-                                    float gradValue = gradCol.get(outputRowIndex, colIndex);
-                                    float currentGrad = inputGrad.get(b, c, ih, iw);
-                                    // 累加梯度（处理重叠区域）
-                                    inputGrad.set(currentGrad + gradValue, b, c, ih, iw);
-                                }
-                                colIndex++;
-                            }
-                        }
-                    }
-                    outputRowIndex++;
-                }
-            }
-        }
-        
-        return inputGrad;
-    }
-
-
 }
@@ -3,6 +3,8 @@ package io.leavesfly.tinyai.func.matrix;
 import io.leavesfly.tinyai.func.Function;
 import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.ndarr.half.NdArrayHalf;
+import io.leavesfly.tinyai.ndarr.offheap.NdArrayOffHeap;
 
 import java.util.Collections;
 import java.util.List;
@@ -116,6 +118,14 @@ public class IndexSelect extends Function {
      * 执行元素选择
      */
     private NdArray selectElements(NdArray x, int dim, Shape outputShape) {
+        // 堆外数组（如大词表嵌入矩阵）和16位数组沿第0维选择时只拷贝/解码被选中的行
+        if (dim == 0 && x instanceof NdArrayOffHeap) {
+            return ((NdArrayOffHeap) x).gatherRows(indices).reshape(outputShape);
+        }
+        if (dim == 0 && x instanceof NdArrayHalf) {
+            return ((NdArrayHalf) x).gatherRows(indices).reshape(outputShape);
+        }
+
         float[] xData = x.getArray();
         float[] outputData = new float[outputShape.size()];
         int[] inputDims = inputShape.getShapeDims();
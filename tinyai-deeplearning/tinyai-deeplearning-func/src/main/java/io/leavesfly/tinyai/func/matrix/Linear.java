@@ -48,12 +48,14 @@ public class Linear extends Function {
 
         NdArray x = inputs[0].getValue();
         NdArray w = inputs[1].getValue();
+        // 以转置标记代替w.transpose()，权重为16位存储时也不必整体解码
+        NdArray xGrad = yGrad.dot(w, false, true);
 
         if (inputs.length == 2) {
-            return Arrays.asList(yGrad.dot(w.transpose()), x.transpose().dot(yGrad));
+            return Arrays.asList(xGrad, x.transpose().dot(yGrad));
         } else {
             NdArray b = inputs[2].getValue();
-            return Arrays.asList(yGrad.dot(w.transpose()), x.transpose().dot(yGrad), yGrad.sumTo(b.getShape()));
+            return Arrays.asList(xGrad, x.transpose().dot(yGrad), yGrad.sumTo(b.getShape()));
         }
     }
 
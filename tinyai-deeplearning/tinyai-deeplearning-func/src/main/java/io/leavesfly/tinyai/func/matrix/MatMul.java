@@ -12,16 +12,40 @@ import java.util.List;
  * 矩阵乘法函数
  * <p>
  * 计算两个矩阵的内积（点积）。
+ * <p>
+ * 可选地在乘法前转置任一输入的最后两个维度（op(x) * op(w)），
+ * 转置由底层内核按步长读取完成，前向和反向都不生成中间的转置数组。
  */
 public class MatMul extends Function {
     
+    private final boolean transposeX;
+    private final boolean transposeW;
+
     private Shape xShape;
     private Shape wShape;
+
+    /**
+     * 构造普通矩阵乘法 x * w
+     */
+    public MatMul() {
+        this(false, false);
+    }
+
+    /**
+     * 构造带转置的矩阵乘法 op(x) * op(w)
+     *
+     * @param transposeX 是否转置x的最后两个维度
+     * @param transposeW 是否转置w的最后两个维度
+     */
+    public MatMul(boolean transposeX, boolean transposeW) {
+        this.transposeX = transposeX;
+        this.transposeW = transposeW;
+    }
     
     /**
      * 前向传播计算矩阵乘法
      * <p>
-     * 计算两个矩阵的内积（点积）：x * w
+     * 计算两个矩阵的内积（点积）：op(x) * op(w)
      *
      * @param inputs 输入的NdArray数组，长度为2
      * @return 矩阵乘法结果的NdArray
@@ -34,7 +58,10 @@ public class MatMul extends Function {
         xShape = x.getShape();
         wShape = w.getShape();
 
-        return x.dot(w);
+        if (!transposeX && !transposeW) {
+            return x.dot(w);
+        }
+        return x.dot(w, transposeX, transposeW);
     }
 
     /**
@@ -43,6 +70,7 @@ public class MatMul extends Function {
      * 对于矩阵乘法，梯度计算公式为：
      * - ∂(x*w)/∂x = yGrad * w^T
      * - ∂(x*w)/∂w = x^T * yGrad
+     * 带转置时按 y = op(x) * op(w) 推导，所有转置都以转置标记传给dot，不生成转置数组。
      * 支持 batch 情况，当 x 是 3D 而 w 是 2D 时，需要对 wGrad 进行 sumTo。
      *
      * @param yGrad 输出变量的梯度
@@ -53,14 +81,14 @@ public class MatMul extends Function {
         NdArray x = inputs[0].getValue();
         NdArray w = inputs[1].getValue();
 
-        // xGrad = yGrad * w^T
-        NdArray xGrad = yGrad.dot(w.transpose());
+        // xGrad = yGrad * op(w)^T；x被转置时为其转置：op(w) * yGrad^T
+        NdArray xGrad = transposeX ? w.dot(yGrad, transposeW, true) : yGrad.dot(w, false, !transposeW);
         if (!xGrad.getShape().equals(xShape)) {
             xGrad = sumToShape(xGrad, xShape);
         }
         
-        // wGrad = x^T * yGrad
-        NdArray wGrad = x.transpose().dot(yGrad);
+        // wGrad = op(x)^T * yGrad；w被转置时为其转置：yGrad^T * op(x)
+        NdArray wGrad = transposeW ? yGrad.dot(x, true, transposeX) : x.dot(yGrad, !transposeX, false);
         if (!wGrad.getShape().equals(wShape)) {
             wGrad = sumToShape(wGrad, wShape);
         }
@@ -0,0 +1,109 @@
+package io.leavesfly.tinyai.func.matrix;
+
+import io.leavesfly.tinyai.func.Function;
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.ndarr.cpu.matrix.ConvKernel;
+import io.leavesfly.tinyai.ndarr.cpu.matrix.PoolKernel;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 2D最大池化操作
+ * <p>
+ * 对每个 (批次, 通道) 平面，在每个池化窗口内取最大值，各平面并行计算。
+ * 填充区域不参与比较，窗口全部落在填充区时输出0。
+ * <p>
+ * 前向时记录每个窗口最大值的位置，反向传播时梯度只流向该位置。
+ * <p>
+ * 输入形状: [batch_size, channels, height, width]
+ * 输出形状: [batch_size, channels, out_h, out_w]
+ * <p>
+ * 其中:
+ * - out_h = (height + 2 * padding - kernel_h) / stride + 1
+ * - out_w = (width + 2 * padding - kernel_w) / stride + 1
+ *
+ * @author TinyAI Team
+ */
+public class MaxPool2d extends Function {
+
+    private final int kernelHeight;
+    private final int kernelWidth;
+    private final int stride;
+    private final int padding;
+
+    // 缓存前向传播信息，供反向传播使用
+    private Shape inputShape;
+    private int[] argmax;
+
+    /**
+     * 构造2D最大池化函数
+     *
+     * @param kernelHeight 池化窗口高度
+     * @param kernelWidth  池化窗口宽度
+     * @param stride       步长
+     * @param padding      填充大小
+     */
+    public MaxPool2d(int kernelHeight, int kernelWidth, int stride, int padding) {
+        this.kernelHeight = kernelHeight;
+        this.kernelWidth = kernelWidth;
+        this.stride = stride;
+        this.padding = padding;
+    }
+
+    @Override
+    public NdArray forward(NdArray... inputs) {
+        NdArray input = inputs[0];
+        this.inputShape = input.getShape();
+        Shape outputShape = poolOutputShape(inputShape, kernelHeight, kernelWidth, stride, padding);
+
+        int planes = inputShape.getDimension(0) * inputShape.getDimension(1);
+        float[] output = new float[outputShape.size()];
+        this.argmax = new int[output.length];
+        PoolKernel.maxPoolForward(input.getArray(), planes, inputShape.getDimension(2), inputShape.getDimension(3),
+                kernelHeight, kernelWidth, stride, padding, output, argmax);
+        return NdArray.of(output, outputShape);
+    }
+
+    @Override
+    public List<NdArray> backward(NdArray yGrad) {
+        int planes = inputShape.getDimension(0) * inputShape.getDimension(1);
+        float[] inputGrad = new float[inputShape.size()];
+        PoolKernel.maxPoolBackward(yGrad.getArray(), argmax, planes,
+                inputShape.size() / planes, argmax.length / planes, inputGrad);
+        return Collections.singletonList(NdArray.of(inputGrad, inputShape));
+    }
+
+    @Override
+    public int requireInputNum() {
+        return 1;
+    }
+
+    /**
+     * 校验池化输入并计算输出形状
+     *
+     * @param inputShape   输入形状 [B, C, H, W]
+     * @param kernelHeight 池化窗口高度
+     * @param kernelWidth  池化窗口宽度
+     * @param stride       步长
+     * @param padding      填充大小
+     * @return 输出形状 [B, C, OH, OW]
+     */
+    static Shape poolOutputShape(Shape inputShape, int kernelHeight, int kernelWidth, int stride, int padding) {
+        if (inputShape.getDimNum() != 4) {
+            throw new IllegalArgumentException(String.format(
+                    "Expected 4D input (batch, channels, height, width), but got %dD", inputShape.getDimNum()));
+        }
+        if (stride <= 0 || padding < 0) {
+            throw new IllegalArgumentException(String.format("Invalid stride %d or padding %d", stride, padding));
+        }
+        int outHeight = ConvKernel.outputSize(inputShape.getDimension(2), kernelHeight, stride, padding);
+        int outWidth = ConvKernel.outputSize(inputShape.getDimension(3), kernelWidth, stride, padding);
+        if (outHeight <= 0 || outWidth <= 0) {
+            throw new IllegalArgumentException(String.format("Pooling window %dx%d is larger than padded input",
+                    kernelHeight, kernelWidth));
+        }
+        return Shape.of(inputShape.getDimension(0), inputShape.getDimension(1), outHeight, outWidth);
+    }
+}
@@ -0,0 +1,119 @@
+package io.leavesfly.tinyai.func.matrix;
+
+import io.leavesfly.tinyai.func.Function;
+import io.leavesfly.tinyai.ndarr.NdArray;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 操作数与结果都带维度重排的批量矩阵乘法
+ * <p>
+ * 计算 y = transpose(transpose(x, xOrder) * transpose(w, wOrder), resultOrder)，
+ * 三处重排都由底层内核按步长读写完成，前向和反向都不生成中间的转置数组。
+ * <p>
+ * 典型用途是多头注意力：投影输出 (batch, seq, d_model) 零拷贝 reshape 为 (batch, seq, heads, d_k) 后，
+ * 以 {0, 2, 1, 3} 直接作为 (batch, heads, seq, d_k) 参与计算（取代 splitHeads 中的 Permute），
+ * 注意力输出以 resultOrder = {0, 2, 1, 3} 直接写成 (batch, seq, heads, d_v)（取代 mergeHeads 中的 Permute）。
+ * <p>
+ * 与 {@link MatMul} 不同，这里要求两个操作数重排后的批次维度完全相同，不做广播。
+ */
+public class PermutedMatMul extends Function {
+
+    private final int[] xOrder;
+    private final int[] wOrder;
+    private final int[] resultOrder;
+
+    /**
+     * 构造函数
+     *
+     * @param xOrder      x的维度顺序，null表示不重排
+     * @param wOrder      w的维度顺序，null表示不重排
+     * @param resultOrder 乘积的维度顺序，null表示不重排
+     */
+    public PermutedMatMul(int[] xOrder, int[] wOrder, int[] resultOrder) {
+        this.xOrder = xOrder;
+        this.wOrder = wOrder;
+        this.resultOrder = resultOrder;
+    }
+
+    @Override
+    public NdArray forward(NdArray... inputs) {
+        int[] xDims = permuted(inputs[0].getShape().getShapeDims(), xOrder);
+        int[] wDims = permuted(inputs[1].getShape().getShapeDims(), wOrder);
+        if (xDims.length != wDims.length
+                || !Arrays.equals(Arrays.copyOf(xDims, xDims.length - 2), Arrays.copyOf(wDims, wDims.length - 2))) {
+            throw new IllegalArgumentException(String.format(
+                    "PermutedMatMul requires identical batch dims, got %s x %s",
+                    Arrays.toString(xDims), Arrays.toString(wDims)));
+        }
+        return inputs[0].dot(inputs[1], xOrder, wOrder, resultOrder);
+    }
+
+    /**
+     * 反向传播
+     * <p>
+     * 记 X' = transpose(x, xOrder)、W' = transpose(w, wOrder)、乘积 Y' = X' * W'，
+     * 则 dY' 是 yGrad 按 resultOrder 的逆序重排，dX' = dY' * W'^T、dW' = X'^T * dY'，
+     * 再分别按 xOrder、wOrder 的逆序写回 x、w 的布局。这些重排同样只体现为步长。
+     *
+     * @param yGrad 输出变量的梯度
+     * @return 输入变量的梯度列表
+     */
+    @Override
+    public List<NdArray> backward(NdArray yGrad) {
+        NdArray x = inputs[0].getValue();
+        NdArray w = inputs[1].getValue();
+        int rank = yGrad.getShape().getDimNum();
+
+        int[] yOrder = inverse(resultOrder);
+        NdArray xGrad = yGrad.dot(w, yOrder, swapLast(wOrder, rank), inverse(xOrder));
+        NdArray wGrad = x.dot(yGrad, swapLast(xOrder, rank), yOrder, inverse(wOrder));
+        return Arrays.asList(xGrad, wGrad);
+    }
+
+    @Override
+    public int requireInputNum() {
+        return 2;
+    }
+
+    private static int[] permuted(int[] dims, int[] order) {
+        if (order == null) {
+            return dims;
+        }
+        if (order.length != dims.length) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid permute order, expected %d dims but got %s", dims.length, Arrays.toString(order)));
+        }
+        int[] result = new int[dims.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = dims[order[i]];
+        }
+        return result;
+    }
+
+    private static int[] inverse(int[] order) {
+        if (order == null) {
+            return null;
+        }
+        int[] inverse = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            inverse[order[i]] = i;
+        }
+        return inverse;
+    }
+
+    /**
+     * 在维度顺序上再交换最后两个维度（即对重排后的矩阵再转置）
+     */
+    private static int[] swapLast(int[] order, int rank) {
+        int[] result = new int[rank];
+        for (int i = 0; i < rank; i++) {
+            result[i] = order == null ? i : order[i];
+        }
+        int last = result[rank - 1];
+        result[rank - 1] = result[rank - 2];
+        result[rank - 2] = last;
+        return result;
+    }
+}
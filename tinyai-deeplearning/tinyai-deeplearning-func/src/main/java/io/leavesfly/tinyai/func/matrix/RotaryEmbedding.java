@@ -107,8 +107,21 @@ public class RotaryEmbedding extends Function {
         NdArray x = inputs[0];
         this.startPos = inputs.length > 1 ? (int) inputs[1].getNumber().floatValue() : 0;
         this.inputShape = x.getShape();
-        
-        int[] shape = inputShape.getShapeDims();
+        return rotate(x, startPos);
+    }
+
+    /**
+     * 对从startPos开始的位置应用旋转，不记录反向传播所需的状态
+     * <p>
+     * 供推理时的KV缓存解码复用同一份预计算的 cos/sin 表：
+     * 每个解码步只旋转新token，且多个线程可以共享同一个实例。
+     *
+     * @param x        输入张量 [batch_size, seq_len, dim] 或 [batch_size, num_heads, seq_len, head_dim]
+     * @param startPos 第一个token的位置
+     * @return 应用 RoPE 后的张量
+     */
+    public NdArray rotate(NdArray x, int startPos) {
+        int[] shape = x.getShape().getShapeDims();
         
         // 支持两种输入形状
         boolean is3D = (shape.length == 3);  // [B, L, D]
@@ -289,6 +302,13 @@ public class RotaryEmbedding extends Function {
         }
     }
 
+    /**
+     * 预计算表覆盖的最大位置数
+     */
+    public int getMaxSeqLen() {
+        return maxSeqLen;
+    }
+
     @Override
     public int requireInputNum() {
         return -1;  // 返回-1表示支持可变参数（1个或2个），第二个参数 startPos 是可选的
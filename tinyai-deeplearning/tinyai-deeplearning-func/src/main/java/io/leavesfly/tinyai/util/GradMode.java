@@ -0,0 +1,154 @@
+package io.leavesfly.tinyai.util;
+
+import java.util.function.Supplier;
+
+/**
+ * 按线程的梯度模式
+ *
+ * <p>{@link Config#train} 是进程级的全局开关，推理线程把它置为false会让同时在训练的线程也停止构建计算图。
+ * GradMode在当前线程上覆盖该开关：作用域打开期间，本线程上的 {@code Function.call} 按作用域的设置决定是否构建计算图，
+ * 其他线程不受影响；没有打开作用域的线程仍然以 {@link Config#train} 为准。</p>
+ *
+ * <p>使用示例：</p>
+ * <pre>
+ * Variable logits = GradMode.withNoGrad(() -> model.forward(x));
+ * </pre>
+ *
+ * <p>需要跨越多条语句控制作用域时也可以直接使用try-with-resources，
+ * 但作用域变量在代码块中未被引用会触发 {@code -Xlint:try} 警告，一般优先使用 {@link #withNoGrad(Supplier)}。</p>
+ *
+ * <p>作用域可以嵌套，关闭时恢复打开前的设置；必须在打开它的线程上按后进先出的顺序关闭。</p>
+ *
+ * @author leavesfly
+ */
+public final class GradMode implements AutoCloseable {
+
+    private static final ThreadLocal<GradMode> CURRENT = new ThreadLocal<>();
+
+    private final boolean enabled;
+    private final GradMode parent;
+    private final Thread owner;
+    private boolean closed;
+
+    private GradMode(boolean enabled) {
+        this.enabled = enabled;
+        this.parent = CURRENT.get();
+        this.owner = Thread.currentThread();
+        CURRENT.set(this);
+    }
+
+    /**
+     * 在当前线程上打开不构建计算图的作用域，用于推理、评估等不需要反向传播的代码
+     *
+     * @return 作用域
+     */
+    public static GradMode noGrad() {
+        return new GradMode(false);
+    }
+
+    /**
+     * 在当前线程上打开构建计算图的作用域，可在noGrad作用域内部临时恢复梯度计算
+     *
+     * @return 作用域
+     */
+    public static GradMode enableGrad() {
+        return new GradMode(true);
+    }
+
+    /**
+     * 在不构建计算图的作用域中执行代码
+     *
+     * @param action 要执行的代码
+     * @param <T>    返回值类型
+     * @return action的返回值
+     */
+    public static <T> T withNoGrad(Supplier<T> action) {
+        GradMode mode = noGrad();
+        try {
+            return action.get();
+        } finally {
+            mode.close();
+        }
+    }
+
+    /**
+     * 在不构建计算图的作用域中执行没有返回值的代码
+     *
+     * @param action 要执行的代码
+     */
+    public static void withNoGrad(Runnable action) {
+        GradMode mode = noGrad();
+        try {
+            action.run();
+        } finally {
+            mode.close();
+        }
+    }
+
+    /**
+     * 在构建计算图的作用域中执行代码，可在noGrad作用域内部临时恢复梯度计算
+     *
+     * @param action 要执行的代码
+     * @param <T>    返回值类型
+     * @return action的返回值
+     */
+    public static <T> T withEnableGrad(Supplier<T> action) {
+        GradMode mode = enableGrad();
+        try {
+            return action.get();
+        } finally {
+            mode.close();
+        }
+    }
+
+    /**
+     * 在构建计算图的作用域中执行没有返回值的代码
+     *
+     * @param action 要执行的代码
+     */
+    public static void withEnableGrad(Runnable action) {
+        GradMode mode = enableGrad();
+        try {
+            action.run();
+        } finally {
+            mode.close();
+        }
+    }
+
+    /**
+     * 当前线程是否构建计算图
+     *
+     * @return 有打开的作用域时返回最内层作用域的设置，否则返回 {@link Config#train}
+     */
+    public static boolean isEnabled() {
+        GradMode mode = CURRENT.get();
+        if (mode != null) {
+            return mode.enabled;
+        }
+        return Boolean.TRUE.equals(Config.train);
+    }
+
+    /**
+     * 关闭作用域，恢复打开前的梯度模式
+     *
+     * @throws IllegalStateException 在其他线程上关闭，或外层作用域先于内层关闭时抛出
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        if (Thread.currentThread() != owner) {
+            throw new IllegalStateException("GradMode必须在打开它的线程上关闭");
+        }
+        if (CURRENT.get() != this) {
+            throw new IllegalStateException("GradMode必须按后进先出的顺序关闭");
+        }
+        closed = true;
+        if (parent == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(parent);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package io.leavesfly.tinyai.func;
+
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.util.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * 反向传播引擎测试
+ *
+ * 测试基于拓扑排序的反向传播，包括：
+ * - 共享节点在收齐所有下游梯度后才继续向上传播
+ * - 多输出函数只反向传播一次，未使用的输出按零梯度处理
+ * - 深层计算图不会栈溢出
+ * - 多个线程同时对各自的计算图做反向传播
+ * - 不保留计算图时传播后立即断开函数节点并释放中间梯度
+ *
+ * @author TinyAI
+ */
+public class BackwardEngineTest {
+
+    private boolean originalTrainMode;
+
+    @Before
+    public void setUp() {
+        originalTrainMode = Config.train;
+        Config.train = true;
+    }
+
+    @After
+    public void tearDown() {
+        Config.train = originalTrainMode;
+    }
+
+    @Test
+    public void testSharedNodeReceivesAllGradients() {
+        // y = sum(a + a*a), a = x^2  =>  dy/dx = (1 + 2a) * 2x
+        float[] xs = {0.5f, -1f, 2f};
+        Variable x = new Variable(NdArray.of(new float[][]{xs}), "x");
+        Variable a = x.squ();
+        Variable y = a.add(a.mul(a)).sum();
+        y.backward();
+
+        float[] grad = x.getGrad().getArray();
+        for (int i = 0; i < xs.length; i++) {
+            float ai = xs[i] * xs[i];
+            assertEquals((1 + 2 * ai) * 2 * xs[i], grad[i], 1e-5f);
+        }
+        assertArrayEquals(new float[]{1.5f, 3f, 9f}, a.getGrad().getArray(), 1e-5f);
+    }
+
+    @Test
+    public void testMultiOutputFunction() {
+        NdArray value = NdArray.likeRandom(-1f, 1f, Shape.of(2, 4), 7);
+        Variable x = new Variable(value, "x");
+        Variable[] parts = x.split(2, 1);
+        // 两个输出都被使用
+        Variable y = parts[0].squ().sum().add(parts[1].sum());
+        y.backward();
+
+        float[] grad = x.getGrad().getArray();
+        float[] v = value.getArray();
+        for (int r = 0; r < 2; r++) {
+            for (int c = 0; c < 4; c++) {
+                int i = r * 4 + c;
+                float expected = c < 2 ? 2 * v[i] : 1f;
+                assertEquals(expected, grad[i], 1e-5f);
+            }
+        }
+
+        // 只使用一个输出，另一个输出的梯度按零处理
+        Variable x2 = new Variable(value, "x2");
+        x2.split(2, 1)[1].sum().backward();
+        float[] grad2 = x2.getGrad().getArray();
+        for (int i = 0; i < grad2.length; i++) {
+            assertEquals(i % 4 < 2 ? 0f : 1f, grad2[i], 0f);
+        }
+    }
+
+    @Test
+    public void testRequireGradFalseStopsPropagation() {
+        Variable x = new Variable(NdArray.of(new float[][]{{1f, 2f}}), "x");
+        Variable frozen = x.squ().setRequireGrad(false);
+        Variable w = new Variable(NdArray.of(new float[][]{{3f, 4f}}), "w");
+        frozen.mul(w).sum().backward();
+
+        assertNull(frozen.getGrad());
+        assertNull(x.getGrad());
+        assertArrayEquals(new float[]{1f, 4f}, w.getGrad().getArray(), 1e-6f);
+    }
+
+    @Test
+    public void testDeepChainDoesNotOverflow() {
+        int depth = 20000;
+        Variable x = new Variable(NdArray.of(new float[][]{{1f, 2f}}), "x");
+        Variable one = new Variable(NdArray.of(new float[][]{{1f, 1f}}), "one", false);
+        Variable v = x;
+        for (int i = 0; i < depth; i++) {
+            v = v.mul(one);
+        }
+        Variable y = v.sum();
+        y.backward();
+        assertArrayEquals(new float[]{1f, 1f}, x.getGrad().getArray(), 0f);
+
+        y.unChainBackward();
+        assertNull(v.getCreator());
+    }
+
+    @Test
+    public void testConcurrentBackward() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Callable<Boolean> task = () -> {
+                for (int step = 0; step < 200; step++) {
+                    Variable x = new Variable(NdArray.of(new float[][]{{0.5f, -1f}}), "x");
+                    Variable a = x.squ();
+                    a.add(a.mul(a)).sum().backward();
+                    float[] grad = x.getGrad().getArray();
+                    if (Math.abs(grad[0] - 1.5f) > 1e-5f || Math.abs(grad[1] + 6f) > 1e-5f) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+            Future<Boolean> first = executor.submit(task);
+            Future<Boolean> second = executor.submit(task);
+            assertTrue(first.get());
+            assertTrue(second.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testReleaseGraphDuringBackward() {
+        float[] xs = {0.5f, -1f, 2f};
+        Variable x = new Variable(NdArray.of(new float[][]{xs}), "x");
+        Variable a = x.squ();
+        Variable b = a.mul(a);
+        Variable y = a.add(b).sum();
+        Function squ = a.getCreator();
+        y.backward(false);
+
+        // 梯度与保留计算图时一致
+        float[] grad = x.getGrad().getArray();
+        for (int i = 0; i < xs.length; i++) {
+            float ai = xs[i] * xs[i];
+            assertEquals((1 + 2 * ai) * 2 * xs[i], grad[i], 1e-5f);
+        }
+        // 函数节点与中间梯度已释放，起点梯度保留
+        assertNull(y.getCreator());
+        assertNull(a.getCreator());
+        assertNull(b.getCreator());
+        assertNull(squ.getInputs());
+        assertNull(a.getGrad());
+        assertNull(b.getGrad());
+        assertNotNull(y.getGrad());
+
+        // 多输出函数
+        Variable x2 = new Variable(NdArray.likeRandom(-1f, 1f, Shape.of(2, 4), 3), "x2");
+        Variable[] parts = x2.split(2, 1);
+        parts[0].sum().add(parts[1].sum()).backward(false);
+        assertArrayEquals(NdArray.ones(Shape.of(2, 4)).getArray(), x2.getGrad().getArray(), 0f);
+        assertNull(parts[0].getCreator());
+        assertNull(parts[1].getGrad());
+    }
+}
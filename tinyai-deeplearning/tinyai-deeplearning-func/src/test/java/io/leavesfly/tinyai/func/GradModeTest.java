@@ -0,0 +1,125 @@
+package io.leavesfly.tinyai.func;
+
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.util.Config;
+import io.leavesfly.tinyai.util.GradMode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * 梯度模式测试
+ *
+ * 测试按线程的梯度模式，包括：
+ * - noGrad作用域内不构建计算图，关闭后恢复
+ * - 嵌套作用域与未打开作用域时回退到Config.train
+ * - withNoGrad/withEnableGrad在执行完（包括抛出异常）后恢复原来的模式
+ * - 一个线程的noGrad不影响其他线程构建计算图
+ *
+ * @author TinyAI
+ */
+public class GradModeTest {
+
+    private boolean originalTrainMode;
+
+    @Before
+    public void setUp() {
+        originalTrainMode = Config.train;
+        Config.train = true;
+    }
+
+    @After
+    public void tearDown() {
+        Config.train = originalTrainMode;
+    }
+
+    @Test
+    public void testNoGradSkipsGraph() {
+        Variable x = new Variable(NdArray.of(new float[][]{{1f, 2f}}), "x");
+        try (GradMode ignored = GradMode.noGrad()) {
+            assertFalse(GradMode.isEnabled());
+            assertNull(x.squ().getCreator());
+        }
+        assertTrue(GradMode.isEnabled());
+        assertNotNull(x.squ().getCreator());
+    }
+
+    @Test
+    public void testNestedScopesAndFallback() {
+        try (GradMode outer = GradMode.noGrad()) {
+            try (GradMode inner = GradMode.enableGrad()) {
+                assertTrue(GradMode.isEnabled());
+            }
+            assertFalse(GradMode.isEnabled());
+        }
+
+        Config.train = false;
+        assertFalse(GradMode.isEnabled());
+        try (GradMode ignored = GradMode.enableGrad()) {
+            assertTrue(GradMode.isEnabled());
+        }
+    }
+
+    @Test
+    public void testWithNoGradRestoresMode() {
+        Variable x = new Variable(NdArray.of(new float[][]{{1f, 2f}}), "x");
+        Variable y = GradMode.withNoGrad(() -> {
+            assertTrue(GradMode.withEnableGrad(GradMode::isEnabled));
+            return x.squ();
+        });
+        assertNull(y.getCreator());
+        assertTrue(GradMode.isEnabled());
+
+        try {
+            GradMode.withNoGrad(() -> {
+                throw new IllegalArgumentException("失败");
+            });
+            fail("异常应被传播");
+        } catch (IllegalArgumentException e) {
+            assertTrue(GradMode.isEnabled());
+        }
+    }
+
+    @Test
+    public void testNoGradIsThreadLocal() throws Exception {
+        CountDownLatch inScope = new CountDownLatch(1);
+        CountDownLatch checked = new CountDownLatch(1);
+        AtomicBoolean otherThreadBuiltGraph = new AtomicBoolean();
+
+        Thread inference = new Thread(() -> {
+            try (GradMode ignored = GradMode.noGrad()) {
+                inScope.countDown();
+                checked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        inference.start();
+        inScope.await();
+        try {
+            Variable x = new Variable(NdArray.of(new float[][]{{1f, 2f}}), "x");
+            otherThreadBuiltGraph.set(x.squ().getCreator() != null);
+        } finally {
+            checked.countDown();
+            inference.join();
+        }
+        assertTrue("其他线程的noGrad不应影响当前线程", otherThreadBuiltGraph.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOutOfOrderCloseRejected() {
+        GradMode outer = GradMode.noGrad();
+        GradMode inner = GradMode.enableGrad();
+        try {
+            outer.close();
+        } finally {
+            inner.close();
+            outer.close();
+        }
+    }
+}
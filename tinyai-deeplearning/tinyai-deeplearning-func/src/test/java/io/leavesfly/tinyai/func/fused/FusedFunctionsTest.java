@@ -0,0 +1,214 @@
+package io.leavesfly.tinyai.func.fused;
+
+import io.leavesfly.tinyai.func.Variable;
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.util.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * 融合函数测试
+ *
+ * 将融合函数与逐个算子组合的结果对比，包括：
+ * - FusedLinear 在各激活函数下的前向与梯度
+ * - ScaleMaskSoftmax 带掩码时的前向与梯度，以及整行被掩码的情况
+ * - FusedLayerNorm / FusedRMSNorm 带与不带残差时的前向与参数梯度，输入梯度与数值梯度对比
+ *
+ * @author TinyAI
+ */
+public class FusedFunctionsTest {
+
+    private static final float DELTA = 1e-4f;
+    private static final float GRAD_DELTA = 2e-2f;
+
+    private boolean originalTrainMode;
+
+    @Before
+    public void setUp() {
+        originalTrainMode = Config.train;
+        Config.train = true;
+    }
+
+    @After
+    public void tearDown() {
+        Config.train = originalTrainMode;
+    }
+
+    @Test
+    public void testFusedLinearMatchesComposition() {
+        for (FusedLinear.Activation activation : FusedLinear.Activation.values()) {
+            Variable x = param(Shape.of(3, 4), 1L);
+            Variable w = param(Shape.of(5, 4), 2L);
+            Variable b = param(Shape.of(1, 5), 3L);
+            Variable fused = new FusedLinear(activation).call(x, w, b);
+            fused.sum().backward();
+
+            Variable x2 = param(Shape.of(3, 4), 1L);
+            Variable w2 = param(Shape.of(5, 4), 2L);
+            Variable b2 = param(Shape.of(1, 5), 3L);
+            Variable z = x2.matMul(w2.transpose()).add(b2.broadcastTo(Shape.of(3, 5)));
+            Variable expected;
+            switch (activation) {
+                case RELU:
+                    expected = z.relu();
+                    break;
+                case GELU:
+                    expected = z.gelu();
+                    break;
+                case SILU:
+                    expected = z.silu();
+                    break;
+                default:
+                    expected = z;
+            }
+            expected.sum().backward();
+
+            String msg = activation.name();
+            assertArrayEquals(msg, expected.getValue().getArray(), fused.getValue().getArray(), DELTA);
+            assertArrayEquals(msg, x2.getGrad().getArray(), x.getGrad().getArray(), DELTA);
+            assertArrayEquals(msg, w2.getGrad().getArray(), w.getGrad().getArray(), DELTA);
+            assertArrayEquals(msg, b2.getGrad().getArray(), b.getGrad().getArray(), DELTA);
+        }
+    }
+
+    @Test
+    public void testFusedLinearKeepsLeadingDims() {
+        Variable x = param(Shape.of(2, 3, 4), 4L);
+        Variable w = param(Shape.of(6, 4), 5L);
+        Variable y = new FusedLinear().call(x, w);
+        assertEquals(Shape.of(2, 3, 6), y.getValue().getShape());
+        y.sum().backward();
+        assertEquals(Shape.of(2, 3, 4), x.getGrad().getShape());
+    }
+
+    @Test
+    public void testScaleMaskSoftmaxMatchesComposition() {
+        float scale = 0.5f;
+        NdArray maskValue = NdArray.of(new float[][]{{0f, 0f, -1e9f, 0f}, {0f, -1e9f, 0f, 0f}});
+        NdArray weights = NdArray.likeRandomN(Shape.of(2, 4), 6L);
+
+        Variable x = param(Shape.of(2, 4), 7L);
+        Variable y = new ScaleMaskSoftmax(scale).call(x, new Variable(maskValue, "mask", false));
+        y.mul(new Variable(weights)).sum().backward();
+
+        Variable x2 = param(Shape.of(2, 4), 7L);
+        Variable expected = x2.mul(new Variable(scale)).add(new Variable(maskValue, "mask", false)).softMax();
+        expected.mul(new Variable(weights)).sum().backward();
+
+        assertArrayEquals(expected.getValue().getArray(), y.getValue().getArray(), DELTA);
+        assertArrayEquals(x2.getGrad().getArray(), x.getGrad().getArray(), DELTA);
+        assertEquals(0f, y.getValue().getArray()[2], DELTA);
+    }
+
+    @Test
+    public void testScaleMaskSoftmaxFullyMaskedRow() {
+        NdArray mask = NdArray.of(new float[][]{{0f, 0f}, {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY}});
+        Variable x = param(Shape.of(2, 2), 8L);
+        Variable y = new ScaleMaskSoftmax(1f).call(x, new Variable(mask, "mask", false));
+        float[] out = y.getValue().getArray();
+        assertEquals(1f, out[0] + out[1], DELTA);
+        assertEquals(0f, out[2], 0f);
+        assertEquals(0f, out[3], 0f);
+    }
+
+    @Test
+    public void testFusedLayerNormMatchesComposition() {
+        for (boolean withResidual : new boolean[]{false, true}) {
+            Variable x = param(Shape.of(3, 6), 9L);
+            Variable r = param(Shape.of(3, 6), 10L);
+            Variable gamma = param(Shape.of(1, 6), 11L);
+            Variable beta = param(Shape.of(1, 6), 12L);
+            NdArray weights = NdArray.likeRandomN(Shape.of(3, 6), 13L);
+            Variable y = withResidual
+                    ? new FusedLayerNorm(1e-5f).call(x, gamma, beta, r)
+                    : new FusedLayerNorm(1e-5f).call(x, gamma, beta);
+            y.mul(new Variable(weights)).sum().backward();
+
+            Variable x2 = param(Shape.of(3, 6), 9L).setRequireGrad(false);
+            Variable r2 = param(Shape.of(3, 6), 10L).setRequireGrad(false);
+            Variable gamma2 = param(Shape.of(1, 6), 11L);
+            Variable beta2 = param(Shape.of(1, 6), 12L);
+            Variable h = withResidual ? x2.add(r2) : x2;
+            Variable mean = h.mean(1, true);
+            Variable var = h.var(1, true);
+            Variable normalized = h.sub(mean).div(var.add(new Variable(1e-5f)).sqrt());
+            Variable expected = normalized.mul(gamma2.broadcastTo(Shape.of(3, 6)))
+                    .add(beta2.broadcastTo(Shape.of(3, 6)));
+            expected.mul(new Variable(weights)).sum().backward();
+
+            String msg = "withResidual=" + withResidual;
+            assertArrayEquals(msg, expected.getValue().getArray(), y.getValue().getArray(), DELTA);
+            assertArrayEquals(msg, numericGrad(x.getValue(), () -> new FusedLayerNorm(1e-5f)
+                    .forward(withResidual ? new NdArray[]{x.getValue(), gamma.getValue(), beta.getValue(), r.getValue()}
+                            : new NdArray[]{x.getValue(), gamma.getValue(), beta.getValue()}), weights),
+                    x.getGrad().getArray(), GRAD_DELTA);
+            assertArrayEquals(msg, gamma2.getGrad().getArray(), gamma.getGrad().getArray(), DELTA);
+            assertArrayEquals(msg, beta2.getGrad().getArray(), beta.getGrad().getArray(), DELTA);
+            if (withResidual) {
+                assertArrayEquals(msg, x.getGrad().getArray(), r.getGrad().getArray(), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void testFusedRMSNormMatchesComposition() {
+        for (boolean withResidual : new boolean[]{false, true}) {
+            Variable x = param(Shape.of(3, 6), 14L);
+            Variable r = param(Shape.of(3, 6), 15L);
+            Variable weight = param(Shape.of(1, 6), 16L);
+            NdArray weights = NdArray.likeRandomN(Shape.of(3, 6), 17L);
+            Variable y = withResidual
+                    ? new FusedRMSNorm(1e-6f).call(x, weight, r)
+                    : new FusedRMSNorm(1e-6f).call(x, weight);
+            y.mul(new Variable(weights)).sum().backward();
+
+            Variable x2 = param(Shape.of(3, 6), 14L).setRequireGrad(false);
+            Variable r2 = param(Shape.of(3, 6), 15L).setRequireGrad(false);
+            Variable weight2 = param(Shape.of(1, 6), 16L);
+            Variable h = withResidual ? x2.add(r2) : x2;
+            Variable rms = h.mul(h).mean(1, true).add(new Variable(1e-6f)).sqrt();
+            Variable expected = h.div(rms).mul(weight2.broadcastTo(Shape.of(3, 6)));
+            expected.mul(new Variable(weights)).sum().backward();
+
+            String msg = "withResidual=" + withResidual;
+            assertArrayEquals(msg, expected.getValue().getArray(), y.getValue().getArray(), DELTA);
+            assertArrayEquals(msg, numericGrad(x.getValue(), () -> new FusedRMSNorm(1e-6f)
+                    .forward(withResidual ? new NdArray[]{x.getValue(), weight.getValue(), r.getValue()}
+                            : new NdArray[]{x.getValue(), weight.getValue()}), weights),
+                    x.getGrad().getArray(), GRAD_DELTA);
+            assertArrayEquals(msg, weight2.getGrad().getArray(), weight.getGrad().getArray(), DELTA);
+            if (withResidual) {
+                assertArrayEquals(msg, x.getGrad().getArray(), r.getGrad().getArray(), 0f);
+            }
+        }
+    }
+
+    /**
+     * 中心差分求 sum(f() * weights) 对x的数值梯度，f()会重新读取x的当前值
+     */
+    private static float[] numericGrad(NdArray x, Supplier<NdArray> f, NdArray weights) {
+        float eps = 1e-2f;
+        float[] data = x.getArray();
+        float[] grad = new float[data.length];
+        for (int i = 0; i < data.length; i++) {
+            float origin = data[i];
+            data[i] = origin + eps;
+            float plus = f.get().mul(weights).sum().getNumber().floatValue();
+            data[i] = origin - eps;
+            float minus = f.get().mul(weights).sum().getNumber().floatValue();
+            data[i] = origin;
+            grad[i] = (plus - minus) / (2 * eps);
+        }
+        return grad;
+    }
+
+    private static Variable param(Shape shape, long seed) {
+        return new Variable(NdArray.likeRandomN(shape, seed), "p");
+    }
+}
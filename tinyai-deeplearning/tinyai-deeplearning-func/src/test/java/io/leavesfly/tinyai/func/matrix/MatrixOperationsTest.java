@@ -91,6 +91,55 @@ public class MatrixOperationsTest {
         assertEquals(w.getValue().getShape(), w.getGrad().getShape());
     }
 
+    @Test
+    public void testMatMulWithTranspose() {
+        NdArray a = NdArray.likeRandom(-1f, 1f, Shape.of(4, 3), 1);
+        NdArray b = NdArray.likeRandom(-1f, 1f, Shape.of(5, 4), 2);
+
+        // 参考：显式转置后相乘 a^T * b^T
+        Variable xRef = new Variable(a.transpose(), "xRef");
+        Variable wRef = new Variable(b.transpose(), "wRef");
+        Variable yRef = new MatMul().call(xRef, wRef);
+        yRef.backward();
+
+        // 带转置标记：梯度形状与原始输入一致，数值为参考梯度的转置
+        Variable x = new Variable(a, "x");
+        Variable w = new Variable(b, "w");
+        Variable y = new MatMul(true, true).call(x, w);
+        y.backward();
+
+        assertArrayEquals(yRef.getValue().getArray(), y.getValue().getArray(), 1e-6f);
+        assertEquals(a.getShape(), x.getGrad().getShape());
+        assertEquals(b.getShape(), w.getGrad().getShape());
+        assertArrayEquals(xRef.getGrad().transpose().getArray(), x.getGrad().getArray(), 1e-6f);
+        assertArrayEquals(wRef.getGrad().transpose().getArray(), w.getGrad().getArray(), 1e-6f);
+    }
+
+    @Test
+    public void testPermutedMatMulMatchesPermuteAndMatMul() {
+        NdArray a = NdArray.likeRandom(-1f, 1f, Shape.of(2, 5, 3, 4), 3);
+        NdArray b = NdArray.likeRandom(-1f, 1f, Shape.of(2, 6, 3, 4), 4);
+        int[] heads = {0, 2, 1, 3};
+
+        // 参考：显式重排后相乘，结果再重排
+        Variable xRef = new Variable(a, "xRef");
+        Variable wRef = new Variable(b, "wRef");
+        Variable scoresRef = new MatMul(false, true).call(new Permute(heads).call(xRef), new Permute(heads).call(wRef));
+        Variable yRef = new Permute(heads).call(new MatMul().call(scoresRef, new Permute(heads).call(wRef)));
+        yRef.backward();
+
+        Variable x = new Variable(a, "x");
+        Variable w = new Variable(b, "w");
+        Variable scores = new PermutedMatMul(heads, new int[]{0, 2, 3, 1}, null).call(x, w);
+        Variable y = new PermutedMatMul(null, heads, heads).call(scores, w);
+        y.backward();
+
+        assertEquals(Shape.of(2, 5, 3, 4), y.getValue().getShape());
+        assertArrayEquals(yRef.getValue().getArray(), y.getValue().getArray(), 1e-5f);
+        assertArrayEquals(xRef.getGrad().getArray(), x.getGrad().getArray(), 1e-5f);
+        assertArrayEquals(wRef.getGrad().getArray(), w.getGrad().getArray(), 1e-5f);
+    }
+
     @Test
     public void testReshape() {
         Shape newShape = Shape.of(3, 2);
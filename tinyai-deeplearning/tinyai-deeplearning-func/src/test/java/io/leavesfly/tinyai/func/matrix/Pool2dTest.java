@@ -0,0 +1,93 @@
+package io.leavesfly.tinyai.func.matrix;
+
+import io.leavesfly.tinyai.func.Variable;
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.util.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * MaxPool2d/AvgPool2d池化操作的单元测试
+ *
+ * @author TinyAI Team
+ */
+public class Pool2dTest {
+
+    private boolean originalTrainMode;
+
+    @Before
+    public void setUp() {
+        originalTrainMode = Config.train;
+        Config.train = true; // 启用训练模式以构建计算图
+    }
+
+    @After
+    public void tearDown() {
+        Config.train = originalTrainMode;
+    }
+
+    @Test
+    public void testMaxPoolForwardAndBackward() {
+        // 输入: [1, 1, 4, 4]
+        float[][][][] data = {{{{1, 5, 2, 0}, {3, 4, 8, 6}, {0, 9, 1, 2}, {7, 1, 3, 4}}}};
+        Variable x = new Variable(NdArray.of(data));
+        Variable y = x.maxPool2d(2, 2, 2, 0);
+
+        assertEquals(Shape.of(1, 1, 2, 2), y.getValue().getShape());
+        assertArrayEquals(new float[]{5, 8, 9, 4}, y.getValue().getArray(), 0f);
+
+        y.backward();
+        // 梯度只流向每个窗口的最大值位置
+        float[] expected = {0, 1, 0, 0, 0, 0, 1, 0, 0, 1, 0, 0, 0, 0, 0, 1};
+        assertArrayEquals(expected, x.getGrad().getArray(), 0f);
+    }
+
+    @Test
+    public void testMaxPoolOverlappingWindowsAccumulate() {
+        // 3×3窗口、步长1、填充1：中心最大值出现在全部9个窗口中
+        float[][][][] data = {{{{0, 0, 0}, {0, 9, 0}, {0, 0, 0}}}};
+        Variable x = new Variable(NdArray.of(data));
+        Variable y = x.maxPool2d(3, 3, 1, 1);
+        assertArrayEquals(new float[]{9, 9, 9, 9, 9, 9, 9, 9, 9}, y.getValue().getArray(), 0f);
+
+        y.backward();
+        assertEquals(9f, x.getGrad().get(0, 0, 1, 1), 0f);
+        assertEquals(0f, x.getGrad().get(0, 0, 0, 0), 0f);
+    }
+
+    @Test
+    public void testAvgPoolForwardAndBackward() {
+        Variable x = new Variable(NdArray.likeRandom(-1f, 1f, Shape.of(2, 3, 4, 4), 3));
+        Variable y = x.avgPool2d(2, 2, 2, 0);
+        assertEquals(Shape.of(2, 3, 2, 2), y.getValue().getShape());
+        assertEquals((x.getValue().get(1, 2, 2, 0) + x.getValue().get(1, 2, 2, 1)
+                        + x.getValue().get(1, 2, 3, 0) + x.getValue().get(1, 2, 3, 1)) / 4f,
+                y.getValue().get(1, 2, 1, 0), 1e-6f);
+
+        y.backward();
+        // 不重叠的2×2窗口：每个输入位置得到1/4的梯度
+        for (float grad : x.getGrad().getArray()) {
+            assertEquals(0.25f, grad, 1e-6f);
+        }
+    }
+
+    @Test
+    public void testAvgPoolPaddingNotCounted() {
+        float[][][][] data = {{{{1, 2}, {3, 4}}}};
+        Variable x = new Variable(NdArray.of(data));
+        Variable y = x.avgPool2d(2, 2, 1, 1);
+        assertEquals(Shape.of(1, 1, 3, 3), y.getValue().getShape());
+        // 角落窗口只覆盖一个有效元素
+        assertEquals(1f, y.getValue().get(0, 0, 0, 0), 0f);
+        assertEquals(2.5f, y.getValue().get(0, 0, 1, 1), 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidInputDimension() {
+        new Variable(NdArray.ones(Shape.of(3, 4, 4))).maxPool2d(2, 2, 2, 0);
+    }
+}
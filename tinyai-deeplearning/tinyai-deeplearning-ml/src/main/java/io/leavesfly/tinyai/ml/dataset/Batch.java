@@ -3,6 +3,7 @@ package io.leavesfly.tinyai.ml.dataset;
 import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.ndarr.NdArrayUtil;
+import io.leavesfly.tinyai.ndarr.Shape;
 
 /**
  * 一批数据
@@ -23,6 +24,10 @@ public class Batch {
     private Variable cachedVariableX = null;
     private Variable cachedVariableY = null;
 
+    // 预先拼接好的连续批次张量（可由数据加载线程生成）
+    private NdArray collatedX = null;
+    private NdArray collatedY = null;
+
     /**
      * 构造函数
      *
@@ -52,6 +57,7 @@ public class Batch {
         this.x = x;
         // 清除缓存
         this.cachedVariableX = null;
+        this.collatedX = null;
     }
 
     /**
@@ -72,6 +78,7 @@ public class Batch {
         this.y = y;
         // 清除缓存
         this.cachedVariableY = null;
+        this.collatedY = null;
     }
 
     /**
@@ -91,7 +98,7 @@ public class Batch {
      */
     public Variable toVariableX() {
         if (cachedVariableX == null) {
-            cachedVariableX = new Variable(NdArrayUtil.merge(0, x));
+            cachedVariableX = new Variable(collatedX != null ? collatedX : NdArrayUtil.merge(0, x));
         }
         return cachedVariableX;
     }
@@ -104,11 +111,93 @@ public class Batch {
      */
     public Variable toVariableY() {
         if (cachedVariableY == null) {
-            cachedVariableY = new Variable(NdArrayUtil.merge(0, y));
+            cachedVariableY = new Variable(collatedY != null ? collatedY : NdArrayUtil.merge(0, y));
         }
         return cachedVariableY;
     }
 
+    /**
+     * 预先把样本沿第0维拼接为连续的批次张量，之后toVariableX/toVariableY直接使用拼接结果
+     * <p>
+     * 结果与 {@code NdArrayUtil.merge(0, ...)} 相同。可在数据加载线程中调用，把拼接工作移出训练线程。
+     *
+     * @param bufferX 可复用的输入缓冲区，为null或形状不匹配时新分配
+     * @param bufferY 可复用的标签缓冲区，为null或形状不匹配时新分配
+     * @return 当前Batch实例
+     */
+    public Batch collate(NdArray bufferX, NdArray bufferY) {
+        this.collatedX = collateInto(x, bufferX);
+        this.collatedY = collateInto(y, bufferY);
+        this.cachedVariableX = null;
+        this.cachedVariableY = null;
+        return this;
+    }
+
+    /**
+     * 预先把样本拼接为连续的批次张量（分配新的缓冲区）
+     *
+     * @return 当前Batch实例
+     */
+    public Batch collate() {
+        return collate(null, null);
+    }
+
+    /**
+     * 获取预先拼接的输入张量
+     *
+     * @return 输入张量，未拼接时为null
+     */
+    public NdArray getCollatedX() {
+        return collatedX;
+    }
+
+    /**
+     * 获取预先拼接的标签张量
+     *
+     * @return 标签张量，未拼接时为null
+     */
+    public NdArray getCollatedY() {
+        return collatedY;
+    }
+
+    /**
+     * 计算样本沿第0维拼接后的形状，样本形状不兼容时抛出异常
+     *
+     * @param samples 样本数组
+     * @return 拼接后的形状
+     */
+    static Shape collatedShape(NdArray[] samples) {
+        int[] dims = samples[0].getShape().getShapeDims().clone();
+        int rows = 0;
+        for (NdArray sample : samples) {
+            int[] sampleDims = sample.getShape().getShapeDims();
+            if (sampleDims.length != dims.length) {
+                throw new IllegalArgumentException("批次内样本的维度数不一致");
+            }
+            for (int d = 1; d < dims.length; d++) {
+                if (sampleDims[d] != dims[d]) {
+                    throw new IllegalArgumentException(String.format("批次内样本在维度%d上的大小不一致", d));
+                }
+            }
+            rows += sampleDims[0];
+        }
+        dims[0] = rows;
+        return Shape.of(dims);
+    }
+
+    private static NdArray collateInto(NdArray[] samples, NdArray buffer) {
+        Shape shape = collatedShape(samples);
+        NdArray result = buffer != null && buffer.getShape().equals(shape) ? buffer : NdArray.of(shape);
+        float[] data = result.getArray();
+        int offset = 0;
+        for (NdArray sample : samples) {
+            float[] sampleData = sample.getArray();
+            System.arraycopy(sampleData, 0, data, offset, sampleData.length);
+            offset += sampleData.length;
+        }
+        return result;
+    }
+
     /**
      * 获取下一对数据
      *
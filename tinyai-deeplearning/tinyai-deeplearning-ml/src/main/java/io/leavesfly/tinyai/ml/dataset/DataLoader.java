@@ -1,7 +1,11 @@
 package io.leavesfly.tinyai.ml.dataset;
 
+import io.leavesfly.tinyai.ndarr.NdArray;
+
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
 
 /**
  * 数据加载器 - PyTorch风格的DataLoader实现
@@ -10,9 +14,16 @@ import java.util.concurrent.*;
  * <ul>
  *   <li>批次数据加载</li>
  *   <li>数据打乱(shuffle)</li>
- *   <li>多线程异步预取(prefetch)</li>
+ *   <li>多线程异步预取(prefetch)：工作线程负责取样本、变换和拼接成连续的批次张量</li>
  *   <li>自定义采样器</li>
  * </ul>
+ * <p>
+ * 数据集为 {@link ArrayDataset} 时按样本随机访问，批次由DataLoader的batchSize、采样器和shuffle决定，
+ * 不修改数据集本身；其他数据集通过 {@link DataSet#batchIterator()} 惰性拉取批次（流式数据集不会整体物化），
+ * 工作线程只负责变换与拼接。
+ * <p>
+ * 多线程模式下最多有 numWorkers * prefetchFactor 个批次在准备中或等待消费，
+ * 训练线程消费得慢时工作线程会阻塞（背压），批次始终按顺序交付。
  *
  * <p><b>使用示例</b>：
  * <pre>{@code
@@ -21,7 +32,7 @@ import java.util.concurrent.*;
  *     .batchSize(32)
  *     .shuffle(true)
  *     .numWorkers(4);
- * 
+ *
  * for (Batch batch : loader) {
  *     Variable x = batch.toVariableX();
  *     Variable y = batch.toVariableY();
@@ -40,12 +51,15 @@ public class DataLoader implements Iterable<Batch>, AutoCloseable {
     private int numWorkers;
     private boolean dropLast;
     private Sampler sampler;
-    
+    private int prefetchFactor;
+    private boolean reuseBuffers;
+    private UnaryOperator<NdArray> transform;
+    private UnaryOperator<NdArray> targetTransform;
+
     // 多线程预取相关
-    private ExecutorService executorService;
-    private BlockingQueue<Batch> prefetchQueue;
+    private PrefetchIterator activeIterator;
     private static final int DEFAULT_PREFETCH_CAPACITY = 2;
-    
+
     /**
      * 构造函数
      *
@@ -58,6 +72,8 @@ public class DataLoader implements Iterable<Batch>, AutoCloseable {
         this.numWorkers = 0; // 默认单线程
         this.dropLast = false;
         this.sampler = null;
+        this.prefetchFactor = DEFAULT_PREFETCH_CAPACITY;
+        this.reuseBuffers = false;
     }
 
     /**
@@ -121,6 +137,56 @@ public class DataLoader implements Iterable<Batch>, AutoCloseable {
         return this;
     }
 
+    /**
+     * 设置每个工作线程预取的批次数
+     *
+     * @param prefetchFactor 每个工作线程预取的批次数
+     * @return 当前DataLoader实例（支持链式调用）
+     */
+    public DataLoader prefetchFactor(int prefetchFactor) {
+        if (prefetchFactor <= 0) {
+            throw new IllegalArgumentException("Prefetch factor must be positive");
+        }
+        this.prefetchFactor = prefetchFactor;
+        return this;
+    }
+
+    /**
+     * 设置是否复用批次张量的缓冲区
+     * <p>
+     * 开启后，next()返回的批次在下一次调用next()之后其张量会被复用，
+     * 适用于每次只处理一个批次的训练循环；需要保留批次时不要开启。
+     *
+     * @param reuseBuffers 是否复用
+     * @return 当前DataLoader实例（支持链式调用）
+     */
+    public DataLoader reuseBuffers(boolean reuseBuffers) {
+        this.reuseBuffers = reuseBuffers;
+        return this;
+    }
+
+    /**
+     * 设置输入样本变换（在工作线程中执行）
+     *
+     * @param transform 输入样本变换
+     * @return 当前DataLoader实例（支持链式调用）
+     */
+    public DataLoader transform(UnaryOperator<NdArray> transform) {
+        this.transform = transform;
+        return this;
+    }
+
+    /**
+     * 设置标签样本变换（在工作线程中执行）
+     *
+     * @param targetTransform 标签样本变换
+     * @return 当前DataLoader实例（支持链式调用）
+     */
+    public DataLoader targetTransform(UnaryOperator<NdArray> targetTransform) {
+        this.targetTransform = targetTransform;
+        return this;
+    }
+
     /**
      * 获取迭代器
      *
@@ -130,42 +196,148 @@ public class DataLoader implements Iterable<Batch>, AutoCloseable {
     public Iterator<Batch> iterator() {
         // 如果使用多线程，返回异步迭代器
         if (numWorkers > 0) {
-            return new PrefetchIterator();
+            if (activeIterator != null) {
+                activeIterator.shutdown();
+            }
+            activeIterator = new PrefetchIterator();
+            return activeIterator;
         } else {
             return new SyncIterator();
         }
     }
 
     /**
-     * 同步迭代器（单线程）
+     * 一个epoch的批次计划：按顺序给出每个批次的样本
+     * <p>
+     * ArrayDataset按索引切分，批次数已知；其他数据集通过 {@link DataSet#batchIterator()} 惰性拉取，
+     * 批次数未知，流式数据集不会被整体物化。
      */
-    private class SyncIterator implements Iterator<Batch> {
-        private final List<Batch> batches;
-        private int currentIndex;
+    private class BatchPlan {
+        private final NdArray[] xs;
+        private final NdArray[] ys;
+        private final int[] indices;
+        private final Iterator<Batch> source;
+        private final int numBatches;
+        private int produced;
+        private boolean exhausted;
 
-        public SyncIterator() {
-            // 准备数据
-            if (shuffle) {
-                dataset.shuffle();
+        BatchPlan() {
+            if (dataset instanceof ArrayDataset && ((ArrayDataset) dataset).getXs() != null) {
+                // 按样本随机访问
+                ArrayDataset arrayDataset = (ArrayDataset) dataset;
+                this.xs = arrayDataset.getXs();
+                this.ys = arrayDataset.getYs();
+                this.indices = sampleIndices(xs.length);
+                this.source = null;
+                this.numBatches = dropLast ? indices.length / batchSize
+                        : (indices.length + batchSize - 1) / batchSize;
+            } else {
+                // 使用数据集给出的批次
+                if (shuffle) {
+                    dataset.shuffle();
+                }
+                this.xs = null;
+                this.ys = null;
+                this.indices = null;
+                this.source = dataset.batchIterator();
+                this.numBatches = -1;
             }
-            
-            // 获取批次数据
-            this.batches = dataset.getBatches();
-            
-            // 如果需要丢弃最后一个不完整批次
-            if (dropLast && !batches.isEmpty()) {
-                Batch lastBatch = batches.get(batches.size() - 1);
-                if (lastBatch.getSize() < batchSize) {
-                    batches.remove(batches.size() - 1);
+        }
+
+        /**
+         * 按顺序取出下一个批次的原始样本（尚未变换），没有更多批次时返回null
+         * <p>
+         * 非线程安全，多线程调用时由调用方同步。
+         */
+        Batch nextRaw() {
+            if (exhausted) {
+                return null;
+            }
+            if (source == null) {
+                if (produced >= numBatches) {
+                    exhausted = true;
+                    return null;
+                }
+                int from = produced * batchSize;
+                int to = Math.min(from + batchSize, indices.length);
+                NdArray[] batchX = new NdArray[to - from];
+                NdArray[] batchY = new NdArray[to - from];
+                for (int i = from; i < to; i++) {
+                    batchX[i - from] = xs[indices[i]];
+                    batchY[i - from] = ys[indices[i]];
                 }
+                produced++;
+                return new Batch(batchX, batchY);
+            }
+
+            try {
+                if (!source.hasNext()) {
+                    exhausted = true;
+                    return null;
+                }
+                Batch next = source.next();
+                if (dropLast && next.getSize() < batchSize && !source.hasNext()) {
+                    exhausted = true;
+                    return null;
+                }
+                produced++;
+                // 总是包装为新的Batch，避免拼接结果（可能是复用的缓冲区）留在数据集持有的批次上
+                return new Batch(next.getX(), next.getY());
+            } catch (RuntimeException e) {
+                exhausted = true;
+                throw e;
             }
-            
-            this.currentIndex = 0;
+        }
+
+        /**
+         * 对批次的每个样本应用变换
+         */
+        Batch transform(Batch raw) {
+            if (transform == null && targetTransform == null) {
+                return raw;
+            }
+            NdArray[] batchX = raw.getX().clone();
+            NdArray[] batchY = raw.getY().clone();
+            for (int i = 0; i < batchX.length; i++) {
+                if (transform != null) {
+                    batchX[i] = transform.apply(batchX[i]);
+                }
+                if (targetTransform != null) {
+                    batchY[i] = targetTransform.apply(batchY[i]);
+                }
+            }
+            return new Batch(batchX, batchY);
+        }
+
+        private int[] sampleIndices(int datasetSize) {
+            Sampler effective = sampler != null ? sampler
+                    : shuffle ? new RandomSampler() : new SequentialSampler();
+            List<Integer> sampled = effective.sample(datasetSize);
+            int[] result = new int[sampled.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = sampled.get(i);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 同步迭代器（单线程）
+     */
+    private class SyncIterator implements Iterator<Batch> {
+        private final BatchPlan plan;
+        private Batch peeked;
+
+        public SyncIterator() {
+            this.plan = new BatchPlan();
         }
 
         @Override
         public boolean hasNext() {
-            return currentIndex < batches.size();
+            if (peeked == null) {
+                peeked = plan.nextRaw();
+            }
+            return peeked != null;
         }
 
         @Override
@@ -173,108 +345,160 @@ public class DataLoader implements Iterable<Batch>, AutoCloseable {
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
-            return batches.get(currentIndex++);
+            Batch raw = peeked;
+            peeked = null;
+            return plan.transform(raw);
         }
     }
 
     /**
      * 异步预取迭代器（多线程）
+     * <p>
+     * 工作线程在锁内按顺序领取批次编号并取出原始样本，在锁外完成变换和拼接；
+     * 信号量限制在途批次数量，消费一个批次才释放一个名额。
+     * 批次总数可以未知：数据取完后领到的编号以null结果作为结束标记。
      */
     private class PrefetchIterator implements Iterator<Batch> {
-        private final List<Batch> batches;
+        private final BatchPlan plan;
+        private final ConcurrentHashMap<Integer, CompletableFuture<Batch>> results;
+        private final Semaphore inFlight;
+        private final ConcurrentLinkedQueue<NdArray> freeBuffersX;
+        private final ConcurrentLinkedQueue<NdArray> freeBuffersY;
+        private final ExecutorService executorService;
+        private int nextToProduce;
         private int currentIndex;
+        private Batch peeked;
+        private boolean finished;
+        private Batch lastDelivered;
         private volatile boolean isShutdown;
-        private final CountDownLatch producerLatch;
 
         public PrefetchIterator() {
-            // 准备数据
-            if (shuffle) {
-                dataset.shuffle();
-            }
-            
-            this.batches = dataset.getBatches();
-            
-            // 如果需要丢弃最后一个不完整批次
-            if (dropLast && !batches.isEmpty()) {
-                Batch lastBatch = batches.get(batches.size() - 1);
-                if (lastBatch.getSize() < batchSize) {
-                    batches.remove(batches.size() - 1);
-                }
-            }
-            
+            this.plan = new BatchPlan();
+            this.results = new ConcurrentHashMap<>();
+            this.inFlight = new Semaphore(numWorkers * prefetchFactor);
+            this.freeBuffersX = new ConcurrentLinkedQueue<>();
+            this.freeBuffersY = new ConcurrentLinkedQueue<>();
+            this.nextToProduce = 0;
             this.currentIndex = 0;
             this.isShutdown = false;
-            this.producerLatch = new CountDownLatch(1);
-            
-            // 初始化预取队列
-            prefetchQueue = new LinkedBlockingQueue<>(DEFAULT_PREFETCH_CAPACITY);
-            
-            // 启动预取线程
-            executorService = Executors.newFixedThreadPool(numWorkers);
-            startPrefetching();
+
+            AtomicInteger threadIndex = new AtomicInteger(0);
+            this.executorService = Executors.newFixedThreadPool(numWorkers, r -> {
+                Thread t = new Thread(r, "DataLoader-worker-" + threadIndex.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            });
+            for (int i = 0; i < numWorkers; i++) {
+                executorService.submit(this::workerLoop);
+            }
         }
 
-        private void startPrefetching() {
-            executorService.submit(() -> {
-                try {
-                    for (Batch batch : batches) {
-                        if (isShutdown) {
-                            break;
+        private CompletableFuture<Batch> result(int k) {
+            return results.computeIfAbsent(k, key -> new CompletableFuture<>());
+        }
+
+        private void workerLoop() {
+            try {
+                while (!isShutdown) {
+                    inFlight.acquire();
+                    int k;
+                    Batch raw;
+                    synchronized (plan) {
+                        k = nextToProduce++;
+                        try {
+                            raw = plan.nextRaw();
+                        } catch (Throwable t) {
+                            result(k).completeExceptionally(t);
+                            return;
                         }
-                        // 阻塞式添加到队列
-                        prefetchQueue.put(batch);
                     }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                } finally {
-                    producerLatch.countDown();
+                    if (raw == null || isShutdown) {
+                        // 结束标记不占用在途名额
+                        result(k).complete(null);
+                        inFlight.release();
+                        return;
+                    }
+                    try {
+                        Batch batch = plan.transform(raw);
+                        batch.collate(takeBuffer(freeBuffersX), takeBuffer(freeBuffersY));
+                        result(k).complete(batch);
+                    } catch (Throwable t) {
+                        result(k).completeExceptionally(t);
+                    }
                 }
-            });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private NdArray takeBuffer(Queue<NdArray> freeBuffers) {
+            return reuseBuffers ? freeBuffers.poll() : null;
         }
 
         @Override
         public boolean hasNext() {
-            return currentIndex < batches.size();
+            if (isShutdown || finished) {
+                return false;
+            }
+            if (peeked == null) {
+                try {
+                    peeked = result(currentIndex).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for batch", e);
+                } catch (ExecutionException e) {
+                    shutdown();
+                    throw new RuntimeException("Failed to load batch " + currentIndex, e.getCause());
+                }
+                if (peeked == null) {
+                    finished = true;
+                    shutdown();
+                    return false;
+                }
+            }
+            return true;
         }
 
         @Override
         public Batch next() {
             if (!hasNext()) {
-                shutdown();
                 throw new NoSuchElementException();
             }
-            
-            try {
-                Batch batch = prefetchQueue.poll(10, TimeUnit.SECONDS);
-                if (batch == null) {
-                    throw new RuntimeException("Timeout waiting for batch data");
+
+            recycle(lastDelivered);
+            Batch batch = peeked;
+            peeked = null;
+            results.remove(currentIndex);
+            currentIndex++;
+            inFlight.release();
+            lastDelivered = batch;
+            return batch;
+        }
+
+        private void recycle(Batch batch) {
+            if (reuseBuffers && batch != null) {
+                if (batch.getCollatedX() != null) {
+                    freeBuffersX.offer(batch.getCollatedX());
                 }
-                currentIndex++;
-                
-                // 如果是最后一个batch，关闭资源
-                if (!hasNext()) {
-                    shutdown();
+                if (batch.getCollatedY() != null) {
+                    freeBuffersY.offer(batch.getCollatedY());
                 }
-                
-                return batch;
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException("Interrupted while waiting for batch", e);
             }
         }
 
         private void shutdown() {
             if (!isShutdown) {
                 isShutdown = true;
-                if (executorService != null) {
-                    executorService.shutdownNow();
-                    try {
-                        if (!executorService.awaitTermination(5, TimeUnit.SECONDS)) {
-                            System.err.println("Warning: DataLoader executor did not terminate in time");
-                        }
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
+                executorService.shutdownNow();
+                for (CompletableFuture<Batch> future : results.values()) {
+                    future.cancel(true);
+                }
+                try {
+                    if (!executorService.awaitTermination(5, TimeUnit.SECONDS)) {
+                        System.err.println("Warning: DataLoader executor did not terminate in time");
                     }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
             }
         }
@@ -285,8 +509,9 @@ public class DataLoader implements Iterable<Batch>, AutoCloseable {
      */
     @Override
     public void close() {
-        if (executorService != null && !executorService.isShutdown()) {
-            executorService.shutdownNow();
+        if (activeIterator != null) {
+            activeIterator.shutdown();
+            activeIterator = null;
         }
     }
 
@@ -1,8 +1,13 @@
 package io.leavesfly.tinyai.ml.dataset;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * 表示机器学习中的用于训练、测试或验证的数据集抽象类
@@ -38,6 +43,37 @@ public abstract class DataSet {
      */
     public abstract List<Batch> getBatches();
 
+    /**
+     * 按需逐个产生批次的迭代器
+     * <p>
+     * 默认基于 {@link #getBatches()}；流式数据集覆盖该方法，在迭代时才读取数据，
+     * 一个epoch的批次不会同时驻留在内存中。训练循环应优先使用该方法。
+     *
+     * @return 批次迭代器
+     */
+    public Iterator<Batch> batchIterator() {
+        return getBatches().iterator();
+    }
+
+    /**
+     * 以Stream形式按需产生批次
+     *
+     * @return 批次流
+     */
+    public Stream<Batch> batchStream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(batchIterator(),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * 是否为流式数据集（批次数量未知，不能一次性物化全部批次）
+     *
+     * @return true 如果是流式数据集
+     */
+    public boolean isStreaming() {
+        return false;
+    }
+
 
     /**
      * 准备数据集
@@ -84,77 +84,118 @@ public class StreamDataset extends DataSet {
         this.totalSize = totalSize;
     }
 
+    /**
+     * 物化一个epoch的全部批次
+     * <p>
+     * 会把整个数据源读入内存，仅适用于较小的数据集；大数据集请使用 {@link #batchIterator()}。
+     *
+     * @return 批次列表
+     */
     @Override
     public List<Batch> getBatches() {
+        List<Batch> batches = new ArrayList<>();
+        batchIterator().forEachRemaining(batches::add);
+        return batches;
+    }
+
+    /**
+     * 按需读取数据源并产生批次，内存中最多只保留一个洗牌窗口（cacheSize个数据项）和一个批次
+     * <p>
+     * 打乱时使用有界洗牌窗口：窗口填满后每次从窗口中随机取出一项，再从数据源补充一项。
+     *
+     * @return 批次迭代器
+     */
+    @Override
+    public Iterator<Batch> batchIterator() {
         if (dataSourceSupplier == null) {
             throw new IllegalStateException("数据源未设置，请先调用setDataSource方法");
         }
+        Iterator<DataItem> items = dataSourceSupplier.get();
+        if (shuffled) {
+            items = new ShuffleWindowIterator(items, Math.max(1, cacheSize), random);
+        }
+        return new StreamBatchIterator(items);
+    }
 
-        Iterator<DataItem> dataIterator = dataSourceSupplier.get();
-        List<Batch> batches = new ArrayList<>();
+    @Override
+    public boolean isStreaming() {
+        return true;
+    }
 
-        // 复用数组以减少对象创建，最后一个批次不足时会做一次复制
-        NdArray[] xs = new NdArray[batchSize];
-        NdArray[] ys = new NdArray[batchSize];
-        int cursor = 0;
+    /**
+     * 把数据项流按batchSize切分为批次的惰性迭代器
+     */
+    private class StreamBatchIterator implements Iterator<Batch> {
+        private final Iterator<DataItem> items;
 
-        if (shuffled) {
-            // 使用有限缓存窗口做局部洗牌，兼顾随机性与内存占用
-            List<DataItem> buffer = new ArrayList<>(cacheSize);
-            while (dataIterator.hasNext()) {
-                buffer.add(dataIterator.next());
-                if (buffer.size() == cacheSize) {
-                    Collections.shuffle(buffer, random);
-                    for (DataItem item : buffer) {
-                        xs[cursor] = item.getX();
-                        ys[cursor] = item.getY();
-                        cursor++;
-                        if (cursor == batchSize) {
-                            batches.add(new Batch(xs, ys));
-                            xs = new NdArray[batchSize];
-                            ys = new NdArray[batchSize];
-                            cursor = 0;
-                        }
-                    }
-                    buffer.clear();
-                }
-            }
+        StreamBatchIterator(Iterator<DataItem> items) {
+            this.items = items;
+        }
 
-            if (!buffer.isEmpty()) {
-                Collections.shuffle(buffer, random);
-                for (DataItem item : buffer) {
-                    xs[cursor] = item.getX();
-                    ys[cursor] = item.getY();
-                    cursor++;
-                    if (cursor == batchSize) {
-                        batches.add(new Batch(xs, ys));
-                        xs = new NdArray[batchSize];
-                        ys = new NdArray[batchSize];
-                        cursor = 0;
-                    }
-                }
+        @Override
+        public boolean hasNext() {
+            return items.hasNext();
+        }
+
+        @Override
+        public Batch next() {
+            if (!items.hasNext()) {
+                throw new NoSuchElementException();
             }
-        } else {
-            while (dataIterator.hasNext()) {
-                DataItem item = dataIterator.next();
+            NdArray[] xs = new NdArray[batchSize];
+            NdArray[] ys = new NdArray[batchSize];
+            int cursor = 0;
+            while (cursor < batchSize && items.hasNext()) {
+                DataItem item = items.next();
                 xs[cursor] = item.getX();
                 ys[cursor] = item.getY();
                 cursor++;
+            }
+            return createBatch(xs, ys, cursor);
+        }
+    }
 
-                if (cursor == batchSize) {
-                    batches.add(new Batch(xs, ys));
-                    xs = new NdArray[batchSize];
-                    ys = new NdArray[batchSize];
-                    cursor = 0;
-                }
+    /**
+     * 有界洗牌窗口迭代器
+     */
+    private static class ShuffleWindowIterator implements Iterator<DataItem> {
+        private final Iterator<DataItem> source;
+        private final List<DataItem> window;
+        private final int windowSize;
+        private final Random random;
+
+        ShuffleWindowIterator(Iterator<DataItem> source, int windowSize, Random random) {
+            this.source = source;
+            this.window = new ArrayList<>(windowSize);
+            this.windowSize = windowSize;
+            this.random = random;
+            fill();
+        }
+
+        private void fill() {
+            while (window.size() < windowSize && source.hasNext()) {
+                window.add(source.next());
             }
         }
 
-        if (cursor > 0) {
-            batches.add(createBatch(xs, ys, cursor));
+        @Override
+        public boolean hasNext() {
+            return !window.isEmpty();
         }
 
-        return batches;
+        @Override
+        public DataItem next() {
+            if (window.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            int pick = random.nextInt(window.size());
+            int last = window.size() - 1;
+            DataItem item = window.get(pick);
+            window.set(pick, window.get(last));
+            window.remove(last);
+            fill();
+            return item;
+        }
     }
     
     /**
@@ -0,0 +1,253 @@
+package io.leavesfly.tinyai.ml.dataset.token;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * 内存映射的预分词Token数据集
+ * <p>
+ * 读取 {@link TokenFileWriter} 写出的二进制Token文件：Token数组通过 {@link FileChannel#map} 只读映射，
+ * 不复制到Java堆上，数据由操作系统页缓存按需换入，多GB语料也能瞬间打开；
+ * 只有文档偏移索引（每个文档8字节）读入内存。
+ * <p>
+ * 语言建模样本是Token流上长度为 seqLen + 1 的窗口：前 seqLen 个作为输入，后 seqLen 个作为目标。
+ * 顺序遍历时窗口以 seqLen 为步长不重叠地排列，打乱时直接在映射区域上随机取窗口起点。
+ * 映射区域只做绝对位置读取，可被多个线程同时读取。
+ *
+ * @author TinyAI
+ */
+public class MappedTokenDataset {
+
+    static final int MAGIC = 0x544B4E31;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+
+    /**
+     * 单个映射块的大小，MappedByteBuffer最大只能映射2GB，大文件分块映射
+     */
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    private final Path path;
+    private final int tokenBytes;
+    private final long tokenCount;
+    private final long[] offsets;
+    private final MappedByteBuffer[] chunks;
+
+    /**
+     * 打开并映射Token文件
+     *
+     * @param path Token文件路径
+     * @throws IOException 文件不存在或格式不正确时
+     */
+    public MappedTokenDataset(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            throw new FileNotFoundException("Token文件不存在: " + path);
+        }
+        this.path = path;
+        // 映射在通道关闭后依然有效
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // 读满文件头
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new IOException("不是有效的Token文件: " + path);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("不支持的Token文件版本: " + version);
+            }
+            this.tokenBytes = header.getInt();
+            header.getInt();
+            this.tokenCount = header.getLong();
+            long documentCount = header.getLong();
+            if ((tokenBytes != 2 && tokenBytes != 4) || tokenCount < 0
+                    || documentCount < 0 || documentCount >= Integer.MAX_VALUE / Long.BYTES) {
+                throw new IOException("Token文件头损坏: " + path);
+            }
+
+            long tokenRegion = tokenCount * tokenBytes;
+            long expectedSize = HEADER_BYTES + tokenRegion + (documentCount + 1) * Long.BYTES;
+            if (channel.size() != expectedSize) {
+                throw new IOException(String.format("Token文件大小%d与文件头描述的%d不一致: %s",
+                        channel.size(), expectedSize, path));
+            }
+
+            int chunkCount = (int) ((tokenRegion + CHUNK_MASK) >>> CHUNK_SHIFT);
+            this.chunks = new MappedByteBuffer[chunkCount];
+            for (int c = 0; c < chunkCount; c++) {
+                long start = (long) c << CHUNK_SHIFT;
+                long size = Math.min(1L << CHUNK_SHIFT, tokenRegion - start);
+                chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + start, size);
+                chunks[c].order(ByteOrder.LITTLE_ENDIAN);
+            }
+
+            MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + tokenRegion,
+                    (documentCount + 1) * Long.BYTES);
+            index.order(ByteOrder.LITTLE_ENDIAN);
+            this.offsets = new long[(int) documentCount + 1];
+            index.asLongBuffer().get(offsets);
+        }
+    }
+
+    /**
+     * 获取Token总数
+     *
+     * @return Token总数
+     */
+    public long getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * 获取文档数
+     *
+     * @return 文档数
+     */
+    public int getDocumentCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * 获取文档在Token流中的起始位置
+     *
+     * @param document 文档索引
+     * @return 起始位置
+     */
+    public long getDocumentStart(int document) {
+        return offsets[document];
+    }
+
+    /**
+     * 获取文档长度
+     *
+     * @param document 文档索引
+     * @return 文档的Token数
+     */
+    public int getDocumentLength(int document) {
+        return (int) (offsets[document + 1] - offsets[document]);
+    }
+
+    /**
+     * 读取一个完整文档
+     *
+     * @param document 文档索引
+     * @return 文档的Token序列
+     */
+    public int[] getDocument(int document) {
+        int[] tokens = new int[getDocumentLength(document)];
+        readTokens(offsets[document], tokens, 0, tokens.length);
+        return tokens;
+    }
+
+    /**
+     * 读取指定位置的Token
+     *
+     * @param position Token流中的位置
+     * @return Token ID
+     */
+    public int getToken(long position) {
+        if (position < 0 || position >= tokenCount) {
+            throw new IndexOutOfBoundsException("Token位置越界: " + position + ", 总数: " + tokenCount);
+        }
+        long byteOffset = position * tokenBytes;
+        MappedByteBuffer chunk = chunks[(int) (byteOffset >>> CHUNK_SHIFT)];
+        int offset = (int) (byteOffset & CHUNK_MASK);
+        return tokenBytes == 2 ? Short.toUnsignedInt(chunk.getShort(offset)) : chunk.getInt(offset);
+    }
+
+    /**
+     * 连续读取一段Token
+     *
+     * @param start  起始位置
+     * @param dst    目标数组
+     * @param offset 目标数组起始下标
+     * @param length 读取的Token数
+     */
+    public void readTokens(long start, int[] dst, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[offset + i] = getToken(start + i);
+        }
+    }
+
+    /**
+     * 获取按 seqLen 步长不重叠排列的窗口数（每个窗口需要 seqLen + 1 个Token）
+     *
+     * @param seqLen 序列长度
+     * @return 窗口数
+     */
+    public long getWindowCount(int seqLen) {
+        return tokenCount <= seqLen ? 0 : (tokenCount - 1) / seqLen;
+    }
+
+    /**
+     * 第k个顺序窗口的起点
+     *
+     * @param window 窗口索引
+     * @param seqLen 序列长度
+     * @return 窗口起点
+     */
+    public long windowStart(long window, int seqLen) {
+        return window * seqLen;
+    }
+
+    /**
+     * 在整个Token流上均匀随机选取一个窗口起点
+     *
+     * @param random 随机数生成器
+     * @param seqLen 序列长度
+     * @return 窗口起点
+     */
+    public long randomWindowStart(Random random, int seqLen) {
+        long bound = tokenCount - seqLen;
+        if (bound <= 0) {
+            throw new IllegalStateException(String.format("Token数%d不足以构成长度为%d的窗口", tokenCount, seqLen));
+        }
+        return bound <= Integer.MAX_VALUE ? random.nextInt((int) bound) : Math.floorMod(random.nextLong(), bound);
+    }
+
+    /**
+     * 把一个窗口写入批次数组的第row行：输入为 [start, start + seqLen)，目标为 [start + 1, start + seqLen + 1)
+     *
+     * @param start   窗口起点
+     * @param seqLen  序列长度
+     * @param inputs  输入数组（按行展开，每行 seqLen 个元素）
+     * @param targets 目标数组（按行展开，每行 seqLen 个元素）
+     * @param row     行号
+     */
+    public void fillWindow(long start, int seqLen, float[] inputs, float[] targets, int row) {
+        int base = row * seqLen;
+        int previous = getToken(start);
+        for (int j = 0; j < seqLen; j++) {
+            int next = getToken(start + j + 1);
+            inputs[base + j] = previous;
+            targets[base + j] = next;
+            previous = next;
+        }
+    }
+
+    /**
+     * 获取文件路径
+     *
+     * @return 文件路径
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MappedTokenDataset{path=%s, tokens=%d, documents=%d, tokenBytes=%d}",
+                path, tokenCount, getDocumentCount(), tokenBytes);
+    }
+}
@@ -0,0 +1,211 @@
+package io.leavesfly.tinyai.ml.dataset.token;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 预分词Token文件写入器（转换器）
+ * <p>
+ * 把分词后的文档顺序写入 {@link MappedTokenDataset} 读取的二进制格式：
+ * <pre>
+ * [文件头 32字节] magic | version | tokenBytes | reserved | tokenCount(long) | documentCount(long)
+ * [Token数组]     tokenCount 个 token，词表不超过65536时每个2字节（无符号short），否则4字节
+ * [文档偏移索引]  documentCount + 1 个 long，第d个文档占据 [offset[d], offset[d+1])
+ * </pre>
+ * 所有数值均为小端序。Token流式写出，只有文档偏移保存在内存中，
+ * 转换只需进行一次，之后训练启动时直接映射文件，无需重新分词。
+ *
+ * <p><b>使用示例</b>：
+ * <pre>{@code
+ * TokenFileWriter.convertTextFile(Paths.get("corpus.txt"), Paths.get("corpus.bin"),
+ *         tokenizer.getVocabSize(), text -> tokenizer.encode(text, true, true));
+ * }</pre>
+ *
+ * @author TinyAI
+ */
+public class TokenFileWriter implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final int tokenBytes;
+    private final ByteBuffer buffer;
+    private long[] offsets;
+    private int documentCount;
+    private long tokenCount;
+    private boolean closed;
+
+    /**
+     * 创建写入器，已存在的文件会被覆盖
+     *
+     * @param path      输出文件路径
+     * @param vocabSize 词表大小，决定每个token占用的字节数
+     * @throws IOException 文件无法创建时
+     */
+    public TokenFileWriter(Path path, int vocabSize) throws IOException {
+        if (vocabSize <= 0) {
+            throw new IllegalArgumentException("词表大小必须大于0: " + vocabSize);
+        }
+        this.tokenBytes = vocabSize <= 65536 ? 2 : 4;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        this.offsets = new long[1024];
+        // 先跳过文件头，关闭时回填
+        channel.position(MappedTokenDataset.HEADER_BYTES);
+    }
+
+    /**
+     * 追加一个文档
+     *
+     * @param tokens 文档的token序列
+     * @throws IOException 写入失败时
+     */
+    public void addDocument(int[] tokens) throws IOException {
+        ensureOpen();
+        for (int token : tokens) {
+            putToken(token);
+        }
+        endDocument(tokens.length);
+    }
+
+    /**
+     * 追加一个文档
+     *
+     * @param tokens 文档的token序列
+     * @throws IOException 写入失败时
+     */
+    public void addDocument(List<Integer> tokens) throws IOException {
+        ensureOpen();
+        for (Integer token : tokens) {
+            putToken(token);
+        }
+        endDocument(tokens.size());
+    }
+
+    /**
+     * 获取已写入的token数
+     *
+     * @return token数
+     */
+    public long getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * 获取已写入的文档数
+     *
+     * @return 文档数
+     */
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * 写出文档偏移索引和文件头并关闭文件
+     *
+     * @throws IOException 写入失败时
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            for (int d = 0; d <= documentCount; d++) {
+                if (buffer.remaining() < Long.BYTES) {
+                    flush();
+                }
+                buffer.putLong(offsets[d]);
+            }
+            flush();
+
+            ByteBuffer header = ByteBuffer.allocate(MappedTokenDataset.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MappedTokenDataset.MAGIC);
+            header.putInt(MappedTokenDataset.VERSION);
+            header.putInt(tokenBytes);
+            header.putInt(0);
+            header.putLong(tokenCount);
+            header.putLong(documentCount);
+            header.flip();
+            channel.write(header, 0);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * 把文本文件转换为Token文件，每个非空行作为一个文档
+     * <p>
+     * 按行流式读取，不会把整个语料装入内存。
+     *
+     * @param textPath  文本文件路径（UTF-8）
+     * @param tokenPath 输出的Token文件路径
+     * @param vocabSize 词表大小
+     * @param encoder   分词函数
+     * @return 写入的文档数
+     * @throws IOException 读写失败时
+     */
+    public static int convertTextFile(Path textPath, Path tokenPath, int vocabSize,
+                                      Function<String, List<Integer>> encoder) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(textPath, StandardCharsets.UTF_8);
+             TokenFileWriter writer = new TokenFileWriter(tokenPath, vocabSize)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                writer.addDocument(encoder.apply(line));
+            }
+            return writer.getDocumentCount();
+        }
+    }
+
+    private void putToken(int token) throws IOException {
+        if (token < 0 || (tokenBytes == 2 && token > 0xFFFF)) {
+            throw new IllegalArgumentException(String.format("token %d 超出%d字节存储范围", token, tokenBytes));
+        }
+        if (buffer.remaining() < tokenBytes) {
+            flush();
+        }
+        if (tokenBytes == 2) {
+            buffer.putShort((short) token);
+        } else {
+            buffer.putInt(token);
+        }
+        tokenCount++;
+    }
+
+    private void endDocument(int length) {
+        if (documentCount + 2 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        documentCount++;
+        offsets[documentCount] = offsets[documentCount - 1] + length;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Token文件写入器已关闭");
+        }
+    }
+}
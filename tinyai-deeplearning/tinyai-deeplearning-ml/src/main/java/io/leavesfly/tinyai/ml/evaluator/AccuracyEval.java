@@ -5,10 +5,10 @@ import io.leavesfly.tinyai.ml.dataset.Batch;
 import io.leavesfly.tinyai.ml.dataset.DataSet;
 import io.leavesfly.tinyai.ml.loss.Classify;
 import io.leavesfly.tinyai.func.Variable;
-import io.leavesfly.tinyai.util.Config;
+import io.leavesfly.tinyai.util.GradMode;
 
 
-import java.util.List;
+import java.util.Iterator;
 
 /**
  * 准确率评估器
@@ -37,20 +37,26 @@ public class AccuracyEval extends Evaluator {
 
     @Override
     public void evaluate() {
+        // 只在当前线程上关闭计算图构建，不影响其他线程上的训练
+        float accRation = GradMode.withNoGrad(this::averageAccuracy);
+        System.out.println("avg-accuracy rate is :" + accRation);
+    }
 
-        List<Batch> batches = dataSet.getTestDataSet().getBatches();
+    private float averageAccuracy() {
+        Iterator<Batch> batches = dataSet.getTestDataSet().batchIterator();
+        int batchCount = 0;
 
-        Config.train = false;
         float accRation = 0f;
-        for (Batch batch : batches) {
+        while (batches.hasNext()) {
+            Batch batch = batches.next();
+            batchCount++;
             Variable variableX = batch.toVariableX().setName("x").setRequireGrad(false);
             Variable variableY = batch.toVariableY().setName("y").setRequireGrad(false);
 
             Variable predictY = model.forward(variableX);
             accRation += classify.accuracyRate(variableY, predictY);
         }
-        accRation = accRation / batches.size();
-        System.out.println("avg-accuracy rate is :" + accRation);
+        return accRation / batchCount;
     }
 
 }
\ No newline at end of file
@@ -5,9 +5,9 @@ import io.leavesfly.tinyai.ml.dataset.Batch;
 import io.leavesfly.tinyai.ml.dataset.DataSet;
 import io.leavesfly.tinyai.ml.loss.Loss;
 import io.leavesfly.tinyai.func.Variable;
-import io.leavesfly.tinyai.util.Config;
+import io.leavesfly.tinyai.util.GradMode;
 
-import java.util.List;
+import java.util.Iterator;
 
 /**
  * 回归模型评估器
@@ -35,19 +35,25 @@ public class RegressEval extends Evaluator {
 
     @Override
     public void evaluate() {
-        List<Batch> batches = dataSet.getTestDataSet().getBatches();
+        // 只在当前线程上关闭计算图构建，不影响其他线程上的训练
+        float avgLoss = GradMode.withNoGrad(this::averageLoss);
+        System.out.println(" Test dataset model's avg loss is :" + avgLoss);
+    }
+
+    private float averageLoss() {
+        Iterator<Batch> batches = dataSet.getTestDataSet().batchIterator();
+        int batchCount = 0;
         float lossValue = 0f;
-        for (Batch batch : batches) {
+        while (batches.hasNext()) {
+            Batch batch = batches.next();
+            batchCount++;
             Variable variableX = batch.toVariableX().setName("x").setRequireGrad(false);
             Variable variableY = batch.toVariableY().setName("y").setRequireGrad(false);
 
-            Config.train = false;
-
             Variable predictY = model.forward(variableX);
             Variable lossVariable = loss.loss(variableY, predictY);
             lossValue += lossVariable.getValue().getNumber().floatValue();
         }
-
-        System.out.println(" Test dataset model's avg loss is :" + lossValue / batches.size());
+        return lossValue / batchCount;
     }
 }
\ No newline at end of file
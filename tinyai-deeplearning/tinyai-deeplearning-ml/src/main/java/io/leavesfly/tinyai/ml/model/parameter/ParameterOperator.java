@@ -4,6 +4,7 @@ import io.leavesfly.tinyai.ml.exception.ParameterMismatchException;
 import io.leavesfly.tinyai.ml.visual.ValidationUtils;
 import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.ndarr.cpu.NdArrayCpu;
 import io.leavesfly.tinyai.nnet.v2.core.Parameter;
 
 /**
@@ -33,10 +34,16 @@ public class ParameterOperator {
         ValidationUtils.requireShapeMatch(sourceData.getShape(), targetData.getShape(), 
                                          "Parameter shape mismatch");
         
+        if (!(targetData instanceof NdArrayCpu)) {
+            // 堆外、16位等存储的getArray()返回副本，必须通过assign写回
+            targetData.assign(sourceData);
+            return;
+        }
+
         // 使用底层数组进行批量复制（最高效）
         float[] sourceArray = sourceData.getArray();
         float[] targetArray = targetData.getArray();
-        
+
         System.arraycopy(sourceArray, 0, targetArray, 0, sourceArray.length);
     }
     
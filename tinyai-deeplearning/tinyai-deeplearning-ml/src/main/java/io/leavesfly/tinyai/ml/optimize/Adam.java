@@ -1,35 +1,37 @@
 package io.leavesfly.tinyai.ml.optimize;
 
 import io.leavesfly.tinyai.ml.model.Model;
-import io.leavesfly.tinyai.ndarr.NdArray;
-import io.leavesfly.tinyai.nnet.v2.core.Parameter;
-
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Adam优化器
- * 
+ *
  * 实现了Adam优化算法，融合了Momentum和AdaGrad的优点。
  * Adam通过计算梯度的一阶矩估计和二阶矩估计来动态调整学习率。
- * 
+ *
  * 更新公式：
  * m = β1 * m + (1 - β1) * g
  * v = β2 * v + (1 - β2) * g^2
  * θ = θ - lr * m_hat / (sqrt(v_hat) + ε)
- * 
+ *
+ * 一阶/二阶矩保存在所有参数共享的扁平float数组中，每个元素的矩更新和参数更新在同一个循环里完成，
+ * 每步更新不分配新数组，参数较多时按元素区间并行（见{@link FusedOptimizer}）。
+ *
  * @author TinyDL
- * @version 1.0
+ * @version 2.0
  */
-public class Adam extends Optimizer {
-    private float learningRate = 0.001f;
-    private float beta1 = 0.9f;
-    private float beta2 = 0.999f;
-    private float epsilon = 1e-3f; // 使用更大的epsilon值确保数值稳定性，避免除零异常
+public class Adam extends FusedOptimizer {
+
+    private static final int M = 0;
+    private static final int V = 1;
 
-    private Map<Integer, NdArray> ms;
-    private Map<Integer, NdArray> vs;
-    private int t = 0;
+    protected float beta1 = 0.9f;
+    protected float beta2 = 0.999f;
+    protected float epsilon = 1e-3f; // 使用更大的epsilon值确保数值稳定性，避免除零异常
+
+    /**
+     * 本步偏差修正后的学习率
+     */
+    protected transient float stepSize;
 
     /**
      * 构造函数
@@ -40,13 +42,10 @@ public class Adam extends Optimizer {
      * @param _epsilon 防止除零的小常数
      */
     public Adam(Model target, float _learningRate, float _beta1, float _beta2, float _epsilon) {
-        super(target);
-        learningRate = _learningRate;
+        super(target, _learningRate, "exp_avg", "exp_avg_sq");
         beta1 = _beta1;
         beta2 = _beta2;
         epsilon = _epsilon;
-        ms = new HashMap<>();
-        vs = new HashMap<>();
     }
 
     /**
@@ -54,72 +53,35 @@ public class Adam extends Optimizer {
      * @param target 目标模型
      */
     public Adam(Model target) {
-        super(target);
-        ms = new HashMap<>();
-        vs = new HashMap<>();
-    }
-
-    /**
-     * 更新所有参数
-     */
-    public void update() {
-        t++;
-        super.update();
+        super(target, 0.001f, "exp_avg", "exp_avg_sq");
     }
 
     @Override
-    public void updateOne(Parameter parameter) {
-        // 检查参数的梯度是否为null，如果为null则跳过更新
-        NdArray grad = parameter.getGrad();
-        if (grad == null) {
-            return;
-        }
-
-        int key = parameter.hashCode();
-        if (!ms.containsKey(key)) {
-            ms.put(key, NdArray.zeros(parameter.getValue().getShape()));
-            vs.put(key, NdArray.zeros(parameter.getValue().getShape()));
-        }
-        NdArray m = ms.get(key);
-        NdArray v = vs.get(key);
-
-        m = m.add(grad.sub(m).mulNum(1 - beta1));
-        v = v.add(grad.mul(grad).sub(v).mulNum(1 - beta2));
-        ms.put(key, m);
-        vs.put(key, v);
-
-        // 为了数值稳定性，使用更大的epsilon值
-        NdArray denominator = v.pow(0.5f).add(NdArray.like(v.getShape(), epsilon));
-        NdArray delat = m.mulNum(lr()).div(denominator);
-        parameter.setValue(parameter.getValue().sub(delat));
-
-    }
-
-    /**
-     * 计算调整后的学习率
-     * @return 调整后的学习率
-     */
-    private float lr() {
+    protected void prepareStep(int t) {
         float fix1 = (float) (1. - Math.pow(beta1, t));
         float fix2 = (float) (1. - Math.pow(beta2, t));
-        return (float) (learningRate * Math.sqrt(fix2) / fix1);
+        stepSize = (float) (lr * Math.sqrt(fix2) / fix1);
     }
-    
-    /**
-     * 设置学习率（用于学习率调度器）
-     * 
-     * @param learningRate 新的学习率
-     */
-    public void setLearningRate(float learningRate) {
-        this.learningRate = learningRate;
-    }
-    
-    /**
-     * 获取当前学习率
-     * 
-     * @return 当前学习率
-     */
-    public float getLearningRate() {
-        return learningRate;
+
+    @Override
+    protected void update(float[] param, float[] grad, int paramStart, int stateStart, int length) {
+        float[] m = slots[M];
+        float[] v = slots[V];
+        float b1 = beta1;
+        float b2 = beta2;
+        float c1 = 1 - beta1;
+        float c2 = 1 - beta2;
+        float eps = epsilon;
+        float step = stepSize;
+        for (int i = 0; i < length; i++) {
+            int p = paramStart + i;
+            int s = stateStart + i;
+            float g = grad[p];
+            float mi = b1 * m[s] + c1 * g;
+            float vi = b2 * v[s] + c2 * g * g;
+            m[s] = mi;
+            v[s] = vi;
+            param[p] -= step * mi / ((float) Math.sqrt(vi) + eps);
+        }
     }
-}
\ No newline at end of file
+}
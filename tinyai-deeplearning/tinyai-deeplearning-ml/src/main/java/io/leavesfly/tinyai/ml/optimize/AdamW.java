@@ -0,0 +1,79 @@
+package io.leavesfly.tinyai.ml.optimize;
+
+import io.leavesfly.tinyai.ml.model.Model;
+
+/**
+ * AdamW优化器
+ *
+ * 权重衰减与梯度更新解耦的Adam：衰减直接作用于参数，而不是加到梯度上经过自适应缩放。
+ *
+ * 更新公式：
+ * θ = θ - lr * λ * θ
+ * m = β1 * m + (1 - β1) * g
+ * v = β2 * v + (1 - β2) * g^2
+ * θ = θ - lr * m_hat / (sqrt(v_hat) + ε)
+ *
+ * 衰减与矩更新在同一次遍历中完成，状态布局与{@link Adam}相同。
+ *
+ * @author TinyDL
+ * @version 2.0
+ */
+public class AdamW extends Adam {
+
+    private float weightDecay = 0.01f;
+
+    /**
+     * 本步的参数衰减系数 1 - lr * λ
+     */
+    private transient float decay;
+
+    /**
+     * 构造函数
+     * @param target 目标模型
+     * @param learningRate 学习率
+     * @param beta1 一阶矩估计衰减率
+     * @param beta2 二阶矩估计衰减率
+     * @param epsilon 防止除零的小常数
+     * @param weightDecay 权重衰减系数
+     */
+    public AdamW(Model target, float learningRate, float beta1, float beta2, float epsilon, float weightDecay) {
+        super(target, learningRate, beta1, beta2, epsilon);
+        this.weightDecay = weightDecay;
+    }
+
+    /**
+     * 构造函数（使用默认的β和ε）
+     * @param target 目标模型
+     * @param learningRate 学习率
+     * @param weightDecay 权重衰减系数
+     */
+    public AdamW(Model target, float learningRate, float weightDecay) {
+        this(target, learningRate, 0.9f, 0.999f, 1e-8f, weightDecay);
+    }
+
+    @Override
+    protected void prepareStep(int t) {
+        super.prepareStep(t);
+        decay = 1 - lr * weightDecay;
+    }
+
+    @Override
+    protected void update(float[] param, float[] grad, int paramStart, int stateStart, int length) {
+        float d = decay;
+        if (d != 1f) {
+            for (int i = paramStart, end = paramStart + length; i < end; i++) {
+                param[i] *= d;
+            }
+        }
+        super.update(param, grad, paramStart, stateStart, length);
+    }
+
+    /**
+     * 获取权重衰减系数
+     *
+     * @return 权重衰减系数
+     */
+    public float getWeightDecay() {
+        return weightDecay;
+    }
+}
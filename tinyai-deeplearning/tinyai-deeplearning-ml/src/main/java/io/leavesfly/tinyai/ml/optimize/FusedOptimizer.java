@@ -0,0 +1,356 @@
+package io.leavesfly.tinyai.ml.optimize;
+
+import io.leavesfly.tinyai.ml.model.Model;
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.cpu.NdArrayCpu;
+import io.leavesfly.tinyai.ndarr.half.NdArrayHalf;
+import io.leavesfly.tinyai.nnet.v2.core.Parameter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * 融合优化器基类
+ * <p>
+ * 所有参数的优化器状态（动量、二阶矩等）按参数顺序拼接保存在扁平的float数组中，
+ * 每个状态槽一个数组，第p个参数占据 [offsets[p], offsets[p + 1])。
+ * 每步更新对每个元素只遍历一次：读梯度、更新状态、写参数在同一个循环里完成，不创建任何NdArray。
+ * <p>
+ * 元素总数达到阈值时，把扁平区间均分为若干块交给ForkJoin公共池并行处理，
+ * 块可以跨越参数边界，大量小参数和少量大参数都能均衡分配。
+ * <p>
+ * 参数集合变化（增删参数或参数值被替换为不同大小）时自动重建布局，仍存在的参数保留原有状态。
+ * <p>
+ * 混合精度：参数值为16位存储（{@link NdArrayHalf}）时，优化器为其保留一份float主权重，
+ * 更新作用在主权重上，再舍入写回16位参数，避免小于16位精度的更新量被舍入吞掉。
+ *
+ * @author TinyDL
+ * @version 2.0
+ */
+public abstract class FusedOptimizer extends Optimizer {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 启用多线程的最小元素数
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * 并行时每块的最小元素数
+     */
+    private static final int MIN_CHUNK = 1 << 13;
+
+    /**
+     * state_dict中16位参数的float主权重条目名
+     */
+    private static final String MASTER_WEIGHT = "master_weight";
+
+    private final String[] slotNames;
+
+    private transient Parameter[] params;
+    private transient int[] offsets;
+
+    /**
+     * 16位参数的float主权重，其余参数为null；values记录主权重对应的参数值对象
+     */
+    private transient float[][] masters;
+    private transient NdArray[] values;
+
+    /**
+     * 扁平状态缓冲区，slots[s]是第s个状态槽
+     */
+    protected transient float[][] slots;
+
+    /**
+     * 构造函数
+     *
+     * @param target    目标模型
+     * @param lr        学习率
+     * @param slotNames 状态槽名称（用于state_dict），长度即每个元素需要的状态数
+     */
+    protected FusedOptimizer(Model target, float lr, String... slotNames) {
+        super(target, lr);
+        this.slotNames = slotNames;
+    }
+
+    /**
+     * 更新所有参数
+     */
+    @Override
+    public void update() {
+        ensureLayout();
+        prepareStep(step + 1);
+        float[][] data = new float[params.length][];
+        float[][] grads = new float[params.length][];
+        for (int p = 0; p < params.length; p++) {
+            NdArray grad = params[p].getGrad();
+            if (grad != null) {
+                data[p] = dataOf(p);
+                grads[p] = gradOf(params[p], grad);
+            }
+        }
+
+        int total = offsets[params.length];
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        if (parallelism <= 1 || total < PARALLEL_THRESHOLD) {
+            updateRange(data, grads, 0, total);
+        } else {
+            int chunks = Math.min(parallelism * 4, (total + MIN_CHUNK - 1) / MIN_CHUNK);
+            IntStream.range(0, chunks).parallel().forEach(c -> updateRange(data, grads,
+                    (int) ((long) total * c / chunks), (int) ((long) total * (c + 1) / chunks)));
+        }
+
+        for (int p = 0; p < params.length; p++) {
+            if (grads[p] != null) {
+                writeBack(p, data[p]);
+            }
+        }
+
+        step++;
+        // 如果有学习率调度器，更新学习率
+        if (lrScheduler != null) {
+            this.lr = lrScheduler.getLearningRate(step);
+        }
+    }
+
+    /**
+     * 单独更新一个参数（使用当前步数，不推进步数）
+     *
+     * @param parameter 参数
+     */
+    @Override
+    public void updateOne(Parameter parameter) {
+        NdArray grad = parameter.getGrad();
+        if (grad == null) {
+            return;
+        }
+        ensureLayout();
+        int p = indexOf(parameter);
+        if (p < 0) {
+            throw new IllegalArgumentException("参数不属于优化器的目标模型");
+        }
+        prepareStep(Math.max(step, 1));
+        float[] data = dataOf(p);
+        update(data, gradOf(parameter, grad), 0, offsets[p], offsets[p + 1] - offsets[p]);
+        writeBack(p, data);
+    }
+
+    /**
+     * 每步更新前调用，用于计算本步的标量系数（如偏差修正后的学习率）
+     *
+     * @param t 本步的步数，从1开始
+     */
+    protected abstract void prepareStep(int t);
+
+    /**
+     * 更新一个参数的一段连续元素
+     * <p>
+     * 对 i ∈ [0, length)，参数元素为 param[paramStart + i]，梯度为 grad[paramStart + i]，
+     * 状态为 slots[s][stateStart + i]。不同调用处理的元素互不重叠，可并发执行。
+     *
+     * @param param      参数数据
+     * @param grad       梯度数据
+     * @param paramStart 参数内的起始下标
+     * @param stateStart 扁平状态中的起始下标
+     * @param length     元素数
+     */
+    protected abstract void update(float[] param, float[] grad, int paramStart, int stateStart, int length);
+
+    /**
+     * 处理扁平区间 [lo, hi) 覆盖的各参数片段
+     */
+    private void updateRange(float[][] data, float[][] grads, int lo, int hi) {
+        if (lo >= hi) {
+            return;
+        }
+        int p = Arrays.binarySearch(offsets, lo);
+        p = p >= 0 ? p : -p - 2;
+        for (; p < params.length && offsets[p] < hi; p++) {
+            if (grads[p] == null) {
+                continue;
+            }
+            int from = Math.max(lo, offsets[p]);
+            int to = Math.min(hi, offsets[p + 1]);
+            if (from < to) {
+                update(data[p], grads[p], from - offsets[p], from, to - from);
+            }
+        }
+    }
+
+    /**
+     * 确保扁平布局与目标模型当前的参数一致
+     */
+    private void ensureLayout() {
+        Parameter[] current = target.getAllParams().values().toArray(new Parameter[0]);
+        if (params != null && params.length == current.length) {
+            boolean same = true;
+            for (int p = 0; p < current.length && same; p++) {
+                same = current[p] == params[p] && sizeOf(current[p]) == offsets[p + 1] - offsets[p];
+            }
+            if (same) {
+                syncMasters();
+                return;
+            }
+        }
+
+        int[] newOffsets = new int[current.length + 1];
+        for (int p = 0; p < current.length; p++) {
+            newOffsets[p + 1] = newOffsets[p] + sizeOf(current[p]);
+        }
+        float[][] newSlots = new float[slotNames.length][newOffsets[current.length]];
+        float[][] newMasters = new float[current.length][];
+        NdArray[] newValues = new NdArray[current.length];
+
+        // 迁移仍然存在且大小不变的参数的状态
+        if (params != null) {
+            Map<Parameter, Integer> previous = new IdentityHashMap<>();
+            for (int p = 0; p < params.length; p++) {
+                previous.put(params[p], p);
+            }
+            for (int p = 0; p < current.length; p++) {
+                Integer old = previous.get(current[p]);
+                int size = newOffsets[p + 1] - newOffsets[p];
+                if (old != null && offsets[old + 1] - offsets[old] == size) {
+                    for (int s = 0; s < slotNames.length; s++) {
+                        System.arraycopy(slots[s], offsets[old], newSlots[s], newOffsets[p], size);
+                    }
+                    newMasters[p] = masters[old];
+                    newValues[p] = values[old];
+                }
+            }
+        }
+
+        params = current;
+        offsets = newOffsets;
+        slots = newSlots;
+        masters = newMasters;
+        values = newValues;
+        syncMasters();
+    }
+
+    /**
+     * 参数值对象被替换时（如转换为16位存储）重新建立主权重
+     */
+    private void syncMasters() {
+        for (int p = 0; p < params.length; p++) {
+            NdArray value = params[p].getValue();
+            if (value != values[p]) {
+                values[p] = value;
+                masters[p] = value instanceof NdArrayHalf ? value.getArray() : null;
+            }
+        }
+    }
+
+    private int indexOf(Parameter parameter) {
+        for (int p = 0; p < params.length; p++) {
+            if (params[p] == parameter) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    private static int sizeOf(Parameter parameter) {
+        return parameter.getValue().getShape().size();
+    }
+
+    /**
+     * 参数数据：16位参数返回主权重，CPU数组直接返回底层缓冲区原地更新，其他存储读出副本，更新后写回
+     */
+    private float[] dataOf(int p) {
+        return masters[p] != null ? masters[p] : params[p].getValue().getArray();
+    }
+
+    private void writeBack(int p, float[] data) {
+        NdArray value = params[p].getValue();
+        if (value instanceof NdArrayHalf) {
+            NdArrayHalf half = (NdArrayHalf) value;
+            half.getFormat().encode(data, 0, half.getStorage(), 0, data.length);
+        } else if (!(value instanceof NdArrayCpu)) {
+            value.assign(NdArray.of(data, value.getShape()));
+        }
+    }
+
+    private static float[] gradOf(Parameter parameter, NdArray grad) {
+        float[] data = grad.getArray();
+        if (data.length != sizeOf(parameter)) {
+            throw new IllegalArgumentException(String.format("梯度大小%d与参数大小%d不一致",
+                    data.length, sizeOf(parameter)));
+        }
+        return data;
+    }
+
+    /* ===== 状态管理 ===== */
+
+    /**
+     * 导出优化器状态字典，扁平状态按参数名拆分为NdArray
+     *
+     * @return 状态字典
+     */
+    @Override
+    public Map<String, Object> state_dict() {
+        state.clear();
+        if (params != null) {
+            Map<Parameter, String> names = parameterNames();
+            for (int p = 0; p < params.length; p++) {
+                String name = names.get(params[p]);
+                if (name == null) {
+                    continue;
+                }
+                Map<String, NdArray> paramState = getParamState(name);
+                int size = offsets[p + 1] - offsets[p];
+                for (int s = 0; s < slotNames.length; s++) {
+                    float[] copy = Arrays.copyOfRange(slots[s], offsets[p], offsets[p] + size);
+                    paramState.put(slotNames[s], NdArray.of(copy, params[p].getValue().getShape()));
+                }
+                if (masters[p] != null) {
+                    paramState.put(MASTER_WEIGHT, NdArray.of(masters[p].clone(), params[p].getValue().getShape()));
+                }
+            }
+        }
+        return super.state_dict();
+    }
+
+    /**
+     * 加载优化器状态字典，按参数名把状态写回扁平缓冲区
+     *
+     * @param state_dict 状态字典
+     */
+    @Override
+    public void load_state_dict(Map<String, Object> state_dict) {
+        super.load_state_dict(state_dict);
+        ensureLayout();
+        Map<Parameter, String> names = parameterNames();
+        for (int p = 0; p < params.length; p++) {
+            Map<String, NdArray> paramState = state.get(names.get(params[p]));
+            if (paramState == null) {
+                continue;
+            }
+            for (int s = 0; s < slotNames.length; s++) {
+                NdArray saved = paramState.get(slotNames[s]);
+                if (saved != null && saved.getShape().size() == offsets[p + 1] - offsets[p]) {
+                    System.arraycopy(saved.getArray(), 0, slots[s], offsets[p], offsets[p + 1] - offsets[p]);
+                }
+            }
+            NdArray master = paramState.get(MASTER_WEIGHT);
+            if (masters[p] != null && master != null && master.getShape().size() == masters[p].length) {
+                System.arraycopy(master.getArray(), 0, masters[p], 0, masters[p].length);
+            }
+        }
+        // 状态已写入扁平缓冲区，不再持有外部传入的映射
+        state = new HashMap<>();
+    }
+
+    private Map<Parameter, String> parameterNames() {
+        Map<Parameter, String> names = new IdentityHashMap<>();
+        for (Map.Entry<String, Parameter> entry : new HashMap<>(target.getAllParams()).entrySet()) {
+            names.put(entry.getValue(), entry.getKey());
+        }
+        return names;
+    }
+}
@@ -1,20 +1,23 @@
 package io.leavesfly.tinyai.ml.optimize;
 
 import io.leavesfly.tinyai.ml.model.Model;
-import io.leavesfly.tinyai.nnet.v2.core.Parameter;
 
 /**
  * 随机梯度下降优化器
- * 
- * 实现了经典的随机梯度下降算法，用于更新模型参数。
- * 更新公式：θ = θ - lr * ∇J(θ)
- * 
+ *
+ * 实现了经典的随机梯度下降算法，用于更新模型参数，可选动量。
+ * 更新公式：
+ * 无动量：θ = θ - lr * ∇J(θ)
+ * 有动量：b = μ * b + ∇J(θ)，θ = θ - lr * b
+ *
+ * 动量缓冲保存在所有参数共享的扁平float数组中（无动量时不分配状态），参数原地更新。
+ *
  * @author TinyDL
- * @version 1.0
+ * @version 2.0
  */
-public class SGD extends Optimizer {
+public class SGD extends FusedOptimizer {
 
-    private float lr;
+    private final float momentum;
 
     /**
      * 构造函数
@@ -22,34 +25,50 @@ public class SGD extends Optimizer {
      * @param learnRate 学习率
      */
     public SGD(Model target, float learnRate) {
-        super(target);
-        lr = learnRate;
+        this(target, learnRate, 0f);
+    }
+
+    /**
+     * 构造函数（带动量）
+     * @param target 目标模型
+     * @param learnRate 学习率
+     * @param momentum 动量系数，0表示不使用动量
+     */
+    public SGD(Model target, float learnRate, float momentum) {
+        super(target, learnRate, momentum == 0f ? new String[0] : new String[]{"momentum_buffer"});
+        this.momentum = momentum;
+    }
+
+    @Override
+    protected void prepareStep(int t) {
     }
 
     @Override
-    public void updateOne(Parameter parameter) {
-        // 检查参数的梯度是否为null，如果为null则跳过更新
-        if (parameter.getGrad() == null) {
+    protected void update(float[] param, float[] grad, int paramStart, int stateStart, int length) {
+        float rate = lr;
+        if (momentum == 0f) {
+            for (int i = paramStart, end = paramStart + length; i < end; i++) {
+                param[i] -= rate * grad[i];
+            }
             return;
         }
-        parameter.setValue(parameter.getValue().sub(parameter.getGrad().mulNum(lr)));
-    }
-    
-    /**
-     * 设置学习率（用于学习率调度器）
-     * 
-     * @param learningRate 新的学习率
-     */
-    public void setLearningRate(float learningRate) {
-        this.lr = learningRate;
+        float[] buffer = slots[0];
+        float mu = momentum;
+        for (int i = 0; i < length; i++) {
+            int p = paramStart + i;
+            int s = stateStart + i;
+            float b = mu * buffer[s] + grad[p];
+            buffer[s] = b;
+            param[p] -= rate * b;
+        }
     }
-    
+
     /**
-     * 获取当前学习率
-     * 
-     * @return 当前学习率
+     * 获取动量系数
+     *
+     * @return 动量系数
      */
-    public float getLearningRate() {
-        return lr;
+    public float getMomentum() {
+        return momentum;
     }
-}
\ No newline at end of file
+}
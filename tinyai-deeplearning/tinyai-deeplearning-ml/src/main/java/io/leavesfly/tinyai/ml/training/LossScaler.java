@@ -0,0 +1,119 @@
+package io.leavesfly.tinyai.ml.training;
+
+import io.leavesfly.tinyai.ml.model.Model;
+import io.leavesfly.tinyai.ml.visual.ValidationUtils;
+import io.leavesfly.tinyai.nnet.v2.core.Parameter;
+
+/**
+ * 动态损失缩放器
+ * <p>
+ * 混合精度训练中，较小的梯度在16位表示下会下溢为0。反向传播前把损失的梯度乘以缩放因子，
+ * 使梯度整体落在16位可表示的范围内；参数更新前再除以缩放因子还原。
+ * <p>
+ * 缩放因子动态调整：
+ * - 梯度出现inf/NaN时跳过本次更新，缩放因子乘以backoffFactor
+ * - 连续growthInterval次更新梯度都有限时，缩放因子乘以growthFactor
+ *
+ * @author TinyAI
+ * @version 1.0
+ */
+public class LossScaler {
+
+    private float scale;
+    private final float growthFactor;
+    private final float backoffFactor;
+    private final int growthInterval;
+
+    private int goodSteps;
+    private long skippedSteps;
+
+    /**
+     * 使用默认参数构造：初始缩放因子2^16，增长因子2，回退因子0.5，增长间隔2000
+     */
+    public LossScaler() {
+        this(65536f, 2f, 0.5f, 2000);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param initScale      初始缩放因子
+     * @param growthFactor   梯度持续有限时的增长倍数（大于1）
+     * @param backoffFactor  梯度溢出时的回退倍数（0到1之间）
+     * @param growthInterval 增长前需要连续成功的更新次数
+     */
+    public LossScaler(float initScale, float growthFactor, float backoffFactor, int growthInterval) {
+        ValidationUtils.requirePositive(initScale, "initScale");
+        ValidationUtils.requirePositive(growthInterval, "growthInterval");
+        if (growthFactor <= 1f) {
+            throw new IllegalArgumentException("growthFactor必须大于1: " + growthFactor);
+        }
+        if (backoffFactor <= 0f || backoffFactor >= 1f) {
+            throw new IllegalArgumentException("backoffFactor必须在(0,1)之间: " + backoffFactor);
+        }
+        this.scale = initScale;
+        this.growthFactor = growthFactor;
+        this.backoffFactor = backoffFactor;
+        this.growthInterval = growthInterval;
+    }
+
+    /**
+     * 检查模型所有参数的梯度是否都是有限值
+     *
+     * @param model 模型
+     * @return 没有inf/NaN时返回true
+     */
+    public boolean gradientsFinite(Model model) {
+        for (Parameter param : model.getAllParams().values()) {
+            if (param == null || param.getGrad() == null) {
+                continue;
+            }
+            for (float value : param.getGrad().getArray()) {
+                // inf - inf 与 NaN 的运算结果都是NaN
+                if (value - value != 0f) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 根据本次梯度是否有限调整缩放因子
+     *
+     * @param finite 本次梯度是否有限
+     */
+    public void update(boolean finite) {
+        if (!finite) {
+            scale = Math.max(scale * backoffFactor, Float.MIN_NORMAL);
+            goodSteps = 0;
+            skippedSteps++;
+            return;
+        }
+        if (++goodSteps >= growthInterval) {
+            float grown = scale * growthFactor;
+            if (Float.isFinite(grown)) {
+                scale = grown;
+            }
+            goodSteps = 0;
+        }
+    }
+
+    /**
+     * 获取当前缩放因子
+     *
+     * @return 缩放因子
+     */
+    public float getScale() {
+        return scale;
+    }
+
+    /**
+     * 获取因梯度溢出而跳过的更新次数
+     *
+     * @return 跳过的更新次数
+     */
+    public long getSkippedSteps() {
+        return skippedSteps;
+    }
+}
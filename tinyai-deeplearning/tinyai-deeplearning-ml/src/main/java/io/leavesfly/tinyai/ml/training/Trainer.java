@@ -9,18 +9,15 @@ import io.leavesfly.tinyai.ml.evaluator.Evaluator;
 import io.leavesfly.tinyai.ml.loss.Loss;
 import io.leavesfly.tinyai.ml.model.Model;
 import io.leavesfly.tinyai.ml.optimize.Optimizer;
-import io.leavesfly.tinyai.ml.training.parallel.GradientAggregator;
+import io.leavesfly.tinyai.ml.training.parallel.DataParallelEngine;
 import io.leavesfly.tinyai.ml.training.parallel.ParallelBatchProcessor;
 import io.leavesfly.tinyai.ml.training.parallel.ParallelTrainingUtils;
 import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.nnet.v2.core.Parameter;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 
 /**
  * 模型训练器
@@ -61,6 +58,8 @@ import java.util.concurrent.TimeUnit;
  *     .validationInterval(5)
  *     .earlyStopping(patience, minDelta)
  *     .gradientClipping(maxNorm)
+ *     .gradientAccumulation(4)
+ *     .lossScaling()
  *     .build()
  *     .train();
  * </pre>
@@ -86,7 +85,7 @@ public class Trainer {
 
     // 并行训练相关配置
     private int parallelThreadCount;
-    private ExecutorService executorService;
+    private DataParallelEngine dataParallelEngine;
     private boolean enableParallelTraining;
     
     // 验证集相关配置
@@ -100,6 +99,12 @@ public class Trainer {
     // 梯度裁剪
     private GradientClipper gradientClipper;
     
+    // 梯度累积：每N个micro-batch执行一次参数更新
+    private int accumulationSteps = 1;
+    
+    // 动态损失缩放（混合精度训练）
+    private LossScaler lossScaler;
+    
     // 回调机制
     private List<TrainingCallback> callbacks = new ArrayList<>();
     
@@ -179,16 +184,16 @@ public class Trainer {
             enableParallelTraining = false;
         }
 
-        // 初始化线程池
+        // 初始化数据并行引擎
         if (enableParallelTraining) {
-            // 根据实际batch数重新计算线程数
+            // 根据实际batch数重新计算线程数（流式数据集不物化批次，保持配置的线程数）
             DataSet trainDataSet = dataSet.getTrainDataSet();
-            if (trainDataSet != null) {
+            if (trainDataSet != null && !trainDataSet.isStreaming()) {
                 List<Batch> batches = trainDataSet.getBatches();
                 parallelThreadCount = Math.min(parallelThreadCount, batches.size());
             }
 
-            executorService = Executors.newFixedThreadPool(parallelThreadCount);
+            dataParallelEngine = new DataParallelEngine(model, loss, parallelThreadCount);
             System.out.println("并行训练已启用，线程数: " + parallelThreadCount);
         }
     }
@@ -239,11 +244,14 @@ public class Trainer {
             monitor.startNewEpoch(i);
             notifyEpochStart(i);
 
-            List<Batch> batches = trainDataSet.getBatches();
+            // 按需拉取批次，流式数据集不会整体物化
+            Iterator<Batch> batches = trainDataSet.batchIterator();
             float lossSum = 0f;
+            int batchIndex = 0;
+            int accumulated = 0;
 
-            for (int batchIndex = 0; batchIndex < batches.size(); batchIndex++) {
-                Batch batch = batches.get(batchIndex);
+            for (; batches.hasNext(); batchIndex++) {
+                Batch batch = batches.next();
                 Variable variableX = batch.toVariableX().setName("x").setRequireGrad(false);
                 Variable variableY = batch.toVariableY().setName("y").setRequireGrad(false);
 
@@ -251,27 +259,38 @@ public class Trainer {
                 Variable lossVariable = loss.loss(variableY, predictY);
                 lossVariable.setName("loss");
 
-                model.clearGrads();
+                // 累积窗口开始时才清空梯度
+                if (accumulated == 0) {
+                    model.clearGrads();
+                }
                 float batchLoss = lossVariable.getValue().getNumber().floatValue();
                 lossSum += batchLoss;
 
-                lossVariable.backward();
-                
-                // 梯度裁剪
-                if (gradientClipper != null) {
-                    gradientClipper.clipGradients(model);
+                // 损失按1/N缩放，N个micro-batch的梯度之和即为平均梯度；启用损失缩放时再乘以缩放因子
+                float gradSeed = (lossScaler != null ? lossScaler.getScale() : 1f) / accumulationSteps;
+                if (gradSeed != 1f) {
+                    lossVariable.setGrad(NdArray.like(lossVariable.getValue().getShape(), gradSeed));
                 }
-
-                optimizer.update();
+                lossVariable.backward(false);
                 lossVariable.unChainBackward();
+                accumulated++;
+
+                if (accumulated == accumulationSteps) {
+                    applyAccumulatedGradients(accumulated);
+                    accumulated = 0;
+                }
 
                 model.tmpPredict = predictY;
                 
                 // 通知批次结束
                 notifyBatchEnd(i, batchIndex, batchLoss);
             }
+            // epoch末尾不足N个的micro-batch也要更新
+            if (accumulated > 0) {
+                applyAccumulatedGradients(accumulated);
+            }
             
-            float avgLoss = lossSum / batches.size();
+            float avgLoss = lossSum / batchIndex;
             finalLoss = avgLoss;
             monitor.collectInfo(avgLoss);
             monitor.endEpoch();
@@ -303,6 +322,41 @@ public class Trainer {
         monitor.plot();
     }
 
+    /**
+     * 用累积的梯度执行一次参数更新
+     * <p>
+     * 每个micro-batch的损失已按1/N缩放；窗口不满N个时把梯度补偿为实际micro-batch数上的平均。
+     * 启用损失缩放时先检查梯度，出现inf/NaN则跳过本次更新并减小缩放因子，否则把梯度除以缩放因子还原。
+     *
+     * @param accumulated 本次窗口内的micro-batch数
+     */
+    private void applyAccumulatedGradients(int accumulated) {
+        float scale = (float) accumulationSteps / accumulated;
+        if (lossScaler != null) {
+            boolean finite = lossScaler.gradientsFinite(model);
+            scale /= lossScaler.getScale();
+            lossScaler.update(finite);
+            if (!finite) {
+                return;
+            }
+        }
+        if (scale != 1f) {
+            for (Parameter param : model.getAllParams().values()) {
+                if (param != null && param.getGrad() != null) {
+                    // 梯度数组可能与其他变量共享，不做原地缩放
+                    param.setGrad(param.getGrad().mulNum(scale));
+                }
+            }
+        }
+
+        // 梯度裁剪
+        if (gradientClipper != null) {
+            gradientClipper.clipGradients(model);
+        }
+
+        optimizer.update();
+    }
+
     /**
      * 并行训练实现
      * 将batch分配给多个线程并行处理，然后聚合梯度并更新参数
@@ -310,7 +364,7 @@ public class Trainer {
      * @param shuffleData 是否打乱数据
      */
     public void parallelTrain(boolean shuffleData) {
-        if (!enableParallelTraining || executorService == null) {
+        if (!enableParallelTraining || dataParallelEngine == null) {
             System.err.println("警告: 并行训练未启用，回退到单线程模式");
             singleThreadTrain(shuffleData);
             return;
@@ -321,27 +375,27 @@ public class Trainer {
             trainDataSet.shuffle();
         }
 
+        if (accumulationSteps > 1) {
+            System.err.println("警告: 并行训练每组batch即更新一次参数，忽略梯度累积设置");
+        }
+        if (lossScaler != null) {
+            System.err.println("警告: 并行训练暂不支持损失缩放，忽略损失缩放设置");
+        }
+
         for (int epoch = 0; epoch < maxEpoch; epoch++) {
             long epochStartTime = System.currentTimeMillis();
 
             model.resetState();
             monitor.startNewEpoch(epoch);
+            dataParallelEngine.getGradientAggregator().resetMetrics();
 
-            List<Batch> batches = trainDataSet.getBatches();
-
-            // 检查是否有足够的batch进行并行处理
-            if (batches.size() < parallelThreadCount) {
-                // 如果batch数量少于线程数，使用单线程处理
-                processBatchesSequentially(batches, epoch);
-            } else {
-                // 使用并行处理
-                processBatchesInParallel(batches, epoch);
-            }
+            processBatchesInParallel(trainDataSet.batchIterator(), epoch);
 
             long epochEndTime = System.currentTimeMillis();
             monitor.endEpoch();
-            System.out.println(String.format("Epoch %d 完成，耗时: %d ms",
-                    epoch, epochEndTime - epochStartTime));
+            System.out.println(String.format("Epoch %d 完成，耗时: %d ms，%s",
+                    epoch, epochEndTime - epochStartTime,
+                    dataParallelEngine.getGradientAggregator().formatMetrics()));
         }
 
         monitor.plot();
@@ -349,73 +403,51 @@ public class Trainer {
 
     /**
      * 并行处理批次数据
+     * <p>
+     * 每次从迭代器拉取至多线程数个batch作为一组，最后一组可以不满。
      *
-     * @param batches 批次列表
+     * @param batches 批次迭代器
      * @param epoch   当前轮次
      */
-    private void processBatchesInParallel(List<Batch> batches, int epoch) {
-        int batchCount = batches.size();
+    private void processBatchesInParallel(Iterator<Batch> batches, int epoch) {
         float totalLoss = 0f;
         int successfulBatches = 0;
+        List<Batch> currentBatchGroup = new ArrayList<>(parallelThreadCount);
 
         // 按线程数分组处理batch
-        for (int i = 0; i < batchCount; i += parallelThreadCount) {
-            int endIndex = Math.min(i + parallelThreadCount, batchCount);
-            List<Batch> currentBatchGroup = batches.subList(i, endIndex);
-
-            // 为这一组batch创建梯度聚合器
-            GradientAggregator gradientAggregator = new GradientAggregator(currentBatchGroup.size());
-
-            // 提交并行任务
-            List<Future<ParallelBatchProcessor.BatchProcessResult>> futures = new ArrayList<>();
-
-            for (int j = 0; j < currentBatchGroup.size(); j++) {
-                Batch batch = currentBatchGroup.get(j);
-                Model modelCopy = ParallelTrainingUtils.deepCopyModel(model);
-
-                ParallelBatchProcessor processor = new ParallelBatchProcessor(
-                        batch, modelCopy, loss, gradientAggregator, i + j
-                );
+        while (batches.hasNext()) {
+            currentBatchGroup.clear();
+            while (currentBatchGroup.size() < parallelThreadCount && batches.hasNext()) {
+                currentBatchGroup.add(batches.next());
+            }
 
-                futures.add(executorService.submit(processor));
+            // 常驻副本并行计算梯度，主模型参数上得到平均梯度
+            List<ParallelBatchProcessor.BatchProcessResult> results;
+            try {
+                results = dataParallelEngine.step(currentBatchGroup);
+            } catch (InterruptedException e) {
+                System.err.println("梯度聚合被中断: " + e.getMessage());
+                Thread.currentThread().interrupt();
+                break;
             }
 
             // 收集结果
             float groupLoss = 0f;
             int groupSuccessful = 0;
-
-            for (Future<ParallelBatchProcessor.BatchProcessResult> future : futures) {
-                try {
-                    ParallelBatchProcessor.BatchProcessResult result = future.get();
-                    if (result.isSuccess()) {
-                        groupLoss += result.getLossValue();
-                        groupSuccessful++;
-                    } else {
-                        System.err.println("批次处理失败: " + result.getException().getMessage());
-                    }
-                } catch (Exception e) {
-                    System.err.println("获取批次处理结果失败: " + e.getMessage());
+            for (ParallelBatchProcessor.BatchProcessResult result : results) {
+                if (result.isSuccess()) {
+                    groupLoss += result.getLossValue();
+                    groupSuccessful++;
+                } else {
+                    System.err.println("批次处理失败: " + result.getException().getMessage());
                 }
             }
 
-            // 等待梯度聚合完成
-            try {
-                Map<String, NdArray> averageGradients = gradientAggregator.getAverageGradients();
-
-                // 将聚合梯度应用到主模型
-                ParallelTrainingUtils.applyAggregatedGradients(model, averageGradients);
-
-                // 更新参数
-                optimizer.update();
-
-                // 清理梯度
-                model.clearGrads();
+            // 更新参数（副本共享主模型权重，无需回传）
+            optimizer.update();
 
-            } catch (InterruptedException e) {
-                System.err.println("梯度聚合被中断: " + e.getMessage());
-                Thread.currentThread().interrupt();
-                break;
-            }
+            // 清理梯度
+            model.clearGrads();
 
             totalLoss += groupLoss;
             successfulBatches += groupSuccessful;
@@ -429,38 +461,6 @@ public class Trainer {
         monitor.printTrainInfo();
     }
 
-    /**
-     * 顺序处理批次数据（备用方案）
-     *
-     * @param batches 批次列表
-     * @param epoch   当前轮次
-     */
-    private void processBatchesSequentially(List<Batch> batches, int epoch) {
-        float lossSum = 0f;
-
-        for (Batch batch : batches) {
-            Variable variableX = batch.toVariableX().setName("x").setRequireGrad(false);
-            Variable variableY = batch.toVariableY().setName("y").setRequireGrad(false);
-
-            Variable predictY = model.forward(variableX);
-            Variable lossVariable = loss.loss(variableY, predictY);
-            lossVariable.setName("loss");
-
-            model.clearGrads();
-            lossSum += lossVariable.getValue().getNumber().floatValue();
-
-            lossVariable.backward();
-            optimizer.update();
-            lossVariable.unChainBackward();
-
-            model.tmpPredict = predictY;
-        }
-
-        monitor.collectInfo(lossSum / batches.size());
-        monitor.printTrainInfo();
-    }
-
-
     /**
      * 模型评估
      */
@@ -499,6 +499,50 @@ public class Trainer {
         this.gradientClipper = gradientClipper;
     }
     
+    /**
+     * 设置梯度累积步数
+     * <p>
+     * 每accumulationSteps个micro-batch执行一次优化器更新，等效批次大小为 批次大小 × accumulationSteps，
+     * 而峰值激活内存只取决于单个micro-batch。仅作用于单线程训练。
+     *
+     * @param accumulationSteps 累积步数（1表示不累积）
+     */
+    public void setGradientAccumulationSteps(int accumulationSteps) {
+        if (accumulationSteps < 1) {
+            throw new IllegalArgumentException("梯度累积步数必须大于等于1: " + accumulationSteps);
+        }
+        this.accumulationSteps = accumulationSteps;
+    }
+    
+    /**
+     * 获取梯度累积步数
+     * 
+     * @return 梯度累积步数
+     */
+    public int getGradientAccumulationSteps() {
+        return accumulationSteps;
+    }
+    
+    /**
+     * 设置动态损失缩放器
+     * <p>
+     * 用于16位参数（尤其是FP16）的混合精度训练，防止小梯度下溢。仅作用于单线程训练。
+     *
+     * @param lossScaler 损失缩放器，null表示不缩放
+     */
+    public void setLossScaler(LossScaler lossScaler) {
+        this.lossScaler = lossScaler;
+    }
+    
+    /**
+     * 获取动态损失缩放器
+     * 
+     * @return 损失缩放器，未启用时为null
+     */
+    public LossScaler getLossScaler() {
+        return lossScaler;
+    }
+    
     /**
      * 添加训练回调
      * 
@@ -568,10 +612,12 @@ public class Trainer {
      * @return 平均损失
      */
     private float evaluateLoss(DataSet dataSet) {
-        List<Batch> batches = dataSet.getBatches();
+        Iterator<Batch> batches = dataSet.batchIterator();
         float lossSum = 0f;
+        int batchCount = 0;
         
-        for (Batch batch : batches) {
+        while (batches.hasNext()) {
+            Batch batch = batches.next();
             Variable variableX = batch.toVariableX().setName("x").setRequireGrad(false);
             Variable variableY = batch.toVariableY().setName("y").setRequireGrad(false);
             
@@ -579,9 +625,10 @@ public class Trainer {
             Variable lossVariable = loss.loss(variableY, predictY);
             
             lossSum += lossVariable.getValue().getNumber().floatValue();
+            batchCount++;
         }
         
-        return lossSum / batches.size();
+        return lossSum / batchCount;
     }
     
     /**
@@ -649,8 +696,8 @@ public class Trainer {
      * @param threadCount 线程数（0表示自动计算）
      */
     public void configureParallelTraining(boolean enable, int threadCount) {
-        // 先关闭现有的线程池
-        if (executorService != null && !executorService.isShutdown()) {
+        // 先关闭现有的数据并行引擎
+        if (dataParallelEngine != null && !dataParallelEngine.isClosed()) {
             shutdown();
         }
 
@@ -659,10 +706,10 @@ public class Trainer {
             this.parallelThreadCount = threadCount;
         }
 
-        // 如果启用并且模型已初始化，重新创建线程池
-        if (enable && model != null) {
+        // 如果启用并且模型已初始化，重新创建数据并行引擎
+        if (enable && model != null && loss != null) {
             if (ParallelTrainingUtils.isModelParallelizable(model)) {
-                executorService = Executors.newFixedThreadPool(parallelThreadCount);
+                dataParallelEngine = new DataParallelEngine(model, loss, parallelThreadCount);
                 System.out.println("并行训练已重新配置，线程数: " + parallelThreadCount);
             } else {
                 System.err.println("模型不支持并行训练");
@@ -677,7 +724,7 @@ public class Trainer {
      * @return true 如果并行训练已启用
      */
     public boolean isParallelTrainingEnabled() {
-        return enableParallelTraining && executorService != null && !executorService.isShutdown();
+        return enableParallelTraining && dataParallelEngine != null && !dataParallelEngine.isClosed();
     }
 
     /**
@@ -694,20 +741,8 @@ public class Trainer {
      * 必须在训练结束后调用此方法以防止资源泄漏
      */
     public void shutdown() {
-        if (executorService != null && !executorService.isShutdown()) {
-            executorService.shutdown();
-            try {
-                // 等待正在执行的任务完成
-                if (!executorService.awaitTermination(30, TimeUnit.SECONDS)) {
-                    // 强制停止
-                    System.err.println("警告: 强制关闭线程池");
-                    executorService.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                System.err.println("线程池关闭被中断");
-                executorService.shutdownNow();
-                Thread.currentThread().interrupt();
-            }
+        if (dataParallelEngine != null && !dataParallelEngine.isClosed()) {
+            dataParallelEngine.close();
             System.out.println("并行训练资源已释放");
         }
     }
@@ -762,7 +797,7 @@ public class Trainer {
                     float lossValue = lossVariable.getValue().getNumber().floatValue();
                     totalLoss += lossValue;
 
-                    lossVariable.backward();
+                    lossVariable.backward(false);
                     optimizer.update();
                     lossVariable.unChainBackward();
 
@@ -814,6 +849,8 @@ public class Trainer {
         private Integer earlyStoppingPatience;
         private Float earlyStoppingMinDelta;
         private Float gradientClipMaxNorm;
+        private int accumulationSteps = 1;
+        private LossScaler lossScaler;
         private String monitorLogFile;
 
         /**
@@ -937,6 +974,33 @@ public class Trainer {
             return this;
         }
 
+        /**
+         * 启用梯度累积 (默认1，不累积)
+         * 
+         * @param steps 每次参数更新累积的micro-batch数
+         */
+        public Builder gradientAccumulation(int steps) {
+            this.accumulationSteps = steps;
+            return this;
+        }
+
+        /**
+         * 启用默认参数的动态损失缩放（混合精度训练）
+         */
+        public Builder lossScaling() {
+            return lossScaler(new LossScaler());
+        }
+
+        /**
+         * 设置动态损失缩放器
+         * 
+         * @param lossScaler 损失缩放器
+         */
+        public Builder lossScaler(LossScaler lossScaler) {
+            this.lossScaler = lossScaler;
+            return this;
+        }
+
         /**
          * 构建Trainer实例
          */
@@ -954,6 +1018,9 @@ public class Trainer {
             if (optimizer == null) {
                 throw new IllegalStateException("Optimizer is required");
             }
+            if (accumulationSteps < 1) {
+                throw new IllegalStateException("Gradient accumulation steps must be >= 1");
+            }
 
             Trainer trainer = new Trainer();
             trainer.model = this.model;
@@ -963,6 +1030,8 @@ public class Trainer {
             trainer.maxEpoch = this.epochs;
             trainer.shuffle = this.shuffle;
             trainer.validationInterval = this.validationInterval;
+            trainer.accumulationSteps = this.accumulationSteps;
+            trainer.lossScaler = this.lossScaler;
             trainer.enableParallelTraining = this.enableParallel;
             trainer.parallelThreadCount = this.threadCount > 0 ? this.threadCount :
                     ParallelTrainingUtils.getRecommendedThreadCount(4);
@@ -1012,16 +1081,16 @@ public class Trainer {
                 trainer.enableParallelTraining = false;
             }
 
-            // 初始化线程池
+            // 初始化数据并行引擎
             if (trainer.enableParallelTraining) {
                 DataSet trainDataSet = trainer.dataSet.getTrainDataSet();
-                if (trainDataSet != null) {
+                if (trainDataSet != null && !trainDataSet.isStreaming()) {
                     List<Batch> batches = trainDataSet.getBatches();
                     trainer.parallelThreadCount = Math.min(
                             trainer.parallelThreadCount, batches.size());
                 }
-                trainer.executorService = Executors.newFixedThreadPool(
-                        trainer.parallelThreadCount);
+                trainer.dataParallelEngine = new DataParallelEngine(
+                        trainer.model, trainer.loss, trainer.parallelThreadCount);
                 System.out.println("并行训练已启用，线程数: " + trainer.parallelThreadCount);
             }
 
@@ -0,0 +1,201 @@
+package io.leavesfly.tinyai.ml.training.parallel;
+
+import io.leavesfly.tinyai.ml.dataset.Batch;
+import io.leavesfly.tinyai.ml.exception.TrainingException;
+import io.leavesfly.tinyai.ml.loss.Loss;
+import io.leavesfly.tinyai.ml.model.Model;
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.nnet.v2.core.Parameter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据并行训练引擎 - 常驻的工作副本 + 共享权重
+ * <p>
+ * 与每个batch都深拷贝一次模型不同，引擎在创建时为每个工作线程拷贝一次模型副本，
+ * 之后副本的参数值直接指向主模型的权重数组（只读共享），不再保存自己的权重；
+ * 每一步只有梯度从副本流回主模型。优化器原地更新主模型权重后，副本自然看到新权重，
+ * 每步开始前的 {@link #syncWeights()} 只是重新绑定引用（应对权重数组被整体替换的情况），不复制数据。
+ * <p>
+ * 使用方式：
+ * <pre>
+ * try (DataParallelEngine engine = new DataParallelEngine(model, loss, 4)) {
+ *     engine.step(batchGroup);   // 主模型参数上得到平均梯度
+ *     optimizer.update();
+ * }
+ * </pre>
+ * 同一时刻只应有一个线程调用 {@link #step(List)}。
+ */
+public class DataParallelEngine implements AutoCloseable {
+
+    private final Model master;
+    private final Loss loss;
+    private final List<Model> replicas;
+    /**
+     * 每个副本的 (副本参数, 主模型参数) 对，构造时解析一次
+     */
+    private final List<Parameter[][]> parameterBindings;
+    private final GradientAggregator aggregator;
+    private final ExecutorService workers;
+    private volatile boolean closed;
+
+    /**
+     * 构造数据并行引擎
+     *
+     * @param master      主模型（持有权重和优化器更新的参数）
+     * @param loss        损失函数
+     * @param workerCount 工作线程（副本）数
+     * @throws TrainingException 如果副本创建失败或副本与主模型共享参数对象
+     */
+    public DataParallelEngine(Model master, Loss loss, int workerCount) {
+        if (master == null || loss == null) {
+            throw new IllegalArgumentException("模型和损失函数不能为空");
+        }
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("工作线程数必须大于0: " + workerCount);
+        }
+        this.master = master;
+        this.loss = loss;
+        this.replicas = new ArrayList<>(workerCount);
+        this.parameterBindings = new ArrayList<>(workerCount);
+
+        Map<String, Parameter> masterParams = master.getAllParams();
+        for (int i = 0; i < workerCount; i++) {
+            Model replica = ParallelTrainingUtils.deepCopyModel(master);
+            Map<String, Parameter> replicaParams = replica.getAllParams();
+            Parameter[][] bindings = new Parameter[masterParams.size()][];
+            int k = 0;
+            for (Map.Entry<String, Parameter> entry : masterParams.entrySet()) {
+                Parameter replicaParam = replicaParams.get(entry.getKey());
+                if (replicaParam == null) {
+                    throw new TrainingException("模型副本缺少参数: " + entry.getKey());
+                }
+                if (replicaParam == entry.getValue()) {
+                    throw new TrainingException("模型副本与主模型共享参数对象，无法并行计算梯度: " + entry.getKey());
+                }
+                bindings[k++] = new Parameter[]{replicaParam, entry.getValue()};
+            }
+            replicas.add(replica);
+            parameterBindings.add(bindings);
+        }
+        syncWeights();
+        this.aggregator = new GradientAggregator(workerCount);
+        this.workers = Executors.newFixedThreadPool(workerCount);
+    }
+
+    /**
+     * 并行执行一步训练：每个batch由一个副本完成前向和反向传播，
+     * 返回后主模型参数上的梯度为各batch梯度的平均值
+     *
+     * @param batches 本步的batch，数量不超过工作线程数
+     * @return 各batch的处理结果
+     * @throws InterruptedException 如果等待工作线程时被中断
+     */
+    public List<ParallelBatchProcessor.BatchProcessResult> step(List<Batch> batches) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("数据并行引擎已关闭");
+        }
+        if (batches.isEmpty() || batches.size() > replicas.size()) {
+            throw new IllegalArgumentException(String.format("batch数量%d必须在1到工作线程数%d之间",
+                    batches.size(), replicas.size()));
+        }
+        syncWeights();
+
+        aggregator.reset(batches.size());
+        List<Future<ParallelBatchProcessor.BatchProcessResult>> futures = new ArrayList<>(batches.size());
+        for (int i = 0; i < batches.size(); i++) {
+            futures.add(workers.submit(new ParallelBatchProcessor(batches.get(i), replicas.get(i), loss, aggregator, i)));
+        }
+
+        List<ParallelBatchProcessor.BatchProcessResult> results = new ArrayList<>(batches.size());
+        for (Future<ParallelBatchProcessor.BatchProcessResult> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                throw new TrainingException("工作线程执行失败: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+
+        Map<String, NdArray> averageGradients = aggregator.getAverageGradients();
+        ParallelTrainingUtils.applyAggregatedGradients(master, averageGradients);
+        return results;
+    }
+
+    /**
+     * 将所有副本的参数值重新指向主模型的权重数组（只重新绑定引用，不复制数据）
+     */
+    public void syncWeights() {
+        for (Parameter[][] bindings : parameterBindings) {
+            for (Parameter[] binding : bindings) {
+                if (binding[0].getValue() != binding[1].getValue()) {
+                    binding[0].setValue(binding[1].getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取梯度聚合器（可用于读取等待/归约时间等统计指标）
+     *
+     * @return 梯度聚合器
+     */
+    public GradientAggregator getGradientAggregator() {
+        return aggregator;
+    }
+
+    /**
+     * 获取工作线程（副本）数
+     *
+     * @return 工作线程数
+     */
+    public int getWorkerCount() {
+        return replicas.size();
+    }
+
+    /**
+     * 获取指定的模型副本
+     *
+     * @param index 副本索引
+     * @return 模型副本
+     */
+    public Model getReplica(int index) {
+        return replicas.get(index);
+    }
+
+    /**
+     * 引擎是否已关闭
+     *
+     * @return true 如果已关闭
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 关闭工作线程，等待正在执行的步骤完成
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+                System.err.println("警告: 强制关闭数据并行工作线程");
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -3,103 +3,153 @@ package io.leavesfly.tinyai.ml.training.parallel;
 import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.nnet.v2.core.Parameter;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * 梯度聚合器 - 用于多线程训练中收集和平均梯度
  * <p>
- * 支持多个线程并发提交梯度，自动进行梯度平均，确保线程安全
+ * 按参数分片的归约（reduce-scatter + all-gather）：
+ * 1. 提交：每个线程无锁地把自己的梯度登记到独占的槽位，最后到达的线程解析参数布局并放行；
+ * 2. reduce-scatter：所有参数按顺序拼接为一个扁平的索引空间，平均切成与提交数相同的分片，
+ *    第k个提交的线程只负责第k个分片，把所有线程在该分片上的梯度累加并求平均；
+ * 3. all-gather：结果写在预分配的共享缓冲区里，所有分片完成后即为完整的平均梯度，无需再拷贝。
+ * <p>
+ * 结果缓冲区在参数布局不变时跨轮复用，聚合开销不随线程数增长而增加额外分配。
+ * 注意：提交线程会等待其他提交到达后再归约自己的分片，因此期望的提交数不能超过可同时运行的线程数。
+ * <p>
+ * 同时统计等待时间（等待其他线程提交、等待归约完成）和归约时间，便于判断聚合是否成为瓶颈。
  */
 public class GradientAggregator {
 
-    private final Map<String, NdArray> accumulatedGradients;
+    private volatile int expectedSubmissions;
     private final AtomicInteger submissionCount;
-    private final int expectedSubmissions;
-    private final ReentrantLock aggregationLock;
-    private final Condition gradientReady;
+    private AtomicReferenceArray<Map<String, Parameter>> submissions;
+    private volatile CountDownLatch allSubmitted;
+    private volatile CountDownLatch allReduced;
     private volatile boolean isReady;
 
+    // 参数布局：按名称顺序拼接后的扁平索引空间
+    private String[] names;
+    private int[] offsets;
+    private NdArray[] buffers;
+    private boolean[] present;
+    private float[][][] contributions;
+    private volatile RuntimeException layoutFailure;
+
+    // 统计指标（纳秒，跨轮累计）
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong reduceNanos = new AtomicLong();
+    private final AtomicLong roundCount = new AtomicLong();
+
     /**
      * 构造梯度聚合器
      *
      * @param expectedSubmissions 期望的梯度提交次数（通常等于并行线程数）
      */
     public GradientAggregator(int expectedSubmissions) {
-        this.expectedSubmissions = expectedSubmissions;
-        this.accumulatedGradients = new ConcurrentHashMap<>();
         this.submissionCount = new AtomicInteger(0);
-        this.aggregationLock = new ReentrantLock();
-        this.gradientReady = aggregationLock.newCondition();
-        this.isReady = false;
+        reset(expectedSubmissions);
     }
 
     /**
-     * 提交一个线程计算的梯度
+     * 提交一个线程计算的梯度，并负责归约属于该线程的分片
      *
-     * @param gradients 参数名到梯度的映射
+     * @param gradients 参数名到参数（携带梯度）的映射
      */
     public void submitGradients(Map<String, Parameter> gradients) {
-        aggregationLock.lock();
-        try {
-            // 累加梯度
-            for (Map.Entry<String, Parameter> entry : gradients.entrySet()) {
-                String paramName = entry.getKey();
-                NdArray gradient = entry.getValue().getGrad();
+        int slot = submissionCount.getAndIncrement();
+        if (slot >= expectedSubmissions) {
+            throw new IllegalStateException(String.format("梯度提交次数超过期望值%d", expectedSubmissions));
+        }
+        submissions.set(slot, gradients);
 
-                if (gradient != null) {
-                    accumulatedGradients.merge(paramName, gradient, NdArray::add);
-                }
+        if (slot == expectedSubmissions - 1) {
+            // 最后到达的线程解析布局后放行
+            try {
+                prepareLayout();
+            } catch (RuntimeException e) {
+                layoutFailure = e;
+            } finally {
+                allSubmitted.countDown();
             }
+        } else {
+            long start = System.nanoTime();
+            awaitUninterruptibly(allSubmitted);
+            waitNanos.addAndGet(System.nanoTime() - start);
+        }
 
-            // 检查是否收集完所有梯度
-            if (submissionCount.incrementAndGet() >= expectedSubmissions) {
-                // 计算平均梯度
-                for (Map.Entry<String, NdArray> entry : accumulatedGradients.entrySet()) {
-                    NdArray averageGrad = entry.getValue().divNum((float) expectedSubmissions);
-                    entry.setValue(averageGrad);
-                }
-                isReady = true;
-                gradientReady.signalAll(); // 通知等待的线程
+        try {
+            if (layoutFailure == null) {
+                long start = System.nanoTime();
+                reduceShard(slot);
+                reduceNanos.addAndGet(System.nanoTime() - start);
             }
         } finally {
-            aggregationLock.unlock();
+            allReduced.countDown();
         }
     }
 
     /**
-     * 等待所有梯度收集完成并返回平均梯度
+     * 等待所有梯度归约完成并返回平均梯度
+     * <p>
+     * 返回的数组是聚合器的共享缓冲区，在下一次 {@link #reset()} 后的归约中会被覆盖。
      *
-     * @return 平均后的梯度映射
+     * @return 平均后的梯度映射（所有线程都没有梯度的参数不包含在内）
      * @throws InterruptedException 如果等待被中断
      */
     public Map<String, NdArray> getAverageGradients() throws InterruptedException {
-        aggregationLock.lock();
-        try {
-            while (!isReady) {
-                gradientReady.await();
+        long start = System.nanoTime();
+        allReduced.await();
+        waitNanos.addAndGet(System.nanoTime() - start);
+        if (layoutFailure != null) {
+            throw new IllegalStateException("梯度聚合失败: " + layoutFailure.getMessage(), layoutFailure);
+        }
+        if (!isReady) {
+            isReady = true;
+            roundCount.incrementAndGet();
+            // 释放对各线程梯度的引用
+            for (float[][] contribution : contributions) {
+                Arrays.fill(contribution, null);
+            }
+        }
+        Map<String, NdArray> result = new HashMap<>(names.length * 2);
+        for (int p = 0; p < names.length; p++) {
+            if (present[p]) {
+                result.put(names[p], buffers[p]);
             }
-            return new ConcurrentHashMap<>(accumulatedGradients);
-        } finally {
-            aggregationLock.unlock();
         }
+        return result;
     }
 
     /**
-     * 重置聚合器，准备下一轮梯度收集
+     * 重置聚合器，准备下一轮梯度收集（保留预分配的缓冲区）
      */
     public void reset() {
-        aggregationLock.lock();
-        try {
-            accumulatedGradients.clear();
-            submissionCount.set(0);
-            isReady = false;
-        } finally {
-            aggregationLock.unlock();
+        reset(expectedSubmissions);
+    }
+
+    /**
+     * 重置聚合器并修改期望的提交次数（保留预分配的缓冲区）
+     *
+     * @param expectedSubmissions 期望的梯度提交次数
+     */
+    public void reset(int expectedSubmissions) {
+        if (expectedSubmissions <= 0) {
+            throw new IllegalArgumentException("期望的提交次数必须大于0: " + expectedSubmissions);
         }
+        this.expectedSubmissions = expectedSubmissions;
+        this.submissions = new AtomicReferenceArray<>(expectedSubmissions);
+        this.allSubmitted = new CountDownLatch(1);
+        this.allReduced = new CountDownLatch(expectedSubmissions);
+        this.layoutFailure = null;
+        this.isReady = false;
+        submissionCount.set(0);
     }
 
     /**
@@ -108,7 +158,7 @@ public class GradientAggregator {
      * @return true 如果梯度已准备就绪
      */
     public boolean isReady() {
-        return isReady;
+        return isReady || allReduced.getCount() == 0;
     }
 
     /**
@@ -117,6 +167,151 @@ public class GradientAggregator {
      * @return 已提交的梯度数量
      */
     public int getSubmissionCount() {
-        return submissionCount.get();
+        return Math.min(submissionCount.get(), expectedSubmissions);
+    }
+
+    /**
+     * 获取累计等待时间（提交线程等待其他线程到达 + 调用方等待归约完成）
+     *
+     * @return 等待时间（纳秒）
+     */
+    public long getWaitTimeNanos() {
+        return waitNanos.get();
+    }
+
+    /**
+     * 获取所有线程累计的归约时间
+     *
+     * @return 归约时间（纳秒）
+     */
+    public long getReduceTimeNanos() {
+        return reduceNanos.get();
+    }
+
+    /**
+     * 获取已完成的聚合轮数
+     *
+     * @return 聚合轮数
+     */
+    public long getRoundCount() {
+        return roundCount.get();
+    }
+
+    /**
+     * 清零统计指标
+     */
+    public void resetMetrics() {
+        waitNanos.set(0);
+        reduceNanos.set(0);
+        roundCount.set(0);
+    }
+
+    /**
+     * 格式化统计指标
+     *
+     * @return 统计信息字符串
+     */
+    public String formatMetrics() {
+        return String.format("梯度聚合统计 [轮数: %d, 等待: %.2fms, 归约: %.2fms]",
+                roundCount.get(), waitNanos.get() / 1e6, reduceNanos.get() / 1e6);
+    }
+
+    /**
+     * 解析参数布局：确定参数顺序与扁平偏移，复用或分配结果缓冲区，收集各线程的梯度数组
+     */
+    private void prepareLayout() {
+        int workers = expectedSubmissions;
+        Map<String, Parameter> first = submissions.get(0);
+        String[] currentNames = first.keySet().toArray(new String[0]);
+        boolean reuse = names != null && Arrays.equals(names, currentNames);
+
+        if (!reuse) {
+            names = currentNames;
+            offsets = new int[names.length + 1];
+            buffers = new NdArray[names.length];
+            present = new boolean[names.length];
+        }
+        if (contributions == null || contributions.length != workers || !reuse) {
+            contributions = new float[workers][names.length][];
+        }
+
+        for (int p = 0; p < names.length; p++) {
+            NdArray shapeSource = first.get(names[p]).getValue();
+            if (!reuse || !buffers[p].getShape().equals(shapeSource.getShape())) {
+                buffers[p] = NdArray.zeros(shapeSource.getShape());
+            }
+            int size = buffers[p].getShape().size();
+            offsets[p + 1] = offsets[p] + size;
+            present[p] = false;
+            for (int w = 0; w < workers; w++) {
+                Parameter param = submissions.get(w).get(names[p]);
+                if (param == null) {
+                    throw new IllegalArgumentException("线程" + w + "缺少参数: " + names[p]);
+                }
+                NdArray grad = param.getGrad();
+                float[] data = grad == null ? null : grad.getArray();
+                if (data != null && data.length != size) {
+                    throw new IllegalArgumentException(String.format("参数%s的梯度大小%d与参数大小%d不一致",
+                            names[p], data.length, size));
+                }
+                contributions[w][p] = data;
+                present[p] |= data != null;
+            }
+        }
+    }
+
+    /**
+     * 归约第k个分片：累加所有线程在该分片上的梯度并求平均
+     */
+    private void reduceShard(int shard) {
+        int workers = expectedSubmissions;
+        int total = offsets[names.length];
+        int lo = (int) ((long) total * shard / workers);
+        int hi = (int) ((long) total * (shard + 1) / workers);
+        if (lo >= hi) {
+            return;
+        }
+        float scale = 1f / workers;
+
+        int p = 0;
+        while (offsets[p + 1] <= lo) {
+            p++;
+        }
+        for (; p < names.length && offsets[p] < hi; p++) {
+            if (!present[p]) {
+                continue;
+            }
+            int from = Math.max(lo, offsets[p]) - offsets[p];
+            int to = Math.min(hi, offsets[p + 1]) - offsets[p];
+            float[] out = buffers[p].getArray();
+            Arrays.fill(out, from, to, 0f);
+            for (int w = 0; w < workers; w++) {
+                float[] grad = contributions[w][p];
+                if (grad == null) {
+                    continue;
+                }
+                for (int i = from; i < to; i++) {
+                    out[i] += grad[i];
+                }
+            }
+            for (int i = from; i < to; i++) {
+                out[i] *= scale;
+            }
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
-}
\ No newline at end of file
+}
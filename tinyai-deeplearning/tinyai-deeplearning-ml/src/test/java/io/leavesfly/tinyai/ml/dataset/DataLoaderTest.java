@@ -0,0 +1,167 @@
+package io.leavesfly.tinyai.ml.dataset;
+
+import io.leavesfly.tinyai.ndarr.NdArray;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * DataLoader 单元测试
+ *
+ * 测试数据加载器的同步与多线程预取，包括：
+ * - 两种模式按相同顺序交付相同的批次，最后一个不完整批次的处理
+ * - 工作线程中完成样本变换与拼接
+ * - 预取深度受限（背压）以及缓冲区复用
+ * - 流式数据集按需拉取，批次数未知时也能正确结束
+ *
+ * @author TinyAI
+ */
+public class DataLoaderTest {
+
+    private TestArrayDataset dataset;
+
+    @Before
+    public void setUp() {
+        NdArray[] xs = new NdArray[7];
+        NdArray[] ys = new NdArray[7];
+        for (int i = 0; i < 7; i++) {
+            xs[i] = NdArray.of(new float[][]{{i, i + 0.5f}});
+            ys[i] = NdArray.of(new float[][]{{i * 10f}});
+        }
+        dataset = new TestArrayDataset(3, xs, ys);
+    }
+
+    @Test
+    public void testSyncAndPrefetchDeliverSameBatches() {
+        List<float[]> sync = collectX(new DataLoader(dataset).batchSize(3));
+        List<float[]> prefetch;
+        try (DataLoader loader = new DataLoader(dataset).batchSize(3).numWorkers(2)) {
+            prefetch = collectX(loader);
+        }
+
+        assertEquals(3, sync.size());
+        assertEquals(sync.size(), prefetch.size());
+        for (int i = 0; i < sync.size(); i++) {
+            assertArrayEquals(sync.get(i), prefetch.get(i), 0f);
+        }
+        assertArrayEquals(new float[]{6f, 6.5f}, prefetch.get(2), 0f);
+
+        try (DataLoader loader = new DataLoader(dataset).batchSize(3).numWorkers(2).dropLast(true)) {
+            assertEquals(2, collectX(loader).size());
+        }
+    }
+
+    @Test
+    public void testWorkersTransformAndCollate() {
+        Set<String> transformThreads = ConcurrentHashMap.newKeySet();
+        try (DataLoader loader = new DataLoader(dataset).batchSize(3).numWorkers(2)
+                .transform(x -> {
+                    transformThreads.add(Thread.currentThread().getName());
+                    return x.mulNum(2f);
+                })) {
+            Batch first = loader.iterator().next();
+            assertNotNull(first.getCollatedX());
+            assertArrayEquals(new float[]{0f, 1f, 2f, 3f, 4f, 5f}, first.toVariableX().getValue().getArray(), 0f);
+            assertSame(first.getCollatedX(), first.toVariableX().getValue());
+        }
+        assertFalse(transformThreads.isEmpty());
+        for (String name : transformThreads) {
+            assertTrue(name, name.startsWith("DataLoader-worker-"));
+        }
+    }
+
+    @Test
+    public void testPrefetchDepthIsBounded() throws InterruptedException {
+        AtomicInteger transformed = new AtomicInteger();
+        try (DataLoader loader = new DataLoader(dataset).batchSize(1).numWorkers(2).prefetchFactor(1)
+                .transform(x -> {
+                    transformed.incrementAndGet();
+                    return x;
+                })) {
+            Iterator<Batch> it = loader.iterator();
+            it.next();
+            Thread.sleep(200);
+            // 已消费1个批次，最多再有 2 * 1 个批次在途
+            assertTrue("transformed=" + transformed.get(), transformed.get() <= 3);
+        }
+    }
+
+    @Test
+    public void testReuseBuffers() {
+        List<NdArray> buffers = new ArrayList<>();
+        try (DataLoader loader = new DataLoader(dataset).batchSize(1).numWorkers(1).prefetchFactor(1)
+                .reuseBuffers(true)) {
+            for (Batch batch : loader) {
+                buffers.add(batch.getCollatedX());
+            }
+        }
+        assertEquals(7, buffers.size());
+        assertTrue("后面的批次应复用已消费批次的缓冲区", buffers.subList(2, 7).contains(buffers.get(0)));
+    }
+
+    @Test
+    public void testStreamingDatasetIsPulledLazily() {
+        AtomicInteger pulled = new AtomicInteger();
+        StreamDataset stream = new StreamDataset(2);
+        stream.setDataSource(() -> new Iterator<StreamDataset.DataItem>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < 7;
+            }
+
+            @Override
+            public StreamDataset.DataItem next() {
+                pulled.incrementAndGet();
+                float value = next++;
+                return new StreamDataset.DataItem(NdArray.of(new float[][]{{value}}), NdArray.of(new float[][]{{value}}));
+            }
+        });
+
+        Iterator<Batch> sync = new DataLoader(stream).iterator();
+        sync.next();
+        assertTrue("pulled=" + pulled.get(), pulled.get() <= 4);
+        assertEquals(4, collectX(new DataLoader(stream)).size());
+
+        try (DataLoader loader = new DataLoader(stream).numWorkers(2).dropLast(true)) {
+            List<float[]> batches = collectX(loader);
+            assertEquals(3, batches.size());
+            assertArrayEquals(new float[]{4f, 5f}, batches.get(2), 0f);
+        }
+    }
+
+    private static List<float[]> collectX(DataLoader loader) {
+        List<float[]> result = new ArrayList<>();
+        for (Batch batch : loader) {
+            result.add(batch.toVariableX().getValue().getArray().clone());
+        }
+        return result;
+    }
+
+    private static class TestArrayDataset extends ArrayDataset {
+
+        TestArrayDataset(int batchSize, NdArray[] xs, NdArray[] ys) {
+            super(batchSize);
+            this.xs = xs;
+            this.ys = ys;
+        }
+
+        @Override
+        protected DataSet build(int batchSize, NdArray[] xs, NdArray[] ys) {
+            return new TestArrayDataset(batchSize, xs, ys);
+        }
+
+        @Override
+        public void doPrepare() {
+        }
+    }
+}
@@ -166,6 +166,67 @@ public class StreamDatasetTest {
         assertEquals(1, batches.get(0).getSize());
     }
 
+    @Test
+    public void testBatchIteratorIsLazy() {
+        // 测试按需从数据源拉取：取第一个批次时只读取一个批次的数据项
+        int[] pulled = new int[1];
+        StreamDataset dataset = new StreamDataset(2);
+        dataset.setDataSource(() -> countingSource(10, pulled));
+
+        assertTrue(dataset.isStreaming());
+        Iterator<Batch> iterator = dataset.batchIterator();
+        Batch first = iterator.next();
+
+        assertEquals(2, first.getSize());
+        assertEquals(2, pulled[0]);
+
+        int batches = 1;
+        while (iterator.hasNext()) {
+            iterator.next();
+            batches++;
+        }
+        assertEquals(5, batches);
+        assertEquals(10, pulled[0]);
+    }
+
+    @Test
+    public void testShuffleWindowKeepsAllItems() {
+        // 测试有界洗牌窗口：最多预读窗口大小的数据项，且每个数据项恰好出现一次
+        int[] pulled = new int[1];
+        StreamDataset dataset = new StreamDataset(1, 3);
+        dataset.setDataSource(() -> countingSource(20, pulled));
+        dataset.shuffle();
+
+        Iterator<Batch> iterator = dataset.batchIterator();
+        iterator.next();
+        assertTrue("pulled=" + pulled[0], pulled[0] <= 4);
+
+        Set<Float> seen = new HashSet<>();
+        iterator = dataset.batchIterator();
+        while (iterator.hasNext()) {
+            seen.add(iterator.next().getX()[0].getNumber().floatValue());
+        }
+        assertEquals(20, seen.size());
+    }
+
+    private static Iterator<StreamDataset.DataItem> countingSource(int count, int[] pulled) {
+        return new Iterator<StreamDataset.DataItem>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public StreamDataset.DataItem next() {
+                pulled[0]++;
+                float value = next++;
+                return new StreamDataset.DataItem(NdArray.of(value), NdArray.of(value));
+            }
+        };
+    }
+
     /**
      * 测试用的 StreamDataset 实现
      */
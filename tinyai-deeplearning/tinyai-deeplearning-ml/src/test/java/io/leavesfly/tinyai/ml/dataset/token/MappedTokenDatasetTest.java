@@ -0,0 +1,112 @@
+package io.leavesfly.tinyai.ml.dataset.token;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 内存映射Token数据集测试
+ *
+ * 测试预分词Token文件的写入与读取，包括：
+ * - 文档与偏移索引往返一致，2字节和4字节两种存储
+ * - 顺序窗口与随机窗口的输入/目标错位
+ * - 文本转换与损坏文件检测
+ *
+ * @author TinyAI
+ */
+public class MappedTokenDatasetTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTripDocuments() throws IOException {
+        for (int vocabSize : new int[]{1000, 100000}) {
+            Path file = folder.newFile("tokens-" + vocabSize + ".bin").toPath();
+            int[] big = {vocabSize - 1, 0, 65535 % vocabSize};
+            try (TokenFileWriter writer = new TokenFileWriter(file, vocabSize)) {
+                writer.addDocument(new int[]{1, 2, 3});
+                writer.addDocument(new int[0]);
+                writer.addDocument(big);
+            }
+
+            MappedTokenDataset dataset = new MappedTokenDataset(file);
+            assertEquals(6, dataset.getTokenCount());
+            assertEquals(3, dataset.getDocumentCount());
+            assertArrayEquals(new int[]{1, 2, 3}, dataset.getDocument(0));
+            assertEquals(0, dataset.getDocumentLength(1));
+            assertEquals(3, dataset.getDocumentStart(2));
+            assertArrayEquals(big, dataset.getDocument(2));
+        }
+    }
+
+    @Test
+    public void testWindows() throws IOException {
+        Path file = folder.newFile("windows.bin").toPath();
+        int[] tokens = new int[21];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = i;
+        }
+        try (TokenFileWriter writer = new TokenFileWriter(file, 100)) {
+            writer.addDocument(tokens);
+        }
+        MappedTokenDataset dataset = new MappedTokenDataset(file);
+
+        int seqLen = 4;
+        assertEquals(5, dataset.getWindowCount(seqLen));
+        float[] inputs = new float[2 * seqLen];
+        float[] targets = new float[2 * seqLen];
+        dataset.fillWindow(dataset.windowStart(4, seqLen), seqLen, inputs, targets, 1);
+        assertArrayEquals(new float[]{16, 17, 18, 19}, Arrays.copyOfRange(inputs, 4, 8), 0f);
+        assertArrayEquals(new float[]{17, 18, 19, 20}, Arrays.copyOfRange(targets, 4, 8), 0f);
+
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            long start = dataset.randomWindowStart(random, seqLen);
+            assertTrue(start >= 0 && start + seqLen < dataset.getTokenCount());
+            dataset.fillWindow(start, seqLen, inputs, targets, 0);
+            for (int j = 0; j < seqLen; j++) {
+                assertEquals(inputs[j] + 1, targets[j], 0f);
+            }
+        }
+    }
+
+    @Test
+    public void testConvertTextFileAndRejectCorruptFile() throws IOException {
+        Path text = folder.newFile("corpus.txt").toPath();
+        Files.write(text, Arrays.asList("a bb", "", "ccc"), StandardCharsets.UTF_8);
+        Path file = folder.newFile("corpus.bin").toPath();
+        int documents = TokenFileWriter.convertTextFile(text, file, 100, line -> {
+            List<Integer> ids = new ArrayList<>();
+            for (String word : line.split(" ")) {
+                ids.add(word.length());
+            }
+            return ids;
+        });
+
+        assertEquals(2, documents);
+        MappedTokenDataset dataset = new MappedTokenDataset(file);
+        assertArrayEquals(new int[]{1, 2}, dataset.getDocument(0));
+        assertArrayEquals(new int[]{3}, dataset.getDocument(1));
+
+        Path corrupt = folder.newFile("corrupt.bin").toPath();
+        Files.write(corrupt, new byte[]{1, 2, 3});
+        try {
+            new MappedTokenDataset(corrupt);
+            fail("应该拒绝无效的Token文件");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("不是有效的Token文件"));
+        }
+    }
+}
@@ -3,6 +3,8 @@ package io.leavesfly.tinyai.ml.optimize;
 import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.ml.model.Model;
 import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.half.HalfFormat;
+import io.leavesfly.tinyai.ndarr.half.NdArrayHalf;
 import io.leavesfly.tinyai.nnet.v2.core.Module;
 import io.leavesfly.tinyai.nnet.v2.core.Parameter;
 import org.junit.Before;
@@ -171,6 +173,180 @@ public class OptimizerTest {
         assertNotEquals("第二次更新应该改变参数", valueAfterFirst, valueAfterSecond);
     }
 
+    @Test
+    public void testAdamMatchesReferenceFormulaInPlace() {
+        // 测试 Adam 原地更新与公式逐元素计算的结果一致，且参数数组被就地修改
+        float lr = 0.01f;
+        float beta1 = 0.9f;
+        float beta2 = 0.999f;
+        float eps = 1e-8f;
+        Adam adam = new Adam(testModel, lr, beta1, beta2, eps);
+
+        NdArray valueBefore = testParameter.getValue();
+        float[] expected = valueBefore.getArray().clone();
+        float[] grad = testParameter.getGrad().getArray();
+        float[] m = new float[expected.length];
+        float[] v = new float[expected.length];
+
+        for (int t = 1; t <= 3; t++) {
+            adam.update();
+            double lrT = lr * Math.sqrt(1 - Math.pow(beta2, t)) / (1 - Math.pow(beta1, t));
+            for (int i = 0; i < expected.length; i++) {
+                m[i] = beta1 * m[i] + (1 - beta1) * grad[i];
+                v[i] = beta2 * v[i] + (1 - beta2) * grad[i] * grad[i];
+                expected[i] -= (float) (lrT * m[i] / (Math.sqrt(v[i]) + eps));
+            }
+        }
+
+        assertSame("Adam应原地更新参数", valueBefore, testParameter.getValue());
+        assertArrayEquals(expected, testParameter.getValue().getArray(), 1e-5f);
+    }
+
+    @Test
+    public void testAdamWMatchesReferenceFormula() {
+        // 测试 AdamW 解耦权重衰减与公式逐元素计算的结果一致
+        float lr = 0.01f;
+        float wd = 0.1f;
+        AdamW adamW = new AdamW(testModel, lr, 0.9f, 0.999f, 1e-8f, wd);
+
+        float[] expected = testParameter.getValue().getArray().clone();
+        float[] grad = testParameter.getGrad().getArray();
+        float[] m = new float[expected.length];
+        float[] v = new float[expected.length];
+
+        for (int t = 1; t <= 3; t++) {
+            adamW.update();
+            double lrT = lr * Math.sqrt(1 - Math.pow(0.999, t)) / (1 - Math.pow(0.9, t));
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] *= 1 - lr * wd;
+                m[i] = 0.9f * m[i] + 0.1f * grad[i];
+                v[i] = 0.999f * v[i] + 0.001f * grad[i] * grad[i];
+                expected[i] -= (float) (lrT * m[i] / (Math.sqrt(v[i]) + 1e-8f));
+            }
+        }
+
+        assertArrayEquals(expected, testParameter.getValue().getArray(), 1e-5f);
+    }
+
+    @Test
+    public void testSGDMomentum() {
+        // 测试 SGD 动量：b = μ * b + g，θ = θ - lr * b
+        SGD sgd = new SGD(testModel, 0.1f, 0.9f);
+        float[] expected = testParameter.getValue().getArray().clone();
+        float[] grad = testParameter.getGrad().getArray();
+        float[] buffer = new float[expected.length];
+
+        for (int t = 0; t < 3; t++) {
+            sgd.update();
+            for (int i = 0; i < expected.length; i++) {
+                buffer[i] = 0.9f * buffer[i] + grad[i];
+                expected[i] -= 0.1f * buffer[i];
+            }
+        }
+
+        assertArrayEquals(expected, testParameter.getValue().getArray(), 1e-6f);
+    }
+
+    @Test
+    public void testStateKeptWhenParameterAdded() {
+        // 测试参数集合变化后，原有参数的动量状态被保留
+        TestModel referenceModel = new TestModel();
+        Parameter twin = new Parameter(NdArray.of(new float[][]{{1.0f, 2.0f}, {3.0f, 4.0f}}));
+        twin.setGrad(testParameter.getGrad());
+        referenceModel.addParameter("test_param", twin);
+
+        SGD sgd = new SGD(testModel, 0.1f, 0.5f);
+        SGD reference = new SGD(referenceModel, 0.1f, 0.5f);
+
+        sgd.update();
+        reference.update();
+
+        Parameter added = new Parameter(NdArray.of(new float[][]{{5.0f}}));
+        added.setGrad(NdArray.of(new float[][]{{1.0f}}));
+        testModel.addParameter("added", added);
+
+        sgd.update();
+        reference.update();
+
+        assertArrayEquals(twin.getValue().getArray(), testParameter.getValue().getArray(), 1e-6f);
+        assertEquals(5.0f - 0.1f, added.getValue().getMatrix()[0][0], 1e-6f);
+    }
+
+    @Test
+    public void testParallelUpdateMatchesReference() {
+        // 测试超过并行阈值时，跨参数分块更新与逐元素计算的结果一致
+        TestModel model = new TestModel();
+        int[] sizes = {3, FusedOptimizer.PARALLEL_THRESHOLD + 17, 1000};
+        Parameter[] params = new Parameter[sizes.length];
+        float[][] expected = new float[sizes.length][];
+        for (int p = 0; p < sizes.length; p++) {
+            float[] value = new float[sizes[p]];
+            float[] grad = new float[sizes[p]];
+            for (int i = 0; i < sizes[p]; i++) {
+                value[i] = (i % 13) * 0.1f;
+                grad[i] = ((i + p) % 7 - 3) * 0.05f;
+            }
+            params[p] = new Parameter(NdArray.of(value));
+            params[p].setGrad(NdArray.of(grad));
+            model.addParameter("p" + p, params[p]);
+            expected[p] = value.clone();
+        }
+
+        Adam adam = new Adam(model, 0.01f, 0.9f, 0.999f, 1e-8f);
+        adam.update();
+
+        double lrT = 0.01f * Math.sqrt(1 - 0.999) / (1 - 0.9);
+        for (int p = 0; p < sizes.length; p++) {
+            float[] grad = params[p].getGrad().getArray();
+            for (int i = 0; i < sizes[p]; i++) {
+                float m = 0.1f * grad[i];
+                float v = 0.001f * grad[i] * grad[i];
+                expected[p][i] -= (float) (lrT * m / (Math.sqrt(v) + 1e-8f));
+            }
+            assertArrayEquals(expected[p], params[p].getValue().getArray(), 1e-5f);
+        }
+    }
+
+    @Test
+    public void testFusedStateDictRoundTrip() {
+        // 测试扁平状态能通过 state_dict 导出并加载到新的优化器
+        Adam adam = new Adam(testModel, 0.01f, 0.9f, 0.999f, 1e-8f);
+        adam.update();
+        Map<String, Object> saved = adam.state_dict();
+
+        Adam restored = new Adam(testModel, 0.01f, 0.9f, 0.999f, 1e-8f);
+        restored.load_state_dict(saved);
+        assertEquals(1, restored.getStep());
+
+        float[] before = testParameter.getValue().getArray().clone();
+        adam.update();
+        float[] viaOriginal = testParameter.getValue().getArray().clone();
+        testParameter.getValue().assign(NdArray.of(before, testParameter.getValue().getShape()));
+        restored.update();
+
+        assertArrayEquals(viaOriginal, testParameter.getValue().getArray(), 1e-6f);
+    }
+
+    @Test
+    public void testHalfPrecisionParameterKeepsFloatMasterWeight() {
+        // 测试16位参数：更新作用在float主权重上，小于BF16精度的更新不会被舍入吞掉
+        Parameter halfParam = new Parameter(NdArrayHalf.of(NdArray.of(new float[][]{{1.0f, 2.0f}}), HalfFormat.BF16));
+        halfParam.setGrad(NdArray.of(new float[][]{{1.0f, -1.0f}}));
+        TestModel model = new TestModel();
+        model.addParameter("half", halfParam);
+        NdArray halfValue = halfParam.getValue();
+
+        SGD sgd = new SGD(model, 1e-3f);
+        for (int i = 0; i < 10; i++) {
+            sgd.update();
+        }
+
+        // 单步1e-3小于1附近BF16的间隔(2^-7)，没有主权重时参数不会变化
+        assertSame("参数仍为16位存储", halfValue, halfParam.getValue());
+        assertEquals(HalfFormat.BF16.round(0.99f), halfParam.getValue().getArray()[0], 0f);
+        assertEquals(HalfFormat.BF16.round(2.01f), halfParam.getValue().getArray()[1], 0f);
+    }
+
     @Test
     public void testOptimizerAbstractClass() {
         // 测试 Optimizer 抽象类的基本功能
@@ -0,0 +1,95 @@
+package io.leavesfly.tinyai.ml.training;
+
+import io.leavesfly.tinyai.func.Variable;
+import io.leavesfly.tinyai.ml.model.Model;
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.ndarr.half.HalfFormat;
+import io.leavesfly.tinyai.ndarr.half.NdArrayHalf;
+import io.leavesfly.tinyai.nnet.v2.core.Parameter;
+import io.leavesfly.tinyai.nnet.v2.layer.dnn.Linear;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * 动态损失缩放与16位参数训练测试
+ *
+ * @author TinyAI
+ */
+public class LossScalerTest {
+
+    @Test
+    public void testBackoffAndGrowth() {
+        LossScaler scaler = new LossScaler(1024f, 2f, 0.5f, 3);
+
+        scaler.update(false);
+        assertEquals(512f, scaler.getScale(), 0f);
+        assertEquals(1, scaler.getSkippedSteps());
+
+        scaler.update(true);
+        scaler.update(true);
+        assertEquals(512f, scaler.getScale(), 0f);
+        scaler.update(true);
+        assertEquals(1024f, scaler.getScale(), 0f);
+
+        // 溢出会重置连续成功计数
+        scaler.update(true);
+        scaler.update(false);
+        scaler.update(true);
+        scaler.update(true);
+        assertEquals(512f, scaler.getScale(), 0f);
+    }
+
+    @Test
+    public void testDetectsNonFiniteGradients() {
+        Model model = new Model("scaler", new Linear("fc", 3, 2));
+        LossScaler scaler = new LossScaler();
+        for (Parameter param : model.getAllParams().values()) {
+            param.setGrad(NdArray.like(param.getValue().getShape(), 0.5f));
+        }
+        assertTrue(scaler.gradientsFinite(model));
+
+        Parameter param = model.getAllParams().values().iterator().next();
+        float[] grad = param.getGrad().getArray().clone();
+        grad[0] = Float.POSITIVE_INFINITY;
+        param.setGrad(NdArray.of(grad, param.getValue().getShape()));
+        assertFalse(scaler.gradientsFinite(model));
+
+        grad[0] = Float.NaN;
+        param.setGrad(NdArray.of(grad, param.getValue().getShape()));
+        assertFalse(scaler.gradientsFinite(model));
+    }
+
+    @Test
+    public void testHalfPrecisionLinearGradients() {
+        Linear fp32 = new Linear("fc", 4, 3);
+        Linear half = new Linear("fc", 4, 3);
+        half.loadStateDict(fp32.stateDict());
+        half.toHalfPrecision(HalfFormat.BF16);
+        // float模型使用舍入后的权重，两者计算的是同一个函数
+        for (Map.Entry<String, Parameter> entry : half.namedParameters().entrySet()) {
+            assertTrue(entry.getValue().getValue() instanceof NdArrayHalf);
+            fp32.namedParameters().get(entry.getKey()).setValue(((NdArrayHalf) entry.getValue().getValue()).toCpu());
+        }
+
+        NdArray data = NdArray.likeRandom(-1f, 1f, Shape.of(5, 4), 7);
+        float scale = 1024f;
+        Variable expected = fp32.forward(new Variable(data));
+        expected.setGrad(NdArray.like(expected.getShape(), 1f));
+        expected.backward();
+        Variable actual = half.forward(new Variable(data));
+        actual.setGrad(NdArray.like(actual.getShape(), scale));
+        actual.backward();
+
+        assertArrayEquals(expected.getValue().getArray(), actual.getValue().getArray(), 1e-5f);
+        for (Map.Entry<String, Parameter> entry : half.namedParameters().entrySet()) {
+            NdArray grad = entry.getValue().getGrad();
+            assertFalse("梯度为float存储", grad instanceof NdArrayHalf);
+            assertArrayEquals(fp32.namedParameters().get(entry.getKey()).getGrad().mulNum(scale).getArray(),
+                    grad.getArray(), 1e-2f);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package io.leavesfly.tinyai.ml.training.parallel;
+
+import io.leavesfly.tinyai.func.Variable;
+import io.leavesfly.tinyai.ml.dataset.Batch;
+import io.leavesfly.tinyai.ml.loss.Loss;
+import io.leavesfly.tinyai.ml.loss.MeanSquaredLoss;
+import io.leavesfly.tinyai.ml.model.Model;
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.nnet.v2.core.Parameter;
+import io.leavesfly.tinyai.nnet.v2.layer.dnn.Linear;
+import io.leavesfly.tinyai.util.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * 数据并行引擎测试
+ *
+ * 测试常驻副本的数据并行训练，包括：
+ * - 副本直接共享主模型的权重数组，不持有自己的拷贝
+ * - 并行一步得到的梯度等于各batch梯度的平均
+ * - 主模型权重数组被整体替换后副本自动重新绑定
+ *
+ * @author TinyAI
+ */
+public class DataParallelEngineTest {
+
+    private boolean originalTrainMode;
+    private Model model;
+    private DataParallelEngine engine;
+
+    @Before
+    public void setUp() {
+        originalTrainMode = Config.train;
+        Config.train = true;
+        model = new Model("dp", new Linear("fc", 3, 2));
+        engine = new DataParallelEngine(model, sumSquaredLoss(), 2);
+    }
+
+    @After
+    public void tearDown() {
+        engine.close();
+        Config.train = originalTrainMode;
+    }
+
+    @Test
+    public void testReplicasShareMasterWeights() {
+        Map<String, Parameter> masterParams = model.getAllParams();
+        for (int i = 0; i < engine.getWorkerCount(); i++) {
+            Map<String, Parameter> replicaParams = engine.getReplica(i).getAllParams();
+            for (Map.Entry<String, Parameter> entry : masterParams.entrySet()) {
+                Parameter replicaParam = replicaParams.get(entry.getKey());
+                assertNotSame(entry.getValue(), replicaParam);
+                assertSame(entry.getValue().getValue(), replicaParam.getValue());
+            }
+        }
+    }
+
+    @Test
+    public void testStepAveragesGradients() throws InterruptedException {
+        Batch first = batch(1L);
+        Batch second = batch(2L);
+        Map<String, NdArray> expected = averageOf(gradientsOf(first), gradientsOf(second));
+
+        List<ParallelBatchProcessor.BatchProcessResult> results = engine.step(Arrays.asList(first, second));
+        assertEquals(2, results.size());
+        for (ParallelBatchProcessor.BatchProcessResult result : results) {
+            assertTrue(result.isSuccess());
+        }
+        for (Map.Entry<String, Parameter> entry : model.getAllParams().entrySet()) {
+            assertArrayEquals(entry.getKey(), expected.get(entry.getKey()).getArray(),
+                    entry.getValue().getGrad().getArray(), 1e-5f);
+        }
+    }
+
+    @Test
+    public void testStepRebindsReplacedWeights() throws InterruptedException {
+        Parameter masterParam = model.getAllParams().values().iterator().next();
+        NdArray replaced = NdArray.zeros(masterParam.getValue().getShape());
+        masterParam.setValue(replaced);
+
+        engine.step(Arrays.asList(batch(3L)));
+        String name = model.getAllParams().keySet().iterator().next();
+        assertSame(replaced, engine.getReplica(0).getAllParams().get(name).getValue());
+    }
+
+    private static Loss sumSquaredLoss() {
+        return new MeanSquaredLoss().setReduction(Loss.Reduction.SUM);
+    }
+
+    private static Batch batch(long seed) {
+        NdArray x = NdArray.likeRandomN(Shape.of(4, 3), seed);
+        NdArray y = NdArray.likeRandomN(Shape.of(4, 2), seed + 100);
+        NdArray[] xs = new NdArray[4];
+        NdArray[] ys = new NdArray[4];
+        for (int i = 0; i < 4; i++) {
+            xs[i] = NdArray.of(Arrays.copyOfRange(x.getArray(), i * 3, i * 3 + 3), Shape.of(1, 3));
+            ys[i] = NdArray.of(Arrays.copyOfRange(y.getArray(), i * 2, i * 2 + 2), Shape.of(1, 2));
+        }
+        return new Batch(xs, ys);
+    }
+
+    private Map<String, NdArray> gradientsOf(Batch batch) {
+        Model copy = ParallelTrainingUtils.deepCopyModel(model);
+        copy.clearGrads();
+        Variable x = new Variable(batch.toVariableX().getValue(), "x", false);
+        Variable y = new Variable(batch.toVariableY().getValue(), "y", false);
+        sumSquaredLoss().loss(y, copy.forward(x)).backward();
+        Map<String, NdArray> grads = new java.util.HashMap<>();
+        for (Map.Entry<String, Parameter> entry : copy.getAllParams().entrySet()) {
+            grads.put(entry.getKey(), entry.getValue().getGrad());
+        }
+        return grads;
+    }
+
+    private static Map<String, NdArray> averageOf(Map<String, NdArray> a, Map<String, NdArray> b) {
+        Map<String, NdArray> avg = new java.util.HashMap<>();
+        for (Map.Entry<String, NdArray> entry : a.entrySet()) {
+            avg.put(entry.getKey(), entry.getValue().add(b.get(entry.getKey())).divNum(2f));
+        }
+        return avg;
+    }
+}
@@ -0,0 +1,115 @@
+package io.leavesfly.tinyai.ml.training.parallel;
+
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.nnet.v2.core.Parameter;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * 梯度聚合器测试
+ *
+ * 测试按参数分片的梯度归约，包括：
+ * - 多线程并发提交后得到正确的平均梯度（分片跨越参数边界）
+ * - 重置后复用结果缓冲区，且可修改期望提交数
+ * - 所有线程都没有梯度的参数不出现在结果中，并记录统计指标
+ *
+ * @author TinyAI
+ */
+public class GradientAggregatorTest {
+
+    @Test
+    public void testConcurrentSubmissionsAverage() throws Exception {
+        int workers = 3;
+        List<Map<String, Parameter>> grads = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            grads.add(params(w));
+        }
+        GradientAggregator aggregator = new GradientAggregator(workers);
+        Map<String, NdArray> result = submitConcurrently(aggregator, grads);
+
+        assertTrue(aggregator.isReady());
+        assertEquals(workers, aggregator.getSubmissionCount());
+        for (String name : new String[]{"w", "b"}) {
+            float[] expected = new float[grads.get(0).get(name).getGrad().getArray().length];
+            for (Map<String, Parameter> g : grads) {
+                float[] data = g.get(name).getGrad().getArray();
+                for (int i = 0; i < expected.length; i++) {
+                    expected[i] += data[i] / workers;
+                }
+            }
+            assertArrayEquals(name, expected, result.get(name).getArray(), 1e-5f);
+        }
+    }
+
+    @Test
+    public void testResetReusesBuffers() throws Exception {
+        GradientAggregator aggregator = new GradientAggregator(2);
+        List<Map<String, Parameter>> grads = new ArrayList<>();
+        grads.add(params(0));
+        grads.add(params(1));
+        NdArray first = submitConcurrently(aggregator, grads).get("w");
+
+        aggregator.reset(1);
+        List<Map<String, Parameter>> single = new ArrayList<>();
+        single.add(params(5));
+        NdArray second = submitConcurrently(aggregator, single).get("w");
+
+        assertSame(first, second);
+        assertArrayEquals(single.get(0).get("w").getGrad().getArray(), second.getArray(), 1e-6f);
+        assertEquals(2, aggregator.getRoundCount());
+    }
+
+    @Test
+    public void testMissingGradientsAndMetrics() throws Exception {
+        GradientAggregator aggregator = new GradientAggregator(2);
+        List<Map<String, Parameter>> grads = new ArrayList<>();
+        for (int w = 0; w < 2; w++) {
+            Map<String, Parameter> p = params(w);
+            p.get("b").clearGrad();
+            grads.add(p);
+        }
+        Map<String, NdArray> result = submitConcurrently(aggregator, grads);
+
+        assertFalse(result.containsKey("b"));
+        assertTrue(result.containsKey("w"));
+        assertTrue(aggregator.getWaitTimeNanos() >= 0);
+        assertTrue(aggregator.getReduceTimeNanos() >= 0);
+        assertEquals(1, aggregator.getRoundCount());
+
+        aggregator.resetMetrics();
+        assertEquals(0, aggregator.getRoundCount());
+    }
+
+    private static Map<String, NdArray> submitConcurrently(GradientAggregator aggregator,
+                                                           List<Map<String, Parameter>> grads) throws Exception {
+        List<Thread> threads = new ArrayList<>();
+        for (Map<String, Parameter> g : grads) {
+            Thread t = new Thread(() -> aggregator.submitGradients(g));
+            threads.add(t);
+            t.start();
+        }
+        Map<String, NdArray> result = aggregator.getAverageGradients();
+        for (Thread t : threads) {
+            t.join();
+        }
+        return result;
+    }
+
+    private static Map<String, Parameter> params(long seed) {
+        Map<String, Parameter> params = new LinkedHashMap<>();
+        Parameter w = new Parameter(NdArray.zeros(Shape.of(4, 5)));
+        w.setGrad(NdArray.likeRandomN(Shape.of(4, 5), seed));
+        Parameter b = new Parameter(NdArray.zeros(Shape.of(1, 5)));
+        b.setGrad(NdArray.likeRandomN(Shape.of(1, 5), seed + 10));
+        params.put("w", w);
+        params.put("b", b);
+        return params;
+    }
+}
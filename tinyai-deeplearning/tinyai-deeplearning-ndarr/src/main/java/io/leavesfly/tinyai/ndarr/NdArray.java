@@ -241,6 +241,163 @@ public interface NdArray {
      * @throws ArithmeticException 当除数为0时抛出
      */
     NdArray divNum(Number number);
+
+    // =============================================================================
+    // 3.1,原地运算与输出缓冲
+    // 原地运算（方法名以i结尾）直接修改当前数组并返回自身；带out参数的版本将结果写入给定数组。
+    // 两者都不分配新数组，适用于优化器更新、梯度累加等热点路径。
+    // =============================================================================
+
+    /**
+     * 加法运算，结果写入给定的输出数组：out = this + other
+     *
+     * @param other 另一个操作数数组
+     * @param out   输出数组，可以是this或other（原地运算）
+     * @return 输出数组
+     * @throws IllegalArgumentException 当数组形状不一致时抛出
+     */
+    NdArray add(NdArray other, NdArray out);
+
+    /**
+     * 减法运算，结果写入给定的输出数组：out = this - other
+     *
+     * @param other 另一个操作数数组
+     * @param out   输出数组，可以是this或other（原地运算）
+     * @return 输出数组
+     * @throws IllegalArgumentException 当数组形状不一致时抛出
+     */
+    NdArray sub(NdArray other, NdArray out);
+
+    /**
+     * 乘法运算，结果写入给定的输出数组：out = this * other
+     *
+     * @param other 另一个操作数数组
+     * @param out   输出数组，可以是this或other（原地运算）
+     * @return 输出数组
+     * @throws IllegalArgumentException 当数组形状不一致时抛出
+     */
+    NdArray mul(NdArray other, NdArray out);
+
+    /**
+     * 除法运算，结果写入给定的输出数组：out = this / other
+     *
+     * @param other 另一个操作数数组
+     * @param out   输出数组，可以是this或other（原地运算）
+     * @return 输出数组
+     * @throws IllegalArgumentException 当数组形状不一致时抛出
+     * @throws ArithmeticException      当除数接近0时抛出
+     */
+    NdArray div(NdArray other, NdArray out);
+
+    /**
+     * 与标量相乘，结果写入给定的输出数组：out = this * number
+     *
+     * @param number 标量值
+     * @param out    输出数组，可以是this（原地运算）
+     * @return 输出数组
+     * @throws IllegalArgumentException 当输出数组形状不一致时抛出
+     */
+    NdArray mulNum(Number number, NdArray out);
+
+    /**
+     * 平方根运算，结果写入给定的输出数组
+     *
+     * @param out 输出数组，可以是this（原地运算）
+     * @return 输出数组
+     * @throws IllegalArgumentException 当输出数组形状不一致时抛出
+     */
+    NdArray sqrt(NdArray out);
+
+    /**
+     * 原地加法：this += other
+     *
+     * @param other 另一个操作数数组
+     * @return 当前数组
+     * @throws IllegalArgumentException 当两个数组形状不一致时抛出
+     */
+    NdArray addi(NdArray other);
+
+    /**
+     * 原地减法：this -= other
+     *
+     * @param other 另一个操作数数组
+     * @return 当前数组
+     * @throws IllegalArgumentException 当两个数组形状不一致时抛出
+     */
+    NdArray subi(NdArray other);
+
+    /**
+     * 原地乘法：this *= other
+     *
+     * @param other 另一个操作数数组
+     * @return 当前数组
+     * @throws IllegalArgumentException 当两个数组形状不一致时抛出
+     */
+    NdArray muli(NdArray other);
+
+    /**
+     * 原地除法：this /= other
+     *
+     * @param other 另一个操作数数组
+     * @return 当前数组
+     * @throws IllegalArgumentException 当两个数组形状不一致时抛出
+     * @throws ArithmeticException      当除数接近0时抛出
+     */
+    NdArray divi(NdArray other);
+
+    /**
+     * 原地与标量相加：this += number
+     *
+     * @param number 标量值
+     * @return 当前数组
+     */
+    NdArray addNumi(Number number);
+
+    /**
+     * 原地与标量相乘：this *= number
+     *
+     * @param number 标量值
+     * @return 当前数组
+     */
+    NdArray mulNumi(Number number);
+
+    /**
+     * 原地与标量相除：this /= number
+     *
+     * @param number 标量值
+     * @return 当前数组
+     * @throws ArithmeticException 当除数为0时抛出
+     */
+    NdArray divNumi(Number number);
+
+    /**
+     * 原地缩放累加：this += alpha * x
+     *
+     * <p>一次遍历完成乘加，常用于参数更新（alpha为负学习率）和梯度累加</p>
+     *
+     * @param alpha 缩放系数
+     * @param x     累加项
+     * @return 当前数组
+     * @throws IllegalArgumentException 当两个数组形状不一致时抛出
+     */
+    NdArray axpy(Number alpha, NdArray x);
+
+    /**
+     * 原地填充：将所有元素设为同一个值
+     *
+     * @param value 填充值
+     * @return 当前数组
+     */
+    NdArray fill(Number value);
+
+    /**
+     * 原地赋值：将另一个数组的数据拷贝到当前数组
+     *
+     * @param other 源数组
+     * @return 当前数组
+     * @throws IllegalArgumentException 当两个数组形状不一致时抛出
+     */
+    NdArray assign(NdArray other);
     // =============================================================================
     // 4,逻辑运算
     // =============================================================================
@@ -554,6 +711,37 @@ public interface NdArray {
      */
     NdArray dot(NdArray other);
 
+    /**
+     * 带转置标记的矩阵乘法：op(this) × op(other)
+     *
+     * <p>转置只作用于最后两个维度，实现可以直接按转置后的布局读取数据，而不必先生成转置数组。
+     * {@code a.dot(b, false, true)} 与 {@code a.dot(b.transpose())} 结果相同。</p>
+     *
+     * @param other           另一个矩阵
+     * @param transposeSelf   是否转置当前矩阵
+     * @param transposeOther  是否转置另一个矩阵
+     * @return 矩阵乘法结果
+     * @throws IllegalArgumentException 当数组不是矩阵或维度不匹配时抛出
+     */
+    NdArray dot(NdArray other, boolean transposeSelf, boolean transposeOther);
+
+    /**
+     * 操作数重排维度后的批量矩阵乘法：transpose(this, selfOrder) × transpose(other, otherOrder)，
+     * 乘积再按 resultOrder 重排维度
+     *
+     * <p>重排只改变读写数据时的步长，实现可以不生成任何中间的转置数组。例如多头注意力中，
+     * 投影输出 reshape 为 (batch, seq, heads, dim) 后以 {0, 2, 1, 3} 直接作为 (batch, heads, seq, dim) 参与计算，
+     * 乘积以 resultOrder = {0, 2, 1, 3} 直接写成 (batch, seq, heads, dim)。</p>
+     *
+     * @param other       另一个数组
+     * @param selfOrder   当前数组的维度顺序，null表示不重排
+     * @param otherOrder  另一个数组的维度顺序，null表示不重排
+     * @param resultOrder 乘积的维度顺序，null表示不重排
+     * @return 矩阵乘法结果
+     * @throws IllegalArgumentException 当维度顺序无效或维度不匹配时抛出
+     */
+    NdArray dot(NdArray other, int[] selfOrder, int[] otherOrder, int[] resultOrder);
+
     /**
      * 获取数组的子集（切片操作）
      *
@@ -15,6 +15,7 @@ import io.leavesfly.tinyai.ndarr.cpu.transformations.TransformationOperations;
 import io.leavesfly.tinyai.ndarr.cpu.utils.ArrayConverter;
 import io.leavesfly.tinyai.ndarr.cpu.utils.ArrayFormatter;
 import io.leavesfly.tinyai.ndarr.cpu.utils.ArrayValidator;
+import io.leavesfly.tinyai.ndarr.half.NdArrayHalf;
 
 import java.io.Serializable;
 import java.util.Arrays;
@@ -132,6 +133,21 @@ public class NdArrayCpu implements NdArray, Serializable {
         this.buffer = new float[shape.size()];
     }
 
+    /**
+     * 将任意后端的NdArray转换为NdArrayCpu，用于接收其他存储后端（如堆外数组）作为运算的操作数
+     *
+     * @param array 数组
+     * @return array本身（已是NdArrayCpu时），否则为拷贝到堆内的新数组
+     */
+    public static NdArrayCpu asCpu(NdArray array) {
+        if (array instanceof NdArrayCpu) {
+            return (NdArrayCpu) array;
+        }
+        Shape shape = array.getShape();
+        ShapeCpu shapeCpu = shape instanceof ShapeCpu ? (ShapeCpu) shape : ShapeCpu.of(shape.getShapeDims());
+        return new NdArrayCpu(array.getArray(), shapeCpu);
+    }
+
     // 优化的初始化方法
     private void initFromArray(float[][] data) {
         ArrayValidator.validateArrayDimensions(data);
@@ -282,7 +298,7 @@ public class NdArrayCpu implements NdArray, Serializable {
      * @throws IllegalArgumentException 当两个数组形状不一致时抛出
      */
     public NdArray add(NdArray other) {
-        return ArithmeticOperations.add(this, (NdArrayCpu) other);
+        return ArithmeticOperations.add(this, asCpu(other));
     }
 
     /**
@@ -293,7 +309,7 @@ public class NdArrayCpu implements NdArray, Serializable {
      * @throws IllegalArgumentException 当两个数组形状不一致时抛出
      */
     public NdArrayCpu sub(NdArray other) {
-        return ArithmeticOperations.sub(this, (NdArrayCpu) other);
+        return ArithmeticOperations.sub(this, asCpu(other));
     }
 
     /**
@@ -304,7 +320,7 @@ public class NdArrayCpu implements NdArray, Serializable {
      * @throws IllegalArgumentException 当两个数组形状不一致时抛出
      */
     public NdArrayCpu mul(NdArray other) {
-        return ArithmeticOperations.mul(this, (NdArrayCpu) other);
+        return ArithmeticOperations.mul(this, asCpu(other));
     }
 
     /**
@@ -327,7 +343,7 @@ public class NdArrayCpu implements NdArray, Serializable {
      */
     @Override
     public NdArray div(NdArray other) {
-        return ArithmeticOperations.div(this, (NdArrayCpu) other);
+        return ArithmeticOperations.div(this, asCpu(other));
     }
 
     /**
@@ -341,6 +357,207 @@ public class NdArrayCpu implements NdArray, Serializable {
         return ArithmeticOperations.divNum(this, number);
     }
 
+    // =============================================================================
+    // 原地运算与输出缓冲 - 不分配新数组
+    // =============================================================================
+
+    /**
+     * 加法运算，结果写入给定的输出数组：out = this + other
+     *
+     * @param other 另一个操作数数组
+     * @param out   输出数组，可以是this或other（原地运算）
+     * @return 输出数组
+     * @throws IllegalArgumentException 当数组形状不一致时抛出
+     */
+    @Override
+    public NdArrayCpu add(NdArray other, NdArray out) {
+        return ArithmeticOperations.add(this, asCpu(other), (NdArrayCpu) out);
+    }
+
+    /**
+     * 减法运算，结果写入给定的输出数组：out = this - other
+     *
+     * @param other 另一个操作数数组
+     * @param out   输出数组，可以是this或other（原地运算）
+     * @return 输出数组
+     * @throws IllegalArgumentException 当数组形状不一致时抛出
+     */
+    @Override
+    public NdArrayCpu sub(NdArray other, NdArray out) {
+        return ArithmeticOperations.sub(this, asCpu(other), (NdArrayCpu) out);
+    }
+
+    /**
+     * 乘法运算，结果写入给定的输出数组：out = this * other
+     *
+     * @param other 另一个操作数数组
+     * @param out   输出数组，可以是this或other（原地运算）
+     * @return 输出数组
+     * @throws IllegalArgumentException 当数组形状不一致时抛出
+     */
+    @Override
+    public NdArrayCpu mul(NdArray other, NdArray out) {
+        return ArithmeticOperations.mul(this, asCpu(other), (NdArrayCpu) out);
+    }
+
+    /**
+     * 除法运算，结果写入给定的输出数组：out = this / other
+     *
+     * @param other 另一个操作数数组
+     * @param out   输出数组，可以是this或other（原地运算）
+     * @return 输出数组
+     * @throws IllegalArgumentException 当数组形状不一致时抛出
+     * @throws ArithmeticException      当除数接近0时抛出
+     */
+    @Override
+    public NdArrayCpu div(NdArray other, NdArray out) {
+        return ArithmeticOperations.div(this, asCpu(other), (NdArrayCpu) out);
+    }
+
+    /**
+     * 与标量相乘，结果写入给定的输出数组：out = this * number
+     *
+     * @param number 标量值
+     * @param out    输出数组，可以是this（原地运算）
+     * @return 输出数组
+     * @throws IllegalArgumentException 当输出数组形状不一致时抛出
+     */
+    @Override
+    public NdArrayCpu mulNum(Number number, NdArray out) {
+        return ArithmeticOperations.mulNum(this, number, (NdArrayCpu) out);
+    }
+
+    /**
+     * 平方根运算，结果写入给定的输出数组
+     *
+     * @param out 输出数组，可以是this（原地运算）
+     * @return 输出数组
+     * @throws IllegalArgumentException 当输出数组形状不一致时抛出
+     */
+    @Override
+    public NdArrayCpu sqrt(NdArray out) {
+        return MathFunctions.sqrt(this, (NdArrayCpu) out);
+    }
+
+    /**
+     * 原地加法：this += other
+     *
+     * @param other 另一个操作数数组
+     * @return 当前数组
+     * @throws IllegalArgumentException 当两个数组形状不一致时抛出
+     */
+    @Override
+    public NdArrayCpu addi(NdArray other) {
+        return ArithmeticOperations.add(this, asCpu(other), this);
+    }
+
+    /**
+     * 原地减法：this -= other
+     *
+     * @param other 另一个操作数数组
+     * @return 当前数组
+     * @throws IllegalArgumentException 当两个数组形状不一致时抛出
+     */
+    @Override
+    public NdArrayCpu subi(NdArray other) {
+        return ArithmeticOperations.sub(this, asCpu(other), this);
+    }
+
+    /**
+     * 原地乘法：this *= other
+     *
+     * @param other 另一个操作数数组
+     * @return 当前数组
+     * @throws IllegalArgumentException 当两个数组形状不一致时抛出
+     */
+    @Override
+    public NdArrayCpu muli(NdArray other) {
+        return ArithmeticOperations.mul(this, asCpu(other), this);
+    }
+
+    /**
+     * 原地除法：this /= other
+     *
+     * @param other 另一个操作数数组
+     * @return 当前数组
+     * @throws IllegalArgumentException 当两个数组形状不一致时抛出
+     * @throws ArithmeticException      当除数接近0时抛出
+     */
+    @Override
+    public NdArrayCpu divi(NdArray other) {
+        return ArithmeticOperations.div(this, asCpu(other), this);
+    }
+
+    /**
+     * 原地与标量相加：this += number
+     *
+     * @param number 标量值
+     * @return 当前数组
+     */
+    @Override
+    public NdArrayCpu addNumi(Number number) {
+        return ArithmeticOperations.addNum(this, number, this);
+    }
+
+    /**
+     * 原地与标量相乘：this *= number
+     *
+     * @param number 标量值
+     * @return 当前数组
+     */
+    @Override
+    public NdArrayCpu mulNumi(Number number) {
+        return ArithmeticOperations.mulNum(this, number, this);
+    }
+
+    /**
+     * 原地与标量相除：this /= number
+     *
+     * @param number 标量值
+     * @return 当前数组
+     * @throws ArithmeticException 当除数为0时抛出
+     */
+    @Override
+    public NdArrayCpu divNumi(Number number) {
+        return ArithmeticOperations.divNum(this, number, this);
+    }
+
+    /**
+     * 原地缩放累加：this += alpha * x
+     *
+     * @param alpha 缩放系数
+     * @param x     累加项
+     * @return 当前数组
+     * @throws IllegalArgumentException 当两个数组形状不一致时抛出
+     */
+    @Override
+    public NdArrayCpu axpy(Number alpha, NdArray x) {
+        return ArithmeticOperations.axpy(this, alpha, asCpu(x));
+    }
+
+    /**
+     * 原地填充：将所有元素设为同一个值
+     *
+     * @param value 填充值
+     * @return 当前数组
+     */
+    @Override
+    public NdArrayCpu fill(Number value) {
+        return ArithmeticOperations.fill(this, value);
+    }
+
+    /**
+     * 原地赋值：将另一个数组的数据拷贝到当前数组
+     *
+     * @param other 源数组
+     * @return 当前数组
+     * @throws IllegalArgumentException 当两个数组形状不一致时抛出
+     */
+    @Override
+    public NdArrayCpu assign(NdArray other) {
+        return ArithmeticOperations.assign(this, asCpu(other));
+    }
+
     // =============================================================================
     // 逻辑运算 - 重构后的统一模式
     // =============================================================================
@@ -372,7 +589,7 @@ public class NdArrayCpu implements NdArray, Serializable {
      * @throws IllegalArgumentException 当两个数组形状不一致时抛出
      */
     public NdArrayCpu eq(NdArray other) {
-        return LogicalOperations.eq(this, (NdArrayCpu) other);
+        return LogicalOperations.eq(this, asCpu(other));
     }
 
     /**
@@ -383,7 +600,7 @@ public class NdArrayCpu implements NdArray, Serializable {
      * @throws IllegalArgumentException 当两个数组形状不一致时抛出
      */
     public NdArrayCpu gt(NdArray other) {
-        return LogicalOperations.gt(this, (NdArrayCpu) other);
+        return LogicalOperations.gt(this, asCpu(other));
     }
 
     /**
@@ -394,7 +611,7 @@ public class NdArrayCpu implements NdArray, Serializable {
      * @throws IllegalArgumentException 当两个数组形状不一致时抛出
      */
     public NdArrayCpu lt(NdArray other) {
-        return LogicalOperations.lt(this, (NdArrayCpu) other);
+        return LogicalOperations.lt(this, asCpu(other));
     }
 
     /**
@@ -405,7 +622,7 @@ public class NdArrayCpu implements NdArray, Serializable {
      * @throws IllegalArgumentException 当两个数组形状不一致时抛出
      */
     public boolean isLar(NdArray _other) {
-        return LogicalOperations.isLar(this, (NdArrayCpu) _other);
+        return LogicalOperations.isLar(this, asCpu(_other));
     }
 
     // =============================================================================
@@ -575,6 +792,18 @@ public class NdArrayCpu implements NdArray, Serializable {
         return TransformationOperations.transpose(this, order);
     }
 
+    /**
+     * 创建与当前数组共享数据的步长视图
+     *
+     * <p>视图上的转置、维度重排、切片为O(1)操作，可直接交给 {@link MatrixOperations#dot(StridedView, StridedView)}
+     * 等内核按步长读取，需要连续数组时再调用 {@link StridedView#compact()}。</p>
+     *
+     * @return 步长视图
+     */
+    public StridedView view() {
+        return StridedView.of(this);
+    }
+
     /**
      * 数组变形操作，改变数组形状但保持元素总数不变
      *
@@ -712,7 +941,47 @@ public class NdArrayCpu implements NdArray, Serializable {
      * @throws IllegalArgumentException 当数组不是矩阵或维度不匹配时抛出
      */
     public NdArrayCpu dot(NdArray _other) {
-        return MatrixOperations.dot(this, (NdArrayCpu) _other);
+        if (_other instanceof NdArrayHalf) {
+            return ((NdArrayHalf) _other).multiplyLeft(this, false, false);
+        }
+        return MatrixOperations.dot(this, asCpu(_other));
+    }
+
+    /**
+     * 带转置标记的矩阵乘法，转置通过视图步长完成，不生成中间数组
+     *
+     * @param _other         另一个矩阵
+     * @param transposeSelf  是否转置当前矩阵的最后两个维度
+     * @param transposeOther 是否转置另一个矩阵的最后两个维度
+     * @return 矩阵乘法结果
+     * @throws IllegalArgumentException 当数组不是矩阵或维度不匹配时抛出
+     */
+    @Override
+    public NdArrayCpu dot(NdArray _other, boolean transposeSelf, boolean transposeOther) {
+        if (_other instanceof NdArrayHalf) {
+            return ((NdArrayHalf) _other).multiplyLeft(this, transposeSelf, transposeOther);
+        }
+        return MatrixOperations.dot(this, asCpu(_other), transposeSelf, transposeOther);
+    }
+
+    /**
+     * 操作数重排维度后的批量矩阵乘法，重排通过视图步长完成，乘积直接按 resultOrder 的布局写入
+     *
+     * @param _other      另一个数组
+     * @param selfOrder   当前数组的维度顺序，null表示不重排
+     * @param otherOrder  另一个数组的维度顺序，null表示不重排
+     * @param resultOrder 乘积的维度顺序，null表示不重排
+     * @return 矩阵乘法结果
+     * @throws IllegalArgumentException 当维度顺序无效或维度不匹配时抛出
+     */
+    @Override
+    public NdArrayCpu dot(NdArray _other, int[] selfOrder, int[] otherOrder, int[] resultOrder) {
+        StridedView left = selfOrder == null ? view() : view().permute(selfOrder);
+        StridedView right = asCpu(_other).view();
+        if (otherOrder != null) {
+            right = right.permute(otherOrder);
+        }
+        return MatrixOperations.dot(left, right, resultOrder);
     }
 
     /**
@@ -0,0 +1,371 @@
+package io.leavesfly.tinyai.ndarr.cpu;
+
+import io.leavesfly.tinyai.ndarr.cpu.utils.ArrayValidator;
+
+import java.util.Arrays;
+
+/**
+ * 基于步长的N维数组视图
+ *
+ * <p>视图由"共享的一维数据 + 起始偏移 + 各维度大小 + 各维度步长"描述，元素 (i0, i1, ...) 位于
+ * {@code data[offset + i0*strides[0] + i1*strides[1] + ...]}。转置、维度重排、切片以及连续视图上的重塑
+ * 只修改这些元数据，时间复杂度为O(1)，不复制数据。</p>
+ *
+ * <p>由于 {@link NdArrayCpu#buffer} 对外约定为行主序的连续存储，视图不会替换NdArrayCpu本身：
+ * 需要NdArrayCpu时通过 {@link #compact()} 一次性拷贝为连续数组；矩阵乘法等内核可直接消费视图的步长，
+ * 从而省去中间转置数组的分配与拷贝。</p>
+ *
+ * <p>该类是不可变的，但与源数组共享数据，源数组的修改会反映到视图上。</p>
+ */
+public final class StridedView {
+
+    /**
+     * 转置拷贝的分块边长，32×32个float约4KB，读写两侧都能留在L1缓存中
+     */
+    private static final int TILE = 32;
+
+    private final float[] data;
+    private final int offset;
+    private final int[] dims;
+    private final int[] strides;
+
+    private StridedView(float[] data, int offset, int[] dims, int[] strides) {
+        this.data = data;
+        this.offset = offset;
+        this.dims = dims;
+        this.strides = strides;
+    }
+
+    /**
+     * 创建覆盖整个数组的连续视图
+     *
+     * @param array 源数组
+     * @return 与源数组共享数据的视图
+     */
+    public static StridedView of(NdArrayCpu array) {
+        return new StridedView(array.buffer, 0, array.shape.dimension.clone(), array.shape.multipliers.clone());
+    }
+
+    /**
+     * 获取共享的一维数据
+     *
+     * @return 底层数据数组
+     */
+    public float[] data() {
+        return data;
+    }
+
+    /**
+     * 获取视图第一个元素在底层数据中的偏移
+     *
+     * @return 起始偏移
+     */
+    public int offset() {
+        return offset;
+    }
+
+    /**
+     * 获取维度数量
+     *
+     * @return 维度数量
+     */
+    public int getDimNum() {
+        return dims.length;
+    }
+
+    /**
+     * 获取指定维度的大小
+     *
+     * @param axis 维度索引
+     * @return 维度大小
+     */
+    public int getDimension(int axis) {
+        return dims[axis];
+    }
+
+    /**
+     * 获取指定维度的步长
+     *
+     * @param axis 维度索引
+     * @return 该维度前进一个单位时底层数据的位移
+     */
+    public int getStride(int axis) {
+        return strides[axis];
+    }
+
+    /**
+     * 获取视图的形状
+     *
+     * @return 形状
+     */
+    public ShapeCpu getShape() {
+        return ShapeCpu.of(dims);
+    }
+
+    /**
+     * 元素总数
+     *
+     * @return 元素总数
+     */
+    public int size() {
+        int size = 1;
+        for (int dim : dims) {
+            size *= dim;
+        }
+        return size;
+    }
+
+    /**
+     * 判断视图是否为行主序的连续存储
+     *
+     * @return 连续时返回true
+     */
+    public boolean isContiguous() {
+        int expected = 1;
+        for (int i = dims.length - 1; i >= 0; i--) {
+            if (dims[i] != 1 && strides[i] != expected) {
+                return false;
+            }
+            expected *= dims[i];
+        }
+        return true;
+    }
+
+    /**
+     * 读取指定位置的元素
+     *
+     * @param indices 多维索引
+     * @return 元素值
+     */
+    public float get(int... indices) {
+        if (indices.length != dims.length) {
+            throw new IllegalArgumentException(String.format("索引维度(%d)与视图维度(%d)不匹配", indices.length, dims.length));
+        }
+        int position = offset;
+        for (int i = 0; i < indices.length; i++) {
+            if (indices[i] < 0 || indices[i] >= dims[i]) {
+                throw new IndexOutOfBoundsException(String.format("索引[%d]=%d超出范围[0,%d)", i, indices[i], dims[i]));
+            }
+            position += indices[i] * strides[i];
+        }
+        return data[position];
+    }
+
+    // =============================================================================
+    // O(1) 视图变换
+    // =============================================================================
+
+    /**
+     * 按指定顺序重排维度
+     *
+     * @param order 新的维度顺序
+     * @return 重排后的视图
+     */
+    public StridedView permute(int... order) {
+        ArrayValidator.validateTransposeOrder(order, dims.length);
+        int[] newDims = new int[order.length];
+        int[] newStrides = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            newDims[i] = dims[order[i]];
+            newStrides[i] = strides[order[i]];
+        }
+        return new StridedView(data, offset, newDims, newStrides);
+    }
+
+    /**
+     * 交换最后两个维度
+     *
+     * @return 转置后的视图
+     */
+    public StridedView transpose() {
+        int dimNum = dims.length;
+        if (dimNum < 2) {
+            throw new IllegalArgumentException("转置操作至少需要二维数组");
+        }
+        int[] newDims = dims.clone();
+        int[] newStrides = strides.clone();
+        newDims[dimNum - 2] = dims[dimNum - 1];
+        newDims[dimNum - 1] = dims[dimNum - 2];
+        newStrides[dimNum - 2] = strides[dimNum - 1];
+        newStrides[dimNum - 1] = strides[dimNum - 2];
+        return new StridedView(data, offset, newDims, newStrides);
+    }
+
+    /**
+     * 沿指定维度截取 [start, end) 范围
+     *
+     * @param axis  维度索引
+     * @param start 起始位置（包含）
+     * @param end   结束位置（不包含）
+     * @return 切片后的视图
+     */
+    public StridedView slice(int axis, int start, int end) {
+        if (axis < 0 || axis >= dims.length) {
+            throw new IndexOutOfBoundsException(String.format("维度索引%d超出范围[0,%d)", axis, dims.length));
+        }
+        if (start < 0 || end > dims[axis] || start > end) {
+            throw new IndexOutOfBoundsException(String.format("切片范围[%d,%d)超出维度大小%d", start, end, dims[axis]));
+        }
+        int[] newDims = dims.clone();
+        newDims[axis] = end - start;
+        return new StridedView(data, offset + start * strides[axis], newDims, strides.clone());
+    }
+
+    /**
+     * 重塑视图形状
+     *
+     * <p>连续视图直接改写元数据；非连续视图无法用单组步长表示新形状，先拷贝为连续数组。</p>
+     *
+     * @param newDims 新的维度大小
+     * @return 重塑后的视图
+     */
+    public StridedView reshape(int... newDims) {
+        ShapeCpu newShape = ShapeCpu.of(newDims);
+        if (newShape.size() != size()) {
+            throw new IllegalArgumentException(String.format("形状大小不匹配：%d vs %d", size(), newShape.size()));
+        }
+        if (isContiguous()) {
+            return new StridedView(data, offset, newShape.dimension.clone(), newShape.multipliers.clone());
+        }
+        return of(compact()).reshape(newDims);
+    }
+
+    // =============================================================================
+    // 拷贝为连续数组
+    // =============================================================================
+
+    /**
+     * 将视图拷贝为行主序连续存储的新数组
+     *
+     * <p>相邻且可合并的维度先合并，以拉长最内层循环：最内层步长为1时逐段 {@link System#arraycopy}，
+     * 最后两维互为转置时按 {@value #TILE}×{@value #TILE} 分块拷贝以保持读写的缓存局部性，
+     * 其余情况按步长逐元素拷贝。外层索引以计数器递增的方式推进，不做除法和取模。</p>
+     *
+     * @return 新的连续数组，不与视图共享数据
+     */
+    public NdArrayCpu compact() {
+        NdArrayCpu result = new NdArrayCpu(ShapeCpu.of(dims));
+        copyTo(result.buffer, 0);
+        return result;
+    }
+
+    /**
+     * 将视图按行主序拷贝到目标数组的指定位置
+     *
+     * @param dst       目标数组
+     * @param dstOffset 目标起始位置
+     */
+    public void copyTo(float[] dst, int dstOffset) {
+        int total = size();
+        if (total == 0) {
+            return;
+        }
+
+        int[][] merged = coalesce();
+        int[] mDims = merged[0];
+        int[] mStrides = merged[1];
+        int rank = mDims.length;
+
+        if (rank == 1) {
+            copyLine(data, offset, mStrides[0], dst, dstOffset, mDims[0]);
+            return;
+        }
+
+        int rows = mDims[rank - 2];
+        int cols = mDims[rank - 1];
+        int rowStride = mStrides[rank - 2];
+        int colStride = mStrides[rank - 1];
+        boolean transposed = colStride != 1 && rowStride == 1;
+
+        // 外层维度（最后两维之外）的计数器
+        int outerRank = rank - 2;
+        int[] counter = new int[outerRank];
+        int src = offset;
+        int dstPos = dstOffset;
+        int blockSize = rows * cols;
+        int blocks = total / blockSize;
+
+        for (int block = 0; block < blocks; block++) {
+            if (transposed) {
+                copyTransposedBlock(src, colStride, dst, dstPos, rows, cols);
+            } else {
+                for (int i = 0; i < rows; i++) {
+                    copyLine(data, src + i * rowStride, colStride, dst, dstPos + i * cols, cols);
+                }
+            }
+            dstPos += blockSize;
+
+            // 推进外层计数器
+            for (int axis = outerRank - 1; axis >= 0; axis--) {
+                src += mStrides[axis];
+                if (++counter[axis] < mDims[axis]) {
+                    break;
+                }
+                src -= mStrides[axis] * mDims[axis];
+                counter[axis] = 0;
+            }
+        }
+    }
+
+    /**
+     * 分块拷贝一个"行步长为1"的矩阵块：源数据按列连续，目标按行连续
+     */
+    private void copyTransposedBlock(int src, int colStride, float[] dst, int dstPos, int rows, int cols) {
+        for (int i0 = 0; i0 < rows; i0 += TILE) {
+            int iEnd = Math.min(rows, i0 + TILE);
+            for (int j0 = 0; j0 < cols; j0 += TILE) {
+                int jEnd = Math.min(cols, j0 + TILE);
+                for (int j = j0; j < jEnd; j++) {
+                    int srcCol = src + j * colStride;
+                    for (int i = i0; i < iEnd; i++) {
+                        dst[dstPos + i * cols + j] = data[srcCol + i];
+                    }
+                }
+            }
+        }
+    }
+
+    private static void copyLine(float[] src, int srcPos, int stride, float[] dst, int dstPos, int length) {
+        if (stride == 1) {
+            System.arraycopy(src, srcPos, dst, dstPos, length);
+            return;
+        }
+        for (int j = 0; j < length; j++) {
+            dst[dstPos + j] = src[srcPos + j * stride];
+        }
+    }
+
+    /**
+     * 去掉大小为1的维度，并合并满足 strides[i] == strides[i+1] * dims[i+1] 的相邻维度
+     *
+     * @return {合并后的维度, 合并后的步长}，至少包含一个维度
+     */
+    private int[][] coalesce() {
+        int[] mDims = new int[dims.length];
+        int[] mStrides = new int[dims.length];
+        int rank = 0;
+        for (int i = 0; i < dims.length; i++) {
+            if (dims[i] == 1) {
+                continue;
+            }
+            if (rank > 0 && mStrides[rank - 1] == strides[i] * dims[i]) {
+                mDims[rank - 1] *= dims[i];
+                mStrides[rank - 1] = strides[i];
+            } else {
+                mDims[rank] = dims[i];
+                mStrides[rank] = strides[i];
+                rank++;
+            }
+        }
+        if (rank == 0) {
+            return new int[][]{{1}, {1}};
+        }
+        return new int[][]{Arrays.copyOf(mDims, rank), Arrays.copyOf(mStrides, rank)};
+    }
+
+    @Override
+    public String toString() {
+        return "StridedView{offset=" + offset + ", dims=" + Arrays.toString(dims)
+                + ", strides=" + Arrays.toString(strides) + '}';
+    }
+}
@@ -2,16 +2,23 @@ package io.leavesfly.tinyai.ndarr.cpu.aggregations;
 
 import io.leavesfly.tinyai.ndarr.cpu.NdArrayCpu;
 import io.leavesfly.tinyai.ndarr.cpu.ShapeCpu;
+import io.leavesfly.tinyai.ndarr.cpu.simd.FloatKernels;
+import io.leavesfly.tinyai.ndarr.cpu.simd.KernelBackend;
 import io.leavesfly.tinyai.ndarr.cpu.utils.ArrayValidator;
-import io.leavesfly.tinyai.ndarr.cpu.utils.IndexConverter;
+
+import java.util.Arrays;
 
 /**
  * 聚合操作类
  * <p>提供各种聚合运算功能，包括求和、均值、方差、最大值、最小值等</p>
  * <p>经过性能优化，直接访问底层buffer，避免不必要的索引转换和方法调用开销</p>
+ * <p>沿轴归约将数组视为 (outer, axis, inner) 三段：inner为1时逐行调用计算内核归约，
+ * 否则按行向量逐行累积，两种情况都是连续内存访问</p>
  */
 public class ReductionOperations {
 
+    private static final FloatKernels KERNELS = KernelBackend.get();
+
     /**
      * 元素累和运算，计算数组所有元素的总和
      *
@@ -19,12 +26,7 @@ public class ReductionOperations {
      * @return 所有元素的总和（标量）
      */
     public static NdArrayCpu sum(NdArrayCpu array) {
-        float sum = 0f;
-        float[] buffer = array.buffer;
-        for (int i = 0; i < buffer.length; i++) {
-            sum += buffer[i];
-        }
-        return new NdArrayCpu(sum);
+        return new NdArrayCpu(KERNELS.sum(array.buffer, 0, array.buffer.length));
     }
 
     /**
@@ -47,40 +49,40 @@ public class ReductionOperations {
      */
     public static NdArrayCpu var(NdArrayCpu array, int axis) {
         ArrayValidator.validateAxis(axis, array.shape.getDimNum());
-        
+
         ShapeCpu newShape = computeReducedShape(array.shape, axis);
         NdArrayCpu result = new NdArrayCpu(newShape);
-        
-        int axisSize = array.shape.getDimension(axis);
-        int[] indices = new int[array.shape.getDimNum()];
-        int[] resultIndices = new int[newShape.getDimNum()];
-        
+
+        AxisLayout layout = new AxisLayout(array.shape, axis);
         float[] buffer = array.buffer;
-        ShapeCpu shape = array.shape;
-        
-        for (int i = 0; i < newShape.size(); i++) {
-            // 将结果索引转换为多维索引
-            IndexConverter.flatToMultiIndex(i, resultIndices, newShape);
-            
-            // 构建完整的索引数组（排除axis维度）
-            buildIndicesExcludingAxis(indices, resultIndices, axis, shape.getDimNum());
-            
-            // 计算均值和方差（单次遍历）
-            float sum = 0f;
-            for (int j = 0; j < axisSize; j++) {
-                indices[axis] = j;
-                sum += buffer[shape.getIndex(indices)];
+        float[] dst = result.buffer;
+
+        if (layout.inner == 1) {
+            // 归约轴是最后一维：每行连续，直接交给计算内核
+            for (int o = 0; o < layout.outer; o++) {
+                int offset = o * layout.axisSize;
+                float mean = KERNELS.sum(buffer, offset, layout.axisSize) / layout.axisSize;
+                dst[o] = KERNELS.sumSquaredDiff(buffer, offset, layout.axisSize, mean) / layout.axisSize;
             }
-            float mean = sum / axisSize;
-            
-            // 计算方差
-            float variance = 0f;
-            for (int j = 0; j < axisSize; j++) {
-                indices[axis] = j;
-                float diff = buffer[shape.getIndex(indices)] - mean;
-                variance += diff * diff;
+            return result;
+        }
+
+        float[] means = sumAlongAxis(buffer, layout);
+        for (int i = 0; i < means.length; i++) {
+            means[i] = means[i] / layout.axisSize;
+        }
+        for (int o = 0; o < layout.outer; o++) {
+            int dstOffset = o * layout.inner;
+            for (int j = 0; j < layout.axisSize; j++) {
+                int srcOffset = (o * layout.axisSize + j) * layout.inner;
+                for (int k = 0; k < layout.inner; k++) {
+                    float diff = buffer[srcOffset + k] - means[dstOffset + k];
+                    dst[dstOffset + k] += diff * diff;
+                }
             }
-            result.buffer[i] = variance / axisSize;
+        }
+        for (int i = 0; i < dst.length; i++) {
+            dst[i] = dst[i] / layout.axisSize;
         }
         return result;
     }
@@ -127,14 +129,7 @@ public class ReductionOperations {
      * @return 数组中的最大值
      */
     public static float max(NdArrayCpu array) {
-        float max = Float.NEGATIVE_INFINITY;
-        float[] buffer = array.buffer;
-        for (int i = 0; i < buffer.length; i++) {
-            if (buffer[i] > max) {
-                max = buffer[i];
-            }
-        }
-        return max;
+        return KERNELS.max(array.buffer, 0, array.buffer.length);
     }
 
     // =============================================================================
@@ -151,33 +146,39 @@ public class ReductionOperations {
      */
     private static NdArrayCpu axisSum(NdArrayCpu array, int axis, boolean computeMean) {
         ArrayValidator.validateAxis(axis, array.shape.getDimNum());
-        
+
         ShapeCpu newShape = computeReducedShape(array.shape, axis);
-        NdArrayCpu result = new NdArrayCpu(newShape);
-        
-        int axisSize = array.shape.getDimension(axis);
-        int[] indices = new int[array.shape.getDimNum()];
-        int[] resultIndices = new int[newShape.getDimNum()];
-        
-        float[] buffer = array.buffer;
-        ShapeCpu shape = array.shape;
-        
-        for (int i = 0; i < newShape.size(); i++) {
-            // 将结果索引转换为多维索引
-            IndexConverter.flatToMultiIndex(i, resultIndices, newShape);
-            
-            // 构建完整的索引数组（排除axis维度）
-            buildIndicesExcludingAxis(indices, resultIndices, axis, shape.getDimNum());
-            
-            // 计算沿axis维度的累和
-            float sum = 0f;
-            for (int j = 0; j < axisSize; j++) {
-                indices[axis] = j;
-                sum += buffer[shape.getIndex(indices)];
+        AxisLayout layout = new AxisLayout(array.shape, axis);
+        float[] sums = sumAlongAxis(array.buffer, layout);
+
+        if (computeMean) {
+            KERNELS.divScalar(sums, layout.axisSize, sums, sums.length);
+        }
+        return new NdArrayCpu(sums, newShape);
+    }
+
+    /**
+     * 沿轴求和，返回 outer × inner 个累和结果
+     *
+     * @param buffer 数组数据
+     * @param layout 轴布局
+     * @return 累和结果
+     */
+    private static float[] sumAlongAxis(float[] buffer, AxisLayout layout) {
+        float[] sums = new float[layout.outer * layout.inner];
+        if (layout.inner == 1) {
+            for (int o = 0; o < layout.outer; o++) {
+                sums[o] = KERNELS.sum(buffer, o * layout.axisSize, layout.axisSize);
             }
-            result.buffer[i] = computeMean ? sum / axisSize : sum;
+            return sums;
         }
-        return result;
+        for (int o = 0; o < layout.outer; o++) {
+            int dstOffset = o * layout.inner;
+            for (int j = 0; j < layout.axisSize; j++) {
+                KERNELS.accumulate(buffer, (o * layout.axisSize + j) * layout.inner, sums, dstOffset, layout.inner);
+            }
+        }
+        return sums;
     }
 
     /**
@@ -190,36 +191,34 @@ public class ReductionOperations {
      */
     private static NdArrayCpu axisMinMax(NdArrayCpu array, int axis, boolean findMax) {
         ArrayValidator.validateAxis(axis, array.shape.getDimNum());
-        
+
         ShapeCpu newShape = computeReducedShape(array.shape, axis);
         NdArrayCpu result = new NdArrayCpu(newShape);
-        
-        int axisSize = array.shape.getDimension(axis);
-        int[] indices = new int[array.shape.getDimNum()];
-        int[] resultIndices = new int[newShape.getDimNum()];
-        
+
+        AxisLayout layout = new AxisLayout(array.shape, axis);
         float[] buffer = array.buffer;
-        ShapeCpu shape = array.shape;
-        
-        float initialValue = findMax ? Float.NEGATIVE_INFINITY : Float.POSITIVE_INFINITY;
-        
-        for (int i = 0; i < newShape.size(); i++) {
-            // 将结果索引转换为多维索引
-            IndexConverter.flatToMultiIndex(i, resultIndices, newShape);
-            
-            // 构建完整的索引数组（排除axis维度）
-            buildIndicesExcludingAxis(indices, resultIndices, axis, shape.getDimNum());
-            
-            // 查找沿axis维度的最值
-            float extremum = initialValue;
-            for (int j = 0; j < axisSize; j++) {
-                indices[axis] = j;
-                float value = buffer[shape.getIndex(indices)];
-                if ((findMax && value > extremum) || (!findMax && value < extremum)) {
-                    extremum = value;
+        float[] dst = result.buffer;
+
+        if (layout.inner == 1) {
+            for (int o = 0; o < layout.outer; o++) {
+                int offset = o * layout.axisSize;
+                dst[o] = findMax ? KERNELS.max(buffer, offset, layout.axisSize)
+                        : KERNELS.min(buffer, offset, layout.axisSize);
+            }
+            return result;
+        }
+
+        Arrays.fill(dst, findMax ? Float.NEGATIVE_INFINITY : Float.POSITIVE_INFINITY);
+        for (int o = 0; o < layout.outer; o++) {
+            int dstOffset = o * layout.inner;
+            for (int j = 0; j < layout.axisSize; j++) {
+                int srcOffset = (o * layout.axisSize + j) * layout.inner;
+                if (findMax) {
+                    KERNELS.maxInto(buffer, srcOffset, dst, dstOffset, layout.inner);
+                } else {
+                    KERNELS.minInto(buffer, srcOffset, dst, dstOffset, layout.inner);
                 }
             }
-            result.buffer[i] = extremum;
         }
         return result;
     }
@@ -244,22 +243,25 @@ public class ReductionOperations {
     }
 
     /**
-     * 构建完整的索引数组，将结果索引映射到原始数组索引（排除axis维度）
-     *
-     * @param indices       输出的完整索引数组
-     * @param resultIndices 结果数组的多维索引
-     * @param axis          要排除的轴
-     * @param totalDims     总维度数
+     * 沿轴归约的内存布局：把数组看作 (outer, axisSize, inner) 的三维连续数组
      */
-    private static void buildIndicesExcludingAxis(int[] indices, int[] resultIndices, int axis, int totalDims) {
-        int resultIndex = 0;
-        for (int dim = 0; dim < totalDims; dim++) {
-            if (dim == axis) {
-                indices[dim] = 0; // axis维度将在后续循环中变化
-            } else {
-                indices[dim] = resultIndices[resultIndex++];
+    private static final class AxisLayout {
+        final int outer;
+        final int axisSize;
+        final int inner;
+
+        AxisLayout(ShapeCpu shape, int axis) {
+            int outerSize = 1;
+            for (int i = 0; i < axis; i++) {
+                outerSize *= shape.getDimension(i);
             }
+            int innerSize = 1;
+            for (int i = axis + 1; i < shape.getDimNum(); i++) {
+                innerSize *= shape.getDimension(i);
+            }
+            this.outer = outerSize;
+            this.axisSize = shape.getDimension(axis);
+            this.inner = innerSize;
         }
     }
 }
-
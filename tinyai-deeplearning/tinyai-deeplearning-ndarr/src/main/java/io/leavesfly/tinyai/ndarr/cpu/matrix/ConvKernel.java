@@ -0,0 +1,317 @@
+package io.leavesfly.tinyai.ndarr.cpu.matrix;
+
+import io.leavesfly.tinyai.ndarr.cpu.pool.BufferScope;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * 二维卷积内核（流式Im2Col + 分块GEMM）
+ *
+ * <p>输入为NCHW布局 [B, C, H, W]，卷积核为 [OC, C, KH, KW]，输出为 [B, OC, OH, OW]。</p>
+ * <ul>
+ *   <li>不再一次性展开完整的Im2Col矩阵：每个批次的输出位置被划分为若干段，
+ *       每次只把一段位置展开为 [C×KH×KW, T] 的列块（约128KB），用完即复用</li>
+ *   <li>列块与卷积核 [OC, C×KH×KW] 相乘直接得到 [OC, T]，正好是NCHW输出的一段，无需再转置</li>
+ *   <li>前向按"批次 × 位置段"、反向按批次分组，通过Fork/Join公共线程池并行执行</li>
+ *   <li>反向传播重新生成列块，不需要在前向时缓存展开结果；卷积核梯度每个分组累加到独立的缓冲区，
+ *       最后按分组顺序求和</li>
+ *   <li>列块、结果块和分组梯度缓冲区只在一次调用内使用，通过 {@link BufferScope} 从缓冲池获取，
+ *       调用结束即归还，逐层、逐步重复的卷积不再反复分配</li>
+ * </ul>
+ *
+ * <p>矩阵乘法由 {@link GemmKernel} 完成，结果与线程数无关（卷积核梯度的分组求和顺序除外）。</p>
+ */
+public final class ConvKernel {
+
+    /**
+     * 列块的目标元素数
+     */
+    static final int TILE_FLOATS = 1 << 15;
+
+    /**
+     * 列块的最小位置数，通道数很多时也保证GEMM的列方向有足够的长度
+     */
+    static final int MIN_TILE = 32;
+
+    /**
+     * 启用多线程的最小计算量（B×OC×C×KH×KW×OH×OW）
+     */
+    static final long PARALLEL_THRESHOLD = 1L << 21;
+
+    private ConvKernel() {
+    }
+
+    /**
+     * 计算卷积或池化在一个空间维度上的输出尺寸
+     *
+     * @param input   输入尺寸
+     * @param kernel  窗口尺寸
+     * @param stride  步长
+     * @param padding 填充大小
+     * @return 输出尺寸
+     */
+    public static int outputSize(int input, int kernel, int stride, int padding) {
+        return (input + 2 * padding - kernel) / stride + 1;
+    }
+
+    /**
+     * 卷积的形状参数
+     */
+    public static final class Geometry {
+
+        final int batch;
+        final int channels;
+        final int height;
+        final int width;
+        final int outChannels;
+        final int kernelHeight;
+        final int kernelWidth;
+        final int stride;
+        final int padding;
+        final int outHeight;
+        final int outWidth;
+
+        /**
+         * 列块的行数 C×KH×KW
+         */
+        final int colRows;
+
+        /**
+         * 每个批次的输出位置数 OH×OW
+         */
+        final int spatial;
+
+        /**
+         * 每个列块包含的输出位置数
+         */
+        final int tile;
+
+        /**
+         * 构造卷积形状参数
+         *
+         * @param batch        批次大小
+         * @param channels     输入通道数
+         * @param height       输入高度
+         * @param width        输入宽度
+         * @param outChannels  输出通道数
+         * @param kernelHeight 卷积核高度
+         * @param kernelWidth  卷积核宽度
+         * @param stride       步长
+         * @param padding      填充大小
+         */
+        public Geometry(int batch, int channels, int height, int width, int outChannels,
+                        int kernelHeight, int kernelWidth, int stride, int padding) {
+            if (stride <= 0 || padding < 0) {
+                throw new IllegalArgumentException(
+                        String.format("Invalid stride %d or padding %d", stride, padding));
+            }
+            this.batch = batch;
+            this.channels = channels;
+            this.height = height;
+            this.width = width;
+            this.outChannels = outChannels;
+            this.kernelHeight = kernelHeight;
+            this.kernelWidth = kernelWidth;
+            this.stride = stride;
+            this.padding = padding;
+            this.outHeight = outputSize(height, kernelHeight, stride, padding);
+            this.outWidth = outputSize(width, kernelWidth, stride, padding);
+            if (outHeight <= 0 || outWidth <= 0) {
+                throw new IllegalArgumentException(String.format(
+                        "Kernel %dx%d is larger than padded input %dx%d",
+                        kernelHeight, kernelWidth, height + 2 * padding, width + 2 * padding));
+            }
+            this.colRows = channels * kernelHeight * kernelWidth;
+            this.spatial = outHeight * outWidth;
+            this.tile = Math.min(spatial, Math.max(MIN_TILE, TILE_FLOATS / Math.max(colRows, 1)));
+        }
+
+        public int getOutHeight() {
+            return outHeight;
+        }
+
+        public int getOutWidth() {
+            return outWidth;
+        }
+
+        int tilesPerImage() {
+            return (spatial + tile - 1) / tile;
+        }
+
+        long work() {
+            return (long) batch * outChannels * colRows * spatial;
+        }
+    }
+
+    /**
+     * 前向卷积：output = conv(input, kernel)
+     *
+     * @param input  输入数据 [B, C, H, W]
+     * @param kernel 卷积核数据 [OC, C, KH, KW]
+     * @param output 输出数据 [B, OC, OH, OW]，会被完整覆盖
+     * @param g      形状参数
+     */
+    public static void forward(float[] input, float[] kernel, float[] output, Geometry g) {
+        int tiles = g.tilesPerImage();
+        int items = g.batch * tiles;
+        int chunks = chunkCount(items, g.work(), 4);
+        IntStream range = IntStream.range(0, chunks);
+        (chunks > 1 ? range.parallel() : range).forEach(chunk -> {
+            // 作用域在执行该分段的线程上打开和关闭
+            try (BufferScope scope = BufferScope.open()) {
+                float[] col = scope.allocate(g.colRows * g.tile);
+                float[] result = scope.allocate(g.outChannels * g.tile);
+                int from = (int) ((long) items * chunk / chunks);
+                int to = (int) ((long) items * (chunk + 1) / chunks);
+                for (int item = from; item < to; item++) {
+                    int b = item / tiles;
+                    int p0 = (item % tiles) * g.tile;
+                    int len = Math.min(g.tile, g.spatial - p0);
+                    im2colTile(input, b, p0, len, col, g);
+                    Arrays.fill(result, 0, g.outChannels * len, 0f);
+                    GemmKernel.multiply(kernel, col, result, g.outChannels, g.colRows, len);
+                    int outBase = b * g.outChannels * g.spatial + p0;
+                    for (int oc = 0; oc < g.outChannels; oc++) {
+                        System.arraycopy(result, oc * len, output, outBase + oc * g.spatial, len);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 反向卷积：同时计算输入梯度与卷积核梯度
+     *
+     * @param input      前向输入数据 [B, C, H, W]
+     * @param kernel     卷积核数据 [OC, C, KH, KW]
+     * @param outGrad    输出梯度 [B, OC, OH, OW]
+     * @param inputGrad  输入梯度 [B, C, H, W]，需预先置零
+     * @param kernelGrad 卷积核梯度 [OC, C, KH, KW]，需预先置零
+     * @param g          形状参数
+     */
+    public static void backward(float[] input, float[] kernel, float[] outGrad,
+                                float[] inputGrad, float[] kernelGrad, Geometry g) {
+        // 每个分组需要一份卷积核梯度缓冲区，分组数不超过线程数；除第0组外都在调用线程上从缓冲池获取
+        int groups = chunkCount(g.batch, g.work() * 2, 1);
+        try (BufferScope partialScope = BufferScope.open()) {
+            float[][] partials = new float[groups][];
+            partials[0] = kernelGrad;
+            for (int group = 1; group < groups; group++) {
+                partials[group] = partialScope.allocate(kernelGrad.length);
+            }
+            IntStream range = IntStream.range(0, groups);
+            (groups > 1 ? range.parallel() : range).forEach(group -> {
+                try (BufferScope scope = BufferScope.open()) {
+                    backwardGroup(input, kernel, outGrad, inputGrad, partials[group], group, groups,
+                            scope.allocate(g.colRows * g.tile), scope.allocate(g.colRows * g.tile), g);
+                }
+            });
+            for (int group = 1; group < groups; group++) {
+                float[] partial = partials[group];
+                for (int i = 0; i < kernelGrad.length; i++) {
+                    kernelGrad[i] += partial[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * 计算一个分组（连续若干个批次）的输入梯度，并把卷积核梯度累加到该分组的缓冲区
+     */
+    private static void backwardGroup(float[] input, float[] kernel, float[] outGrad, float[] inputGrad,
+                                      float[] partial, int group, int groups,
+                                      float[] col, float[] gradCol, Geometry g) {
+        int[] offset = new int[1];
+        int[] zero = {0};
+        int from = (int) ((long) g.batch * group / groups);
+        int to = (int) ((long) g.batch * (group + 1) / groups);
+        for (int b = from; b < to; b++) {
+            for (int p0 = 0; p0 < g.spatial; p0 += g.tile) {
+                int len = Math.min(g.tile, g.spatial - p0);
+                // 输出梯度的一段 [OC, len] 直接以行步长OH×OW从原数组读取
+                offset[0] = b * g.outChannels * g.spatial + p0;
+
+                // 卷积核梯度：dW[OC, C×KH×KW] += dY[OC, len] × colᵀ[len, C×KH×KW]
+                im2colTile(input, b, p0, len, col, g);
+                GemmKernel.batchMultiply(outGrad, offset, g.spatial, 1, col, zero, 1, len,
+                        partial, g.outChannels, len, g.colRows);
+
+                // 输入梯度：gradCol[C×KH×KW, len] = Wᵀ[C×KH×KW, OC] × dY[OC, len]，再累加回输入位置
+                Arrays.fill(gradCol, 0, g.colRows * len, 0f);
+                GemmKernel.batchMultiply(kernel, zero, 1, g.colRows, outGrad, offset, g.spatial, 1,
+                        gradCol, g.colRows, g.outChannels, len);
+                col2imTile(gradCol, b, p0, len, inputGrad, g);
+            }
+        }
+    }
+
+    /**
+     * 把批次b中输出位置 [p0, p0 + len) 对应的输入窗口展开为列块 [C×KH×KW, len]，填充区域为0
+     */
+    static void im2colTile(float[] input, int b, int p0, int len, float[] col, Geometry g) {
+        int inBase = b * g.channels * g.height * g.width;
+        int row = 0;
+        for (int c = 0; c < g.channels; c++) {
+            int planeBase = inBase + c * g.height * g.width;
+            for (int kh = 0; kh < g.kernelHeight; kh++) {
+                for (int kw = 0; kw < g.kernelWidth; kw++, row++) {
+                    int dst = row * len;
+                    int oh = p0 / g.outWidth;
+                    int ow = p0 % g.outWidth;
+                    for (int t = 0; t < len; t++) {
+                        int ih = oh * g.stride + kh - g.padding;
+                        int iw = ow * g.stride + kw - g.padding;
+                        col[dst + t] = ih >= 0 && ih < g.height && iw >= 0 && iw < g.width
+                                ? input[planeBase + ih * g.width + iw] : 0f;
+                        if (++ow == g.outWidth) {
+                            ow = 0;
+                            oh++;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * im2colTile的逆操作：把列块梯度累加回批次b的输入梯度，重叠窗口的梯度相加
+     */
+    static void col2imTile(float[] col, int b, int p0, int len, float[] inputGrad, Geometry g) {
+        int inBase = b * g.channels * g.height * g.width;
+        int row = 0;
+        for (int c = 0; c < g.channels; c++) {
+            int planeBase = inBase + c * g.height * g.width;
+            for (int kh = 0; kh < g.kernelHeight; kh++) {
+                for (int kw = 0; kw < g.kernelWidth; kw++, row++) {
+                    int src = row * len;
+                    int oh = p0 / g.outWidth;
+                    int ow = p0 % g.outWidth;
+                    for (int t = 0; t < len; t++) {
+                        int ih = oh * g.stride + kh - g.padding;
+                        int iw = ow * g.stride + kw - g.padding;
+                        if (ih >= 0 && ih < g.height && iw >= 0 && iw < g.width) {
+                            inputGrad[planeBase + ih * g.width + iw] += col[src + t];
+                        }
+                        if (++ow == g.outWidth) {
+                            ow = 0;
+                            oh++;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 根据计算量决定并行块数（至多为线程数的perThread倍），计算量不足或单线程时返回1
+     */
+    static int chunkCount(int items, long work, int perThread) {
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        if (parallelism <= 1 || work < PARALLEL_THRESHOLD || items <= 1) {
+            return 1;
+        }
+        return Math.min(items, parallelism * perThread);
+    }
+}
@@ -0,0 +1,390 @@
+package io.leavesfly.tinyai.ndarr.cpu.matrix;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 分块并行矩阵乘法内核（GEMM）
+ *
+ * <p>计算 C += A × B，左右操作数可以是带步长的视图（如转置），结果矩阵的行之间也可以有步长
+ * （如直接写入维度重排后的布局），但每行内部必须连续：</p>
+ * <ul>
+ *   <li>按 K/N 方向分块（BLOCK_K × BLOCK_N），使右矩阵的面板常驻L2缓存</li>
+ *   <li>寄存器微内核一次处理4行：右矩阵每个元素只加载一次，复用于4行累加</li>
+ *   <li>按"批次 × 行面板"划分任务，通过Fork/Join公共线程池并行执行</li>
+ * </ul>
+ *
+ * <p>每个结果元素始终由同一个线程按K从小到大的顺序累加，因此结果与朴素的 i-k-j 循环逐位一致，
+ * 且与线程数无关。</p>
+ */
+public final class GemmKernel {
+
+    /**
+     * 公共维度K方向的分块大小
+     */
+    static final int BLOCK_K = 256;
+
+    /**
+     * 列方向N的分块大小，BLOCK_K × BLOCK_N 的右矩阵面板约256KB
+     */
+    static final int BLOCK_N = 256;
+
+    /**
+     * 微内核一次处理的行数
+     */
+    static final int MICRO_ROWS = 4;
+
+    /**
+     * 启用分块内核的最小计算量（M×K×N），低于该值时分块带来的收益不足以抵消开销
+     */
+    static final long BLOCKED_THRESHOLD = 64L * 64 * 64;
+
+    /**
+     * 启用多线程的最小计算量（M×K×N）
+     */
+    static final long PARALLEL_THRESHOLD = 128L * 128 * 128;
+
+    private GemmKernel() {
+    }
+
+    /**
+     * 判断给定规模的矩阵乘法是否应交由分块内核计算
+     *
+     * @param m 左矩阵行数
+     * @param k 公共维度
+     * @param n 右矩阵列数
+     * @return 计算量达到阈值时返回true
+     */
+    public static boolean isWorthBlocking(int m, int k, int n) {
+        return (long) m * k * n >= BLOCKED_THRESHOLD;
+    }
+
+    /**
+     * 单个矩阵乘法：C(m×n) += A(m×k) × B(k×n)
+     *
+     * @param a 左矩阵数据
+     * @param b 右矩阵数据
+     * @param c 结果矩阵数据
+     * @param m 左矩阵行数
+     * @param k 公共维度
+     * @param n 右矩阵列数
+     */
+    public static void multiply(float[] a, float[] b, float[] c, int m, int k, int n) {
+        batchMultiply(a, new int[]{0}, b, new int[]{0}, c, m, k, n);
+    }
+
+    /**
+     * 批量矩阵乘法：对每个批次 i，C[i] += A[aOffsets[i]] × B[bOffsets[i]]
+     *
+     * <p>结果矩阵按批次连续存放，第 i 个批次的起始位置为 i×m×n。
+     * 左右矩阵通过偏移数组定位，广播批次可以重复引用同一块数据。</p>
+     *
+     * @param a        左矩阵数据
+     * @param aOffsets 每个批次左矩阵的起始偏移
+     * @param b        右矩阵数据
+     * @param bOffsets 每个批次右矩阵的起始偏移
+     * @param c        结果矩阵数据
+     * @param m        左矩阵行数
+     * @param k        公共维度
+     * @param n        右矩阵列数
+     */
+    public static void batchMultiply(float[] a, int[] aOffsets, float[] b, int[] bOffsets,
+                                     float[] c, int m, int k, int n) {
+        batchMultiply(a, aOffsets, k, 1, b, bOffsets, n, 1, c, m, k, n);
+    }
+
+    /**
+     * 带步长的批量矩阵乘法：A[i][p] 位于 a[aOffset + i×aRowStride + p×aColStride]，B同理
+     *
+     * <p>转置或维度重排后的操作数只需交换步长即可直接参与计算，无需先拷贝为连续数组：</p>
+     * <ul>
+     *   <li>左矩阵按任意步长读取，每个K步只读取微内核所需的4个元素</li>
+     *   <li>右矩阵的列步长为1时直接读取；否则（如 Bᵀ）先按批次打包为行主序的连续面板，
+     *       使最内层循环保持连续访问，打包开销为O(K×N)，相对O(M×K×N)的计算量可以忽略</li>
+     * </ul>
+     *
+     * @param a          左矩阵数据
+     * @param aOffsets   每个批次左矩阵的起始偏移
+     * @param aRowStride 左矩阵行步长
+     * @param aColStride 左矩阵列步长
+     * @param b          右矩阵数据
+     * @param bOffsets   每个批次右矩阵的起始偏移
+     * @param bRowStride 右矩阵行步长
+     * @param bColStride 右矩阵列步长
+     * @param c          结果矩阵数据（连续存储）
+     * @param m          左矩阵行数
+     * @param k          公共维度
+     * @param n          右矩阵列数
+     */
+    public static void batchMultiply(float[] a, int[] aOffsets, int aRowStride, int aColStride,
+                                     float[] b, int[] bOffsets, int bRowStride, int bColStride,
+                                     float[] c, int m, int k, int n) {
+        int[] cOffsets = new int[aOffsets.length];
+        for (int batch = 0; batch < cOffsets.length; batch++) {
+            cOffsets[batch] = batch * m * n;
+        }
+        batchMultiply(a, aOffsets, aRowStride, aColStride, b, bOffsets, bRowStride, bColStride,
+                c, cOffsets, n, m, k, n);
+    }
+
+    /**
+     * 带步长的批量矩阵乘法，结果按 C[i][j] 位于 c[cOffset + i×cRowStride + j] 写入
+     *
+     * <p>结果的行步长可以大于N，使多头注意力等场景可以把各批次的结果直接写入重排后的布局
+     * （如 (batch, heads, seq, dim) 的乘积写到 (batch, seq, heads, dim) 中），省去一次转置拷贝。
+     * 不同批次的结果区域不能重叠。</p>
+     *
+     * @param a          左矩阵数据
+     * @param aOffsets   每个批次左矩阵的起始偏移
+     * @param aRowStride 左矩阵行步长
+     * @param aColStride 左矩阵列步长
+     * @param b          右矩阵数据
+     * @param bOffsets   每个批次右矩阵的起始偏移
+     * @param bRowStride 右矩阵行步长
+     * @param bColStride 右矩阵列步长
+     * @param c          结果矩阵数据
+     * @param cOffsets   每个批次结果矩阵的起始偏移
+     * @param cRowStride 结果矩阵行步长（列步长固定为1）
+     * @param m          左矩阵行数
+     * @param k          公共维度
+     * @param n          右矩阵列数
+     */
+    public static void batchMultiply(float[] a, int[] aOffsets, int aRowStride, int aColStride,
+                                     float[] b, int[] bOffsets, int bRowStride, int bColStride,
+                                     float[] c, int[] cOffsets, int cRowStride, int m, int k, int n) {
+        int batchCount = aOffsets.length;
+        if (batchCount == 0 || m == 0 || n == 0 || k == 0) {
+            return;
+        }
+
+        if (bColStride != 1) {
+            Packed packed = packRight(b, bOffsets, bRowStride, bColStride, k, n);
+            b = packed.data;
+            bOffsets = packed.offsets;
+            bRowStride = n;
+        }
+
+        Operands ops = new Operands(a, aOffsets, aRowStride, aColStride, b, bOffsets, bRowStride,
+                c, cOffsets, cRowStride, m, k, n);
+
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        long work = (long) batchCount * m * k * n;
+        if (parallelism <= 1 || work < PARALLEL_THRESHOLD) {
+            for (int batch = 0; batch < batchCount; batch++) {
+                multiplyRows(ops, batch, 0, m);
+            }
+            return;
+        }
+
+        // 行面板高度：保证每个线程分到若干个面板以平衡负载，且为微内核行数的整数倍
+        int targetPanels = Math.max(1, parallelism * 4 / batchCount);
+        int panelRows = (m + targetPanels - 1) / targetPanels;
+        panelRows = Math.max(MICRO_ROWS, (panelRows + MICRO_ROWS - 1) / MICRO_ROWS * MICRO_ROWS);
+        int panelsPerBatch = (m + panelRows - 1) / panelRows;
+
+        GemmTask task = new GemmTask(ops, panelRows, panelsPerBatch, 0, batchCount * panelsPerBatch);
+        ForkJoinPool.commonPool().invoke(task);
+    }
+
+    /**
+     * 将列步长不为1的右矩阵打包为行主序连续存储，相同偏移的广播批次只打包一次
+     */
+    private static Packed packRight(float[] b, int[] bOffsets, int bRowStride, int bColStride, int k, int n) {
+        int matrixSize = k * n;
+        int[] packedOffsets = new int[bOffsets.length];
+        int distinct = 0;
+        int[] sources = new int[bOffsets.length];
+        for (int batch = 0; batch < bOffsets.length; batch++) {
+            int found = -1;
+            // 广播时偏移通常是按周期重复的，向前查找即可
+            for (int d = distinct - 1; d >= 0; d--) {
+                if (sources[d] == bOffsets[batch]) {
+                    found = d;
+                    break;
+                }
+            }
+            if (found < 0) {
+                sources[distinct] = bOffsets[batch];
+                found = distinct++;
+            }
+            packedOffsets[batch] = found * matrixSize;
+        }
+
+        float[] packed = new float[distinct * matrixSize];
+        for (int d = 0; d < distinct; d++) {
+            int src = sources[d];
+            int dst = d * matrixSize;
+            // 按列读取（源数据沿该方向更连续），写入行主序面板
+            for (int j = 0; j < n; j++) {
+                int srcCol = src + j * bColStride;
+                for (int p = 0; p < k; p++) {
+                    packed[dst + p * n + j] = b[srcCol + p * bRowStride];
+                }
+            }
+        }
+        return new Packed(packed, packedOffsets);
+    }
+
+    /**
+     * 计算单个批次中 [rowStart, rowEnd) 行的结果，按K、N方向分块
+     */
+    private static void multiplyRows(Operands ops, int batch, int rowStart, int rowEnd) {
+        int aOffset = ops.aOffsets[batch];
+        int bOffset = ops.bOffsets[batch];
+        int cOffset = ops.cOffsets[batch];
+        int cRowStride = ops.cRowStride;
+        int k = ops.k;
+        int n = ops.n;
+        for (int kStart = 0; kStart < k; kStart += BLOCK_K) {
+            int kEnd = Math.min(k, kStart + BLOCK_K);
+            for (int jStart = 0; jStart < n; jStart += BLOCK_N) {
+                int jEnd = Math.min(n, jStart + BLOCK_N);
+
+                int i = rowStart;
+                for (; i + MICRO_ROWS <= rowEnd; i += MICRO_ROWS) {
+                    microKernel4(ops.a, aOffset + i * ops.aRowStride, ops.aRowStride, ops.aColStride,
+                            ops.b, bOffset, ops.bRowStride, ops.c, cOffset + i * cRowStride, cRowStride,
+                            kStart, kEnd, jStart, jEnd);
+                }
+                for (; i < rowEnd; i++) {
+                    microKernel1(ops.a, aOffset + i * ops.aRowStride, ops.aColStride,
+                            ops.b, bOffset, ops.bRowStride, ops.c, cOffset + i * cRowStride,
+                            kStart, kEnd, jStart, jEnd);
+                }
+            }
+        }
+    }
+
+    /**
+     * 4行微内核：右矩阵元素加载一次，同时累加到4个结果行
+     */
+    private static void microKernel4(float[] a, int aRow, int aRowStride, int aColStride,
+                                     float[] b, int bOffset, int bRowStride, float[] c, int cRow, int cRowStride,
+                                     int kStart, int kEnd, int jStart, int jEnd) {
+        int a0 = aRow;
+        int a1 = a0 + aRowStride;
+        int a2 = a1 + aRowStride;
+        int a3 = a2 + aRowStride;
+        int c0 = cRow;
+        int c1 = c0 + cRowStride;
+        int c2 = c1 + cRowStride;
+        int c3 = c2 + cRowStride;
+
+        for (int p = kStart; p < kEnd; p++) {
+            int ap = p * aColStride;
+            float v0 = a[a0 + ap];
+            float v1 = a[a1 + ap];
+            float v2 = a[a2 + ap];
+            float v3 = a[a3 + ap];
+            int bRow = bOffset + p * bRowStride;
+
+            for (int j = jStart; j < jEnd; j++) {
+                float bv = b[bRow + j];
+                c[c0 + j] += v0 * bv;
+                c[c1 + j] += v1 * bv;
+                c[c2 + j] += v2 * bv;
+                c[c3 + j] += v3 * bv;
+            }
+        }
+    }
+
+    /**
+     * 单行微内核，处理不足4行的尾部
+     */
+    private static void microKernel1(float[] a, int aRow, int aColStride, float[] b, int bOffset, int bRowStride,
+                                     float[] c, int cRow, int kStart, int kEnd, int jStart, int jEnd) {
+        for (int p = kStart; p < kEnd; p++) {
+            float v = a[aRow + p * aColStride];
+            int bRow = bOffset + p * bRowStride;
+            for (int j = jStart; j < jEnd; j++) {
+                c[cRow + j] += v * b[bRow + j];
+            }
+        }
+    }
+
+    /**
+     * 打包后的右矩阵数据及各批次偏移
+     */
+    private static final class Packed {
+        final float[] data;
+        final int[] offsets;
+
+        Packed(float[] data, int[] offsets) {
+            this.data = data;
+            this.offsets = offsets;
+        }
+    }
+
+    /**
+     * 一次批量乘法的全部操作数与布局参数
+     */
+    private static final class Operands {
+        final float[] a;
+        final int[] aOffsets;
+        final int aRowStride;
+        final int aColStride;
+        final float[] b;
+        final int[] bOffsets;
+        final int bRowStride;
+        final float[] c;
+        final int[] cOffsets;
+        final int cRowStride;
+        final int m;
+        final int k;
+        final int n;
+
+        Operands(float[] a, int[] aOffsets, int aRowStride, int aColStride,
+                 float[] b, int[] bOffsets, int bRowStride,
+                 float[] c, int[] cOffsets, int cRowStride, int m, int k, int n) {
+            this.a = a;
+            this.aOffsets = aOffsets;
+            this.aRowStride = aRowStride;
+            this.aColStride = aColStride;
+            this.b = b;
+            this.bOffsets = bOffsets;
+            this.bRowStride = bRowStride;
+            this.c = c;
+            this.cOffsets = cOffsets;
+            this.cRowStride = cRowStride;
+            this.m = m;
+            this.k = k;
+            this.n = n;
+        }
+    }
+
+    /**
+     * Fork/Join任务：将 [start, end) 范围内的"批次 × 行面板"二分拆解后并行计算
+     */
+    private static final class GemmTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Operands ops;
+        private final int panelRows;
+        private final int panelsPerBatch;
+        private final int start;
+        private final int end;
+
+        GemmTask(Operands ops, int panelRows, int panelsPerBatch, int start, int end) {
+            this.ops = ops;
+            this.panelRows = panelRows;
+            this.panelsPerBatch = panelsPerBatch;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                int batch = start / panelsPerBatch;
+                int rowStart = (start % panelsPerBatch) * panelRows;
+                int rowEnd = Math.min(ops.m, rowStart + panelRows);
+                multiplyRows(ops, batch, rowStart, rowEnd);
+                return;
+            }
+            int mid = (start + end) >>> 1;
+            invokeAll(new GemmTask(ops, panelRows, panelsPerBatch, start, mid),
+                    new GemmTask(ops, panelRows, panelsPerBatch, mid, end));
+        }
+    }
+}
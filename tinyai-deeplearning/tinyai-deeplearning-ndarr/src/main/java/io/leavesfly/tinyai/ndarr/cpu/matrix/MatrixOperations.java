@@ -3,6 +3,8 @@ package io.leavesfly.tinyai.ndarr.cpu.matrix;
 import io.leavesfly.tinyai.ndarr.NdArrayUtil;
 import io.leavesfly.tinyai.ndarr.cpu.NdArrayCpu;
 import io.leavesfly.tinyai.ndarr.cpu.ShapeCpu;
+import io.leavesfly.tinyai.ndarr.cpu.StridedView;
+import io.leavesfly.tinyai.ndarr.cpu.utils.ArrayValidator;
 
 /**
  * 矩阵运算操作类
@@ -55,6 +57,7 @@ public class MatrixOperations {
     /**
      * 2D矩阵乘法特化实现（性能优化版本）
      * <p>使用缓存友好的循环顺序：i-k-j，提高缓存命中率</p>
+     * <p>计算量超过阈值时交由 {@link GemmKernel} 分块并行计算</p>
      *
      * @param left     左矩阵
      * @param right    右矩阵
@@ -69,6 +72,11 @@ public class MatrixOperations {
         float[] rightBuf = right.buffer;
         float[] resultBuf = result.buffer;
 
+        if (GemmKernel.isWorthBlocking(leftRows, leftCols, rightCols)) {
+            GemmKernel.multiply(leftBuf, rightBuf, resultBuf, leftRows, leftCols, rightCols);
+            return result;
+        }
+
         // 优化循环顺序：i-k-j 提高缓存友好性
         // 外层循环：遍历左矩阵的行
         for (int i = 0; i < leftRows; i++) {
@@ -143,6 +151,20 @@ public class MatrixOperations {
         float[] rightBuf = right.buffer;
         float[] resultBuf = result.buffer;
 
+        // 大矩阵：计算各批次的偏移（支持广播）后交由分块并行内核
+        if (GemmKernel.isWorthBlocking(leftRows, leftCols, rightCols)
+                || (long) batchSize * leftRows * leftCols * rightCols >= GemmKernel.PARALLEL_THRESHOLD) {
+            int[] leftOffsets = new int[batchSize];
+            int[] rightOffsets = new int[batchSize];
+            for (int batch = 0; batch < batchSize; batch++) {
+                leftOffsets[batch] = ((leftBatchSize == 1) ? 0 : batch % leftBatchSize) * leftBatchStride;
+                rightOffsets[batch] = ((rightBatchSize == 1) ? 0 : batch % rightBatchSize) * rightBatchStride;
+            }
+            GemmKernel.batchMultiply(leftBuf, leftOffsets, rightBuf, rightOffsets, resultBuf,
+                    leftRows, leftCols, rightCols);
+            return result;
+        }
+
         // 批量矩阵乘法
         for (int batch = 0; batch < batchSize; batch++) {
             // 计算当前批次的索引（支持广播）
@@ -173,6 +195,155 @@ public class MatrixOperations {
         return result;
     }
 
+    /**
+     * 带转置标记的矩阵乘法：op(left) × op(right)，op为恒等或交换最后两个维度
+     *
+     * <p>转置通过交换视图步长实现，不会生成中间的转置数组。常用于反向传播中的
+     * {@code dY × Wᵀ}、{@code Xᵀ × dY} 以及注意力分数 {@code Q × Kᵀ}。</p>
+     *
+     * @param left           左操作数数组
+     * @param right          右操作数数组
+     * @param transposeLeft  是否转置左操作数的最后两个维度
+     * @param transposeRight 是否转置右操作数的最后两个维度
+     * @return 矩阵乘法结果
+     * @throws IllegalArgumentException 当数组不是矩阵或维度不匹配时抛出
+     */
+    public static NdArrayCpu dot(NdArrayCpu left, NdArrayCpu right, boolean transposeLeft, boolean transposeRight) {
+        if (left.shape.getDimNum() < 2 || right.shape.getDimNum() < 2) {
+            throw new IllegalArgumentException("矩阵乘法操作需要至少二维数组");
+        }
+        StridedView leftView = StridedView.of(left);
+        StridedView rightView = StridedView.of(right);
+        return dot(transposeLeft ? leftView.transpose() : leftView,
+                transposeRight ? rightView.transpose() : rightView);
+    }
+
+    /**
+     * 视图上的批量矩阵乘法，直接按步长读取操作数
+     *
+     * <p>最后两个维度为矩阵维度，其余为批次维度，批次维度按右对齐规则广播（大小为1或缺失的维度重复使用）。</p>
+     *
+     * @param left  左操作数视图
+     * @param right 右操作数视图
+     * @return 连续存储的矩阵乘法结果
+     * @throws IllegalArgumentException 当维度不匹配或批次维度无法广播时抛出
+     */
+    public static NdArrayCpu dot(StridedView left, StridedView right) {
+        return dot(left, right, null);
+    }
+
+    /**
+     * 视图上的批量矩阵乘法，结果按指定顺序重排维度后连续存储
+     *
+     * <p>记乘积为 R（形状为 [批次..., m, n]），返回 {@code R.transpose(resultOrder)}，但不生成R：
+     * 内核直接按重排后的步长写入结果。例如多头注意力中 (batch, heads, seq, dim) 的乘积
+     * 以 resultOrder = {0, 2, 1, 3} 直接得到 (batch, seq, heads, dim)，合并多头时只需零拷贝的reshape。
+     * resultOrder 必须保持最后一个维度不动（结果的每行需要连续写入），否则先得到R再拷贝重排。</p>
+     *
+     * @param left        左操作数视图
+     * @param right       右操作数视图
+     * @param resultOrder 结果的维度顺序，null表示不重排
+     * @return 连续存储的（重排后的）矩阵乘法结果
+     * @throws IllegalArgumentException 当维度不匹配、批次维度无法广播或维度顺序无效时抛出
+     */
+    public static NdArrayCpu dot(StridedView left, StridedView right, int[] resultOrder) {
+        int leftDimNum = left.getDimNum();
+        int rightDimNum = right.getDimNum();
+        if (leftDimNum < 2 || rightDimNum < 2) {
+            throw new IllegalArgumentException("矩阵乘法操作需要至少二维数组");
+        }
+
+        int m = left.getDimension(leftDimNum - 2);
+        int k = left.getDimension(leftDimNum - 1);
+        int rightRows = right.getDimension(rightDimNum - 2);
+        int n = right.getDimension(rightDimNum - 1);
+        if (k != rightRows) {
+            throw new IllegalArgumentException(
+                    String.format("矩阵乘法维度不匹配：%s × %s，第一个矩阵的列数(%d)必须等于第二个矩阵的行数(%d)",
+                            left.getShape(), right.getShape(), k, rightRows));
+        }
+
+        // 计算广播后的批次维度，以及各操作数在每个批次维度上的步长（广播维度步长为0）
+        int batchDimNum = Math.max(leftDimNum, rightDimNum) - 2;
+        int[] resultDims = new int[batchDimNum + 2];
+        int[] leftBatchStrides = new int[batchDimNum];
+        int[] rightBatchStrides = new int[batchDimNum];
+        for (int i = 0; i < batchDimNum; i++) {
+            int leftAxis = i - (batchDimNum - (leftDimNum - 2));
+            int rightAxis = i - (batchDimNum - (rightDimNum - 2));
+            int leftDim = leftAxis >= 0 ? left.getDimension(leftAxis) : 1;
+            int rightDim = rightAxis >= 0 ? right.getDimension(rightAxis) : 1;
+            if (leftDim != rightDim && leftDim != 1 && rightDim != 1) {
+                throw new IllegalArgumentException(
+                        String.format("批次维度无法广播：%s × %s", left.getShape(), right.getShape()));
+            }
+            resultDims[i] = Math.max(leftDim, rightDim);
+            leftBatchStrides[i] = leftDim == 1 ? 0 : left.getStride(leftAxis);
+            rightBatchStrides[i] = rightDim == 1 ? 0 : right.getStride(rightAxis);
+        }
+        resultDims[batchDimNum] = m;
+        resultDims[batchDimNum + 1] = n;
+
+        if (resultOrder != null) {
+            ArrayValidator.validateTransposeOrder(resultOrder, resultDims.length);
+            if (resultOrder[resultOrder.length - 1] != resultDims.length - 1) {
+                return dot(left, right, null).view().permute(resultOrder).compact();
+            }
+        }
+
+        // 结果数组按重排后的形状分配，out是它按乘积维度顺序排列的视图
+        NdArrayCpu result;
+        StridedView out;
+        if (resultOrder == null) {
+            result = new NdArrayCpu(ShapeCpu.of(resultDims));
+            out = result.view();
+        } else {
+            int[] orderedDims = new int[resultDims.length];
+            int[] inverse = new int[resultDims.length];
+            for (int i = 0; i < resultOrder.length; i++) {
+                orderedDims[i] = resultDims[resultOrder[i]];
+                inverse[resultOrder[i]] = i;
+            }
+            result = new NdArrayCpu(ShapeCpu.of(orderedDims));
+            out = result.view().permute(inverse);
+        }
+        int batchCount = result.shape.size() / Math.max(1, m * n);
+        if (m * n == 0) {
+            return result;
+        }
+
+        // 以计数器方式遍历批次，得到各批次在源数据中的偏移
+        int[] leftOffsets = new int[batchCount];
+        int[] rightOffsets = new int[batchCount];
+        int[] resultOffsets = new int[batchCount];
+        int[] counter = new int[batchDimNum];
+        int leftOffset = left.offset();
+        int rightOffset = right.offset();
+        int resultOffset = 0;
+        for (int batch = 0; batch < batchCount; batch++) {
+            leftOffsets[batch] = leftOffset;
+            rightOffsets[batch] = rightOffset;
+            resultOffsets[batch] = resultOffset;
+            for (int axis = batchDimNum - 1; axis >= 0; axis--) {
+                leftOffset += leftBatchStrides[axis];
+                rightOffset += rightBatchStrides[axis];
+                resultOffset += out.getStride(axis);
+                if (++counter[axis] < resultDims[axis]) {
+                    break;
+                }
+                leftOffset -= leftBatchStrides[axis] * resultDims[axis];
+                rightOffset -= rightBatchStrides[axis] * resultDims[axis];
+                resultOffset -= out.getStride(axis) * resultDims[axis];
+                counter[axis] = 0;
+            }
+        }
+
+        GemmKernel.batchMultiply(left.data(), leftOffsets, left.getStride(leftDimNum - 2), left.getStride(leftDimNum - 1),
+                right.data(), rightOffsets, right.getStride(rightDimNum - 2), right.getStride(rightDimNum - 1),
+                result.buffer, resultOffsets, out.getStride(batchDimNum), m, k, n);
+        return result;
+    }
+
     /**
      * 获取数组的子集（切片操作）
      *
@@ -0,0 +1,191 @@
+package io.leavesfly.tinyai.ndarr.cpu.matrix;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * 二维池化内核
+ *
+ * <p>输入为NCHW布局，每个 (批次, 通道) 平面独立计算，平面之间通过Fork/Join公共线程池并行。
+ * 窗口中落在填充区域的位置不参与计算：</p>
+ * <ul>
+ *   <li>最大池化只在有效位置中取最大值（窗口全部落在填充区时输出0），并记录最大值在平面内的下标，
+ *       反向传播时梯度只流向该位置</li>
+ *   <li>平均池化除以窗口内的有效位置数，反向传播时梯度均分给这些位置</li>
+ * </ul>
+ */
+public final class PoolKernel {
+
+    /**
+     * 启用多线程的最小计算量（平面数×输出位置数×窗口大小）
+     */
+    static final long PARALLEL_THRESHOLD = 1L << 18;
+
+    private PoolKernel() {
+    }
+
+    /**
+     * 最大池化前向
+     *
+     * @param input   输入数据 [planes, H, W]
+     * @param planes  平面数（批次×通道）
+     * @param height  输入高度
+     * @param width   输入宽度
+     * @param kernelH 窗口高度
+     * @param kernelW 窗口宽度
+     * @param stride  步长
+     * @param padding 填充大小
+     * @param output  输出数据 [planes, OH, OW]
+     * @param argmax  每个输出对应的输入平面内下标，窗口无有效位置时为-1
+     */
+    public static void maxPoolForward(float[] input, int planes, int height, int width,
+                                      int kernelH, int kernelW, int stride, int padding,
+                                      float[] output, int[] argmax) {
+        int outH = ConvKernel.outputSize(height, kernelH, stride, padding);
+        int outW = ConvKernel.outputSize(width, kernelW, stride, padding);
+        forEachPlane(planes, (long) outH * outW * kernelH * kernelW, plane -> {
+            int inBase = plane * height * width;
+            int out = plane * outH * outW;
+            for (int oh = 0; oh < outH; oh++) {
+                int h0 = oh * stride - padding;
+                int hStart = Math.max(h0, 0);
+                int hEnd = Math.min(h0 + kernelH, height);
+                for (int ow = 0; ow < outW; ow++, out++) {
+                    int w0 = ow * stride - padding;
+                    int wStart = Math.max(w0, 0);
+                    int wEnd = Math.min(w0 + kernelW, width);
+                    float max = Float.NEGATIVE_INFINITY;
+                    int index = -1;
+                    for (int ih = hStart; ih < hEnd; ih++) {
+                        for (int iw = wStart; iw < wEnd; iw++) {
+                            float value = input[inBase + ih * width + iw];
+                            if (index < 0 || value > max) {
+                                max = value;
+                                index = ih * width + iw;
+                            }
+                        }
+                    }
+                    output[out] = index < 0 ? 0f : max;
+                    argmax[out] = index;
+                }
+            }
+        });
+    }
+
+    /**
+     * 最大池化反向：把输出梯度累加到前向记录的最大值位置
+     *
+     * @param outGrad   输出梯度 [planes, OH, OW]
+     * @param argmax    前向记录的下标
+     * @param planes    平面数
+     * @param inPlane   输入平面大小 H×W
+     * @param outPlane  输出平面大小 OH×OW
+     * @param inputGrad 输入梯度 [planes, H, W]，需预先置零
+     */
+    public static void maxPoolBackward(float[] outGrad, int[] argmax, int planes, int inPlane, int outPlane,
+                                       float[] inputGrad) {
+        forEachPlane(planes, outPlane, plane -> {
+            int inBase = plane * inPlane;
+            for (int o = plane * outPlane, end = o + outPlane; o < end; o++) {
+                if (argmax[o] >= 0) {
+                    inputGrad[inBase + argmax[o]] += outGrad[o];
+                }
+            }
+        });
+    }
+
+    /**
+     * 平均池化前向（除以窗口内有效位置数）
+     *
+     * @param input   输入数据 [planes, H, W]
+     * @param planes  平面数（批次×通道）
+     * @param height  输入高度
+     * @param width   输入宽度
+     * @param kernelH 窗口高度
+     * @param kernelW 窗口宽度
+     * @param stride  步长
+     * @param padding 填充大小
+     * @param output  输出数据 [planes, OH, OW]
+     */
+    public static void avgPoolForward(float[] input, int planes, int height, int width,
+                                      int kernelH, int kernelW, int stride, int padding, float[] output) {
+        int outH = ConvKernel.outputSize(height, kernelH, stride, padding);
+        int outW = ConvKernel.outputSize(width, kernelW, stride, padding);
+        forEachPlane(planes, (long) outH * outW * kernelH * kernelW, plane -> {
+            int inBase = plane * height * width;
+            int out = plane * outH * outW;
+            for (int oh = 0; oh < outH; oh++) {
+                int h0 = oh * stride - padding;
+                int hStart = Math.max(h0, 0);
+                int hEnd = Math.min(h0 + kernelH, height);
+                for (int ow = 0; ow < outW; ow++, out++) {
+                    int w0 = ow * stride - padding;
+                    int wStart = Math.max(w0, 0);
+                    int wEnd = Math.min(w0 + kernelW, width);
+                    float sum = 0f;
+                    for (int ih = hStart; ih < hEnd; ih++) {
+                        for (int iw = wStart; iw < wEnd; iw++) {
+                            sum += input[inBase + ih * width + iw];
+                        }
+                    }
+                    int count = Math.max(hEnd - hStart, 0) * Math.max(wEnd - wStart, 0);
+                    output[out] = count > 0 ? sum / count : 0f;
+                }
+            }
+        });
+    }
+
+    /**
+     * 平均池化反向：每个输出梯度均分给其窗口内的有效位置
+     *
+     * @param outGrad   输出梯度 [planes, OH, OW]
+     * @param planes    平面数
+     * @param height    输入高度
+     * @param width     输入宽度
+     * @param kernelH   窗口高度
+     * @param kernelW   窗口宽度
+     * @param stride    步长
+     * @param padding   填充大小
+     * @param inputGrad 输入梯度 [planes, H, W]，需预先置零
+     */
+    public static void avgPoolBackward(float[] outGrad, int planes, int height, int width,
+                                       int kernelH, int kernelW, int stride, int padding, float[] inputGrad) {
+        int outH = ConvKernel.outputSize(height, kernelH, stride, padding);
+        int outW = ConvKernel.outputSize(width, kernelW, stride, padding);
+        forEachPlane(planes, (long) outH * outW * kernelH * kernelW, plane -> {
+            int inBase = plane * height * width;
+            int out = plane * outH * outW;
+            for (int oh = 0; oh < outH; oh++) {
+                int h0 = oh * stride - padding;
+                int hStart = Math.max(h0, 0);
+                int hEnd = Math.min(h0 + kernelH, height);
+                for (int ow = 0; ow < outW; ow++, out++) {
+                    int w0 = ow * stride - padding;
+                    int wStart = Math.max(w0, 0);
+                    int wEnd = Math.min(w0 + kernelW, width);
+                    int count = Math.max(hEnd - hStart, 0) * Math.max(wEnd - wStart, 0);
+                    if (count == 0) {
+                        continue;
+                    }
+                    float grad = outGrad[out] / count;
+                    for (int ih = hStart; ih < hEnd; ih++) {
+                        for (int iw = wStart; iw < wEnd; iw++) {
+                            inputGrad[inBase + ih * width + iw] += grad;
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 对每个平面执行计算，总计算量达到阈值且有多个线程时并行
+     */
+    private static void forEachPlane(int planes, long workPerPlane, IntConsumer body) {
+        IntStream range = IntStream.range(0, planes);
+        boolean parallel = ForkJoinPool.getCommonPoolParallelism() > 1
+                && planes > 1 && workPerPlane * planes >= PARALLEL_THRESHOLD;
+        (parallel ? range.parallel() : range).forEach(body);
+    }
+}
@@ -28,7 +28,7 @@ public class AccumulationOperations {
      * @throws RuntimeException         当数组不是矩阵时抛出
      */
     public static NdArrayCpu addAt(NdArrayCpu array, int[] rowSlices, int[] colSlices, NdArray other) {
-        NdArrayCpu otherArray = (NdArrayCpu) other;
+        NdArrayCpu otherArray = NdArrayCpu.asCpu(other);
 
         // 验证当前数组是否为矩阵
         if (!array.shape.isMatrix()) {
@@ -156,7 +156,7 @@ public class AccumulationOperations {
             throw new IllegalArgumentException("要累加的数组不能为null");
         }
 
-        if (((NdArrayCpu) other).buffer.length == 0) {
+        if (NdArrayCpu.asCpu(other).buffer.length == 0) {
             throw new IllegalArgumentException("要累加的数组不能为空");
         }
     }
@@ -203,7 +203,7 @@ public class AccumulationOperations {
         int[] otherIdx = new int[dimNum];
         int[] targetIdx = new int[dimNum];
 
-        NdArrayCpu otherArray = (NdArrayCpu) other;
+        NdArrayCpu otherArray = NdArrayCpu.asCpu(other);
         for (int flat = 0; flat < otherArray.buffer.length; flat++) {
             IndexConverter.flatToMultiIndex(flat, otherIdx, otherShape);
             System.arraycopy(otherIdx, 0, targetIdx, 0, dimNum);
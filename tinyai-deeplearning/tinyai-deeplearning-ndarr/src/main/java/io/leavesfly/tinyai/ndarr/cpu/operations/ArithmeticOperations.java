@@ -1,57 +1,107 @@
 package io.leavesfly.tinyai.ndarr.cpu.operations;
 
 import io.leavesfly.tinyai.ndarr.cpu.NdArrayCpu;
+import io.leavesfly.tinyai.ndarr.cpu.simd.FloatKernels;
+import io.leavesfly.tinyai.ndarr.cpu.simd.KernelBackend;
 import io.leavesfly.tinyai.ndarr.cpu.utils.ArrayValidator;
 
+import java.util.Arrays;
+
 /**
  * 算术运算操作类
  * <p>提供四则运算（加法、减法、乘法、除法）功能</p>
+ * <p>逐元素计算委托给 {@link KernelBackend} 选定的计算内核（标量或SIMD）</p>
+ * <p>除返回新数组的版本外，还提供写入给定输出数组的版本（输出可以与任一输入是同一数组，
+ * 即原地运算），供优化器、梯度累加等热点路径复用缓冲区、避免分配临时数组</p>
  */
 public class ArithmeticOperations {
 
     private static final float EPSILON = 1e-12f;
 
+    private static final FloatKernels KERNELS = KernelBackend.get();
+
+    /**
+     * 二元运算内核，对两个等长数组逐元素运算并写入输出数组
+     */
     @FunctionalInterface
-    private interface FloatBinaryOp {
-        float apply(float a, float b);
+    private interface BinaryKernel {
+        void apply(float[] a, float[] b, float[] out, int length);
+    }
+
+    /**
+     * 标量运算内核，对数组每个元素与标量运算并写入输出数组
+     */
+    @FunctionalInterface
+    private interface ScalarKernel {
+        void apply(float[] a, float scalar, float[] out, int length);
     }
 
     /**
      * 通用的二元运算方法，对两个相同形状的数组进行元素级运算
      *
-     * @param left         左操作数数组
-     * @param right        右操作数数组
-     * @param operation    二元运算操作函数
+     * @param left          左操作数数组
+     * @param right         右操作数数组
+     * @param kernel        二元运算内核
      * @param operationName 操作名称，用于错误提示
      * @return 运算结果数组
      * @throws IllegalArgumentException 当两个数组形状不一致时抛出
      */
-    private static NdArrayCpu binaryOperation(NdArrayCpu left, NdArrayCpu right, FloatBinaryOp operation, String operationName) {
+    private static NdArrayCpu binaryOperation(NdArrayCpu left, NdArrayCpu right, BinaryKernel kernel, String operationName) {
         ArrayValidator.validateShapeCompatibility(left.shape, right.shape, operationName);
         NdArrayCpu result = new NdArrayCpu(left.shape);
-        for (int i = 0; i < left.buffer.length; i++) {
-            result.buffer[i] = operation.apply(left.buffer[i], right.buffer[i]);
-        }
+        kernel.apply(left.buffer, right.buffer, result.buffer, left.buffer.length);
         return result;
     }
 
+    /**
+     * 通用的二元运算方法，结果写入给定的输出数组
+     *
+     * @param left          左操作数数组
+     * @param right         右操作数数组
+     * @param out           输出数组，可以与left或right为同一数组
+     * @param kernel        二元运算内核
+     * @param operationName 操作名称，用于错误提示
+     * @return 输出数组
+     * @throws IllegalArgumentException 当三个数组形状不一致时抛出
+     */
+    private static NdArrayCpu binaryOperation(NdArrayCpu left, NdArrayCpu right, NdArrayCpu out,
+                                              BinaryKernel kernel, String operationName) {
+        ArrayValidator.validateShapeCompatibility(left.shape, right.shape, operationName);
+        ArrayValidator.validateShapeCompatibility(left.shape, out.shape, operationName);
+        kernel.apply(left.buffer, right.buffer, out.buffer, left.buffer.length);
+        return out;
+    }
+
     /**
      * 通用的与标量运算方法，对数组与标量进行运算
      *
-     * @param array     数组
-     * @param scalar    标量值
-     * @param operation 二元运算操作函数
+     * @param array  数组
+     * @param scalar 标量值
+     * @param kernel 标量运算内核
      * @return 运算结果数组
      */
-    private static NdArrayCpu scalarOperation(NdArrayCpu array, Number scalar, FloatBinaryOp operation) {
+    private static NdArrayCpu scalarOperation(NdArrayCpu array, Number scalar, ScalarKernel kernel) {
         NdArrayCpu result = new NdArrayCpu(array.shape);
-        float scalarValue = scalar.floatValue();
-        for (int i = 0; i < array.buffer.length; i++) {
-            result.buffer[i] = operation.apply(array.buffer[i], scalarValue);
-        }
+        kernel.apply(array.buffer, scalar.floatValue(), result.buffer, array.buffer.length);
         return result;
     }
 
+    /**
+     * 通用的与标量运算方法，结果写入给定的输出数组
+     *
+     * @param array  数组
+     * @param scalar 标量值
+     * @param out    输出数组，可以与array为同一数组
+     * @param kernel 标量运算内核
+     * @return 输出数组
+     * @throws IllegalArgumentException 当输出数组形状与输入不一致时抛出
+     */
+    private static NdArrayCpu scalarOperation(NdArrayCpu array, Number scalar, NdArrayCpu out, ScalarKernel kernel) {
+        ArrayValidator.validateShapeCompatibility(array.shape, out.shape, "标量运算");
+        kernel.apply(array.buffer, scalar.floatValue(), out.buffer, array.buffer.length);
+        return out;
+    }
+
     /**
      * 数组加法运算，对应元素相加
      *
@@ -61,7 +111,7 @@ public class ArithmeticOperations {
      * @throws IllegalArgumentException 当两个数组形状不一致时抛出
      */
     public static NdArrayCpu add(NdArrayCpu left, NdArrayCpu right) {
-        return binaryOperation(left, right, Float::sum, "加法");
+        return binaryOperation(left, right, KERNELS::add, "加法");
     }
 
     /**
@@ -73,7 +123,7 @@ public class ArithmeticOperations {
      * @throws IllegalArgumentException 当两个数组形状不一致时抛出
      */
     public static NdArrayCpu sub(NdArrayCpu left, NdArrayCpu right) {
-        return binaryOperation(left, right, (a, b) -> a - b, "减法");
+        return binaryOperation(left, right, KERNELS::sub, "减法");
     }
 
     /**
@@ -85,7 +135,7 @@ public class ArithmeticOperations {
      * @throws IllegalArgumentException 当两个数组形状不一致时抛出
      */
     public static NdArrayCpu mul(NdArrayCpu left, NdArrayCpu right) {
-        return binaryOperation(left, right, (a, b) -> a * b, "乘法");
+        return binaryOperation(left, right, KERNELS::mul, "乘法");
     }
 
     /**
@@ -96,7 +146,7 @@ public class ArithmeticOperations {
      * @return 乘法运算结果
      */
     public static NdArrayCpu mulNum(NdArrayCpu array, Number number) {
-        return scalarOperation(array, number, (a, b) -> a * b);
+        return scalarOperation(array, number, KERNELS::mulScalar);
     }
 
     /**
@@ -109,12 +159,7 @@ public class ArithmeticOperations {
      * @throws ArithmeticException      当除数接近0时抛出
      */
     public static NdArrayCpu div(NdArrayCpu left, NdArrayCpu right) {
-        return binaryOperation(left, right, (a, b) -> {
-            if (Math.abs(b) < EPSILON) {
-                throw new ArithmeticException("除数接近0");
-            }
-            return a / b;
-        }, "除法");
+        return binaryOperation(left, right, KERNELS::div, "除法");
     }
 
     /**
@@ -130,7 +175,146 @@ public class ArithmeticOperations {
         if (Math.abs(value) < EPSILON) {
             throw new ArithmeticException("除数不能为0");
         }
-        return scalarOperation(array, number, (a, b) -> a / b);
+        return scalarOperation(array, number, KERNELS::divScalar);
+    }
+
+    // =============================================================================
+    // 写入输出数组的版本（out可以与输入相同，即原地运算）
+    // =============================================================================
+
+    /**
+     * 加法：out = left + right
+     *
+     * @param left  左操作数数组
+     * @param right 右操作数数组
+     * @param out   输出数组
+     * @return 输出数组
+     * @throws IllegalArgumentException 当数组形状不一致时抛出
+     */
+    public static NdArrayCpu add(NdArrayCpu left, NdArrayCpu right, NdArrayCpu out) {
+        return binaryOperation(left, right, out, KERNELS::add, "加法");
+    }
+
+    /**
+     * 减法：out = left - right
+     *
+     * @param left  左操作数数组
+     * @param right 右操作数数组
+     * @param out   输出数组
+     * @return 输出数组
+     * @throws IllegalArgumentException 当数组形状不一致时抛出
+     */
+    public static NdArrayCpu sub(NdArrayCpu left, NdArrayCpu right, NdArrayCpu out) {
+        return binaryOperation(left, right, out, KERNELS::sub, "减法");
+    }
+
+    /**
+     * 乘法：out = left * right
+     *
+     * @param left  左操作数数组
+     * @param right 右操作数数组
+     * @param out   输出数组
+     * @return 输出数组
+     * @throws IllegalArgumentException 当数组形状不一致时抛出
+     */
+    public static NdArrayCpu mul(NdArrayCpu left, NdArrayCpu right, NdArrayCpu out) {
+        return binaryOperation(left, right, out, KERNELS::mul, "乘法");
+    }
+
+    /**
+     * 除法：out = left / right
+     *
+     * @param left  左操作数数组
+     * @param right 右操作数数组
+     * @param out   输出数组
+     * @return 输出数组
+     * @throws IllegalArgumentException 当数组形状不一致时抛出
+     * @throws ArithmeticException      当除数接近0时抛出
+     */
+    public static NdArrayCpu div(NdArrayCpu left, NdArrayCpu right, NdArrayCpu out) {
+        return binaryOperation(left, right, out, KERNELS::div, "除法");
     }
-}
 
+    /**
+     * 与标量相加：out = array + number
+     *
+     * @param array  数组
+     * @param number 标量值
+     * @param out    输出数组
+     * @return 输出数组
+     */
+    public static NdArrayCpu addNum(NdArrayCpu array, Number number, NdArrayCpu out) {
+        return scalarOperation(array, number, out, KERNELS::addScalar);
+    }
+
+    /**
+     * 与标量相乘：out = array * number
+     *
+     * @param array  数组
+     * @param number 标量值
+     * @param out    输出数组
+     * @return 输出数组
+     */
+    public static NdArrayCpu mulNum(NdArrayCpu array, Number number, NdArrayCpu out) {
+        return scalarOperation(array, number, out, KERNELS::mulScalar);
+    }
+
+    /**
+     * 与标量相除：out = array / number
+     *
+     * @param array  数组
+     * @param number 标量值
+     * @param out    输出数组
+     * @return 输出数组
+     * @throws ArithmeticException 当除数为0时抛出
+     */
+    public static NdArrayCpu divNum(NdArrayCpu array, Number number, NdArrayCpu out) {
+        if (Math.abs(number.floatValue()) < EPSILON) {
+            throw new ArithmeticException("除数不能为0");
+        }
+        return scalarOperation(array, number, out, KERNELS::divScalar);
+    }
+
+    /**
+     * 缩放累加：y += alpha * x，结果直接写回y
+     *
+     * @param y     被累加的数组
+     * @param alpha 缩放系数
+     * @param x     累加项
+     * @return y
+     * @throws IllegalArgumentException 当两个数组形状不一致时抛出
+     */
+    public static NdArrayCpu axpy(NdArrayCpu y, Number alpha, NdArrayCpu x) {
+        ArrayValidator.validateShapeCompatibility(y.shape, x.shape, "axpy");
+        KERNELS.axpy(alpha.floatValue(), x.buffer, 0, y.buffer, 0, y.buffer.length);
+        return y;
+    }
+
+    /**
+     * 将数组所有元素设为同一个值
+     *
+     * @param array 数组
+     * @param value 填充值
+     * @return array
+     */
+    public static NdArrayCpu fill(NdArrayCpu array, Number value) {
+        Arrays.fill(array.buffer, value.floatValue());
+        return array;
+    }
+
+    /**
+     * 将源数组的数据拷贝到目标数组
+     *
+     * @param target 目标数组
+     * @param source 源数组
+     * @return target
+     * @throws IllegalArgumentException 当两个数组形状不一致时抛出
+     */
+    public static NdArrayCpu assign(NdArrayCpu target, NdArrayCpu source) {
+        ArrayValidator.validateShapeCompatibility(target.shape, source.shape, "赋值");
+        if (target.buffer != source.buffer) {
+            System.arraycopy(source.buffer, 0, target.buffer, 0, target.buffer.length);
+        }
+        return target;
+    }
+}
@@ -2,8 +2,12 @@ package io.leavesfly.tinyai.ndarr.cpu.operations;
 
 import io.leavesfly.tinyai.ndarr.cpu.NdArrayCpu;
 import io.leavesfly.tinyai.ndarr.cpu.ShapeCpu;
+import io.leavesfly.tinyai.ndarr.cpu.simd.FloatKernels;
+import io.leavesfly.tinyai.ndarr.cpu.simd.KernelBackend;
 import io.leavesfly.tinyai.ndarr.cpu.utils.ArrayValidator;
 
+import java.util.Arrays;
+
 /**
  * 轴操作类
  * <p>提供沿指定轴进行的各种操作，包括最大值、最小值、argMax等</p>
@@ -11,6 +15,8 @@ import io.leavesfly.tinyai.ndarr.cpu.utils.ArrayValidator;
  */
 public class AxisOperations {
 
+    private static final FloatKernels KERNELS = KernelBackend.get();
+
     /**
      * 沿指定轴查找最大值的索引
      *
@@ -150,17 +156,8 @@ public class AxisOperations {
             int resultBatchOffset = batch * ctx.secondLastDimSize;
 
             for (int i = 0; i < ctx.secondLastDimSize; i++) {
-                float max = Float.NEGATIVE_INFINITY;
                 int rowOffset = batchOffset + i * rowStride;
-
-                for (int j = 0; j < ctx.lastDimSize; j++) {
-                    float value = srcBuffer[rowOffset + j];
-                    if (max < value) {
-                        max = value;
-                    }
-                }
-
-                dstBuffer[resultBatchOffset + i] = max;
+                dstBuffer[resultBatchOffset + i] = KERNELS.max(srcBuffer, rowOffset, ctx.lastDimSize);
             }
         }
         return result;
@@ -184,18 +181,10 @@ public class AxisOperations {
             int batchOffset = batch * matrixSize;
             int resultBatchOffset = batch * ctx.lastDimSize;
 
-            for (int j = 0; j < ctx.lastDimSize; j++) {
-                float max = Float.NEGATIVE_INFINITY;
-
-                for (int i = 0; i < ctx.secondLastDimSize; i++) {
-                    int index = batchOffset + i * rowStride + j;
-                    float value = srcBuffer[index];
-                    if (max < value) {
-                        max = value;
-                    }
-                }
-
-                dstBuffer[resultBatchOffset + j] = max;
+            // 逐行与当前最大值比较，保持连续内存访问
+            Arrays.fill(dstBuffer, resultBatchOffset, resultBatchOffset + ctx.lastDimSize, Float.NEGATIVE_INFINITY);
+            for (int i = 0; i < ctx.secondLastDimSize; i++) {
+                KERNELS.maxInto(srcBuffer, batchOffset + i * rowStride, dstBuffer, resultBatchOffset, ctx.lastDimSize);
             }
         }
         return result;
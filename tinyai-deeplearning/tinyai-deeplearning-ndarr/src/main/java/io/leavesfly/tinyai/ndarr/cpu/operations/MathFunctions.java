@@ -3,8 +3,10 @@ package io.leavesfly.tinyai.ndarr.cpu.operations;
 import io.leavesfly.tinyai.ndarr.cpu.NdArrayCpu;
 import io.leavesfly.tinyai.ndarr.cpu.ShapeCpu;
 import io.leavesfly.tinyai.ndarr.cpu.aggregations.ReductionOperations;
-import io.leavesfly.tinyai.ndarr.cpu.operations.ArithmeticOperations;
+import io.leavesfly.tinyai.ndarr.cpu.simd.FloatKernels;
+import io.leavesfly.tinyai.ndarr.cpu.simd.KernelBackend;
 import io.leavesfly.tinyai.ndarr.cpu.transformations.TransformationOperations;
+import io.leavesfly.tinyai.ndarr.cpu.utils.ArrayValidator;
 
 /**
  * 数学函数操作类
@@ -16,11 +18,18 @@ public class MathFunctions {
     // 使用更小的阈值，避免优化器在添加极小epsilon时被误判为接近0而抛异常
     private static final float EPSILON = 1e-12f;
 
+    private static final FloatKernels KERNELS = KernelBackend.get();
+
     @FunctionalInterface
     private interface FloatUnaryOp {
         float apply(float a);
     }
 
+    @FunctionalInterface
+    private interface UnaryKernel {
+        void apply(float[] a, float[] out, int length);
+    }
+
     /**
      * 通用的一元运算方法，对数组每个元素进行一元运算
      *
@@ -36,6 +45,19 @@ public class MathFunctions {
         return result;
     }
 
+    /**
+     * 使用计算内核对数组每个元素进行一元运算
+     *
+     * @param array  数组
+     * @param kernel 一元运算内核
+     * @return 运算结果数组
+     */
+    private static NdArrayCpu kernelOperation(NdArrayCpu array, UnaryKernel kernel) {
+        NdArrayCpu result = new NdArrayCpu(array.shape);
+        kernel.apply(array.buffer, result.buffer, array.buffer.length);
+        return result;
+    }
+
     /**
      * 幂运算，对数组每个元素进行幂运算
      *
@@ -65,7 +87,21 @@ public class MathFunctions {
      * @return 平方根运算结果数组
      */
     public static NdArrayCpu sqrt(NdArrayCpu array) {
-        return unaryOperation(array, x -> (float) Math.sqrt(x));
+        return kernelOperation(array, KERNELS::sqrt);
+    }
+
+    /**
+     * 平方根运算，结果写入给定的输出数组（可以与输入为同一数组）
+     *
+     * @param array 数组
+     * @param out   输出数组，形状必须与输入一致
+     * @return 输出数组
+     * @throws IllegalArgumentException 当输出数组形状与输入不一致时抛出
+     */
+    public static NdArrayCpu sqrt(NdArrayCpu array, NdArrayCpu out) {
+        ArrayValidator.validateShapeCompatibility(array.shape, out.shape, "平方根");
+        KERNELS.sqrt(array.buffer, out.buffer, array.buffer.length);
+        return out;
     }
 
     /**
@@ -75,7 +111,7 @@ public class MathFunctions {
      * @return 指数运算结果数组
      */
     public static NdArrayCpu exp(NdArrayCpu array) {
-        return unaryOperation(array, x -> (float) Math.exp(x));
+        return kernelOperation(array, KERNELS::exp);
     }
 
     /**
@@ -105,7 +141,7 @@ public class MathFunctions {
      * @return 双曲正切运算结果数组
      */
     public static NdArrayCpu tanh(NdArrayCpu array) {
-        return unaryOperation(array, x -> (float) Math.tanh(x));
+        return kernelOperation(array, KERNELS::tanh);
     }
 
     /**
@@ -117,7 +153,7 @@ public class MathFunctions {
      * @return Sigmoid运算结果数组
      */
     public static NdArrayCpu sigmoid(NdArrayCpu array) {
-        return unaryOperation(array, x -> (float) (1.0 / (1.0 + Math.exp(-x))));
+        return kernelOperation(array, KERNELS::sigmoid);
     }
 
     /**
@@ -128,12 +164,7 @@ public class MathFunctions {
      * @throws ArithmeticException 当输入值小于等于0时抛出
      */
     public static NdArrayCpu log(NdArrayCpu array) {
-        return unaryOperation(array, x -> {
-            if (x <= 0f) {
-                throw new ArithmeticException("对数的输入必须大于0");
-            }
-            return (float) Math.log(x);
-        });
+        return kernelOperation(array, KERNELS::log);
     }
 
     /**
@@ -197,6 +228,7 @@ public class MathFunctions {
      * Softmax函数运算，沿指定 axis 计算概率分布
      *
      * <p>使用数值稳定版本实现：先减去该轴上的最大值，再进行 exp 和归一化</p>
+     * <p>沿最后一维计算时（注意力分数的常见情况）逐行交给计算内核一次完成，不产生中间数组</p>
      *
      * @param array 数组
      * @param axis  计算 softmax 的维度，支持负轴（-1 表示最后一维）
@@ -212,6 +244,10 @@ public class MathFunctions {
             );
         }
 
+        if (normalizedAxis == dimNum - 1) {
+            return softMaxLastAxis(array);
+        }
+
         // 1) 按 axis 求最大值（数值稳定）
         NdArrayCpu maxReduced = ReductionOperations.max(array, normalizedAxis);
 
@@ -240,5 +276,22 @@ public class MathFunctions {
         // 5) 归一化
         return ArithmeticOperations.div(expValues, sumBroadcast);
     }
-}
 
+    /**
+     * 沿最后一维逐行计算softmax
+     *
+     * @param array 数组
+     * @return Softmax运算结果数组
+     */
+    private static NdArrayCpu softMaxLastAxis(NdArrayCpu array) {
+        NdArrayCpu result = new NdArrayCpu(array.shape);
+        int rowLength = array.shape.getDimension(array.shape.getDimNum() - 1);
+        if (rowLength == 0) {
+            return result;
+        }
+        for (int offset = 0; offset < array.buffer.length; offset += rowLength) {
+            KERNELS.softmaxRow(array.buffer, offset, result.buffer, offset, rowLength);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,197 @@
+package io.leavesfly.tinyai.ndarr.cpu.pool;
+
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按长度分桶的float[]缓冲池
+ *
+ * <p>{@link io.leavesfly.tinyai.ndarr.cpu.NdArrayCpu#buffer} 的长度必须与形状大小严格相等，
+ * 因此按精确长度分桶，而不是按2的幂向上取整。训练和推理中同一形状的数组会被反复创建，
+ * 精确分桶即可获得较高的命中率。</p>
+ *
+ * <p>缓冲池本身不会被NdArrayCpu直接使用，只有通过 {@link BufferScope#zeros} 等方法显式申请的缓冲才从池中获取，
+ * 并在作用域关闭时归还。</p>
+ *
+ * <p>相关系统属性：</p>
+ * <ul>
+ *   <li>{@code tinyai.pool.maxBytes}：池中最多保留的字节数，默认256MB，超过后归还的缓冲直接丢弃</li>
+ * </ul>
+ *
+ * <p>该类是线程安全的。</p>
+ */
+public final class BufferPool {
+
+    /**
+     * 控制池中最多保留字节数的系统属性
+     */
+    public static final String MAX_BYTES_PROPERTY = "tinyai.pool.maxBytes";
+
+    /**
+     * 小于该长度的缓冲直接分配，不进入缓冲池：小数组分配代价低，入池反而增加同步开销
+     */
+    public static final int MIN_POOLED_LENGTH = 64;
+
+    private static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final BufferPool DEFAULT = new BufferPool(Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES));
+
+    private final ConcurrentHashMap<Integer, Deque<float[]>> buckets = new ConcurrentHashMap<>();
+    private final long maxRetainedBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final AtomicLong droppedBytes = new AtomicLong();
+
+    /**
+     * 创建缓冲池
+     *
+     * @param maxRetainedBytes 池中最多保留的字节数
+     */
+    public BufferPool(long maxRetainedBytes) {
+        if (maxRetainedBytes < 0) {
+            throw new IllegalArgumentException("maxRetainedBytes不能为负数: " + maxRetainedBytes);
+        }
+        this.maxRetainedBytes = maxRetainedBytes;
+    }
+
+    /**
+     * 获取进程级默认缓冲池
+     *
+     * @return 默认缓冲池
+     */
+    public static BufferPool getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * 获取一个全零的缓冲
+     *
+     * @param length 缓冲长度
+     * @return 长度恰为length、所有元素为0的数组
+     */
+    public float[] acquire(int length) {
+        if (length < MIN_POOLED_LENGTH) {
+            return new float[length];
+        }
+        Deque<float[]> bucket = buckets.get(length);
+        float[] buffer = bucket == null ? null : bucket.pollFirst();
+        if (buffer == null) {
+            misses.incrementAndGet();
+            return new float[length];
+        }
+        hits.incrementAndGet();
+        retainedBytes.addAndGet(-bytesOf(length));
+        Arrays.fill(buffer, 0f);
+        return buffer;
+    }
+
+    /**
+     * 归还缓冲，调用方之后不得再访问该数组
+     *
+     * @param buffer 缓冲
+     */
+    public void release(float[] buffer) {
+        if (buffer == null || buffer.length < MIN_POOLED_LENGTH) {
+            return;
+        }
+        long bytes = bytesOf(buffer.length);
+        if (retainedBytes.addAndGet(bytes) > maxRetainedBytes) {
+            retainedBytes.addAndGet(-bytes);
+            droppedBytes.addAndGet(bytes);
+            return;
+        }
+        buckets.computeIfAbsent(buffer.length, k -> new ConcurrentLinkedDeque<>()).offerFirst(buffer);
+    }
+
+    /**
+     * 清空池中保留的缓冲，统计计数保持不变
+     */
+    public void clear() {
+        for (Deque<float[]> bucket : buckets.values()) {
+            float[] buffer;
+            while ((buffer = bucket.pollFirst()) != null) {
+                retainedBytes.addAndGet(-bytesOf(buffer.length));
+            }
+        }
+    }
+
+    /**
+     * 将命中、未命中、丢弃计数清零
+     */
+    public void resetStats() {
+        hits.set(0);
+        misses.set(0);
+        droppedBytes.set(0);
+    }
+
+    /**
+     * 从池中取到缓冲的次数
+     *
+     * @return 命中次数
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * 池中没有可用缓冲而新分配的次数（不含小于 {@link #MIN_POOLED_LENGTH} 的直接分配）
+     *
+     * @return 未命中次数
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * 命中率
+     *
+     * @return 命中次数 / (命中次数 + 未命中次数)，尚无请求时返回0
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * 池中当前保留的字节数
+     *
+     * @return 保留字节数
+     */
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    /**
+     * 因超过保留上限而被丢弃的字节数
+     *
+     * @return 丢弃字节数
+     */
+    public long getDroppedBytes() {
+        return droppedBytes.get();
+    }
+
+    /**
+     * 池中最多保留的字节数
+     *
+     * @return 保留上限
+     */
+    public long getMaxRetainedBytes() {
+        return maxRetainedBytes;
+    }
+
+    private static long bytesOf(int length) {
+        return (long) length * Float.BYTES;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BufferPool{hits=%d, misses=%d, hitRate=%.3f, retainedBytes=%d, droppedBytes=%d}",
+                getHitCount(), getMissCount(), getHitRate(), getRetainedBytes(), getDroppedBytes());
+    }
+}
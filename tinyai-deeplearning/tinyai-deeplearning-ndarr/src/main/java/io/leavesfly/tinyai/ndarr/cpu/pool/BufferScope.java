@@ -0,0 +1,161 @@
+package io.leavesfly.tinyai.ndarr.cpu.pool;
+
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.ndarr.cpu.NdArrayCpu;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 缓冲作用域（显式使用的内存竞技场）
+ *
+ * <p>只有通过作用域自身的 {@link #zeros(Shape)} / {@link #allocate(int)} 申请的缓冲才从 {@link BufferPool} 获取，
+ * 作用域关闭时统一归还，供下一次迭代复用。NdArrayCpu的构造函数、工厂方法以及各类运算结果
+ * 始终直接分配，不受作用域影响，因此参数、梯度、优化器状态和KV缓存等长期存在的数组不会被误回收。</p>
+ *
+ * <p>适合在循环中反复申请同形状临时缓冲的代码（如 {@link io.leavesfly.tinyai.ndarr.cpu.matrix.ConvKernel} 的列块、
+ * 推理时每个解码步的注意力分数和logits），需要在作用域之外继续使用的数组必须通过 {@link #keep(NdArray...)} 标记。</p>
+ *
+ * <p>使用示例：</p>
+ * <pre>
+ * try (BufferScope scope = BufferScope.open()) {
+ *     NdArray workspace = scope.zeros(Shape.of(batch, hidden));
+ *     ...
+ * }
+ * </pre>
+ *
+ * <p>作用域对象不是线程安全的，必须在打开它的线程上使用和关闭；不同作用域之间相互独立，可以任意嵌套。</p>
+ */
+public final class BufferScope implements AutoCloseable {
+
+    private final BufferPool pool;
+    private final Thread owner;
+    private final List<float[]> allocated = new ArrayList<>();
+    private final Set<float[]> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean closed;
+
+    private BufferScope(BufferPool pool) {
+        this.pool = pool;
+        this.owner = Thread.currentThread();
+    }
+
+    /**
+     * 打开使用默认缓冲池的作用域
+     *
+     * @return 作用域
+     */
+    public static BufferScope open() {
+        return open(BufferPool.getDefault());
+    }
+
+    /**
+     * 打开作用域
+     *
+     * @param pool 缓冲池
+     * @return 作用域
+     */
+    public static BufferScope open(BufferPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("pool不能为null");
+        }
+        return new BufferScope(pool);
+    }
+
+    /**
+     * 从缓冲池中取一个全零缓冲并登记到本作用域
+     *
+     * @param length 缓冲长度
+     * @return 全零数组
+     * @throws IllegalStateException 作用域已关闭或在其他线程上调用时抛出
+     */
+    public float[] allocate(int length) {
+        checkOpen();
+        float[] buffer = pool.acquire(length);
+        if (buffer.length >= BufferPool.MIN_POOLED_LENGTH) {
+            allocated.add(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * 创建缓冲来自缓冲池的全零数组，作用域关闭后该数组不能再使用（除非通过keep保留）
+     *
+     * @param shape 数组形状
+     * @return 全零数组
+     * @throws IllegalStateException 作用域已关闭或在其他线程上调用时抛出
+     */
+    public NdArray zeros(Shape shape) {
+        return new NdArrayCpu(allocate(shape.size()), shape);
+    }
+
+    /**
+     * 标记数组在作用域关闭后仍需使用，其缓冲不会被归还
+     *
+     * @param arrays 需要保留的数组
+     * @return 本作用域
+     */
+    public BufferScope keep(NdArray... arrays) {
+        for (NdArray array : arrays) {
+            if (array != null) {
+                kept.add(array.getArray());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 本作用域当前登记的缓冲数量
+     *
+     * @return 缓冲数量
+     */
+    public int getAllocatedCount() {
+        return allocated.size();
+    }
+
+    /**
+     * 获取本作用域使用的缓冲池
+     *
+     * @return 缓冲池
+     */
+    public BufferPool getPool() {
+        return pool;
+    }
+
+    /**
+     * 关闭作用域，将未被保留的缓冲归还缓冲池
+     *
+     * @throws IllegalStateException 在其他线程上关闭时抛出
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        checkOwner();
+        closed = true;
+        for (float[] buffer : allocated) {
+            if (!kept.contains(buffer)) {
+                pool.release(buffer);
+            }
+        }
+        allocated.clear();
+        kept.clear();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("BufferScope已关闭");
+        }
+        checkOwner();
+    }
+
+    private void checkOwner() {
+        if (Thread.currentThread() != owner) {
+            throw new IllegalStateException("BufferScope必须在打开它的线程上使用");
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package io.leavesfly.tinyai.ndarr.cpu.simd;
+
+/**
+ * 一维float数组上的基础计算内核
+ *
+ * <p>NdArrayCpu的逐元素运算和归约运算最终都落到这些内核上。
+ * 所有方法只处理 [offset, offset + length) 范围内的连续数据，不分配新数组。</p>
+ *
+ * <p>实现类：</p>
+ * <ul>
+ *   <li>{@link ScalarKernels}：标量循环，始终可用</li>
+ *   <li>{@link VectorKernels}：基于 jdk.incubator.vector 的SIMD实现</li>
+ * </ul>
+ *
+ * @see KernelBackend
+ */
+public interface FloatKernels {
+
+    /**
+     * 除法运算判断除数接近0的阈值
+     */
+    float EPSILON = 1e-12f;
+
+    /**
+     * 获取内核名称
+     *
+     * @return 内核名称
+     */
+    String name();
+
+    // =============================================================================
+    // 逐元素二元运算：out[i] = a[i] op b[i]
+    // =============================================================================
+
+    void add(float[] a, float[] b, float[] out, int length);
+
+    void sub(float[] a, float[] b, float[] out, int length);
+
+    void mul(float[] a, float[] b, float[] out, int length);
+
+    /**
+     * 逐元素除法
+     *
+     * @throws ArithmeticException 当除数接近0时抛出
+     */
+    void div(float[] a, float[] b, float[] out, int length);
+
+    // =============================================================================
+    // 与标量运算：out[i] = a[i] op scalar
+    // =============================================================================
+
+    void addScalar(float[] a, float scalar, float[] out, int length);
+
+    void mulScalar(float[] a, float scalar, float[] out, int length);
+
+    void divScalar(float[] a, float scalar, float[] out, int length);
+
+    /**
+     * 缩放累加：y[i] += alpha * x[i]
+     */
+    void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length);
+
+    // =============================================================================
+    // 逐元素数学函数：out[i] = f(a[i])
+    // =============================================================================
+
+    void exp(float[] a, float[] out, int length);
+
+    void tanh(float[] a, float[] out, int length);
+
+    void sigmoid(float[] a, float[] out, int length);
+
+    void sqrt(float[] a, float[] out, int length);
+
+    /**
+     * 逐元素自然对数
+     *
+     * @throws ArithmeticException 当输入值小于等于0时抛出
+     */
+    void log(float[] a, float[] out, int length);
+
+    // =============================================================================
+    // 归约运算
+    // =============================================================================
+
+    /**
+     * 求和
+     */
+    float sum(float[] a, int offset, int length);
+
+    /**
+     * 最大值，空区间返回负无穷
+     */
+    float max(float[] a, int offset, int length);
+
+    /**
+     * 最小值，空区间返回正无穷
+     */
+    float min(float[] a, int offset, int length);
+
+    /**
+     * 与给定均值之差的平方和：Σ(a[i] - mean)²
+     */
+    float sumSquaredDiff(float[] a, int offset, int length, float mean);
+
+    // =============================================================================
+    // 累积运算（用于非末轴的归约）：dst[i] = dst[i] op src[i]
+    // =============================================================================
+
+    void accumulate(float[] src, int srcOffset, float[] dst, int dstOffset, int length);
+
+    void maxInto(float[] src, int srcOffset, float[] dst, int dstOffset, int length);
+
+    void minInto(float[] src, int srcOffset, float[] dst, int dstOffset, int length);
+
+    /**
+     * 对一行数据做数值稳定的softmax：out = exp(x - max) / max(Σexp(x - max), EPSILON)
+     */
+    void softmaxRow(float[] src, int srcOffset, float[] dst, int dstOffset, int length);
+}
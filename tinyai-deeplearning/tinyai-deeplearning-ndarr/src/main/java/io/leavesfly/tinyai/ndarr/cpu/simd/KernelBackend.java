@@ -0,0 +1,71 @@
+package io.leavesfly.tinyai.ndarr.cpu.simd;
+
+/**
+ * 计算内核选择器
+ *
+ * <p>在类初始化时（即进程启动后第一次运算时）选定计算内核，之后不再变化：</p>
+ * <ul>
+ *   <li>系统属性 {@code tinyai.simd=false}：强制使用标量内核</li>
+ *   <li>默认（{@code auto}）：当JVM以 {@code --add-modules jdk.incubator.vector} 启动时使用SIMD内核，
+ *       否则回退到标量内核</li>
+ * </ul>
+ *
+ * <p>使用示例：</p>
+ * <pre>
+ * java --add-modules jdk.incubator.vector -Dtinyai.simd=auto -cp ... MainClass
+ * </pre>
+ */
+public final class KernelBackend {
+
+    /**
+     * 控制是否启用SIMD内核的系统属性
+     */
+    public static final String SIMD_PROPERTY = "tinyai.simd";
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private static final FloatKernels KERNELS = select();
+
+    private KernelBackend() {
+    }
+
+    /**
+     * 获取当前使用的计算内核
+     *
+     * @return 计算内核
+     */
+    public static FloatKernels get() {
+        return KERNELS;
+    }
+
+    /**
+     * 判断当前是否使用SIMD内核
+     *
+     * @return 使用SIMD内核时返回true
+     */
+    public static boolean isVectorized() {
+        return KERNELS != ScalarKernels.INSTANCE;
+    }
+
+    /**
+     * 获取标量内核，可用于结果比对
+     *
+     * @return 标量内核
+     */
+    public static FloatKernels scalar() {
+        return ScalarKernels.INSTANCE;
+    }
+
+    private static FloatKernels select() {
+        String mode = System.getProperty(SIMD_PROPERTY, "auto");
+        if ("false".equalsIgnoreCase(mode) || !ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            return ScalarKernels.INSTANCE;
+        }
+        try {
+            return new VectorKernels();
+        } catch (LinkageError e) {
+            // 孵化模块不可用或当前平台不支持，回退到标量实现
+            return ScalarKernels.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package io.leavesfly.tinyai.ndarr.cpu.simd;
+
+/**
+ * 标量循环实现的计算内核
+ *
+ * <p>不依赖任何孵化模块，作为默认实现和SIMD不可用时的回退实现。
+ * 计算顺序与NdArrayCpu原有的逐元素实现保持一致，结果逐位相同。</p>
+ */
+public final class ScalarKernels implements FloatKernels {
+
+    static final ScalarKernels INSTANCE = new ScalarKernels();
+
+    private ScalarKernels() {
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    @Override
+    public void add(float[] a, float[] b, float[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = a[i] + b[i];
+        }
+    }
+
+    @Override
+    public void sub(float[] a, float[] b, float[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = a[i] - b[i];
+        }
+    }
+
+    @Override
+    public void mul(float[] a, float[] b, float[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = a[i] * b[i];
+        }
+    }
+
+    @Override
+    public void div(float[] a, float[] b, float[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            if (Math.abs(b[i]) < EPSILON) {
+                throw new ArithmeticException("除数接近0");
+            }
+            out[i] = a[i] / b[i];
+        }
+    }
+
+    @Override
+    public void addScalar(float[] a, float scalar, float[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = a[i] + scalar;
+        }
+    }
+
+    @Override
+    public void mulScalar(float[] a, float scalar, float[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = a[i] * scalar;
+        }
+    }
+
+    @Override
+    public void divScalar(float[] a, float scalar, float[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = a[i] / scalar;
+        }
+    }
+
+    @Override
+    public void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public void exp(float[] a, float[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = (float) Math.exp(a[i]);
+        }
+    }
+
+    @Override
+    public void tanh(float[] a, float[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = (float) Math.tanh(a[i]);
+        }
+    }
+
+    @Override
+    public void sigmoid(float[] a, float[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = (float) (1.0 / (1.0 + Math.exp(-a[i])));
+        }
+    }
+
+    @Override
+    public void sqrt(float[] a, float[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = (float) Math.sqrt(a[i]);
+        }
+    }
+
+    @Override
+    public void log(float[] a, float[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            float x = a[i];
+            if (x <= 0f) {
+                throw new ArithmeticException("对数的输入必须大于0");
+            }
+            out[i] = (float) Math.log(x);
+        }
+    }
+
+    @Override
+    public float sum(float[] a, int offset, int length) {
+        float sum = 0f;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            sum += a[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float max(float[] a, int offset, int length) {
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (a[i] > max) {
+                max = a[i];
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public float min(float[] a, int offset, int length) {
+        float min = Float.POSITIVE_INFINITY;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (a[i] < min) {
+                min = a[i];
+            }
+        }
+        return min;
+    }
+
+    @Override
+    public float sumSquaredDiff(float[] a, int offset, int length, float mean) {
+        float sum = 0f;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            float diff = a[i] - mean;
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    public void accumulate(float[] src, int srcOffset, float[] dst, int dstOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] += src[srcOffset + i];
+        }
+    }
+
+    @Override
+    public void maxInto(float[] src, int srcOffset, float[] dst, int dstOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            float value = src[srcOffset + i];
+            if (value > dst[dstOffset + i]) {
+                dst[dstOffset + i] = value;
+            }
+        }
+    }
+
+    @Override
+    public void minInto(float[] src, int srcOffset, float[] dst, int dstOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            float value = src[srcOffset + i];
+            if (value < dst[dstOffset + i]) {
+                dst[dstOffset + i] = value;
+            }
+        }
+    }
+
+    @Override
+    public void softmaxRow(float[] src, int srcOffset, float[] dst, int dstOffset, int length) {
+        float max = max(src, srcOffset, length);
+        float sum = 0f;
+        for (int i = 0; i < length; i++) {
+            float e = (float) Math.exp(src[srcOffset + i] - max);
+            dst[dstOffset + i] = e;
+            sum += e;
+        }
+        float denominator = Math.max(sum, EPSILON);
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = dst[dstOffset + i] / denominator;
+        }
+    }
+}
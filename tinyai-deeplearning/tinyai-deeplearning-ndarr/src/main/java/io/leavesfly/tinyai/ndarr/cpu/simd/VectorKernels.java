@@ -0,0 +1,349 @@
+package io.leavesfly.tinyai.ndarr.cpu.simd;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 基于 jdk.incubator.vector 的SIMD计算内核
+ *
+ * <p>使用平台首选的向量宽度（AVX2为8路、AVX-512为16路）处理主体部分，尾部用标量循环补齐。
+ * 超越函数（exp/tanh/log）使用 {@link VectorOperators} 的向量化实现，与 {@link Math}
+ * 的结果在float精度内一致；求和类归约按向量分路累加，结果与标量实现只存在浮点舍入差异。</p>
+ *
+ * <p>仅当运行时通过 {@code --add-modules jdk.incubator.vector} 加载了孵化模块时才会被
+ * {@link KernelBackend} 加载，否则不会触发本类的类加载。</p>
+ */
+final class VectorKernels implements FloatKernels {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private static final int LANES = SPECIES.length();
+
+    VectorKernels() {
+    }
+
+    @Override
+    public String name() {
+        return "vector-" + SPECIES.vectorBitSize();
+    }
+
+    @Override
+    public void add(float[] a, float[] b, float[] out, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            FloatVector.fromArray(SPECIES, a, i).add(FloatVector.fromArray(SPECIES, b, i)).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = a[i] + b[i];
+        }
+    }
+
+    @Override
+    public void sub(float[] a, float[] b, float[] out, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            FloatVector.fromArray(SPECIES, a, i).sub(FloatVector.fromArray(SPECIES, b, i)).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = a[i] - b[i];
+        }
+    }
+
+    @Override
+    public void mul(float[] a, float[] b, float[] out, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            FloatVector.fromArray(SPECIES, a, i).mul(FloatVector.fromArray(SPECIES, b, i)).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = a[i] * b[i];
+        }
+    }
+
+    @Override
+    public void div(float[] a, float[] b, float[] out, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, i);
+            if (vb.abs().compare(VectorOperators.LT, EPSILON).anyTrue()) {
+                throw new ArithmeticException("除数接近0");
+            }
+            FloatVector.fromArray(SPECIES, a, i).div(vb).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            if (Math.abs(b[i]) < EPSILON) {
+                throw new ArithmeticException("除数接近0");
+            }
+            out[i] = a[i] / b[i];
+        }
+    }
+
+    @Override
+    public void addScalar(float[] a, float scalar, float[] out, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            FloatVector.fromArray(SPECIES, a, i).add(scalar).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = a[i] + scalar;
+        }
+    }
+
+    @Override
+    public void mulScalar(float[] a, float scalar, float[] out, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            FloatVector.fromArray(SPECIES, a, i).mul(scalar).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = a[i] * scalar;
+        }
+    }
+
+    @Override
+    public void divScalar(float[] a, float scalar, float[] out, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            FloatVector.fromArray(SPECIES, a, i).div(scalar).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = a[i] / scalar;
+        }
+    }
+
+    @Override
+    public void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            FloatVector vx = FloatVector.fromArray(SPECIES, x, xOffset + i);
+            FloatVector.fromArray(SPECIES, y, yOffset + i).add(vx.mul(alpha)).intoArray(y, yOffset + i);
+        }
+        for (; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public void exp(float[] a, float[] out, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            FloatVector.fromArray(SPECIES, a, i).lanewise(VectorOperators.EXP).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = (float) Math.exp(a[i]);
+        }
+    }
+
+    @Override
+    public void tanh(float[] a, float[] out, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            FloatVector.fromArray(SPECIES, a, i).lanewise(VectorOperators.TANH).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = (float) Math.tanh(a[i]);
+        }
+    }
+
+    @Override
+    public void sigmoid(float[] a, float[] out, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        FloatVector one = FloatVector.broadcast(SPECIES, 1f);
+        for (; i < bound; i += LANES) {
+            FloatVector denominator = FloatVector.fromArray(SPECIES, a, i).neg().lanewise(VectorOperators.EXP).add(one);
+            one.div(denominator).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = (float) (1.0 / (1.0 + Math.exp(-a[i])));
+        }
+    }
+
+    @Override
+    public void sqrt(float[] a, float[] out, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            FloatVector.fromArray(SPECIES, a, i).sqrt().intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = (float) Math.sqrt(a[i]);
+        }
+    }
+
+    @Override
+    public void log(float[] a, float[] out, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+            if (va.compare(VectorOperators.GT, 0f).not().anyTrue()) {
+                throw new ArithmeticException("对数的输入必须大于0");
+            }
+            va.lanewise(VectorOperators.LOG).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            float x = a[i];
+            if (x <= 0f) {
+                throw new ArithmeticException("对数的输入必须大于0");
+            }
+            out[i] = (float) Math.log(x);
+        }
+    }
+
+    @Override
+    public float sum(float[] a, int offset, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        FloatVector acc = FloatVector.zero(SPECIES);
+        for (; i < bound; i += LANES) {
+            acc = acc.add(FloatVector.fromArray(SPECIES, a, offset + i));
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[offset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float max(float[] a, int offset, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        FloatVector acc = FloatVector.broadcast(SPECIES, Float.NEGATIVE_INFINITY);
+        for (; i < bound; i += LANES) {
+            acc = acc.max(FloatVector.fromArray(SPECIES, a, offset + i));
+        }
+        float max = acc.reduceLanes(VectorOperators.MAX);
+        for (; i < length; i++) {
+            if (a[offset + i] > max) {
+                max = a[offset + i];
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public float min(float[] a, int offset, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        FloatVector acc = FloatVector.broadcast(SPECIES, Float.POSITIVE_INFINITY);
+        for (; i < bound; i += LANES) {
+            acc = acc.min(FloatVector.fromArray(SPECIES, a, offset + i));
+        }
+        float min = acc.reduceLanes(VectorOperators.MIN);
+        for (; i < length; i++) {
+            if (a[offset + i] < min) {
+                min = a[offset + i];
+            }
+        }
+        return min;
+    }
+
+    @Override
+    public float sumSquaredDiff(float[] a, int offset, int length, float mean) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        FloatVector acc = FloatVector.zero(SPECIES);
+        for (; i < bound; i += LANES) {
+            FloatVector diff = FloatVector.fromArray(SPECIES, a, offset + i).sub(mean);
+            acc = acc.add(diff.mul(diff));
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float diff = a[offset + i] - mean;
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    public void accumulate(float[] src, int srcOffset, float[] dst, int dstOffset, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            FloatVector.fromArray(SPECIES, dst, dstOffset + i)
+                    .add(FloatVector.fromArray(SPECIES, src, srcOffset + i))
+                    .intoArray(dst, dstOffset + i);
+        }
+        for (; i < length; i++) {
+            dst[dstOffset + i] += src[srcOffset + i];
+        }
+    }
+
+    @Override
+    public void maxInto(float[] src, int srcOffset, float[] dst, int dstOffset, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            FloatVector.fromArray(SPECIES, dst, dstOffset + i)
+                    .max(FloatVector.fromArray(SPECIES, src, srcOffset + i))
+                    .intoArray(dst, dstOffset + i);
+        }
+        for (; i < length; i++) {
+            float value = src[srcOffset + i];
+            if (value > dst[dstOffset + i]) {
+                dst[dstOffset + i] = value;
+            }
+        }
+    }
+
+    @Override
+    public void minInto(float[] src, int srcOffset, float[] dst, int dstOffset, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            FloatVector.fromArray(SPECIES, dst, dstOffset + i)
+                    .min(FloatVector.fromArray(SPECIES, src, srcOffset + i))
+                    .intoArray(dst, dstOffset + i);
+        }
+        for (; i < length; i++) {
+            float value = src[srcOffset + i];
+            if (value < dst[dstOffset + i]) {
+                dst[dstOffset + i] = value;
+            }
+        }
+    }
+
+    @Override
+    public void softmaxRow(float[] src, int srcOffset, float[] dst, int dstOffset, int length) {
+        float max = max(src, srcOffset, length);
+
+        // exp(x - max)，同时累加分母
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        FloatVector acc = FloatVector.zero(SPECIES);
+        for (; i < bound; i += LANES) {
+            FloatVector e = FloatVector.fromArray(SPECIES, src, srcOffset + i).sub(max).lanewise(VectorOperators.EXP);
+            e.intoArray(dst, dstOffset + i);
+            acc = acc.add(e);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float e = (float) Math.exp(src[srcOffset + i] - max);
+            dst[dstOffset + i] = e;
+            sum += e;
+        }
+
+        // 归一化
+        float denominator = Math.max(sum, EPSILON);
+        i = 0;
+        for (; i < bound; i += LANES) {
+            FloatVector.fromArray(SPECIES, dst, dstOffset + i).div(denominator).intoArray(dst, dstOffset + i);
+        }
+        for (; i < length; i++) {
+            dst[dstOffset + i] = dst[dstOffset + i] / denominator;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package io.leavesfly.tinyai.ndarr.cpu.transformations;
 
 import io.leavesfly.tinyai.ndarr.cpu.NdArrayCpu;
-import io.leavesfly.tinyai.ndarr.cpu.ShapeCpu;
+import io.leavesfly.tinyai.ndarr.cpu.StridedView;
 
 /**
  * 切片操作类
@@ -12,6 +12,8 @@ public class SlicingOperations {
     /**
      * 获取子数组（矩阵的子区域）
      *
+     * <p>结果是拷贝出的连续数组；只读访问子区域时可用 {@code array.view().slice(...)} 得到O(1)的视图。</p>
+     *
      * @param array    源数组
      * @param startRow 起始行索引（包含）
      * @param endRow   结束行索引（不包含）
@@ -32,16 +34,12 @@ public class SlicingOperations {
             startCol = Math.max(0, startCol);
             endCol = Math.min(lastDimSize, endCol);
 
-            NdArrayCpu result = new NdArrayCpu(ShapeCpu.of(endRow - startRow, endCol - startCol));
-            for (int i = startRow; i < endRow; i++) {
-                for (int j = startCol; j < endCol; j++) {
-                    // 计算多维索引（简化处理）
-                    int srcIndex = i * lastDimSize + j;
-                    int dstIndex = result.shape.getColumn() * (i - startRow) + j - startCol;
-                    result.buffer[dstIndex] = array.buffer[srcIndex];
-                }
-            }
-            return result;
+            // 展平为 (其余元素, 最后一维) 的二维视图，前 secondLastDimSize 行即第一个矩阵，切片后按行拷贝
+            return StridedView.of(array)
+                    .reshape(array.shape.size() / Math.max(1, lastDimSize), lastDimSize)
+                    .slice(0, startRow, endRow)
+                    .slice(1, startCol, endCol)
+                    .compact();
         }
 
         throw new IllegalArgumentException("操作需要至少二维数组");
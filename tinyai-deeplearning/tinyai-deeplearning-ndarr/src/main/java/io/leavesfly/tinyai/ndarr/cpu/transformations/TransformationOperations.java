@@ -3,8 +3,7 @@ package io.leavesfly.tinyai.ndarr.cpu.transformations;
 import io.leavesfly.tinyai.ndarr.Shape;
 import io.leavesfly.tinyai.ndarr.cpu.NdArrayCpu;
 import io.leavesfly.tinyai.ndarr.cpu.ShapeCpu;
-import io.leavesfly.tinyai.ndarr.cpu.utils.ArrayValidator;
-import io.leavesfly.tinyai.ndarr.cpu.utils.IndexConverter;
+import io.leavesfly.tinyai.ndarr.cpu.StridedView;
 
 /**
  * 变形操作类
@@ -15,42 +14,21 @@ public class TransformationOperations {
     /**
      * 矩阵转置操作，交换最后两个维度
      * <p>对于二维矩阵，行列互换；对于多维数组，交换最后两个维度</p>
+     * <p>先在 {@link StridedView} 上交换步长，再分块拷贝为连续数组，因此仍是O(n)的拷贝。
+     * 只为参与矩阵乘法而转置时，应使用 {@link NdArrayCpu#view()} 或带转置标记/维度顺序的dot，完全避免拷贝。</p>
      *
      * @param array 数组
      * @return 转置后的数组
      * @throws IllegalArgumentException 当数组维度小于2时抛出
      */
     public static NdArrayCpu transpose(NdArrayCpu array) {
-        int dimNum = array.shape.getDimNum();
-        
-        if (dimNum < 2) {
-            throw new IllegalArgumentException("转置操作至少需要二维数组");
-        }
-        
-        if (dimNum == 2) {
-            // 二维矩阵：行列互换（原有优化逻辑）
-            NdArrayCpu result = new NdArrayCpu(ShapeCpu.of(array.shape.getColumn(), array.shape.getRow()));
-            for (int i = 0; i < array.shape.getRow(); i++) {
-                for (int j = 0; j < array.shape.getColumn(); j++) {
-                    result.buffer[j * array.shape.getRow() + i] = array.buffer[i * array.shape.getColumn() + j];
-                }
-            }
-            return result;
-        }
-        
-        // 多维数组：交换最后两个维度
-        int[] order = new int[dimNum];
-        for (int i = 0; i < dimNum - 2; i++) {
-            order[i] = i;  // 前面的维度保持不变
-        }
-        order[dimNum - 2] = dimNum - 1;  // 倒数第二维与最后一维交换
-        order[dimNum - 1] = dimNum - 2;
-        
-        return transpose(array, order);
+        return StridedView.of(array).transpose().compact();
     }
 
     /**
      * 多维数组转置操作，按指定维度顺序重新排列
+     * <p>先在 {@link StridedView} 上重排维度和步长，再按合并后的维度逐段拷贝为连续数组，因此仍是O(n)的拷贝。
+     * 只为参与矩阵乘法而重排时，应使用 {@link NdArrayCpu#view()} 或带维度顺序的dot，完全避免拷贝。</p>
      *
      * @param array 数组
      * @param order 新的维度顺序
@@ -58,31 +36,7 @@ public class TransformationOperations {
      * @throws IllegalArgumentException 当维度顺序无效时抛出
      */
     public static NdArrayCpu transpose(NdArrayCpu array, int... order) {
-        ArrayValidator.validateTransposeOrder(order, array.shape.getDimNum());
-
-        int[] newDimensions = new int[array.shape.dimension.length];
-        for (int i = 0; i < order.length; i++) {
-            newDimensions[i] = array.shape.dimension[order[i]];
-        }
-        NdArrayCpu result = new NdArrayCpu(ShapeCpu.of(newDimensions));
-
-        int[] indices = new int[array.shape.dimension.length];
-        int totalElements = array.shape.size();
-
-        for (int i = 0; i < totalElements; i++) {
-            // 将一维索引转换为多维索引
-            IndexConverter.convertToMultiIndex(i, indices, array.shape);
-
-            // 计算转置后的索引
-            int[] transposedIndices = new int[order.length];
-            for (int j = 0; j < order.length; j++) {
-                transposedIndices[j] = indices[order[j]];
-            }
-
-            // 复制数据
-            result.set(array.buffer[i], transposedIndices);
-        }
-        return result;
+        return StridedView.of(array).permute(order).compact();
     }
 
     /**
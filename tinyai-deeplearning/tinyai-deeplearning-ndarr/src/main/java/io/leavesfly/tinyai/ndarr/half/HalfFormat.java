@@ -0,0 +1,173 @@
+package io.leavesfly.tinyai.ndarr.half;
+
+/**
+ * 16位浮点格式
+ *
+ * <p>每个元素占2字节，以 {@code short} 的位模式保存，与float互相转换时均按"就近舍入、平局取偶"：</p>
+ * <ul>
+ *   <li>{@link #BF16}：8位指数、7位尾数，数值范围与float相同，精度约2~3位有效数字，
+ *       转换只是截取/补齐float的高16位，适合权重和激活</li>
+ *   <li>{@link #FP16}：5位指数、10位尾数（IEEE 754 binary16），精度更高但最大值只有65504，
+ *       绝对值小于约6e-8的数下溢为0，训练时通常需要配合损失缩放</li>
+ * </ul>
+ */
+public enum HalfFormat {
+
+    BF16 {
+        @Override
+        public short encode(float value) {
+            int bits = Float.floatToRawIntBits(value);
+            if ((bits & 0x7fffffff) > 0x7f800000) {
+                // NaN：保留符号并置静默位，避免截断尾数后变成无穷大
+                return (short) ((bits >>> 16) | 0x0040);
+            }
+            bits += 0x7fff + ((bits >>> 16) & 1);
+            return (short) (bits >>> 16);
+        }
+
+        @Override
+        public float decode(short value) {
+            return Float.intBitsToFloat((value & 0xffff) << 16);
+        }
+
+        @Override
+        public float maxValue() {
+            return Float.intBitsToFloat(0x7f7f0000);
+        }
+    },
+
+    FP16 {
+        @Override
+        public short encode(float value) {
+            int bits = Float.floatToRawIntBits(value);
+            int sign = (bits >>> 16) & 0x8000;
+            int magnitude = bits & 0x7fffffff;
+            if (magnitude >= 0x7f800000) {
+                // 无穷大或NaN
+                return (short) (sign | 0x7c00 | (magnitude > 0x7f800000 ? 0x0200 | ((magnitude >>> 13) & 0x03ff) : 0));
+            }
+            if (magnitude >= 0x477ff000) {
+                // 不小于65520，舍入后溢出为无穷大
+                return (short) (sign | 0x7c00);
+            }
+            if (magnitude >= 0x38800000) {
+                // 规格化数：指数偏移从127换为15，尾数保留10位
+                int rounded = magnitude + 0x0fff + ((magnitude >>> 13) & 1);
+                return (short) (sign | ((rounded - 0x38000000) >>> 13));
+            }
+            if (magnitude < 0x33000000) {
+                return (short) sign;
+            }
+            // 非规格化数：value = m × 2^-24
+            int exponent = magnitude >>> 23;
+            int mantissa = (magnitude & 0x007fffff) | 0x00800000;
+            int shift = 126 - exponent;
+            int m = mantissa >>> shift;
+            int remainder = mantissa & ((1 << shift) - 1);
+            int half = 1 << (shift - 1);
+            if (remainder > half || (remainder == half && (m & 1) != 0)) {
+                m++;
+            }
+            return (short) (sign | m);
+        }
+
+        @Override
+        public float decode(short value) {
+            return Fp16Table.VALUES[value & 0xffff];
+        }
+
+        @Override
+        public float maxValue() {
+            return 65504f;
+        }
+    };
+
+    /**
+     * 将float编码为16位表示
+     *
+     * @param value float值
+     * @return 16位位模式
+     */
+    public abstract short encode(float value);
+
+    /**
+     * 将16位表示解码为float
+     *
+     * @param value 16位位模式
+     * @return float值（精确表示，无舍入）
+     */
+    public abstract float decode(short value);
+
+    /**
+     * 可表示的最大有限值
+     *
+     * @return 最大有限值
+     */
+    public abstract float maxValue();
+
+    /**
+     * 批量编码
+     *
+     * @param src    源float数组
+     * @param srcPos 源起始位置
+     * @param dst    目标short数组
+     * @param dstPos 目标起始位置
+     * @param length 元素个数
+     */
+    public void encode(float[] src, int srcPos, short[] dst, int dstPos, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstPos + i] = encode(src[srcPos + i]);
+        }
+    }
+
+    /**
+     * 批量解码
+     *
+     * @param src    源short数组
+     * @param srcPos 源起始位置
+     * @param dst    目标float数组
+     * @param dstPos 目标起始位置
+     * @param length 元素个数
+     */
+    public void decode(short[] src, int srcPos, float[] dst, int dstPos, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstPos + i] = decode(src[srcPos + i]);
+        }
+    }
+
+    /**
+     * 将float舍入到该格式可表示的最近值
+     *
+     * @param value float值
+     * @return 舍入后的float值
+     */
+    public float round(float value) {
+        return decode(encode(value));
+    }
+
+    /**
+     * FP16全部65536个位模式对应的float值，首次使用FP16解码时构建
+     */
+    private static final class Fp16Table {
+
+        static final float[] VALUES = new float[1 << 16];
+
+        static {
+            for (int h = 0; h < VALUES.length; h++) {
+                int sign = (h & 0x8000) << 16;
+                int exponent = (h >>> 10) & 0x1f;
+                int mantissa = h & 0x03ff;
+                float value;
+                if (exponent == 0) {
+                    value = mantissa * 0x1p-24f;
+                    value = sign != 0 ? -value : value;
+                } else if (exponent == 0x1f) {
+                    value = Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+                } else {
+                    value = Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+                }
+                VALUES[h] = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,758 @@
+package io.leavesfly.tinyai.ndarr.half;
+
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.ndarr.cpu.NdArrayCpu;
+import io.leavesfly.tinyai.ndarr.cpu.ShapeCpu;
+import io.leavesfly.tinyai.ndarr.cpu.matrix.GemmKernel;
+import io.leavesfly.tinyai.ndarr.cpu.matrix.MatrixOperations;
+import io.leavesfly.tinyai.ndarr.cpu.simd.FloatKernels;
+import io.leavesfly.tinyai.ndarr.cpu.simd.KernelBackend;
+import io.leavesfly.tinyai.ndarr.cpu.utils.ArrayValidator;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * NdArray的16位存储版本
+ *
+ * <p>数据以 {@link HalfFormat}（BF16或FP16）编码保存在 {@code short[]} 中，内存占用和读取带宽是float的一半，
+ * 适合存放体积大、以读取为主的数组，例如混合精度训练中的权重和推理时的模型参数。</p>
+ *
+ * <p>实现约定：</p>
+ * <ul>
+ *   <li>所有计算都在float上进行：读取时解码，写入时按就近舍入编码，运算结果为float精度的 {@link NdArrayCpu}</li>
+ *   <li>作为矩阵乘法的右操作数时（{@code x.dot(w)}、{@code x.dot(w, false, true)}），按K方向分段解码为float面板
+ *       交给 {@link GemmKernel} 计算，不会整体解码；累加始终为float</li>
+ *   <li>按行读取（{@link #gatherRows(int[])}、{@link #readRows(int, int)}）只解码被访问的行</li>
+ *   <li>原地运算（addi/axpy/fill/assign等）分块解码、计算后重新编码，返回自身</li>
+ *   <li>{@link #getArray()} 返回解码后的拷贝，修改返回的数组不会影响本数组</li>
+ *   <li>{@link #reshape(Shape)} 与 {@link #flatten()} 共享同一份存储</li>
+ * </ul>
+ *
+ * <p>反复的小幅原地更新会被舍入吞掉，训练时应由优化器保留float主权重（见ml模块的FusedOptimizer）。</p>
+ */
+public class NdArrayHalf implements NdArray, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 分块读改写时每块的元素数
+     */
+    private static final int BLOCK = 16 * 1024;
+
+    /**
+     * 矩阵乘法中每段解码面板的最大元素数
+     */
+    private static final int PANEL_FLOATS = 1 << 16;
+
+    private static final FloatKernels KERNELS = KernelBackend.get();
+
+    private final short[] storage;
+    private final HalfFormat format;
+    private ShapeCpu shape;
+
+    private NdArrayHalf(short[] storage, HalfFormat format, ShapeCpu shape) {
+        this.storage = storage;
+        this.format = format;
+        this.shape = shape;
+    }
+
+    /**
+     * 创建指定形状的全零数组
+     *
+     * @param shape  数组形状
+     * @param format 16位格式
+     * @return 16位数组
+     */
+    public static NdArrayHalf zeros(Shape shape, HalfFormat format) {
+        ShapeCpu shapeCpu = toShapeCpu(shape);
+        return new NdArrayHalf(new short[shapeCpu.size()], format, shapeCpu);
+    }
+
+    /**
+     * 将数组编码为16位存储
+     *
+     * @param array  源数组
+     * @param format 16位格式
+     * @return 内容为源数组舍入值的16位数组
+     */
+    public static NdArrayHalf of(NdArray array, HalfFormat format) {
+        NdArrayHalf result = zeros(array.getShape(), format);
+        float[] data = array.getArray();
+        format.encode(data, 0, result.storage, 0, data.length);
+        return result;
+    }
+
+    /**
+     * 获取16位格式
+     *
+     * @return 16位格式
+     */
+    public HalfFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * 获取底层16位存储
+     *
+     * @return 编码后的数据，与本数组共享
+     */
+    public short[] getStorage() {
+        return storage;
+    }
+
+    /**
+     * 将数据解码为float数组
+     *
+     * @return float数组
+     */
+    public NdArrayCpu toCpu() {
+        return new NdArrayCpu(getArray(), shape);
+    }
+
+    // =============================================================================
+    // 按行访问
+    // =============================================================================
+
+    /**
+     * 按第一维选取若干行，只解码被选中的行
+     *
+     * @param rows 行索引，可以重复
+     * @return float数组，形状为 (rows.length, 其余维度大小之积)
+     */
+    public NdArrayCpu gatherRows(int[] rows) {
+        int rowCount = shape.getDimension(0);
+        int rowSize = shape.size() / Math.max(1, rowCount);
+        NdArrayCpu result = new NdArrayCpu(ShapeCpu.of(rows.length, rowSize));
+        float[] out = result.getArray();
+        for (int i = 0; i < rows.length; i++) {
+            if (rows[i] < 0 || rows[i] >= rowCount) {
+                throw new IndexOutOfBoundsException(String.format("行索引%d超出范围[0,%d)", rows[i], rowCount));
+            }
+            format.decode(storage, rows[i] * rowSize, out, i * rowSize, rowSize);
+        }
+        return result;
+    }
+
+    /**
+     * 读取第一维上 [start, end) 范围内的连续行
+     *
+     * @param start 起始行（包含）
+     * @param end   结束行（不包含）
+     * @return float数组，除第一维外形状与本数组相同
+     */
+    public NdArrayCpu readRows(int start, int end) {
+        int rowCount = shape.getDimension(0);
+        if (start < 0 || end > rowCount || start > end) {
+            throw new IndexOutOfBoundsException(String.format("行范围[%d,%d)超出范围[0,%d)", start, end, rowCount));
+        }
+        int[] dims = shape.getShapeDims().clone();
+        dims[0] = end - start;
+        int rowSize = shape.size() / Math.max(1, rowCount);
+        NdArrayCpu result = new NdArrayCpu(ShapeCpu.of(dims));
+        float[] out = result.getArray();
+        format.decode(storage, start * rowSize, out, 0, out.length);
+        return result;
+    }
+
+    /**
+     * 从第一维的指定行开始写入连续行
+     *
+     * @param start 起始行
+     * @param rows  要写入的数据，除第一维外形状应与本数组相同
+     * @return 当前数组实例
+     */
+    public NdArrayHalf writeRows(int start, NdArray rows) {
+        int rowCount = shape.getDimension(0);
+        int rowSize = shape.size() / Math.max(1, rowCount);
+        float[] data = rows.getArray();
+        if (data.length % Math.max(1, rowSize) != 0 || start < 0 || start + data.length / Math.max(1, rowSize) > rowCount) {
+            throw new IllegalArgumentException(String.format("写入数据(%d个元素)与起始行%d不匹配，行大小%d，共%d行",
+                    data.length, start, rowSize, rowCount));
+        }
+        format.encode(data, 0, storage, start * rowSize, data.length);
+        return this;
+    }
+
+    // =============================================================================
+    // 矩阵乘法：本数组作为右操作数
+    // =============================================================================
+
+    /**
+     * 计算 left × self（可选转置），按K方向分段解码本数组，不整体解码
+     *
+     * <p>本数组须为二维；左操作数不转置时可以带批次维度（按行展平），转置时须为二维。
+     * 不满足条件时退化为整体解码后的普通矩阵乘法。</p>
+     *
+     * @param left          左操作数
+     * @param transposeLeft 是否转置左操作数的最后两个维度
+     * @param transposeSelf 是否转置本数组
+     * @return 矩阵乘法结果
+     */
+    public NdArrayCpu multiplyLeft(NdArrayCpu left, boolean transposeLeft, boolean transposeSelf) {
+        int leftDimNum = left.getShape().getDimNum();
+        if (shape.getDimNum() != 2 || leftDimNum < 2 || (transposeLeft && leftDimNum != 2)) {
+            return MatrixOperations.dot(left, toCpu(), transposeLeft, transposeSelf);
+        }
+
+        int k = transposeSelf ? shape.getColumn() : shape.getRow();
+        int n = transposeSelf ? shape.getRow() : shape.getColumn();
+        int[] leftDims = left.getShape().getShapeDims();
+        int leftCols = leftDims[leftDimNum - 1];
+        int leftK = transposeLeft ? leftDims[0] : leftCols;
+        if (leftK != k) {
+            throw new IllegalArgumentException(
+                    String.format("矩阵乘法维度不匹配：%s × %s，第一个矩阵的列数(%d)必须等于第二个矩阵的行数(%d)",
+                            left.getShape(), shape, leftK, k));
+        }
+        int m = transposeLeft ? leftCols : left.getShape().size() / Math.max(1, k);
+
+        int[] resultDims = transposeLeft ? new int[]{m, n} : leftDims.clone();
+        resultDims[resultDims.length - 1] = n;
+        NdArrayCpu result = new NdArrayCpu(ShapeCpu.of(resultDims));
+        if (m == 0 || n == 0 || k == 0) {
+            return result;
+        }
+
+        // A[i][p] 位于 a[i×aRowStride + p×aColStride]
+        float[] a = left.getArray();
+        int aRowStride = transposeLeft ? 1 : k;
+        int aColStride = transposeLeft ? m : 1;
+        float[] c = result.getArray();
+
+        int panelRows = Math.max(1, Math.min(k, PANEL_FLOATS / n));
+        float[] panel = new float[panelRows * n];
+        for (int k0 = 0; k0 < k; k0 += panelRows) {
+            int kb = Math.min(panelRows, k - k0);
+            decodePanel(k0, kb, n, transposeSelf, panel);
+            GemmKernel.batchMultiply(a, new int[]{k0 * aColStride}, aRowStride, aColStride,
+                    panel, new int[]{0}, n, 1, c, m, kb, n);
+        }
+        return result;
+    }
+
+    /**
+     * 将右矩阵 B 的第 [k0, k0 + kb) 行解码为行主序面板
+     */
+    private void decodePanel(int k0, int kb, int n, boolean transposeSelf, float[] panel) {
+        if (!transposeSelf) {
+            format.decode(storage, k0 * n, panel, 0, kb * n);
+            return;
+        }
+        // B = selfᵀ：B[p][j] = self[j][p]，逐行读取本数组使访问保持连续
+        int cols = shape.getColumn();
+        for (int j = 0; j < n; j++) {
+            int src = j * cols + k0;
+            for (int p = 0; p < kb; p++) {
+                panel[p * n + j] = format.decode(storage[src + p]);
+            }
+        }
+    }
+
+    // =============================================================================
+    // 原地运算，分块解码、计算后重新编码
+    // =============================================================================
+
+    @FunctionalInterface
+    private interface BinaryKernel {
+        void apply(float[] a, float[] b, float[] out, int length);
+    }
+
+    @FunctionalInterface
+    private interface ScalarKernel {
+        void apply(float[] a, float scalar, float[] out, int length);
+    }
+
+    private NdArrayHalf binaryInPlace(NdArray other, BinaryKernel kernel, String operationName) {
+        ArrayValidator.validateShapeCompatibility(shape, toShapeCpu(other.getShape()), operationName);
+        float[] right = other.getArray();
+        int size = shape.size();
+        float[] block = new float[Math.min(BLOCK, size)];
+        float[] rightBlock = new float[block.length];
+        for (int start = 0; start < size; start += BLOCK) {
+            int n = Math.min(BLOCK, size - start);
+            format.decode(storage, start, block, 0, n);
+            System.arraycopy(right, start, rightBlock, 0, n);
+            kernel.apply(block, rightBlock, block, n);
+            format.encode(block, 0, storage, start, n);
+        }
+        return this;
+    }
+
+    private NdArrayHalf scalarInPlace(float scalar, ScalarKernel kernel) {
+        int size = shape.size();
+        float[] block = new float[Math.min(BLOCK, size)];
+        for (int start = 0; start < size; start += BLOCK) {
+            int n = Math.min(BLOCK, size - start);
+            format.decode(storage, start, block, 0, n);
+            kernel.apply(block, scalar, block, n);
+            format.encode(block, 0, storage, start, n);
+        }
+        return this;
+    }
+
+    @Override
+    public NdArrayHalf addi(NdArray other) {
+        return binaryInPlace(other, KERNELS::add, "原地加法");
+    }
+
+    @Override
+    public NdArrayHalf subi(NdArray other) {
+        return binaryInPlace(other, KERNELS::sub, "原地减法");
+    }
+
+    @Override
+    public NdArrayHalf muli(NdArray other) {
+        return binaryInPlace(other, KERNELS::mul, "原地乘法");
+    }
+
+    @Override
+    public NdArrayHalf divi(NdArray other) {
+        return binaryInPlace(other, KERNELS::div, "原地除法");
+    }
+
+    @Override
+    public NdArrayHalf addNumi(Number number) {
+        return scalarInPlace(number.floatValue(), KERNELS::addScalar);
+    }
+
+    @Override
+    public NdArrayHalf mulNumi(Number number) {
+        return scalarInPlace(number.floatValue(), KERNELS::mulScalar);
+    }
+
+    @Override
+    public NdArrayHalf divNumi(Number number) {
+        if (Math.abs(number.floatValue()) < 1e-12f) {
+            throw new ArithmeticException("除数不能为0");
+        }
+        return scalarInPlace(number.floatValue(), KERNELS::divScalar);
+    }
+
+    @Override
+    public NdArrayHalf axpy(Number alpha, NdArray x) {
+        ArrayValidator.validateShapeCompatibility(shape, toShapeCpu(x.getShape()), "axpy");
+        float a = alpha.floatValue();
+        float[] xData = x.getArray();
+        int size = shape.size();
+        float[] block = new float[Math.min(BLOCK, size)];
+        for (int start = 0; start < size; start += BLOCK) {
+            int n = Math.min(BLOCK, size - start);
+            format.decode(storage, start, block, 0, n);
+            KERNELS.axpy(a, xData, start, block, 0, n);
+            format.encode(block, 0, storage, start, n);
+        }
+        return this;
+    }
+
+    @Override
+    public NdArrayHalf fill(Number value) {
+        Arrays.fill(storage, format.encode(value.floatValue()));
+        return this;
+    }
+
+    @Override
+    public NdArrayHalf assign(NdArray other) {
+        ArrayValidator.validateShapeCompatibility(shape, toShapeCpu(other.getShape()), "赋值");
+        if (other != this) {
+            float[] data = other.getArray();
+            format.encode(data, 0, storage, 0, data.length);
+        }
+        return this;
+    }
+
+    // =============================================================================
+    // 写操作：解码修改后重新编码
+    // =============================================================================
+
+    private NdArrayHalf writeBack(NdArrayCpu updated) {
+        float[] data = updated.getArray();
+        format.encode(data, 0, storage, 0, data.length);
+        return this;
+    }
+
+    @Override
+    public NdArray setItem(int[] _rowSlices, int[] _colSlices, float[] data) {
+        return writeBack(toCpu().setItem(_rowSlices, _colSlices, data));
+    }
+
+    @Override
+    public NdArray setBlock(int startRow, int endRow, int startCol, int endCol, float[] data) {
+        return writeBack(toCpu().setBlock(startRow, endRow, startCol, endCol, data));
+    }
+
+    @Override
+    public NdArray setRows(int[] rowIndices, float[] data) {
+        return writeBack(toCpu().setRows(rowIndices, data));
+    }
+
+    @Override
+    public NdArray setCols(int[] colIndices, float[] data) {
+        return writeBack(toCpu().setCols(colIndices, data));
+    }
+
+    @Override
+    public NdArray addTo(int i, int j, NdArray other) {
+        return writeBack(toCpu().addTo(i, j, other));
+    }
+
+    @Override
+    public void set(float value, int... _dimension) {
+        if (_dimension.length != shape.getDimNum()) {
+            throw new IllegalArgumentException(String.format("维度数量不匹配：提供%d个维度，需要%d个维度", _dimension.length, shape.getDimNum()));
+        }
+        storage[shape.getIndex(_dimension)] = format.encode(value);
+    }
+
+    // =============================================================================
+    // 形状与数据访问
+    // =============================================================================
+
+    @Override
+    public NdArray getItem(int[] _rowSlices, int[] _colSlices) {
+        if (_rowSlices != null && _colSlices == null && shape.getDimNum() == 2) {
+            return gatherRows(_rowSlices);
+        }
+        return toCpu().getItem(_rowSlices, _colSlices);
+    }
+
+    @Override
+    public NdArrayHalf reshape(Shape newShape) {
+        if (shape.size() != newShape.size()) {
+            throw new IllegalArgumentException(String.format("形状大小不匹配：%d vs %d", shape.size(), newShape.size()));
+        }
+        return new NdArrayHalf(storage, format, toShapeCpu(newShape));
+    }
+
+    @Override
+    public NdArrayHalf flatten() {
+        return reshape(Shape.of(1, shape.size()));
+    }
+
+    @Override
+    public Number getNumber() {
+        return format.decode(storage[0]);
+    }
+
+    @Override
+    public Shape getShape() {
+        return shape;
+    }
+
+    @Override
+    public void setShape(Shape shape) {
+        if (shape.size() != this.shape.size()) {
+            throw new IllegalArgumentException("新形状大小与当前形状不匹配");
+        }
+        this.shape = toShapeCpu(shape);
+    }
+
+    /**
+     * 返回解码后的拷贝
+     *
+     * @return 新的一维数组
+     */
+    @Override
+    public float[] getArray() {
+        float[] data = new float[shape.size()];
+        format.decode(storage, 0, data, 0, data.length);
+        return data;
+    }
+
+    @Override
+    public float get(int... _dimension) {
+        if (_dimension.length != shape.getDimNum()) {
+            throw new IllegalArgumentException(String.format("维度数量不匹配：提供%d个维度，需要%d个维度", _dimension.length, shape.getDimNum()));
+        }
+        return format.decode(storage[shape.getIndex(_dimension)]);
+    }
+
+    @Override
+    public float[][] getMatrix() {
+        return toCpu().getMatrix();
+    }
+
+    @Override
+    public float[][][] get3dArray() {
+        return toCpu().get3dArray();
+    }
+
+    @Override
+    public float[][][][] get4dArray() {
+        return toCpu().get4dArray();
+    }
+
+    // =============================================================================
+    // 其余运算：解码为float后计算，结果为float数组
+    // =============================================================================
+
+    @Override
+    public NdArray like(Number value) {
+        return NdArray.like(shape, value);
+    }
+
+    @Override
+    public NdArray add(NdArray other) {
+        return toCpu().add(other);
+    }
+
+    @Override
+    public NdArray sub(NdArray other) {
+        return toCpu().sub(other);
+    }
+
+    @Override
+    public NdArray mul(NdArray other) {
+        return toCpu().mul(other);
+    }
+
+    @Override
+    public NdArray mulNum(Number number) {
+        return toCpu().mulNum(number);
+    }
+
+    @Override
+    public NdArray div(NdArray other) {
+        return toCpu().div(other);
+    }
+
+    @Override
+    public NdArray divNum(Number number) {
+        return toCpu().divNum(number);
+    }
+
+    @Override
+    public NdArray add(NdArray other, NdArray out) {
+        return out.assign(toCpu().add(other));
+    }
+
+    @Override
+    public NdArray sub(NdArray other, NdArray out) {
+        return out.assign(toCpu().sub(other));
+    }
+
+    @Override
+    public NdArray mul(NdArray other, NdArray out) {
+        return out.assign(toCpu().mul(other));
+    }
+
+    @Override
+    public NdArray div(NdArray other, NdArray out) {
+        return out.assign(toCpu().div(other));
+    }
+
+    @Override
+    public NdArray mulNum(Number number, NdArray out) {
+        return out.assign(toCpu().mulNum(number));
+    }
+
+    @Override
+    public NdArray sqrt(NdArray out) {
+        return out.assign(toCpu().sqrt());
+    }
+
+    @Override
+    public NdArray neg() {
+        return toCpu().neg();
+    }
+
+    @Override
+    public NdArray abs() {
+        return toCpu().abs();
+    }
+
+    @Override
+    public NdArray eq(NdArray other) {
+        return toCpu().eq(other);
+    }
+
+    @Override
+    public NdArray gt(NdArray other) {
+        return toCpu().gt(other);
+    }
+
+    @Override
+    public NdArray lt(NdArray other) {
+        return toCpu().lt(other);
+    }
+
+    @Override
+    public boolean isLar(NdArray other) {
+        return toCpu().isLar(other);
+    }
+
+    @Override
+    public NdArray pow(Number number) {
+        return toCpu().pow(number);
+    }
+
+    @Override
+    public NdArray square() {
+        return toCpu().square();
+    }
+
+    @Override
+    public NdArray sqrt() {
+        return toCpu().sqrt();
+    }
+
+    @Override
+    public NdArray exp() {
+        return toCpu().exp();
+    }
+
+    @Override
+    public NdArray sin() {
+        return toCpu().sin();
+    }
+
+    @Override
+    public NdArray cos() {
+        return toCpu().cos();
+    }
+
+    @Override
+    public NdArray tanh() {
+        return toCpu().tanh();
+    }
+
+    @Override
+    public NdArray sigmoid() {
+        return toCpu().sigmoid();
+    }
+
+    @Override
+    public NdArray log() {
+        return toCpu().log();
+    }
+
+    @Override
+    public NdArray softMax() {
+        return toCpu().softMax();
+    }
+
+    @Override
+    public NdArray softMax(int axis) {
+        return toCpu().softMax(axis);
+    }
+
+    @Override
+    public NdArray maximum(Number number) {
+        return toCpu().maximum(number);
+    }
+
+    @Override
+    public NdArray mask(Number number) {
+        return toCpu().mask(number);
+    }
+
+    @Override
+    public NdArray transpose() {
+        return toCpu().transpose();
+    }
+
+    @Override
+    public NdArray transpose(int... order) {
+        return toCpu().transpose(order);
+    }
+
+    @Override
+    public NdArray broadcastReshape(Shape newShape) {
+        return toCpu().broadcastReshape(newShape);
+    }
+
+    @Override
+    public NdArray sum() {
+        return toCpu().sum();
+    }
+
+    @Override
+    public NdArray mean(int axis) {
+        return toCpu().mean(axis);
+    }
+
+    @Override
+    public NdArray var(int axis) {
+        return toCpu().var(axis);
+    }
+
+    @Override
+    public NdArray sum(int axis) {
+        return toCpu().sum(axis);
+    }
+
+    @Override
+    public NdArray sumTo(Shape _shape) {
+        return toCpu().sumTo(_shape);
+    }
+
+    @Override
+    public NdArray sumToOptimized(Shape targetShape) {
+        return toCpu().sumToOptimized(targetShape);
+    }
+
+    @Override
+    public NdArray broadcastTo(Shape _shape) {
+        return toCpu().broadcastTo(_shape);
+    }
+
+    @Override
+    public NdArray argMax(int axis) {
+        return toCpu().argMax(axis);
+    }
+
+    @Override
+    public NdArray dot(NdArray other) {
+        return toCpu().dot(other);
+    }
+
+    @Override
+    public NdArray dot(NdArray other, boolean transposeSelf, boolean transposeOther) {
+        return toCpu().dot(other, transposeSelf, transposeOther);
+    }
+
+    @Override
+    public NdArray dot(NdArray other, int[] selfOrder, int[] otherOrder, int[] resultOrder) {
+        return toCpu().dot(other, selfOrder, otherOrder, resultOrder);
+    }
+
+    @Override
+    public NdArray max(int axis) {
+        return toCpu().max(axis);
+    }
+
+    @Override
+    public NdArray min(int axis) {
+        return toCpu().min(axis);
+    }
+
+    @Override
+    public float max() {
+        return toCpu().max();
+    }
+
+    @Override
+    public NdArray subNdArray(int startRow, int endRow, int startCol, int endCol) {
+        return toCpu().subNdArray(startRow, endRow, startCol, endCol);
+    }
+
+    @Override
+    public NdArray addAt(int[] rowSlices, int[] colSlices, NdArray other) {
+        return toCpu().addAt(rowSlices, colSlices, other);
+    }
+
+    @Override
+    public NdArray clip(float min, float max) {
+        return toCpu().clip(min, max);
+    }
+
+    private static ShapeCpu toShapeCpu(Shape shape) {
+        return shape instanceof ShapeCpu ? (ShapeCpu) shape : ShapeCpu.of(shape.getShapeDims());
+    }
+
+    @Override
+    public String toString() {
+        return "NdArrayHalf{shape=" + shape + ", format=" + format + ", bytes=" + storage.length * 2L + '}';
+    }
+}
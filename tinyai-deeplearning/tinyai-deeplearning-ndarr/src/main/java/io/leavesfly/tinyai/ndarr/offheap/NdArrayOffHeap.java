@@ -0,0 +1,733 @@
+package io.leavesfly.tinyai.ndarr.offheap;
+
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.ndarr.cpu.NdArrayCpu;
+import io.leavesfly.tinyai.ndarr.cpu.ShapeCpu;
+import io.leavesfly.tinyai.ndarr.cpu.simd.FloatKernels;
+import io.leavesfly.tinyai.ndarr.cpu.simd.KernelBackend;
+import io.leavesfly.tinyai.ndarr.cpu.utils.ArrayValidator;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * NdArray的堆外存储版本
+ *
+ * <p>数据保存在 {@link OffHeapBuffer} 中，适合存放体积大、长期存在且每次只访问一小部分的数组，
+ * 例如大词表的嵌入矩阵和KV缓存：它们不再占用Java堆，也不会拉长GC停顿。</p>
+ *
+ * <p>实现约定：</p>
+ * <ul>
+ *   <li>按行读取（{@link #getItem(int[], int[])} 只选行时、{@link #gatherRows(int[])}、{@link #readRows(int, int)}）
+ *       只拷贝被访问的行</li>
+ *   <li>原地运算（addi/axpy/fill/assign等）与 set/setRows/addTo 等写操作分块读改写，直接修改堆外数据，返回自身</li>
+ *   <li>其余运算先将数据拷贝为 {@link NdArrayCpu} 再计算，结果位于堆内</li>
+ *   <li>{@link #getArray()} 返回堆内拷贝，修改返回的数组不会影响堆外数据；
+ *       需要写回时使用 {@link #assign(NdArray)}、{@link #set(float, int...)} 等写操作</li>
+ *   <li>{@link #reshape(Shape)} 与 {@link #flatten()} 共享同一块堆外存储</li>
+ *   <li>序列化时分块写出数据，反序列化后仍位于堆外；共享存储的数组反序列化后各自持有独立的存储</li>
+ * </ul>
+ *
+ * <p>NdArrayCpu的运算可以直接接收本类作为操作数（通过 {@link NdArrayCpu#asCpu(NdArray)} 转换）。</p>
+ */
+public class NdArrayOffHeap implements NdArray, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 分块读改写时每块的元素数
+     */
+    private static final int BLOCK = 16 * 1024;
+
+    private static final FloatKernels KERNELS = KernelBackend.get();
+
+    private final OffHeapBuffer storage;
+    private ShapeCpu shape;
+
+    private NdArrayOffHeap(OffHeapBuffer storage, ShapeCpu shape) {
+        this.storage = storage;
+        this.shape = shape;
+    }
+
+    /**
+     * 创建指定形状的全零堆外数组
+     *
+     * @param shape 数组形状
+     * @return 堆外数组
+     */
+    public static NdArrayOffHeap zeros(Shape shape) {
+        ShapeCpu shapeCpu = toShapeCpu(shape);
+        return new NdArrayOffHeap(OffHeapBuffer.allocate(shapeCpu.size()), shapeCpu);
+    }
+
+    /**
+     * 将数组拷贝到堆外
+     *
+     * @param array 源数组
+     * @return 内容相同的堆外数组
+     */
+    public static NdArrayOffHeap of(NdArray array) {
+        NdArrayOffHeap result = zeros(array.getShape());
+        float[] data = array.getArray();
+        result.storage.write(0, data, 0, data.length);
+        return result;
+    }
+
+    /**
+     * 获取底层堆外存储
+     *
+     * @return 堆外存储
+     */
+    public OffHeapBuffer getStorage() {
+        return storage;
+    }
+
+    /**
+     * 释放堆外存储，之后不得再访问本数组及共享该存储的数组
+     */
+    public void release() {
+        storage.release();
+    }
+
+    /**
+     * 将数据拷贝为堆内数组
+     *
+     * @return 堆内数组
+     */
+    public NdArrayCpu toCpu() {
+        return new NdArrayCpu(getArray(), shape);
+    }
+
+    // =============================================================================
+    // 按行访问
+    // =============================================================================
+
+    /**
+     * 按第一维选取若干行，只拷贝被选中的行
+     *
+     * @param rows 行索引，可以重复
+     * @return 堆内数组，形状为 (rows.length, 其余维度大小之积)
+     */
+    public NdArrayCpu gatherRows(int[] rows) {
+        int rowCount = shape.getDimension(0);
+        int rowSize = shape.size() / Math.max(1, rowCount);
+        NdArrayCpu result = new NdArrayCpu(ShapeCpu.of(rows.length, rowSize));
+        for (int i = 0; i < rows.length; i++) {
+            if (rows[i] < 0 || rows[i] >= rowCount) {
+                throw new IndexOutOfBoundsException(String.format("行索引%d超出范围[0,%d)", rows[i], rowCount));
+            }
+            storage.read((long) rows[i] * rowSize, result.buffer, i * rowSize, rowSize);
+        }
+        return result;
+    }
+
+    /**
+     * 读取第一维上 [start, end) 范围内的连续行
+     *
+     * @param start 起始行（包含）
+     * @param end   结束行（不包含）
+     * @return 堆内数组，除第一维外形状与本数组相同
+     */
+    public NdArrayCpu readRows(int start, int end) {
+        int rowCount = shape.getDimension(0);
+        if (start < 0 || end > rowCount || start > end) {
+            throw new IndexOutOfBoundsException(String.format("行范围[%d,%d)超出范围[0,%d)", start, end, rowCount));
+        }
+        int[] dims = shape.getShapeDims().clone();
+        dims[0] = end - start;
+        int rowSize = shape.size() / Math.max(1, rowCount);
+        NdArrayCpu result = new NdArrayCpu(ShapeCpu.of(dims));
+        storage.read((long) start * rowSize, result.buffer, 0, result.buffer.length);
+        return result;
+    }
+
+    /**
+     * 从第一维的指定行开始写入连续行
+     *
+     * @param start 起始行
+     * @param rows  要写入的数据，除第一维外形状应与本数组相同
+     * @return 当前数组实例
+     */
+    public NdArrayOffHeap writeRows(int start, NdArray rows) {
+        int rowCount = shape.getDimension(0);
+        int rowSize = shape.size() / Math.max(1, rowCount);
+        float[] data = rows.getArray();
+        if (data.length % Math.max(1, rowSize) != 0 || start < 0 || start + data.length / Math.max(1, rowSize) > rowCount) {
+            throw new IllegalArgumentException(String.format("写入数据(%d个元素)与起始行%d不匹配，行大小%d，共%d行",
+                    data.length, start, rowSize, rowCount));
+        }
+        storage.write((long) start * rowSize, data, 0, data.length);
+        return this;
+    }
+
+    // =============================================================================
+    // 原地运算，直接修改堆外数据
+    // =============================================================================
+
+    @FunctionalInterface
+    private interface BinaryKernel {
+        void apply(float[] a, float[] b, float[] out, int length);
+    }
+
+    @FunctionalInterface
+    private interface ScalarKernel {
+        void apply(float[] a, float scalar, float[] out, int length);
+    }
+
+    private NdArrayOffHeap binaryInPlace(NdArray other, BinaryKernel kernel, String operationName) {
+        ArrayValidator.validateShapeCompatibility(shape, toShapeCpu(other.getShape()), operationName);
+        float[] right = other.getArray();
+        int size = shape.size();
+        float[] block = new float[Math.min(BLOCK, size)];
+        float[] rightBlock = new float[block.length];
+        for (int start = 0; start < size; start += BLOCK) {
+            int n = Math.min(BLOCK, size - start);
+            storage.read(start, block, 0, n);
+            System.arraycopy(right, start, rightBlock, 0, n);
+            kernel.apply(block, rightBlock, block, n);
+            storage.write(start, block, 0, n);
+        }
+        return this;
+    }
+
+    private NdArrayOffHeap scalarInPlace(float scalar, ScalarKernel kernel) {
+        int size = shape.size();
+        float[] block = new float[Math.min(BLOCK, size)];
+        for (int start = 0; start < size; start += BLOCK) {
+            int n = Math.min(BLOCK, size - start);
+            storage.read(start, block, 0, n);
+            kernel.apply(block, scalar, block, n);
+            storage.write(start, block, 0, n);
+        }
+        return this;
+    }
+
+    @Override
+    public NdArrayOffHeap addi(NdArray other) {
+        return binaryInPlace(other, KERNELS::add, "原地加法");
+    }
+
+    @Override
+    public NdArrayOffHeap subi(NdArray other) {
+        return binaryInPlace(other, KERNELS::sub, "原地减法");
+    }
+
+    @Override
+    public NdArrayOffHeap muli(NdArray other) {
+        return binaryInPlace(other, KERNELS::mul, "原地乘法");
+    }
+
+    @Override
+    public NdArrayOffHeap divi(NdArray other) {
+        return binaryInPlace(other, KERNELS::div, "原地除法");
+    }
+
+    @Override
+    public NdArrayOffHeap addNumi(Number number) {
+        return scalarInPlace(number.floatValue(), KERNELS::addScalar);
+    }
+
+    @Override
+    public NdArrayOffHeap mulNumi(Number number) {
+        return scalarInPlace(number.floatValue(), KERNELS::mulScalar);
+    }
+
+    @Override
+    public NdArrayOffHeap divNumi(Number number) {
+        if (Math.abs(number.floatValue()) < 1e-12f) {
+            throw new ArithmeticException("除数不能为0");
+        }
+        return scalarInPlace(number.floatValue(), KERNELS::divScalar);
+    }
+
+    @Override
+    public NdArrayOffHeap axpy(Number alpha, NdArray x) {
+        ArrayValidator.validateShapeCompatibility(shape, toShapeCpu(x.getShape()), "axpy");
+        float a = alpha.floatValue();
+        float[] xData = x.getArray();
+        int size = shape.size();
+        float[] block = new float[Math.min(BLOCK, size)];
+        for (int start = 0; start < size; start += BLOCK) {
+            int n = Math.min(BLOCK, size - start);
+            storage.read(start, block, 0, n);
+            KERNELS.axpy(a, xData, start, block, 0, n);
+            storage.write(start, block, 0, n);
+        }
+        return this;
+    }
+
+    @Override
+    public NdArrayOffHeap fill(Number value) {
+        storage.fill(0, shape.size(), value.floatValue());
+        return this;
+    }
+
+    @Override
+    public NdArrayOffHeap assign(NdArray other) {
+        ArrayValidator.validateShapeCompatibility(shape, toShapeCpu(other.getShape()), "赋值");
+        if (other != this) {
+            float[] data = other.getArray();
+            storage.write(0, data, 0, data.length);
+        }
+        return this;
+    }
+
+    // =============================================================================
+    // 写操作：读改写后写回堆外
+    // =============================================================================
+
+    private NdArrayOffHeap writeBack(NdArrayCpu updated) {
+        storage.write(0, updated.buffer, 0, updated.buffer.length);
+        return this;
+    }
+
+    @Override
+    public NdArray setItem(int[] _rowSlices, int[] _colSlices, float[] data) {
+        return writeBack(toCpu().setItem(_rowSlices, _colSlices, data));
+    }
+
+    @Override
+    public NdArray setBlock(int startRow, int endRow, int startCol, int endCol, float[] data) {
+        return writeBack(toCpu().setBlock(startRow, endRow, startCol, endCol, data));
+    }
+
+    @Override
+    public NdArray setRows(int[] rowIndices, float[] data) {
+        return writeBack(toCpu().setRows(rowIndices, data));
+    }
+
+    @Override
+    public NdArray setCols(int[] colIndices, float[] data) {
+        return writeBack(toCpu().setCols(colIndices, data));
+    }
+
+    @Override
+    public NdArray addTo(int i, int j, NdArray other) {
+        return writeBack(toCpu().addTo(i, j, other));
+    }
+
+    @Override
+    public void set(float value, int... _dimension) {
+        if (_dimension.length != shape.getDimNum()) {
+            throw new IllegalArgumentException(String.format("维度数量不匹配：提供%d个维度，需要%d个维度", _dimension.length, shape.getDimNum()));
+        }
+        storage.set(shape.getIndex(_dimension), value);
+    }
+
+    // =============================================================================
+    // 形状与数据访问
+    // =============================================================================
+
+    @Override
+    public NdArray getItem(int[] _rowSlices, int[] _colSlices) {
+        if (_rowSlices != null && _colSlices == null && shape.getDimNum() == 2) {
+            return gatherRows(_rowSlices);
+        }
+        return toCpu().getItem(_rowSlices, _colSlices);
+    }
+
+    @Override
+    public NdArrayOffHeap reshape(Shape newShape) {
+        if (shape.size() != newShape.size()) {
+            throw new IllegalArgumentException(String.format("形状大小不匹配：%d vs %d", shape.size(), newShape.size()));
+        }
+        return new NdArrayOffHeap(storage, toShapeCpu(newShape));
+    }
+
+    @Override
+    public NdArrayOffHeap flatten() {
+        return reshape(Shape.of(1, shape.size()));
+    }
+
+    @Override
+    public Number getNumber() {
+        return storage.get(0);
+    }
+
+    @Override
+    public Shape getShape() {
+        return shape;
+    }
+
+    @Override
+    public void setShape(Shape shape) {
+        if (shape.size() != this.shape.size()) {
+            throw new IllegalArgumentException("新形状大小与当前形状不匹配");
+        }
+        this.shape = toShapeCpu(shape);
+    }
+
+    /**
+     * 返回数据的堆内拷贝
+     *
+     * <p>与 {@link NdArrayCpu#getArray()} 不同，返回的数组与堆外数据没有关联，写入它不会修改本数组。
+     * 通过该数组原地更新参数的代码（如优化器、参数拷贝）必须在更新后调用 {@link #assign(NdArray)} 写回。</p>
+     *
+     * @return 新的一维数组
+     */
+    @Override
+    public float[] getArray() {
+        float[] data = new float[shape.size()];
+        storage.read(0, data, 0, data.length);
+        return data;
+    }
+
+    @Override
+    public float get(int... _dimension) {
+        if (_dimension.length != shape.getDimNum()) {
+            throw new IllegalArgumentException(String.format("维度数量不匹配：提供%d个维度，需要%d个维度", _dimension.length, shape.getDimNum()));
+        }
+        return storage.get(shape.getIndex(_dimension));
+    }
+
+    @Override
+    public float[][] getMatrix() {
+        return toCpu().getMatrix();
+    }
+
+    @Override
+    public float[][][] get3dArray() {
+        return toCpu().get3dArray();
+    }
+
+    @Override
+    public float[][][][] get4dArray() {
+        return toCpu().get4dArray();
+    }
+
+    // =============================================================================
+    // 其余运算：拷贝到堆内后计算，结果位于堆内
+    // =============================================================================
+
+    @Override
+    public NdArray like(Number value) {
+        return NdArray.like(shape, value);
+    }
+
+    @Override
+    public NdArray add(NdArray other) {
+        return toCpu().add(other);
+    }
+
+    @Override
+    public NdArray sub(NdArray other) {
+        return toCpu().sub(other);
+    }
+
+    @Override
+    public NdArray mul(NdArray other) {
+        return toCpu().mul(other);
+    }
+
+    @Override
+    public NdArray mulNum(Number number) {
+        return toCpu().mulNum(number);
+    }
+
+    @Override
+    public NdArray div(NdArray other) {
+        return toCpu().div(other);
+    }
+
+    @Override
+    public NdArray divNum(Number number) {
+        return toCpu().divNum(number);
+    }
+
+    @Override
+    public NdArray add(NdArray other, NdArray out) {
+        return out.assign(toCpu().add(other));
+    }
+
+    @Override
+    public NdArray sub(NdArray other, NdArray out) {
+        return out.assign(toCpu().sub(other));
+    }
+
+    @Override
+    public NdArray mul(NdArray other, NdArray out) {
+        return out.assign(toCpu().mul(other));
+    }
+
+    @Override
+    public NdArray div(NdArray other, NdArray out) {
+        return out.assign(toCpu().div(other));
+    }
+
+    @Override
+    public NdArray mulNum(Number number, NdArray out) {
+        return out.assign(toCpu().mulNum(number));
+    }
+
+    @Override
+    public NdArray sqrt(NdArray out) {
+        return out.assign(toCpu().sqrt());
+    }
+
+    @Override
+    public NdArray neg() {
+        return toCpu().neg();
+    }
+
+    @Override
+    public NdArray abs() {
+        return toCpu().abs();
+    }
+
+    @Override
+    public NdArray eq(NdArray other) {
+        return toCpu().eq(other);
+    }
+
+    @Override
+    public NdArray gt(NdArray other) {
+        return toCpu().gt(other);
+    }
+
+    @Override
+    public NdArray lt(NdArray other) {
+        return toCpu().lt(other);
+    }
+
+    @Override
+    public boolean isLar(NdArray other) {
+        return toCpu().isLar(other);
+    }
+
+    @Override
+    public NdArray pow(Number number) {
+        return toCpu().pow(number);
+    }
+
+    @Override
+    public NdArray square() {
+        return toCpu().square();
+    }
+
+    @Override
+    public NdArray sqrt() {
+        return toCpu().sqrt();
+    }
+
+    @Override
+    public NdArray exp() {
+        return toCpu().exp();
+    }
+
+    @Override
+    public NdArray sin() {
+        return toCpu().sin();
+    }
+
+    @Override
+    public NdArray cos() {
+        return toCpu().cos();
+    }
+
+    @Override
+    public NdArray tanh() {
+        return toCpu().tanh();
+    }
+
+    @Override
+    public NdArray sigmoid() {
+        return toCpu().sigmoid();
+    }
+
+    @Override
+    public NdArray log() {
+        return toCpu().log();
+    }
+
+    @Override
+    public NdArray softMax() {
+        return toCpu().softMax();
+    }
+
+    @Override
+    public NdArray softMax(int axis) {
+        return toCpu().softMax(axis);
+    }
+
+    @Override
+    public NdArray maximum(Number number) {
+        return toCpu().maximum(number);
+    }
+
+    @Override
+    public NdArray mask(Number number) {
+        return toCpu().mask(number);
+    }
+
+    @Override
+    public NdArray transpose() {
+        return toCpu().transpose();
+    }
+
+    @Override
+    public NdArray transpose(int... order) {
+        return toCpu().transpose(order);
+    }
+
+    @Override
+    public NdArray broadcastReshape(Shape newShape) {
+        return toCpu().broadcastReshape(newShape);
+    }
+
+    @Override
+    public NdArray sum() {
+        return toCpu().sum();
+    }
+
+    @Override
+    public NdArray mean(int axis) {
+        return toCpu().mean(axis);
+    }
+
+    @Override
+    public NdArray var(int axis) {
+        return toCpu().var(axis);
+    }
+
+    @Override
+    public NdArray sum(int axis) {
+        return toCpu().sum(axis);
+    }
+
+    @Override
+    public NdArray sumTo(Shape _shape) {
+        return toCpu().sumTo(_shape);
+    }
+
+    @Override
+    public NdArray sumToOptimized(Shape targetShape) {
+        return toCpu().sumToOptimized(targetShape);
+    }
+
+    @Override
+    public NdArray broadcastTo(Shape _shape) {
+        return toCpu().broadcastTo(_shape);
+    }
+
+    @Override
+    public NdArray argMax(int axis) {
+        return toCpu().argMax(axis);
+    }
+
+    @Override
+    public NdArray dot(NdArray other) {
+        return toCpu().dot(other);
+    }
+
+    @Override
+    public NdArray dot(NdArray other, boolean transposeSelf, boolean transposeOther) {
+        return toCpu().dot(other, transposeSelf, transposeOther);
+    }
+
+    @Override
+    public NdArray dot(NdArray other, int[] selfOrder, int[] otherOrder, int[] resultOrder) {
+        return toCpu().dot(other, selfOrder, otherOrder, resultOrder);
+    }
+
+    @Override
+    public NdArray max(int axis) {
+        return toCpu().max(axis);
+    }
+
+    @Override
+    public NdArray min(int axis) {
+        return toCpu().min(axis);
+    }
+
+    @Override
+    public float max() {
+        return toCpu().max();
+    }
+
+    @Override
+    public NdArray subNdArray(int startRow, int endRow, int startCol, int endCol) {
+        return toCpu().subNdArray(startRow, endRow, startCol, endCol);
+    }
+
+    @Override
+    public NdArray addAt(int[] rowSlices, int[] colSlices, NdArray other) {
+        return toCpu().addAt(rowSlices, colSlices, other);
+    }
+
+    @Override
+    public NdArray clip(float min, float max) {
+        return toCpu().clip(min, max);
+    }
+
+    /**
+     * 序列化时以 {@link SerializedForm} 代替本对象：堆外存储本身不可序列化
+     */
+    private Object writeReplace() {
+        return new SerializedForm(this);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException {
+        throw new InvalidObjectException("NdArrayOffHeap必须通过SerializedForm反序列化");
+    }
+
+    /**
+     * 堆外数组的序列化形式：按块读出堆外数据写入流，读回时直接写入新的堆外存储，
+     * 任何时刻只在堆内保留一个块，不会为大数组生成完整的堆内拷贝
+     */
+    private static final class SerializedForm implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private transient NdArrayOffHeap array;
+
+        SerializedForm(NdArrayOffHeap array) {
+            this.array = array;
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            out.defaultWriteObject();
+            out.writeObject(array.shape.getShapeDims());
+            int size = array.shape.size();
+            float[] block = new float[Math.min(BLOCK, size)];
+            for (int start = 0; start < size; start += BLOCK) {
+                int count = Math.min(BLOCK, size - start);
+                array.storage.read(start, block, 0, count);
+                for (int i = 0; i < count; i++) {
+                    out.writeFloat(block[i]);
+                }
+            }
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            int[] dims = (int[]) in.readObject();
+            array = zeros(ShapeCpu.of(dims));
+            int size = array.shape.size();
+            float[] block = new float[Math.min(BLOCK, size)];
+            for (int start = 0; start < size; start += BLOCK) {
+                int count = Math.min(BLOCK, size - start);
+                for (int i = 0; i < count; i++) {
+                    block[i] = in.readFloat();
+                }
+                array.storage.write(start, block, 0, count);
+            }
+        }
+
+        private Object readResolve() {
+            return array;
+        }
+    }
+
+    private static ShapeCpu toShapeCpu(Shape shape) {
+        return shape instanceof ShapeCpu ? (ShapeCpu) shape : ShapeCpu.of(shape.getShapeDims());
+    }
+
+    @Override
+    public String toString() {
+        return "NdArrayOffHeap{shape=" + shape + ", bytes=" + storage.length() * Float.BYTES + '}';
+    }
+}
@@ -0,0 +1,216 @@
+package io.leavesfly.tinyai.ndarr.offheap;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 堆外float存储
+ *
+ * <p>数据保存在 {@link ByteBuffer#allocateDirect(int)} 分配的直接内存中，不占用Java堆，GC也不会扫描其内容。
+ * 单个直接缓冲最大约2GB，因此按 {@value #CHUNK_FLOATS} 个float（1GB）分块，总长度使用long寻址。</p>
+ *
+ * <p>所有读写均使用绝对位置的方法，不修改缓冲的position，多个线程可以同时读取。</p>
+ *
+ * <p>Java 17 没有公开的立即释放直接内存的接口：{@link #release()} 只是断开对直接缓冲的引用，
+ * 实际内存在下一次GC回收这些缓冲对象时归还操作系统。直接内存总量受 {@code -XX:MaxDirectMemorySize} 限制。</p>
+ */
+public final class OffHeapBuffer {
+
+    /**
+     * 每个分块包含的float数量（2^28个，即1GB）
+     */
+    static final int CHUNK_FLOATS = 1 << 28;
+
+    private static final int CHUNK_SHIFT = 28;
+    private static final int CHUNK_MASK = CHUNK_FLOATS - 1;
+
+    private static final AtomicLong ALLOCATED_BYTES = new AtomicLong();
+
+    private final long length;
+    private volatile FloatBuffer[] chunks;
+
+    private OffHeapBuffer(long length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("长度不能为负数: " + length);
+        }
+        this.length = length;
+        int chunkCount = (int) ((length + CHUNK_FLOATS - 1) >>> CHUNK_SHIFT);
+        this.chunks = new FloatBuffer[chunkCount];
+        long remaining = length;
+        for (int i = 0; i < chunkCount; i++) {
+            int floats = (int) Math.min(remaining, CHUNK_FLOATS);
+            chunks[i] = ByteBuffer.allocateDirect(floats * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+            remaining -= floats;
+        }
+        ALLOCATED_BYTES.addAndGet(length * Float.BYTES);
+    }
+
+    /**
+     * 分配指定长度的堆外存储，所有元素为0
+     *
+     * @param length float元素个数
+     * @return 堆外存储
+     */
+    public static OffHeapBuffer allocate(long length) {
+        return new OffHeapBuffer(length);
+    }
+
+    /**
+     * 当前进程中尚未释放的堆外存储总字节数
+     *
+     * @return 字节数
+     */
+    public static long getAllocatedBytes() {
+        return ALLOCATED_BYTES.get();
+    }
+
+    /**
+     * 元素个数
+     *
+     * @return 元素个数
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * 读取单个元素
+     *
+     * @param index 元素位置
+     * @return 元素值
+     */
+    public float get(long index) {
+        checkRange(index, 1);
+        return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+    }
+
+    /**
+     * 写入单个元素
+     *
+     * @param index 元素位置
+     * @param value 元素值
+     */
+    public void set(long index, float value) {
+        checkRange(index, 1);
+        chunks[(int) (index >>> CHUNK_SHIFT)].put((int) (index & CHUNK_MASK), value);
+    }
+
+    /**
+     * 批量读取到堆内数组，可跨越分块边界
+     *
+     * @param index     起始元素位置
+     * @param dst       目标数组
+     * @param dstOffset 目标起始位置
+     * @param count     元素个数
+     */
+    public void read(long index, float[] dst, int dstOffset, int count) {
+        checkRange(index, count);
+        while (count > 0) {
+            int chunk = (int) (index >>> CHUNK_SHIFT);
+            int pos = (int) (index & CHUNK_MASK);
+            int n = Math.min(count, chunks[chunk].capacity() - pos);
+            chunks[chunk].get(pos, dst, dstOffset, n);
+            index += n;
+            dstOffset += n;
+            count -= n;
+        }
+    }
+
+    /**
+     * 从堆内数组批量写入，可跨越分块边界
+     *
+     * @param index     起始元素位置
+     * @param src       源数组
+     * @param srcOffset 源起始位置
+     * @param count     元素个数
+     */
+    public void write(long index, float[] src, int srcOffset, int count) {
+        checkRange(index, count);
+        while (count > 0) {
+            int chunk = (int) (index >>> CHUNK_SHIFT);
+            int pos = (int) (index & CHUNK_MASK);
+            int n = Math.min(count, chunks[chunk].capacity() - pos);
+            chunks[chunk].put(pos, src, srcOffset, n);
+            index += n;
+            srcOffset += n;
+            count -= n;
+        }
+    }
+
+    /**
+     * 在存储内部移动一段数据，源区间与目标区间可以重叠
+     *
+     * @param srcIndex 源起始位置
+     * @param dstIndex 目标起始位置
+     * @param count    元素个数
+     * @param scratch  中转用的堆内数组，长度决定每次搬运的元素数
+     */
+    public void move(long srcIndex, long dstIndex, long count, float[] scratch) {
+        checkRange(srcIndex, count);
+        checkRange(dstIndex, count);
+        if (count == 0 || srcIndex == dstIndex) {
+            return;
+        }
+        int step = scratch.length;
+        if (dstIndex < srcIndex) {
+            for (long done = 0; done < count; done += step) {
+                int n = (int) Math.min(step, count - done);
+                read(srcIndex + done, scratch, 0, n);
+                write(dstIndex + done, scratch, 0, n);
+            }
+        } else {
+            for (long end = count; end > 0; end -= step) {
+                int n = (int) Math.min(step, end);
+                read(srcIndex + end - n, scratch, 0, n);
+                write(dstIndex + end - n, scratch, 0, n);
+            }
+        }
+    }
+
+    /**
+     * 将指定区间填充为同一个值
+     *
+     * @param index 起始元素位置
+     * @param count 元素个数
+     * @param value 填充值
+     */
+    public void fill(long index, long count, float value) {
+        checkRange(index, count);
+        float[] block = new float[(int) Math.min(count, 8192)];
+        Arrays.fill(block, value);
+        for (long done = 0; done < count; done += block.length) {
+            write(index + done, block, 0, (int) Math.min(block.length, count - done));
+        }
+    }
+
+    /**
+     * 断开对直接内存的引用，之后不得再访问该存储
+     */
+    public synchronized void release() {
+        if (chunks != null) {
+            chunks = null;
+            ALLOCATED_BYTES.addAndGet(-length * Float.BYTES);
+        }
+    }
+
+    /**
+     * 判断存储是否已释放
+     *
+     * @return 已释放时返回true
+     */
+    public boolean isReleased() {
+        return chunks == null;
+    }
+
+    private void checkRange(long index, long count) {
+        if (chunks == null) {
+            throw new IllegalStateException("堆外存储已释放");
+        }
+        if (index < 0 || count < 0 || index + count > length) {
+            throw new IndexOutOfBoundsException(String.format("访问区间[%d,%d)超出范围[0,%d)", index, index + count, length));
+        }
+    }
+}
@@ -45,6 +45,86 @@ public class NdArrayTpu implements NdArray {
         return null;
     }
 
+    @Override
+    public NdArray add(NdArray other, NdArray out) {
+        throw new UnsupportedOperationException("TPU implementation pending");
+    }
+
+    @Override
+    public NdArray sub(NdArray other, NdArray out) {
+        throw new UnsupportedOperationException("TPU implementation pending");
+    }
+
+    @Override
+    public NdArray mul(NdArray other, NdArray out) {
+        throw new UnsupportedOperationException("TPU implementation pending");
+    }
+
+    @Override
+    public NdArray div(NdArray other, NdArray out) {
+        throw new UnsupportedOperationException("TPU implementation pending");
+    }
+
+    @Override
+    public NdArray mulNum(Number number, NdArray out) {
+        throw new UnsupportedOperationException("TPU implementation pending");
+    }
+
+    @Override
+    public NdArray sqrt(NdArray out) {
+        throw new UnsupportedOperationException("TPU implementation pending");
+    }
+
+    @Override
+    public NdArray addi(NdArray other) {
+        throw new UnsupportedOperationException("TPU implementation pending");
+    }
+
+    @Override
+    public NdArray subi(NdArray other) {
+        throw new UnsupportedOperationException("TPU implementation pending");
+    }
+
+    @Override
+    public NdArray muli(NdArray other) {
+        throw new UnsupportedOperationException("TPU implementation pending");
+    }
+
+    @Override
+    public NdArray divi(NdArray other) {
+        throw new UnsupportedOperationException("TPU implementation pending");
+    }
+
+    @Override
+    public NdArray addNumi(Number number) {
+        throw new UnsupportedOperationException("TPU implementation pending");
+    }
+
+    @Override
+    public NdArray mulNumi(Number number) {
+        throw new UnsupportedOperationException("TPU implementation pending");
+    }
+
+    @Override
+    public NdArray divNumi(Number number) {
+        throw new UnsupportedOperationException("TPU implementation pending");
+    }
+
+    @Override
+    public NdArray axpy(Number alpha, NdArray x) {
+        throw new UnsupportedOperationException("TPU implementation pending");
+    }
+
+    @Override
+    public NdArray fill(Number value) {
+        throw new UnsupportedOperationException("TPU implementation pending");
+    }
+
+    @Override
+    public NdArray assign(NdArray other) {
+        throw new UnsupportedOperationException("TPU implementation pending");
+    }
+
     @Override
     public NdArray neg() {
         return null;
@@ -210,6 +290,16 @@ public class NdArrayTpu implements NdArray {
         return null;
     }
 
+    @Override
+    public NdArray dot(NdArray other, boolean transposeSelf, boolean transposeOther) {
+        throw new UnsupportedOperationException("TPU implementation pending");
+    }
+
+    @Override
+    public NdArray dot(NdArray other, int[] selfOrder, int[] otherOrder, int[] resultOrder) {
+        throw new UnsupportedOperationException("TPU implementation pending");
+    }
+
     @Override
     public NdArray getItem(int[] _rowSlices, int[] _colSlices) {
         return null;
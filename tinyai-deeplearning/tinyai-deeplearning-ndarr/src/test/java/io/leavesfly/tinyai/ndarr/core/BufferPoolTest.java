@@ -0,0 +1,137 @@
+package io.leavesfly.tinyai.ndarr.core;
+
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.ndarr.cpu.pool.BufferPool;
+import io.leavesfly.tinyai.ndarr.cpu.pool.BufferScope;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 缓冲池与缓冲作用域测试
+ *
+ * 测试池化分配的行为，包括：
+ * - 作用域关闭后缓冲被归还并在下一次迭代中复用，复用的缓冲为全零
+ * - keep保留的数组不会被归还
+ * - 作用域打开期间普通的工厂方法和运算结果不使用缓冲池
+ * - 嵌套作用域、保留上限与统计计数
+ *
+ * @author TinyAI
+ */
+public class BufferPoolTest {
+
+    private BufferPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new BufferPool(1024 * 1024);
+    }
+
+    @Test
+    public void testBuffersReusedAcrossScopes() {
+        float[] first;
+        try (BufferScope scope = BufferScope.open(pool)) {
+            NdArray x = scope.zeros(Shape.of(8, 16));
+            first = x.getArray();
+            assertEquals(1, scope.getAllocatedCount());
+            x.getArray()[3] = 5f;
+        }
+        assertEquals(0, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+        assertEquals(8 * 16 * Float.BYTES, pool.getRetainedBytes());
+
+        try (BufferScope scope = BufferScope.open(pool)) {
+            NdArray y = scope.zeros(Shape.of(16, 8));
+            assertSame("相同长度的缓冲应被复用", first, y.getArray());
+            for (float value : y.getArray()) {
+                assertEquals("复用的缓冲应为全零", 0f, value, 0f);
+            }
+        }
+        assertEquals(1, pool.getHitCount());
+        assertEquals(0.5, pool.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void testRepeatedScopesHitPool() {
+        for (int step = 0; step < 5; step++) {
+            try (BufferScope scope = BufferScope.open(pool)) {
+                scope.zeros(Shape.of(10, 10));
+                scope.zeros(Shape.of(10, 10));
+            }
+        }
+        assertEquals(2, pool.getMissCount());
+        assertTrue("稳定迭代后应大部分命中", pool.getHitRate() > 0.7);
+    }
+
+    @Test
+    public void testImplicitAllocationsAreNotPooled() {
+        // 作用域只管理显式申请的缓冲，运算结果、参数和梯度等数组不会在作用域关闭时被回收
+        NdArray a = NdArray.likeRandom(-1f, 1f, Shape.of(10, 10), 1);
+        NdArray b = NdArray.likeRandom(-1f, 1f, Shape.of(10, 10), 2);
+        NdArray c;
+        try (BufferScope scope = BufferScope.open(pool)) {
+            c = a.add(b).mul(a);
+            NdArray.ones(Shape.of(10, 10));
+            assertEquals(0, scope.getAllocatedCount());
+        }
+        assertEquals(0, pool.getMissCount());
+        assertEquals(0, pool.getRetainedBytes());
+        assertArrayEquals(a.add(b).mul(a).getArray(), c.getArray(), 0f);
+    }
+
+    @Test
+    public void testKeptArraysAreNotReleased() {
+        NdArray kept;
+        try (BufferScope scope = BufferScope.open(pool)) {
+            kept = scope.zeros(Shape.of(4, 32));
+            kept.getArray()[0] = 1f;
+            scope.keep(kept);
+            scope.zeros(Shape.of(4, 32));
+        }
+        assertEquals("只有未保留的缓冲被归还", 4 * 32 * Float.BYTES, pool.getRetainedBytes());
+
+        try (BufferScope scope = BufferScope.open(pool)) {
+            NdArray reused = scope.zeros(Shape.of(4, 32));
+            assertNotSame(kept.getArray(), reused.getArray());
+        }
+        assertEquals(1f, kept.getArray()[0], 0f);
+    }
+
+    @Test
+    public void testNestedScopes() {
+        try (BufferScope outer = BufferScope.open(pool)) {
+            outer.zeros(Shape.of(2, 64));
+            try (BufferScope inner = BufferScope.open(pool)) {
+                inner.zeros(Shape.of(2, 64));
+                inner.zeros(Shape.of(2, 64));
+            }
+            assertEquals(2 * 2 * 64 * Float.BYTES, pool.getRetainedBytes());
+        }
+        assertEquals(3 * 2 * 64 * Float.BYTES, pool.getRetainedBytes());
+    }
+
+    @Test
+    public void testRetainedBytesCapAndSmallArrays() {
+        BufferPool small = new BufferPool(100 * Float.BYTES);
+        try (BufferScope scope = BufferScope.open(small)) {
+            scope.zeros(Shape.of(1, 80));
+            scope.zeros(Shape.of(1, 80));
+            scope.zeros(Shape.of(2, 3));
+            assertEquals("小数组不进入缓冲池", 2, scope.getAllocatedCount());
+        }
+        assertEquals(80 * Float.BYTES, small.getRetainedBytes());
+        assertEquals(80 * Float.BYTES, small.getDroppedBytes());
+
+        small.clear();
+        assertEquals(0, small.getRetainedBytes());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAllocateAfterCloseRejected() {
+        BufferScope scope = BufferScope.open(pool);
+        scope.close();
+        scope.zeros(Shape.of(8, 8));
+    }
+}
@@ -0,0 +1,193 @@
+package io.leavesfly.tinyai.ndarr.core;
+
+import io.leavesfly.tinyai.ndarr.cpu.matrix.ConvKernel;
+import io.leavesfly.tinyai.ndarr.cpu.matrix.PoolKernel;
+import io.leavesfly.tinyai.ndarr.cpu.pool.BufferPool;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 卷积与池化内核测试
+ *
+ * 与朴素的逐元素循环对比，包括：
+ * - 不同步长、填充与非正方形卷积核的前向卷积
+ * - 输出位置多于一个列块时的分段计算
+ * - 输入梯度与卷积核梯度
+ * - 重复调用时列块从缓冲池复用，复用的缓冲不影响结果
+ * - 最大/平均池化的前向与反向，填充区域不参与计算
+ *
+ * @author TinyAI
+ */
+public class ConvKernelTest {
+
+    private static final float DELTA = 1e-4f;
+
+    @Test
+    public void testForwardMatchesNaive() {
+        int[][] cases = {
+                // B, C, H, W, OC, KH, KW, stride, padding
+                {2, 3, 7, 6, 4, 3, 3, 1, 1},
+                {1, 2, 9, 9, 3, 3, 2, 2, 0},
+                {3, 1, 5, 5, 2, 1, 1, 1, 0},
+                {1, 4, 6, 5, 5, 5, 5, 1, 2},
+        };
+        for (int[] c : cases) {
+            checkForwardAndBackward(c, 1);
+        }
+    }
+
+    @Test
+    public void testMultipleTilesPerImage() {
+        // 通道数较多时每个列块只容纳部分输出位置，64×64的输出需要分多段计算
+        ConvKernel.Geometry g = new ConvKernel.Geometry(2, 64, 64, 64, 3, 3, 3, 1, 1);
+        assertTrue(g.getOutHeight() * g.getOutWidth() > (1 << 15) / (64 * 9));
+        checkForwardAndBackward(new int[]{2, 64, 64, 64, 3, 3, 3, 1, 1}, 2);
+    }
+
+    @Test
+    public void testRepeatedCallsReuseTiles() {
+        int[] c = {2, 3, 7, 6, 4, 3, 3, 1, 1};
+        checkForwardAndBackward(c, 3);
+        long hits = BufferPool.getDefault().getHitCount();
+        checkForwardAndBackward(c, 4);
+        assertTrue("第二次调用应从缓冲池取得列块", BufferPool.getDefault().getHitCount() > hits);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKernelLargerThanInput() {
+        new ConvKernel.Geometry(1, 1, 2, 2, 1, 3, 3, 1, 0);
+    }
+
+    @Test
+    public void testMaxPool() {
+        int planes = 3;
+        int h = 5;
+        int w = 6;
+        float[] input = random(planes * h * w, 11);
+        int k = 3;
+        int stride = 2;
+        int padding = 1;
+        int oh = ConvKernel.outputSize(h, k, stride, padding);
+        int ow = ConvKernel.outputSize(w, k, stride, padding);
+        float[] output = new float[planes * oh * ow];
+        int[] argmax = new int[output.length];
+        PoolKernel.maxPoolForward(input, planes, h, w, k, k, stride, padding, output, argmax);
+
+        float[] outGrad = random(output.length, 12);
+        float[] expectedGrad = new float[input.length];
+        for (int p = 0; p < planes; p++) {
+            for (int y = 0; y < oh; y++) {
+                for (int x = 0; x < ow; x++) {
+                    float max = Float.NEGATIVE_INFINITY;
+                    int index = -1;
+                    for (int i = 0; i < k; i++) {
+                        for (int j = 0; j < k; j++) {
+                            int ih = y * stride + i - padding;
+                            int iw = x * stride + j - padding;
+                            if (ih >= 0 && ih < h && iw >= 0 && iw < w && input[(p * h + ih) * w + iw] > max) {
+                                max = input[(p * h + ih) * w + iw];
+                                index = ih * w + iw;
+                            }
+                        }
+                    }
+                    int o = (p * oh + y) * ow + x;
+                    assertEquals(max, output[o], 0f);
+                    assertEquals(index, argmax[o]);
+                    expectedGrad[p * h * w + index] += outGrad[o];
+                }
+            }
+        }
+
+        float[] inputGrad = new float[input.length];
+        PoolKernel.maxPoolBackward(outGrad, argmax, planes, h * w, oh * ow, inputGrad);
+        assertArrayEquals(expectedGrad, inputGrad, DELTA);
+    }
+
+    @Test
+    public void testAvgPoolExcludesPadding() {
+        // 单个2×2平面，3×3窗口、填充1：每个窗口都覆盖全部4个有效元素
+        float[] input = {1, 2, 3, 4};
+        float[] output = new float[4];
+        PoolKernel.avgPoolForward(input, 1, 2, 2, 3, 3, 1, 1, output);
+        assertArrayEquals(new float[]{2.5f, 2.5f, 2.5f, 2.5f}, output, 0f);
+
+        float[] inputGrad = new float[4];
+        PoolKernel.avgPoolBackward(new float[]{1, 1, 1, 1}, 1, 2, 2, 3, 3, 1, 1, inputGrad);
+        assertArrayEquals(new float[]{1, 1, 1, 1}, inputGrad, DELTA);
+
+        // 2×2窗口、步长2、无填充
+        float[] plane = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16};
+        float[] pooled = new float[4];
+        PoolKernel.avgPoolForward(plane, 1, 4, 4, 2, 2, 2, 0, pooled);
+        assertArrayEquals(new float[]{3.5f, 5.5f, 11.5f, 13.5f}, pooled, 0f);
+    }
+
+    private static void checkForwardAndBackward(int[] c, long seed) {
+        ConvKernel.Geometry g = new ConvKernel.Geometry(c[0], c[1], c[2], c[3], c[4], c[5], c[6], c[7], c[8]);
+        int oh = g.getOutHeight();
+        int ow = g.getOutWidth();
+        float[] input = random(c[0] * c[1] * c[2] * c[3], seed);
+        float[] kernel = random(c[4] * c[1] * c[5] * c[6], seed + 1);
+        float[] outGrad = random(c[0] * c[4] * oh * ow, seed + 2);
+
+        float[] output = new float[outGrad.length];
+        ConvKernel.forward(input, kernel, output, g);
+        float[] inputGrad = new float[input.length];
+        float[] kernelGrad = new float[kernel.length];
+        ConvKernel.backward(input, kernel, outGrad, inputGrad, kernelGrad, g);
+
+        float[] expectedOut = new float[output.length];
+        float[] expectedInputGrad = new float[input.length];
+        float[] expectedKernelGrad = new float[kernel.length];
+        naive(c, oh, ow, input, kernel, outGrad, expectedOut, expectedInputGrad, expectedKernelGrad);
+
+        assertArrayEquals(expectedOut, output, DELTA);
+        assertArrayEquals(expectedInputGrad, inputGrad, DELTA);
+        assertArrayEquals(expectedKernelGrad, kernelGrad, 1e-3f);
+    }
+
+    private static void naive(int[] c, int oh, int ow, float[] input, float[] kernel, float[] outGrad,
+                              float[] output, float[] inputGrad, float[] kernelGrad) {
+        int batch = c[0], channels = c[1], h = c[2], w = c[3], outChannels = c[4];
+        int kh = c[5], kw = c[6], stride = c[7], padding = c[8];
+        for (int b = 0; b < batch; b++) {
+            for (int oc = 0; oc < outChannels; oc++) {
+                for (int y = 0; y < oh; y++) {
+                    for (int x = 0; x < ow; x++) {
+                        int o = ((b * outChannels + oc) * oh + y) * ow + x;
+                        float sum = 0f;
+                        for (int ch = 0; ch < channels; ch++) {
+                            for (int i = 0; i < kh; i++) {
+                                for (int j = 0; j < kw; j++) {
+                                    int ih = y * stride + i - padding;
+                                    int iw = x * stride + j - padding;
+                                    if (ih < 0 || ih >= h || iw < 0 || iw >= w) {
+                                        continue;
+                                    }
+                                    int in = ((b * channels + ch) * h + ih) * w + iw;
+                                    int k = ((oc * channels + ch) * kh + i) * kw + j;
+                                    sum += input[in] * kernel[k];
+                                    inputGrad[in] += outGrad[o] * kernel[k];
+                                    kernelGrad[k] += outGrad[o] * input[in];
+                                }
+                            }
+                        }
+                        output[o] = sum;
+                    }
+                }
+            }
+        }
+    }
+
+    private static float[] random(int size, long seed) {
+        Random random = new Random(seed);
+        float[] data = new float[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = random.nextFloat() * 2f - 1f;
+        }
+        return data;
+    }
+}
@@ -0,0 +1,156 @@
+package io.leavesfly.tinyai.ndarr.core;
+
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.ndarr.cpu.simd.FloatKernels;
+import io.leavesfly.tinyai.ndarr.cpu.simd.KernelBackend;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 计算内核测试
+ *
+ * 测试当前选定的计算内核（以 --add-modules jdk.incubator.vector 运行时为SIMD内核）
+ * 与标量内核的结果一致性，包括：
+ * - 逐元素四则运算与数学函数
+ * - 求和、最值、方差等归约
+ * - 非向量宽度整数倍的尾部处理
+ * - 沿轴归约与softmax
+ *
+ * @author TinyAI
+ */
+public class FloatKernelsTest {
+
+    private static final float DELTA = 1e-5f;
+
+    /**
+     * 故意选择非向量宽度整数倍的长度，覆盖尾部循环
+     */
+    private static final int LENGTH = 1037;
+
+    private FloatKernels kernels;
+    private FloatKernels scalar;
+    private float[] a;
+    private float[] b;
+
+    @Before
+    public void setUp() {
+        kernels = KernelBackend.get();
+        scalar = KernelBackend.scalar();
+        Random random = new Random(42);
+        a = new float[LENGTH];
+        b = new float[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            a[i] = random.nextFloat() * 4f - 2f;
+            b[i] = random.nextFloat() + 0.5f;
+        }
+    }
+
+    @Test
+    public void testBackendSelected() {
+        assertNotNull(kernels.name());
+        assertEquals(kernels != scalar, KernelBackend.isVectorized());
+
+        // 加载了孵化模块且未关闭SIMD时必须选中SIMD内核，否则下面的比对只是标量内核与自身比较
+        boolean vectorModule = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        boolean simdDisabled = "false".equalsIgnoreCase(System.getProperty(KernelBackend.SIMD_PROPERTY));
+        assertEquals(vectorModule && !simdDisabled, KernelBackend.isVectorized());
+    }
+
+    @Test
+    public void testBinaryOperations() {
+        float[] expected = new float[LENGTH];
+        float[] actual = new float[LENGTH];
+
+        scalar.add(a, b, expected, LENGTH);
+        kernels.add(a, b, actual, LENGTH);
+        assertArrayEquals(expected, actual, 0f);
+
+        scalar.mul(a, b, expected, LENGTH);
+        kernels.mul(a, b, actual, LENGTH);
+        assertArrayEquals(expected, actual, 0f);
+
+        scalar.div(a, b, expected, LENGTH);
+        kernels.div(a, b, actual, LENGTH);
+        assertArrayEquals(expected, actual, 0f);
+
+        scalar.mulScalar(a, 0.5f, expected, LENGTH);
+        kernels.mulScalar(a, 0.5f, actual, LENGTH);
+        assertArrayEquals(expected, actual, 0f);
+    }
+
+    @Test
+    public void testTranscendentalFunctions() {
+        float[] expected = new float[LENGTH];
+        float[] actual = new float[LENGTH];
+
+        scalar.exp(a, expected, LENGTH);
+        kernels.exp(a, actual, LENGTH);
+        assertArrayEquals(expected, actual, DELTA);
+
+        scalar.tanh(a, expected, LENGTH);
+        kernels.tanh(a, actual, LENGTH);
+        assertArrayEquals(expected, actual, DELTA);
+
+        scalar.sigmoid(a, expected, LENGTH);
+        kernels.sigmoid(a, actual, LENGTH);
+        assertArrayEquals(expected, actual, DELTA);
+
+        scalar.log(b, expected, LENGTH);
+        kernels.log(b, actual, LENGTH);
+        assertArrayEquals(expected, actual, DELTA);
+    }
+
+    @Test
+    public void testReductions() {
+        assertEquals(scalar.sum(a, 3, LENGTH - 3), kernels.sum(a, 3, LENGTH - 3), 1e-3f);
+        assertEquals(scalar.max(a, 1, LENGTH - 1), kernels.max(a, 1, LENGTH - 1), 0f);
+        assertEquals(scalar.min(a, 1, LENGTH - 1), kernels.min(a, 1, LENGTH - 1), 0f);
+        assertEquals(scalar.sumSquaredDiff(a, 0, LENGTH, 0.25f),
+                kernels.sumSquaredDiff(a, 0, LENGTH, 0.25f), 1e-2f);
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testDivByZeroThrows() {
+        float[] divisor = b.clone();
+        divisor[LENGTH / 2] = 0f;
+        kernels.div(a, divisor, new float[LENGTH], LENGTH);
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testLogOfNegativeThrows() {
+        kernels.log(a, new float[LENGTH], LENGTH);
+    }
+
+    @Test
+    public void testSoftmaxLastAxisMatchesGenericAxis() {
+        NdArray x = NdArray.likeRandom(-3f, 3f, Shape.of(2, 3, 37), 9);
+
+        // 最后一维走逐行内核，与转置后沿非末轴的通用实现结果一致
+        NdArray lastAxis = x.softMax(-1);
+        NdArray viaAxis1 = x.transpose(0, 2, 1).softMax(1).transpose(0, 2, 1);
+
+        assertArrayEquals(viaAxis1.getArray(), lastAxis.getArray(), DELTA);
+        NdArray rowSums = lastAxis.sum(2);
+        for (float v : rowSums.getArray()) {
+            assertEquals(1f, v, 1e-4f);
+        }
+    }
+
+    @Test
+    public void testAxisReductions() {
+        NdArray x = NdArray.of(new float[][][]{
+                {{1f, 5f, 3f}, {4f, 2f, 6f}},
+                {{-1f, 0f, 7f}, {2f, 9f, -3f}}
+        });
+
+        assertArrayEquals(new float[]{0f, 5f, 10f, 6f, 11f, 3f}, x.sum(0).getArray(), 0f);
+        assertArrayEquals(new float[]{5f, 7f, 9f, 1f, 9f, 4f}, x.sum(1).getArray(), 0f);
+        assertArrayEquals(new float[]{4f, 5f, 6f, 2f, 9f, 7f}, x.max(1).getArray(), 0f);
+        assertArrayEquals(new float[]{3f, 4f, 2f, 8f / 3f}, x.mean(2).getArray(), 1e-6f);
+    }
+}
@@ -0,0 +1,100 @@
+package io.leavesfly.tinyai.ndarr.core;
+
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.ndarr.half.HalfFormat;
+import io.leavesfly.tinyai.ndarr.half.NdArrayHalf;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 16位数组测试
+ *
+ * 测试HalfFormat与NdArrayHalf，包括：
+ * - BF16/FP16编码的舍入、溢出、非规格化数与特殊值
+ * - 按行读取、原地运算与读改写
+ * - 作为右操作数的分段解码矩阵乘法与整体解码结果一致
+ *
+ * @author TinyAI
+ */
+public class NdArrayHalfTest {
+
+    @Test
+    public void testBf16Encoding() {
+        HalfFormat bf16 = HalfFormat.BF16;
+        assertEquals(1f, bf16.round(1f), 0f);
+        assertEquals(-2.5f, bf16.round(-2.5f), 0f);
+        // 1 + 2^-8 恰好位于1与1 + 2^-7之间，平局取偶得到1
+        assertEquals(1f, bf16.round(1f + 0x1p-8f), 0f);
+        assertEquals(1f + 0x1p-7f, bf16.round(1f + 0x1p-8f + 0x1p-20f), 0f);
+        assertEquals(Float.POSITIVE_INFINITY, bf16.round(Float.POSITIVE_INFINITY), 0f);
+        assertTrue(Float.isNaN(bf16.round(Float.NaN)));
+        assertEquals(3e38f, bf16.round(3e38f), 3e38f * 0x1p-8f);
+    }
+
+    @Test
+    public void testFp16Encoding() {
+        HalfFormat fp16 = HalfFormat.FP16;
+        assertEquals(0x3c00, fp16.encode(1f) & 0xffff);
+        assertEquals(0xc000, fp16.encode(-2f) & 0xffff);
+        assertEquals(0x7bff, fp16.encode(65504f) & 0xffff);
+        assertEquals(0x7c00, fp16.encode(65520f) & 0xffff);
+        assertEquals(0x0001, fp16.encode(0x1p-24f) & 0xffff);
+        assertEquals(0x0000, fp16.encode(0x1p-26f) & 0xffff);
+        assertEquals(0x0400, fp16.encode(0x1p-14f) & 0xffff);
+        assertEquals(1f + 0x1p-10f, fp16.round(1f + 0x1p-10f), 0f);
+        assertEquals(1f, fp16.round(1f + 0x1p-11f), 0f);
+        assertTrue(Float.isNaN(fp16.round(Float.NaN)));
+
+        // 所有有限的16位值解码后重新编码保持不变
+        for (int h = 0; h < 0x7c00; h++) {
+            assertEquals(h, fp16.encode(fp16.decode((short) h)) & 0xffff);
+        }
+    }
+
+    @Test
+    public void testRowsAndInPlaceOperations() {
+        NdArray heap = NdArray.likeRandom(-1f, 1f, Shape.of(6, 5), 1);
+        NdArrayHalf half = NdArrayHalf.of(heap, HalfFormat.BF16);
+        float[] rounded = half.getArray();
+        for (int i = 0; i < rounded.length; i++) {
+            assertEquals(HalfFormat.BF16.round(heap.getArray()[i]), rounded[i], 0f);
+        }
+
+        int[] rows = {5, 0, 2};
+        assertArrayEquals(NdArray.of(rounded, heap.getShape()).getItem(rows, null).getArray(),
+                half.getItem(rows, null).getArray(), 0f);
+        assertArrayEquals(NdArray.of(rounded, heap.getShape()).getItem(rows, null).getArray(),
+                half.gatherRows(rows).getArray(), 0f);
+
+        assertSame(half, half.mulNumi(2f));
+        for (int i = 0; i < rounded.length; i++) {
+            assertEquals(rounded[i] * 2f, half.getArray()[i], 0f);
+        }
+        half.set(0.5f, 1, 1);
+        assertEquals(0.5f, half.get(1, 1), 0f);
+        assertEquals(30, half.getStorage().length);
+    }
+
+    @Test
+    public void testMatMulAsRightOperand() {
+        NdArray x = NdArray.likeRandom(-1f, 1f, Shape.of(2, 7, 300), 2);
+        NdArray w = NdArray.likeRandom(-1f, 1f, Shape.of(300, 260), 3);
+        NdArrayHalf wHalf = NdArrayHalf.of(w, HalfFormat.BF16);
+        NdArray wRounded = wHalf.toCpu();
+
+        NdArray expected = x.reshape(Shape.of(14, 300)).dot(wRounded);
+        NdArray actual = x.dot(wHalf);
+        assertEquals(Shape.of(2, 7, 260), actual.getShape());
+        assertArrayEquals(expected.getArray(), actual.getArray(), 1e-4f);
+
+        // 转置右操作数：x(14×260) · wᵀ
+        NdArray g = NdArray.likeRandom(-1f, 1f, Shape.of(14, 260), 4);
+        assertArrayEquals(g.dot(wRounded.transpose()).getArray(), g.dot(wHalf, false, true).getArray(), 1e-4f);
+
+        // 转置左操作数：leftᵀ(14×300) · w
+        NdArray left = NdArray.likeRandom(-1f, 1f, Shape.of(300, 14), 5);
+        assertArrayEquals(left.transpose().dot(wRounded).getArray(), left.dot(wHalf, true, false).getArray(), 1e-4f);
+    }
+}
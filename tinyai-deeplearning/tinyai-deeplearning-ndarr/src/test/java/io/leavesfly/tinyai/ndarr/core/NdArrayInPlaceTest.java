@@ -0,0 +1,123 @@
+package io.leavesfly.tinyai.ndarr.core;
+
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 原地运算与输出缓冲测试
+ *
+ * 测试不分配新数组的运算接口，包括：
+ * - addi/subi/muli/divi 等原地运算返回自身且结果与普通运算一致
+ * - 写入输出数组的运算，以及输出与输入为同一数组的情况
+ * - axpy、fill、assign
+ * - 形状不一致与除数为0时的异常
+ *
+ * @author TinyAI
+ */
+public class NdArrayInPlaceTest {
+
+    private NdArray a;
+    private NdArray b;
+
+    @Before
+    public void setUp() {
+        a = NdArray.likeRandom(-2f, 2f, Shape.of(3, 17), 1);
+        b = NdArray.likeRandom(0.5f, 1.5f, Shape.of(3, 17), 2);
+    }
+
+    @Test
+    public void testInPlaceMatchesOutOfPlace() {
+        NdArray expected = a.add(b);
+        NdArray x = a.mulNum(1f);
+        assertSame(x, x.addi(b));
+        assertArrayEquals(expected.getArray(), x.getArray(), 0f);
+
+        expected = a.sub(b);
+        x = a.mulNum(1f);
+        assertArrayEquals(expected.getArray(), x.subi(b).getArray(), 0f);
+
+        expected = a.mul(b);
+        x = a.mulNum(1f);
+        assertArrayEquals(expected.getArray(), x.muli(b).getArray(), 0f);
+
+        expected = a.div(b);
+        x = a.mulNum(1f);
+        assertArrayEquals(expected.getArray(), x.divi(b).getArray(), 0f);
+
+        expected = a.mulNum(0.25f);
+        x = a.mulNum(1f);
+        assertArrayEquals(expected.getArray(), x.mulNumi(0.25f).getArray(), 0f);
+
+        expected = a.divNum(4f);
+        x = a.mulNum(1f);
+        assertArrayEquals(expected.getArray(), x.divNumi(4f).getArray(), 0f);
+
+        x = a.mulNum(1f);
+        x.addNumi(3f);
+        for (int i = 0; i < x.getArray().length; i++) {
+            assertEquals(a.getArray()[i] + 3f, x.getArray()[i], 0f);
+        }
+    }
+
+    @Test
+    public void testOutputBuffer() {
+        NdArray out = NdArray.zeros(a.getShape());
+
+        assertSame(out, a.add(b, out));
+        assertArrayEquals(a.add(b).getArray(), out.getArray(), 0f);
+
+        a.mul(b, out);
+        assertArrayEquals(a.mul(b).getArray(), out.getArray(), 0f);
+
+        b.sqrt(out);
+        assertArrayEquals(b.sqrt().getArray(), out.getArray(), 0f);
+
+        // 输出与右操作数为同一数组
+        NdArray right = b.mulNum(1f);
+        a.sub(right, right);
+        assertArrayEquals(a.sub(b).getArray(), right.getArray(), 0f);
+    }
+
+    @Test
+    public void testAxpy() {
+        NdArray y = a.mulNum(1f);
+        assertSame(y, y.axpy(-0.5f, b));
+        for (int i = 0; i < y.getArray().length; i++) {
+            assertEquals(a.getArray()[i] + -0.5f * b.getArray()[i], y.getArray()[i], 0f);
+        }
+    }
+
+    @Test
+    public void testFillAndAssign() {
+        NdArray x = NdArray.zeros(Shape.of(2, 3));
+        x.fill(7f);
+        for (float value : x.getArray()) {
+            assertEquals(7f, value, 0f);
+        }
+
+        NdArray target = NdArray.zeros(a.getShape());
+        float[] buffer = target.getArray();
+        target.assign(a);
+        assertSame(buffer, target.getArray());
+        assertArrayEquals(a.getArray(), target.getArray(), 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInPlaceShapeMismatch() {
+        a.addi(NdArray.ones(Shape.of(17, 3)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOutputShapeMismatch() {
+        a.add(b, NdArray.zeros(Shape.of(1, 51)));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testDivNumInPlaceByZero() {
+        a.divNumi(0f);
+    }
+}
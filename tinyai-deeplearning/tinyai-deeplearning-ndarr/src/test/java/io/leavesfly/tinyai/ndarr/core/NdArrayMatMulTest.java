@@ -0,0 +1,85 @@
+package io.leavesfly.tinyai.ndarr.core;
+
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 大规模矩阵乘法测试
+ *
+ * 测试分块并行GEMM内核的正确性，包括：
+ * - 非分块整数倍的2D矩阵
+ * - 4D批量矩阵乘法（注意力分数）
+ * - 批次广播
+ *
+ * @author TinyAI
+ */
+public class NdArrayMatMulTest {
+
+    /**
+     * 朴素的 i-k-j 参考实现
+     */
+    private static float[] referenceDot(float[] a, int aOffset, float[] b, int bOffset, int m, int k, int n) {
+        float[] c = new float[m * n];
+        for (int i = 0; i < m; i++) {
+            for (int p = 0; p < k; p++) {
+                float av = a[aOffset + i * k + p];
+                for (int j = 0; j < n; j++) {
+                    c[i * n + j] += av * b[bOffset + p * n + j];
+                }
+            }
+        }
+        return c;
+    }
+
+    @Test
+    public void testLarge2DMatchesReference() {
+        int m = 131, k = 277, n = 93;
+        NdArray a = NdArray.likeRandom(-1f, 1f, Shape.of(m, k), 7);
+        NdArray b = NdArray.likeRandom(-1f, 1f, Shape.of(k, n), 11);
+
+        NdArray result = a.dot(b);
+
+        assertEquals(Shape.of(m, n), result.getShape());
+        float[] expected = referenceDot(a.getArray(), 0, b.getArray(), 0, m, k, n);
+        assertArrayEquals(expected, result.getArray(), 0f);
+    }
+
+    @Test
+    public void testBatched4DMatchesReference() {
+        int batch = 2, heads = 3, m = 70, k = 64, n = 70;
+        NdArray a = NdArray.likeRandom(-1f, 1f, Shape.of(batch, heads, m, k), 3);
+        NdArray b = NdArray.likeRandom(-1f, 1f, Shape.of(batch, heads, k, n), 5);
+
+        NdArray result = a.dot(b);
+
+        assertEquals(Shape.of(batch, heads, m, n), result.getShape());
+        float[] actual = result.getArray();
+        for (int i = 0; i < batch * heads; i++) {
+            float[] expected = referenceDot(a.getArray(), i * m * k, b.getArray(), i * k * n, m, k, n);
+            for (int j = 0; j < expected.length; j++) {
+                assertEquals(expected[j], actual[i * m * n + j], 0f);
+            }
+        }
+    }
+
+    @Test
+    public void testBroadcastRightBatch() {
+        int batch = 4, m = 65, k = 80, n = 72;
+        NdArray a = NdArray.likeRandom(-1f, 1f, Shape.of(batch, m, k), 13);
+        NdArray b = NdArray.likeRandom(-1f, 1f, Shape.of(k, n), 17);
+
+        NdArray result = a.dot(b);
+
+        assertEquals(Shape.of(batch, m, n), result.getShape());
+        float[] actual = result.getArray();
+        for (int i = 0; i < batch; i++) {
+            float[] expected = referenceDot(a.getArray(), i * m * k, b.getArray(), 0, m, k, n);
+            for (int j = 0; j < expected.length; j++) {
+                assertEquals(expected[j], actual[i * m * n + j], 0f);
+            }
+        }
+    }
+}
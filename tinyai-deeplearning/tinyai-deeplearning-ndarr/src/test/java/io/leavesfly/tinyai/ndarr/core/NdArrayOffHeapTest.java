@@ -0,0 +1,160 @@
+package io.leavesfly.tinyai.ndarr.core;
+
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.ndarr.offheap.NdArrayOffHeap;
+import io.leavesfly.tinyai.ndarr.offheap.OffHeapBuffer;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * 堆外数组测试
+ *
+ * 测试NdArrayOffHeap与OffHeapBuffer，包括：
+ * - 堆内外拷贝、按行选择与按行写入
+ * - 原地运算直接修改堆外数据，结果与堆内运算一致
+ * - 与NdArrayCpu混合运算
+ * - 序列化后仍位于堆外
+ * - 重叠区间搬运与释放后的访问检查
+ *
+ * @author TinyAI
+ */
+public class NdArrayOffHeapTest {
+
+    @Test
+    public void testRoundTripAndGatherRows() {
+        NdArray heap = NdArray.likeRandom(-1f, 1f, Shape.of(10, 7), 1);
+        NdArrayOffHeap offHeap = NdArrayOffHeap.of(heap);
+
+        assertEquals(heap.getShape(), offHeap.getShape());
+        assertArrayEquals(heap.getArray(), offHeap.getArray(), 0f);
+        assertEquals(heap.get(3, 4), offHeap.get(3, 4), 0f);
+
+        int[] rows = {9, 0, 3, 3};
+        assertArrayEquals(heap.getItem(rows, null).getArray(), offHeap.getItem(rows, null).getArray(), 0f);
+        assertArrayEquals(heap.getItem(rows, null).getArray(), offHeap.gatherRows(rows).getArray(), 0f);
+
+        // getArray返回拷贝，修改不影响堆外数据
+        offHeap.getArray()[0] = 100f;
+        assertEquals(heap.getArray()[0], offHeap.get(0, 0), 0f);
+        offHeap.release();
+    }
+
+    @Test
+    public void testInPlaceOperations() {
+        NdArray a = NdArray.likeRandom(-2f, 2f, Shape.of(3, 40000), 2);
+        NdArray b = NdArray.likeRandom(0.5f, 1.5f, Shape.of(3, 40000), 3);
+        NdArrayOffHeap x = NdArrayOffHeap.of(a);
+
+        assertSame(x, x.addi(b));
+        assertArrayEquals(a.add(b).getArray(), x.getArray(), 0f);
+
+        x.assign(a).mulNumi(0.5f).axpy(-2f, b);
+        NdArray expected = a.mulNum(0.5f);
+        expected.axpy(-2f, b);
+        assertArrayEquals(expected.getArray(), x.getArray(), 0f);
+
+        x.fill(3f);
+        assertEquals(3f, x.get(2, 39999), 0f);
+        x.release();
+    }
+
+    @Test
+    public void testMixedWithHeapArrays() {
+        NdArray a = NdArray.likeRandom(-1f, 1f, Shape.of(4, 5), 4);
+        NdArray w = NdArray.likeRandom(-1f, 1f, Shape.of(5, 3), 5);
+        NdArrayOffHeap offW = NdArrayOffHeap.of(w);
+
+        // 堆内数组以堆外数组为操作数
+        assertArrayEquals(a.dot(w).getArray(), a.dot(offW).getArray(), 0f);
+        // 堆外数组的一般运算结果位于堆内
+        assertArrayEquals(w.transpose().getArray(), offW.transpose().getArray(), 0f);
+        // reshape共享堆外存储
+        NdArrayOffHeap flat = offW.reshape(Shape.of(15));
+        flat.set(42f, 14);
+        assertEquals(42f, offW.get(4, 2), 0f);
+        offW.release();
+    }
+
+    @Test
+    public void testSerializationKeepsDataOffHeap() throws Exception {
+        // 元素数超过一个读写块，覆盖分块写出与读回
+        NdArray heap = NdArray.likeRandom(-1f, 1f, Shape.of(3, 10000), 7);
+        NdArrayOffHeap offHeap = NdArrayOffHeap.of(heap);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(offHeap);
+        }
+        Object restored;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            restored = in.readObject();
+        }
+
+        assertTrue(restored instanceof NdArrayOffHeap);
+        NdArrayOffHeap copy = (NdArrayOffHeap) restored;
+        assertEquals(heap.getShape(), copy.getShape());
+        assertArrayEquals(heap.getArray(), copy.getArray(), 0f);
+        assertNotSame(offHeap.getStorage(), copy.getStorage());
+        offHeap.release();
+        copy.release();
+    }
+
+    @Test
+    public void testReadAndWriteRows() {
+        NdArrayOffHeap x = NdArrayOffHeap.zeros(Shape.of(5, 2, 3));
+        NdArray rows = NdArray.likeRandom(-1f, 1f, Shape.of(2, 2, 3), 6);
+        x.writeRows(3, rows);
+
+        NdArray read = x.readRows(3, 5);
+        assertEquals(Shape.of(2, 2, 3), read.getShape());
+        assertArrayEquals(rows.getArray(), read.getArray(), 0f);
+        assertEquals(0f, x.get(2, 1, 2), 0f);
+        x.release();
+    }
+
+    @Test
+    public void testOverlappingMove() {
+        OffHeapBuffer buffer = OffHeapBuffer.allocate(20);
+        float[] data = new float[20];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i;
+        }
+        buffer.write(0, data, 0, 20);
+
+        // 向右重叠搬运，中转数组小于区间长度
+        buffer.move(2, 5, 10, new float[3]);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(2 + i, buffer.get(5 + i), 0f);
+        }
+        // 向左重叠搬运
+        buffer.move(5, 0, 10, new float[4]);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(2 + i, buffer.get(i), 0f);
+        }
+        buffer.release();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAccessAfterRelease() {
+        NdArrayOffHeap x = NdArrayOffHeap.zeros(Shape.of(2, 2));
+        x.release();
+        x.get(0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInPlaceShapeMismatch() {
+        NdArrayOffHeap x = NdArrayOffHeap.zeros(Shape.of(2, 3));
+        try {
+            x.addi(NdArray.ones(Shape.of(3, 2)));
+        } finally {
+            x.release();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package io.leavesfly.tinyai.ndarr.core;
+
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.ndarr.cpu.NdArrayCpu;
+import io.leavesfly.tinyai.ndarr.cpu.StridedView;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 步长视图测试
+ *
+ * 测试StridedView的零拷贝变换与拷贝内核，包括：
+ * - 转置、维度重排、切片只修改元数据并共享数据
+ * - compact与逐元素定义的结果一致（覆盖分块转置、逐段拷贝、跨步拷贝三条路径）
+ * - 带转置标记的矩阵乘法与显式转置后相乘结果逐位相同
+ *
+ * @author TinyAI
+ */
+public class StridedViewTest {
+
+    @Test
+    public void testViewSharesData() {
+        NdArrayCpu x = (NdArrayCpu) NdArray.of(new float[][]{{1f, 2f, 3f}, {4f, 5f, 6f}});
+        StridedView transposed = x.view().transpose();
+
+        assertSame(x.buffer, transposed.data());
+        assertFalse(transposed.isContiguous());
+        assertEquals(2f, transposed.get(1, 0), 0f);
+
+        // 视图与源数组共享数据
+        x.buffer[1] = 20f;
+        assertEquals(20f, transposed.get(1, 0), 0f);
+
+        StridedView row = x.view().slice(0, 1, 2);
+        assertEquals(3, row.offset());
+        assertTrue(row.isContiguous());
+        assertArrayEquals(new float[]{4f, 5f, 6f}, row.compact().buffer, 0f);
+    }
+
+    @Test
+    public void testPermuteCompactMatchesDefinition() {
+        NdArray x = NdArray.likeRandom(-1f, 1f, Shape.of(3, 5, 4, 7), 3);
+        int[] order = {0, 2, 1, 3};
+
+        NdArray permuted = x.transpose(order);
+        assertEquals(Shape.of(3, 4, 5, 7), permuted.getShape());
+        for (int a = 0; a < 3; a++) {
+            for (int b = 0; b < 5; b++) {
+                for (int c = 0; c < 4; c++) {
+                    for (int d = 0; d < 7; d++) {
+                        assertEquals(x.get(a, b, c, d), permuted.get(a, c, b, d), 0f);
+                    }
+                }
+            }
+        }
+
+        // 逆置换还原
+        assertArrayEquals(x.getArray(), permuted.transpose(order).getArray(), 0f);
+    }
+
+    @Test
+    public void testTransposeLargeMatrixUsesTiles() {
+        // 边长不是分块大小的整数倍
+        NdArray x = NdArray.likeRandom(-1f, 1f, Shape.of(2, 45, 70), 5);
+        NdArray t = x.transpose();
+
+        assertEquals(Shape.of(2, 70, 45), t.getShape());
+        for (int b = 0; b < 2; b++) {
+            for (int i = 0; i < 45; i++) {
+                for (int j = 0; j < 70; j++) {
+                    assertEquals(x.get(b, i, j), t.get(b, j, i), 0f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGeneralStridedCopy() {
+        // 最内层维度被置换到外层，走逐元素跨步拷贝
+        NdArray x = NdArray.likeRandom(-1f, 1f, Shape.of(4, 3, 5), 7);
+        NdArray y = x.transpose(2, 0, 1);
+
+        for (int a = 0; a < 4; a++) {
+            for (int b = 0; b < 3; b++) {
+                for (int c = 0; c < 5; c++) {
+                    assertEquals(x.get(a, b, c), y.get(c, a, b), 0f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReshapeOfNonContiguousViewCompacts() {
+        NdArrayCpu x = (NdArrayCpu) NdArray.of(new float[][]{{1f, 2f, 3f}, {4f, 5f, 6f}});
+        StridedView flat = x.view().transpose().reshape(6);
+
+        assertNotSame(x.buffer, flat.data());
+        assertArrayEquals(new float[]{1f, 4f, 2f, 5f, 3f, 6f}, flat.compact().buffer, 0f);
+
+        StridedView contiguous = x.view().reshape(3, 2);
+        assertSame(x.buffer, contiguous.data());
+    }
+
+    @Test
+    public void testDotWithTransposeFlags() {
+        NdArray a = NdArray.likeRandom(-1f, 1f, Shape.of(37, 53), 11);
+        NdArray b = NdArray.likeRandom(-1f, 1f, Shape.of(29, 53), 12);
+        NdArray c = NdArray.likeRandom(-1f, 1f, Shape.of(37, 29), 13);
+
+        assertArrayEquals(a.dot(b.transpose()).getArray(), a.dot(b, false, true).getArray(), 0f);
+        assertArrayEquals(a.transpose().dot(c).getArray(), a.dot(c, true, false).getArray(), 0f);
+        assertArrayEquals(b.transpose().dot(c.transpose()).getArray(), b.dot(c, true, true).getArray(), 0f);
+    }
+
+    @Test
+    public void testBatchedDotWithTransposeAndBroadcast() {
+        // 注意力分数：Q × K^T
+        NdArray q = NdArray.likeRandom(-1f, 1f, Shape.of(2, 3, 17, 8), 21);
+        NdArray k = NdArray.likeRandom(-1f, 1f, Shape.of(2, 3, 19, 8), 22);
+        NdArray scores = q.dot(k, false, true);
+
+        assertEquals(Shape.of(2, 3, 17, 19), scores.getShape());
+        assertArrayEquals(q.dot(k.transpose()).getArray(), scores.getArray(), 0f);
+
+        // 三维与二维广播：dY × W^T
+        NdArray dy = NdArray.likeRandom(-1f, 1f, Shape.of(4, 6, 10), 23);
+        NdArray w = NdArray.likeRandom(-1f, 1f, Shape.of(12, 10), 24);
+        assertArrayEquals(dy.dot(w.transpose()).getArray(), dy.dot(w, false, true).getArray(), 0f);
+    }
+
+    @Test
+    public void testDotWithPermutedOperandsAndResult() {
+        // 多头注意力布局：(batch, seq, heads, dim) 直接按 (batch, heads, seq, dim) 参与计算
+        NdArray q = NdArray.likeRandom(-1f, 1f, Shape.of(2, 7, 3, 5), 31);
+        NdArray k = NdArray.likeRandom(-1f, 1f, Shape.of(2, 9, 3, 5), 32);
+        NdArray v = NdArray.likeRandom(-1f, 1f, Shape.of(2, 9, 3, 4), 33);
+
+        NdArray scores = q.dot(k, new int[]{0, 2, 1, 3}, new int[]{0, 2, 3, 1}, null);
+        NdArray expectedScores = q.transpose(0, 2, 1, 3).dot(k.transpose(0, 2, 3, 1));
+        assertEquals(Shape.of(2, 3, 7, 9), scores.getShape());
+        assertArrayEquals(expectedScores.getArray(), scores.getArray(), 0f);
+
+        // 乘积直接写成 (batch, seq, heads, dim)
+        NdArray output = scores.dot(v, null, new int[]{0, 2, 1, 3}, new int[]{0, 2, 1, 3});
+        NdArray expectedOutput = scores.dot(v.transpose(0, 2, 1, 3)).transpose(0, 2, 1, 3);
+        assertEquals(Shape.of(2, 7, 3, 4), output.getShape());
+        assertArrayEquals(expectedOutput.getArray(), output.getArray(), 0f);
+
+        // 结果最后一维不在末尾时退化为先计算再重排
+        NdArray swapped = scores.dot(v, null, new int[]{0, 2, 1, 3}, new int[]{0, 1, 3, 2});
+        assertArrayEquals(scores.dot(v.transpose(0, 2, 1, 3)).transpose(0, 1, 3, 2).getArray(),
+                swapped.getArray(), 0f);
+    }
+
+    @Test
+    public void testSubNdArray() {
+        NdArray x = NdArray.of(new float[][]{{1f, 2f, 3f, 4f}, {5f, 6f, 7f, 8f}, {9f, 10f, 11f, 12f}});
+        NdArray sub = x.subNdArray(1, 3, 1, 3);
+
+        assertEquals(Shape.of(2, 2), sub.getShape());
+        assertArrayEquals(new float[]{6f, 7f, 10f, 11f}, sub.getArray(), 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDotWithTransposeShapeMismatch() {
+        NdArray a = NdArray.ones(Shape.of(3, 4));
+        NdArray b = NdArray.ones(Shape.of(5, 3));
+        a.dot(b, false, true);
+    }
+}
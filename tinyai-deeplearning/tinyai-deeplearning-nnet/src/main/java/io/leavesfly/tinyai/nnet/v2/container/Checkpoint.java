@@ -0,0 +1,200 @@
+package io.leavesfly.tinyai.nnet.v2.container;
+
+import io.leavesfly.tinyai.func.Function;
+import io.leavesfly.tinyai.func.Variable;
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.nnet.v2.core.Module;
+import io.leavesfly.tinyai.nnet.v2.core.Parameter;
+import io.leavesfly.tinyai.nnet.v2.layer.dnn.Dropout;
+import io.leavesfly.tinyai.util.GradMode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * V2版本的激活检查点（重计算）容器
+ * <p>
+ * 包装任意模块：前向传播时以不构建计算图的方式运行被包装模块，只保留模块的输入，
+ * 模块内部的中间激活在前向结束后即可回收；反向传播到达该节点时，用保存的输入重新执行一次前向
+ * 并构建局部计算图，在局部图上反向传播得到输入梯度，参数梯度直接累加到模块参数上。
+ * 以约一次额外前向的计算量换取激活内存：整个网络常驻的只有各检查点的输入和正在重计算的那一块。
+ * <p>
+ * 特性：
+ * - 重计算时恢复被包装模块中Dropout的随机状态，两次前向使用相同的mask
+ * - 不需要梯度时（推理、GradMode.noGrad()）直接调用被包装模块，没有额外开销
+ * - 被包装模块的前向必须只依赖输入和参数，不能读写KV缓存等外部状态
+ *
+ * 使用示例：
+ * <pre>
+ * Checkpoint block = new Checkpoint("block0", new TransformerEncoderLayer("layer0", 512, 8, 2048));
+ * Variable y = block.forward(x);
+ *
+ * // 不改变模块结构（参数名保持不变）时，也可以在forward中直接调用
+ * x = Checkpoint.checkpoint(layer, x);
+ * </pre>
+ *
+ * @author leavesfly
+ * @version 2.0
+ */
+public class Checkpoint extends Module {
+
+    private final Module module;
+
+    /**
+     * 构造函数
+     *
+     * @param name   容器名称
+     * @param module 被包装的模块
+     */
+    public Checkpoint(String name, Module module) {
+        super(name);
+        if (module == null) {
+            throw new IllegalArgumentException("Cannot checkpoint null module");
+        }
+        this.module = module;
+        registerModule("module", module);
+    }
+
+    /**
+     * 默认名称的构造函数
+     *
+     * @param module 被包装的模块
+     */
+    public Checkpoint(Module module) {
+        this("checkpoint", module);
+    }
+
+    @Override
+    public Variable forward(Variable... inputs) {
+        return checkpoint(module, inputs);
+    }
+
+    /**
+     * 以检查点方式执行模块的前向传播
+     * <p>
+     * 与 {@code module.forward(inputs)} 的结果和梯度一致，但不保留模块内部的计算图。
+     *
+     * @param module 模块
+     * @param inputs 模块输入
+     * @return 模块输出
+     */
+    public static Variable checkpoint(Module module, Variable... inputs) {
+        if (!GradMode.isEnabled()) {
+            return module.forward(inputs);
+        }
+
+        // 参数作为附加输入参与计算图，输入都不需要梯度时参数仍能得到梯度
+        List<Variable> graphInputs = new ArrayList<>(inputs.length);
+        boolean requireGrad = false;
+        for (Variable input : inputs) {
+            graphInputs.add(input);
+            requireGrad |= input.isRequireGrad();
+        }
+        for (Parameter param : module.parameters()) {
+            if (param.isRequireGrad()) {
+                graphInputs.add(param);
+                requireGrad = true;
+            }
+        }
+        if (!requireGrad) {
+            return module.forward(inputs);
+        }
+        return new CheckpointFunction(module, inputs.length).call(graphInputs.toArray(new Variable[0]));
+    }
+
+    /**
+     * 获取被包装的模块
+     *
+     * @return 被包装的模块
+     */
+    public Module getWrappedModule() {
+        return module;
+    }
+
+    @Override
+    public String toString() {
+        return "Checkpoint{name='" + name + "', module=" + module + '}';
+    }
+
+    /**
+     * 检查点函数节点
+     * <p>
+     * 计算图中只有这一个节点代表整个模块，前几个输入是模块输入，其余是模块参数。
+     */
+    private static class CheckpointFunction extends Function {
+
+        private final Module module;
+        private final int moduleInputNum;
+        private final List<Dropout> dropouts;
+        private long[] randomStates;
+
+        CheckpointFunction(Module module, int moduleInputNum) {
+            this.module = module;
+            this.moduleInputNum = moduleInputNum;
+            this.dropouts = new ArrayList<>();
+            for (Module m : module.modules()) {
+                if (m instanceof Dropout) {
+                    dropouts.add((Dropout) m);
+                }
+            }
+        }
+
+        @Override
+        public NdArray forward(NdArray... inputs) {
+            randomStates = saveRandomStates();
+            Variable[] moduleInputs = new Variable[moduleInputNum];
+            for (int i = 0; i < moduleInputNum; i++) {
+                moduleInputs[i] = new Variable(inputs[i]);
+            }
+            return GradMode.withNoGrad(() -> module.forward(moduleInputs).getValue());
+        }
+
+        @Override
+        public List<NdArray> backward(NdArray yGrad) {
+            // 用保存的输入作为新的叶子节点重新构建局部计算图
+            Variable[] leaves = new Variable[moduleInputNum];
+            for (int i = 0; i < moduleInputNum; i++) {
+                leaves[i] = new Variable(inputs[i].getValue());
+                leaves[i].setRequireGrad(inputs[i].isRequireGrad());
+            }
+
+            long[] currentStates = saveRandomStates();
+            restoreRandomStates(randomStates);
+            Variable output;
+            try {
+                output = GradMode.withEnableGrad(() -> module.forward(leaves));
+            } finally {
+                restoreRandomStates(currentStates);
+            }
+
+            output.setGrad(yGrad);
+            output.backward(false);
+
+            // 参数梯度已由局部反向传播累加，对应位置返回null
+            List<NdArray> grads = new ArrayList<>(inputs.length);
+            for (int i = 0; i < inputs.length; i++) {
+                grads.add(i < moduleInputNum && leaves[i].isRequireGrad() ? leaves[i].getGrad() : null);
+            }
+            return grads;
+        }
+
+        @Override
+        public int requireInputNum() {
+            return ARBITRARY_INPUT_NUM;
+        }
+
+        private long[] saveRandomStates() {
+            long[] states = new long[dropouts.size()];
+            for (int i = 0; i < states.length; i++) {
+                states[i] = dropouts.get(i).getRandomState();
+            }
+            return states;
+        }
+
+        private void restoreRandomStates(long[] states) {
+            for (int i = 0; i < states.length; i++) {
+                dropouts.get(i).setRandomState(states[i]);
+            }
+        }
+    }
+}
@@ -3,6 +3,8 @@ package io.leavesfly.tinyai.nnet.v2.core;
 import io.leavesfly.tinyai.func.Function;
 import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.half.HalfFormat;
+import io.leavesfly.tinyai.ndarr.half.NdArrayHalf;
 
 import java.io.Serializable;
 import java.util.*;
@@ -962,6 +964,39 @@ public abstract class Module extends Function implements Serializable {
         return this;
     }
     
+    /**
+     * 将所有参数转换为16位存储
+     * <p>
+     * 参数值替换为 {@link NdArrayHalf}，内存和读取带宽减半；前向/反向计算仍以float进行，
+     * 梯度为float。训练时配合ml模块的FusedOptimizer（其为16位参数保留float主权重）使用，
+     * FP16还应在Trainer中启用损失缩放。已经是16位的参数会按新格式重新编码。
+     *
+     * @param format 16位格式
+     * @return 当前模块（支持链式调用）
+     */
+    public Module toHalfPrecision(HalfFormat format) {
+        for (Parameter param : namedParameters().values()) {
+            if (param != null) {
+                param.setValue(NdArrayHalf.of(param.getValue(), format));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 将所有16位参数恢复为float存储
+     *
+     * @return 当前模块（支持链式调用）
+     */
+    public Module toFullPrecision() {
+        for (Parameter param : namedParameters().values()) {
+            if (param != null && param.getValue() instanceof NdArrayHalf) {
+                param.setValue(((NdArrayHalf) param.getValue()).toCpu());
+            }
+        }
+        return this;
+    }
+    
     /* ===== Hooks机制 ===== */
     
     /**
@@ -5,7 +5,7 @@ import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.ndarr.NdArrayUtil;
 import io.leavesfly.tinyai.ndarr.Shape;
 import io.leavesfly.tinyai.nnet.v2.layer.dnn.Dropout;
-import io.leavesfly.tinyai.util.Config;
+import io.leavesfly.tinyai.util.GradMode;
 
 import java.util.Objects;
 
@@ -136,10 +136,10 @@ public final class Functional {
     }
 
     /**
-     * Dropout，训练模式默认取决于全局Config.train。
+     * Dropout，训练模式默认取决于当前线程的梯度模式（GradMode.isEnabled()）。
      */
     public static Variable dropout(Variable input, float p) {
-        return dropout(input, p, Boolean.TRUE.equals(Config.train));
+        return dropout(input, p, GradMode.isEnabled());
     }
 
     /* --------------------------------- 归一化 --------------------------------- */
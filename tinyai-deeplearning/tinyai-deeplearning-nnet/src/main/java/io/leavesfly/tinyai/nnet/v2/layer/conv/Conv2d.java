@@ -13,7 +13,7 @@ import io.leavesfly.tinyai.nnet.v2.init.Initializers;
  * 二维卷积层，用于处理图像等二维数据。
  * <p>
  * 本实现委托给底层优化的 {@link io.leavesfly.tinyai.func.matrix.Conv2d} Function，
- * 该Function使用Im2Col技术将卷积转换为高效的矩阵乘法。
+ * 该Function使用流式Im2Col将卷积转换为分块矩阵乘法。
  * <p>
  * 公式：
  * output = Conv2d(input, weight) + bias
@@ -142,7 +142,7 @@ public class Conv2d extends Module {
                     String.format("Expected %d input channels, but got %d", inChannels, inputChannels));
         }
 
-        // 创建底层卷积Function（使用Im2Col优化实现）
+        // 创建底层卷积Function（使用流式Im2Col实现）
         io.leavesfly.tinyai.func.matrix.Conv2d convFunc = 
             new io.leavesfly.tinyai.func.matrix.Conv2d(stride, padding);
         
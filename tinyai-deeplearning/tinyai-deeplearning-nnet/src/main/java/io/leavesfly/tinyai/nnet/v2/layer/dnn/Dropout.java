@@ -15,6 +15,7 @@ import java.util.Random;
  * - 训练模式：应用dropout
  * - 推理模式：直接返回输入（不应用dropout）
  * - 使用inverted dropout：训练时缩放以保持期望值不变
+ * - 随机状态是单个long，可保存和恢复以重放相同的mask（用于激活检查点的重计算）
  *
  * @author leavesfly
  * @version 2.0
@@ -22,7 +23,7 @@ import java.util.Random;
 public class Dropout extends Module {
 
     private final float p;
-    private final Random random;
+    private long randomState;
 
     /**
      * 构造函数
@@ -36,7 +37,7 @@ public class Dropout extends Module {
             throw new IllegalArgumentException("Dropout probability must be in [0, 1), got: " + p);
         }
         this.p = p;
-        this.random = new Random();
+        this.randomState = new Random().nextLong();
     }
 
     /**
@@ -94,9 +95,12 @@ public class Dropout extends Module {
         // 使用Variable的形状属性，不需要getValue()
         int totalElements = input.numel();
         float[] maskData = new float[totalElements];
+        // 每个mask使用由当前状态派生的独立随机序列，并推进状态
+        Random random = new Random(randomState);
         for (int i = 0; i < maskData.length; i++) {
             maskData[i] = random.nextFloat() > p ? 1.0f : 0.0f;
         }
+        randomState = random.nextLong();
         NdArray maskArray = NdArray.of(maskData, input.getShape());
         Variable maskVar = new Variable(maskArray);
         maskVar.setRequireGrad(false);  // mask不需要梯度
@@ -112,6 +116,24 @@ public class Dropout extends Module {
         return p;
     }
 
+    /**
+     * 获取随机状态
+     *
+     * @return 当前随机状态，恢复后会生成相同的mask序列
+     */
+    public long getRandomState() {
+        return randomState;
+    }
+
+    /**
+     * 设置随机状态
+     *
+     * @param randomState 由 {@link #getRandomState()} 保存的随机状态
+     */
+    public void setRandomState(long randomState) {
+        this.randomState = randomState;
+    }
+
     @Override
     public String toString() {
         return "Dropout{name='" + name + "', p=" + p + ", training=" + _training + '}';
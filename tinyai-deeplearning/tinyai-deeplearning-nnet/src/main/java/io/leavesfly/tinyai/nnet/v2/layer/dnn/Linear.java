@@ -1,6 +1,7 @@
 package io.leavesfly.tinyai.nnet.v2.layer.dnn;
 
 import io.leavesfly.tinyai.func.Variable;
+import io.leavesfly.tinyai.func.fused.FusedLinear;
 import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.ndarr.Shape;
 import io.leavesfly.tinyai.nnet.v2.core.Module;
@@ -77,19 +78,28 @@ public class Linear extends Module {
 
     @Override
     public Variable forward(Variable... inputs) {
-        Variable x = inputs[0];
-
         // 线性变换：y = xW^T + b
-        // x.shape: (batch, in_features)
-        // weight.shape: (out_features, in_features)
-        // weight需要转置: (in_features, out_features)
-        Variable y = x.matMul(weight.transpose());
+        // x.shape: (..., in_features)
+        // weight.shape: (out_features, in_features)，以转置标记参与矩阵乘，不生成转置数组
+        return forward(inputs[0], FusedLinear.Activation.NONE);
+    }
 
+    /**
+     * 线性变换后接激活函数：y = act(xW^T + b)
+     * <p>
+     * 矩阵乘、加偏置和激活在同一个融合函数中完成，只生成一个计算图节点，
+     * 不生成权重的转置数组，也不保存加偏置前后的中间结果。
+     *
+     * @param x          输入，形状 (..., in_features)
+     * @param activation 激活函数
+     * @return 输出，形状 (..., out_features)
+     */
+    public Variable forward(Variable x, FusedLinear.Activation activation) {
+        FusedLinear function = new FusedLinear(activation);
         if (bias != null) {
-            y = y.add(bias);
+            return function.call(x, weight, bias);
         }
-
-        return y;
+        return function.call(x, weight);
     }
 
     /**
@@ -1,6 +1,7 @@
 package io.leavesfly.tinyai.nnet.v2.layer.norm;
 
 import io.leavesfly.tinyai.func.Variable;
+import io.leavesfly.tinyai.func.fused.FusedLayerNorm;
 import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.ndarr.Shape;
 import io.leavesfly.tinyai.nnet.v2.core.Module;
@@ -71,17 +72,21 @@ public class LayerNorm extends Module {
 
     @Override
     public Variable forward(Variable... inputs) {
-        Variable x = inputs[0];
-
-        // 计算均值和方差（在最后一维）
-        Variable mean = x.mean(-1, true);
-        Variable variance = x.var(-1, true);
-
-        // 归一化
-        Variable normalized = x.sub(mean).div(variance.add(new Variable(eps)).sqrt());
+        // 均值、方差、归一化、缩放和偏移在一个融合函数中完成（在最后一维）
+        return new FusedLayerNorm(eps).call(inputs[0], gamma, beta);
+    }
 
-        // 应用缩放和偏移
-        return normalized.mul(gamma).add(beta);
+    /**
+     * 残差相加后归一化：LayerNorm(x + residual)
+     * <p>
+     * 用于Post-LN结构，相加与归一化在同一个融合函数中完成，不单独生成残差和的中间结果。
+     *
+     * @param x        输入
+     * @param residual 残差分支，形状与x相同
+     * @return 归一化结果
+     */
+    public Variable forwardWithResidual(Variable x, Variable residual) {
+        return new FusedLayerNorm(eps).call(x, gamma, beta, residual);
     }
 
     /**
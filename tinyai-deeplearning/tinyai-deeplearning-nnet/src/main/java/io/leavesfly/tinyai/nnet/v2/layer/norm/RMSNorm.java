@@ -1,6 +1,7 @@
 package io.leavesfly.tinyai.nnet.v2.layer.norm;
 
 import io.leavesfly.tinyai.func.Variable;
+import io.leavesfly.tinyai.func.fused.FusedRMSNorm;
 import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.ndarr.Shape;
 import io.leavesfly.tinyai.nnet.v2.core.Module;
@@ -95,22 +96,21 @@ public class RMSNorm extends Module {
 
     @Override
     public Variable forward(Variable... inputs) {
-        Variable x = inputs[0];
-
-        // 计算 x^2
-        Variable xSquared = x.mul(x);
-
-        // 计算 mean(x^2)
-        Variable meanSquared = xSquared.mean(-1, true);
-
-        // 计算 RMS = sqrt(mean(x^2) + eps)
-        Variable rms = meanSquared.add(new Variable(eps)).sqrt();
-
-        // 归一化: x / RMS
-        Variable normalized = x.div(rms);
+        // x / sqrt(mean(x^2) + eps) * weight 在一个融合函数中完成（在最后一维）
+        return new FusedRMSNorm(eps).call(inputs[0], weight);
+    }
 
-        // 应用缩放: normalized * weight
-        return normalized.mul(weight);
+    /**
+     * 残差相加后归一化：RMSNorm(x + residual)
+     * <p>
+     * 相加与归一化在同一个融合函数中完成，不单独生成残差和的中间结果。
+     *
+     * @param x        输入
+     * @param residual 残差分支，形状与x相同
+     * @return 归一化结果
+     */
+    public Variable forwardWithResidual(Variable x, Variable residual) {
+        return new FusedRMSNorm(eps).call(x, weight, residual);
     }
 
     /**
@@ -0,0 +1,253 @@
+package io.leavesfly.tinyai.nnet.v2.layer.transformer;
+
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * 自回归推理用的Key/Value缓存
+ * <p>
+ * 保存一层注意力已处理token的K、V，使每个解码步只需对新token做投影，
+ * 再与缓存中的历史K、V计算注意力，而不必对整个前缀重新前向传播。
+ * <p>
+ * 存储结构：
+ * - 按 (batch, kv_heads, capacity, head_dim) 连续存放，容量按需倍增直至maxSeqLen
+ * - 查询头数可以是KV头数的整数倍（分组查询注意力GQA），第h个查询头读取第 h / (heads / kv_heads) 个KV头
+ * - 仅用于推理，不参与计算图
+ * - 数据始终位于堆内，暂不支持堆外存储（使用该缓存的Qwen3、GPT-1、DeepSeek推理的KV缓存都在堆内）
+ * <p>
+ * 与MiniMind的分页缓存（{@code io.leavesfly.tinyai.minimind.model.attention.KVCache}）的分工：
+ * - 本类是随 {@link MultiHeadAttention#forwardWithCache} 提供的通用缓存，GPT-1、Qwen3、DeepSeek直接使用，
+ *   只需要连续存储、GQA分组读取和 {@link #copy()}（Beam Search），注意力内层循环按连续下标读取
+ * - MiniMind的缓存服务于连续批处理推理：分页、滑动窗口、堆外存储，以及前缀缓存所需的页共享与写时复制，
+ *   这些能力都与它的调度器和前缀缓存配套，放进本类会让所有模型都承担按页寻址的开销
+ * - nnet不依赖各模型模块，因此两者暂时并存；其他模型需要分页或堆外缓存时，应把MiniMind的实现下沉到nnet后统一
+ *
+ * @author leavesfly
+ * @version 1.0
+ */
+public class KVCache {
+
+    /**
+     * 初始容量(token数)
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * 并行计算注意力的最小工作量(乘加次数)
+     */
+    private static final long PARALLEL_THRESHOLD = 1L << 16;
+
+    private final int batchSize;
+    private final int numHeads;
+    private final int headDim;
+    private final int maxSeqLen;
+
+    private float[] keys;
+    private float[] values;
+    private int capacity;
+    private int seqLen;
+
+    /**
+     * 构造函数
+     *
+     * @param batchSize 批次大小
+     * @param numHeads  KV头数
+     * @param headDim   每个头的维度
+     * @param maxSeqLen 最大缓存长度
+     */
+    public KVCache(int batchSize, int numHeads, int headDim, int maxSeqLen) {
+        if (batchSize <= 0 || numHeads <= 0 || headDim <= 0 || maxSeqLen <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid KVCache dims: batch=%d, heads=%d, headDim=%d, maxSeqLen=%d",
+                    batchSize, numHeads, headDim, maxSeqLen));
+        }
+        this.batchSize = batchSize;
+        this.numHeads = numHeads;
+        this.headDim = headDim;
+        this.maxSeqLen = maxSeqLen;
+        this.capacity = Math.min(INITIAL_CAPACITY, maxSeqLen);
+        this.keys = new float[batchSize * numHeads * capacity * headDim];
+        this.values = new float[keys.length];
+    }
+
+    /**
+     * 追加新token的K、V
+     *
+     * @param newK 新的Key (batch, kv_heads, new_len, head_dim)
+     * @param newV 新的Value (batch, kv_heads, new_len, head_dim)
+     * @throws IllegalStateException 追加后超过maxSeqLen
+     */
+    public void append(NdArray newK, NdArray newV) {
+        int[] shape = newK.getShape().getShapeDims();
+        if (shape.length != 4 || shape[0] != batchSize || shape[1] != numHeads || shape[3] != headDim
+                || !newK.getShape().equals(newV.getShape())) {
+            throw new IllegalArgumentException(String.format(
+                    "KVCache expects [%d, %d, *, %d], got K %s, V %s",
+                    batchSize, numHeads, headDim, newK.getShape(), newV.getShape()));
+        }
+        int newLen = shape[2];
+        if (seqLen + newLen > maxSeqLen) {
+            throw new IllegalStateException(String.format(
+                    "KVCache overflow: cached %d + new %d > maxSeqLen %d", seqLen, newLen, maxSeqLen));
+        }
+        ensureCapacity(seqLen + newLen);
+
+        float[] kData = newK.getArray();
+        float[] vData = newV.getArray();
+        int block = newLen * headDim;
+        for (int bh = 0; bh < batchSize * numHeads; bh++) {
+            int dst = (bh * capacity + seqLen) * headDim;
+            System.arraycopy(kData, bh * block, keys, dst, block);
+            System.arraycopy(vData, bh * block, values, dst, block);
+        }
+        seqLen += newLen;
+    }
+
+    /**
+     * 以缓存中的K、V计算因果缩放点积注意力
+     * <p>
+     * 查询对应缓存中最后 q_len 个token（即调用前刚追加的部分），
+     * 第i个查询只能看到不晚于它自身的位置。
+     *
+     * @param q     Query (batch, heads, q_len, head_dim)，heads须为KV头数的整数倍
+     * @param scale 注意力分数的缩放系数，通常为 1/sqrt(head_dim)
+     * @return 注意力输出 (batch, heads, q_len, head_dim)
+     */
+    public NdArray attention(NdArray q, float scale) {
+        int[] shape = q.getShape().getShapeDims();
+        if (shape.length != 4 || shape[0] != batchSize || shape[1] % numHeads != 0 || shape[3] != headDim) {
+            throw new IllegalArgumentException(String.format(
+                    "KVCache attention expects query [%d, k*%d, *, %d], got %s",
+                    batchSize, numHeads, headDim, q.getShape()));
+        }
+        int queryHeads = shape[1];
+        int qLen = shape[2];
+        if (qLen > seqLen) {
+            throw new IllegalStateException(String.format(
+                    "Query length %d exceeds cached length %d; append K/V before attention", qLen, seqLen));
+        }
+        int groupSize = queryHeads / numHeads;
+        float[] qData = q.getArray();
+        float[] output = new float[qData.length];
+
+        int heads = batchSize * queryHeads;
+        IntStream range = IntStream.range(0, heads);
+        long work = (long) heads * qLen * seqLen * headDim;
+        if (heads > 1 && work >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            range = range.parallel();
+        }
+        range.forEach(bh -> {
+            // 查询头 (b, h) 对应的KV头 (b, h / groupSize)
+            int kvHead = (bh / queryHeads) * numHeads + (bh % queryHeads) / groupSize;
+            attendHead(qData, output, bh * qLen * headDim, kvHead * capacity * headDim, qLen, scale);
+        });
+        return NdArray.of(output, Shape.of(batchSize, queryHeads, qLen, headDim));
+    }
+
+    /**
+     * 计算一个查询头上所有查询的注意力
+     */
+    private void attendHead(float[] qData, float[] output, int qBase, int kvBase, int qLen, float scale) {
+        float[] scores = new float[seqLen];
+        for (int i = 0; i < qLen; i++) {
+            int qOffset = qBase + i * headDim;
+            int visible = seqLen - qLen + i + 1;
+
+            float max = Float.NEGATIVE_INFINITY;
+            for (int j = 0; j < visible; j++) {
+                int kOffset = kvBase + j * headDim;
+                float dot = 0f;
+                for (int d = 0; d < headDim; d++) {
+                    dot += qData[qOffset + d] * keys[kOffset + d];
+                }
+                scores[j] = dot * scale;
+                max = Math.max(max, scores[j]);
+            }
+
+            float sum = 0f;
+            for (int j = 0; j < visible; j++) {
+                scores[j] = (float) Math.exp(scores[j] - max);
+                sum += scores[j];
+            }
+            float inv = 1f / sum;
+
+            for (int j = 0; j < visible; j++) {
+                float p = scores[j] * inv;
+                int vOffset = kvBase + j * headDim;
+                for (int d = 0; d < headDim; d++) {
+                    output[qOffset + d] += p * values[vOffset + d];
+                }
+            }
+        }
+    }
+
+    /**
+     * 容量不足时倍增（不超过maxSeqLen），保留已缓存的数据
+     */
+    private void ensureCapacity(int required) {
+        if (required <= capacity) {
+            return;
+        }
+        int newCapacity = capacity;
+        while (newCapacity < required) {
+            newCapacity = Math.min(newCapacity * 2, maxSeqLen);
+        }
+        float[] newKeys = new float[batchSize * numHeads * newCapacity * headDim];
+        float[] newValues = new float[newKeys.length];
+        int used = seqLen * headDim;
+        for (int bh = 0; bh < batchSize * numHeads; bh++) {
+            System.arraycopy(keys, bh * capacity * headDim, newKeys, bh * newCapacity * headDim, used);
+            System.arraycopy(values, bh * capacity * headDim, newValues, bh * newCapacity * headDim, used);
+        }
+        keys = newKeys;
+        values = newValues;
+        capacity = newCapacity;
+    }
+
+    /**
+     * 复制缓存（如Beam Search中多个候选共享同一前缀后各自扩展）
+     *
+     * @return 内容相同、互不影响的新缓存
+     */
+    public KVCache copy() {
+        KVCache copy = new KVCache(batchSize, numHeads, headDim, maxSeqLen);
+        copy.capacity = capacity;
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.seqLen = seqLen;
+        return copy;
+    }
+
+    /**
+     * 清空缓存（保留已分配的空间）
+     */
+    public void clear() {
+        seqLen = 0;
+    }
+
+    /**
+     * 已缓存的token数
+     */
+    public int getSeqLen() {
+        return seqLen;
+    }
+
+    public int getMaxSeqLen() {
+        return maxSeqLen;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getNumHeads() {
+        return numHeads;
+    }
+
+    public int getHeadDim() {
+        return headDim;
+    }
+}
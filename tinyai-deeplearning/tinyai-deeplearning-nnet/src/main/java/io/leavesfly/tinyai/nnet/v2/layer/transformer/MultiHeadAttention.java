@@ -1,13 +1,17 @@
 package io.leavesfly.tinyai.nnet.v2.layer.transformer;
 
 import io.leavesfly.tinyai.func.Variable;
-import io.leavesfly.tinyai.func.matrix.Permute;
+import io.leavesfly.tinyai.func.fused.ScaleMaskSoftmax;
+import io.leavesfly.tinyai.func.matrix.PermutedMatMul;
 import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.ndarr.Shape;
 import io.leavesfly.tinyai.nnet.v2.core.Module;
 import io.leavesfly.tinyai.nnet.v2.layer.dnn.Linear;
 import io.leavesfly.tinyai.nnet.v2.layer.dnn.Dropout;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * V2版本的MultiHeadAttention层（增强版）
  * <p>
@@ -40,6 +44,16 @@ import io.leavesfly.tinyai.nnet.v2.layer.dnn.Dropout;
  */
 public class MultiHeadAttention extends Module {
 
+    /**
+     * (batch, seq, heads, d) 与 (batch, heads, seq, d) 互相转换的维度顺序（自身互逆）
+     */
+    private static final int[] HEAD_ORDER = {0, 2, 1, 3};
+
+    /**
+     * 把 (batch, seq, heads, d) 读作 (batch, heads, d, seq)，即各头的 K^T
+     */
+    private static final int[] HEAD_ORDER_T = {0, 2, 3, 1};
+
     private final int dModel;      // 模型维度
     private final int numHeads;    // 注意力头数
     private final int dK;          // 每个头的键/查询维度
@@ -127,9 +141,8 @@ public class MultiHeadAttention extends Module {
         Variable K = keyProjection.forward(key);       // (batch, key_seq_len, d_model)
         Variable V = valueProjection.forward(value);   // (batch, key_seq_len, d_model)
 
-        // 2. 分割成多头
-        // 需要将 (batch, seq_len, d_model) 重塑为 (batch, seq_len, num_heads, d_k)
-        // 然后转置为 (batch, num_heads, seq_len, d_k)
+        // 2. 分割成多头：零拷贝重塑为 (batch, seq_len, num_heads, d_k)，
+        // 注意力中的矩阵乘法按步长把它读作 (batch, num_heads, seq_len, d_k)
         Q = splitHeads(Q, batchSize, seqLen);
         K = splitHeads(K, batchSize, keySeqLen);
         V = splitHeads(V, batchSize, keySeqLen);
@@ -137,7 +150,7 @@ public class MultiHeadAttention extends Module {
         // 3. 计算缩放点积注意力（带掩码）
         Variable attention = scaledDotProductAttention(Q, K, V, attnMask, keyPaddingMask);
 
-        // 4. 合并多头
+        // 4. 合并多头（注意力输出已是 (batch, seq_len, num_heads, d_v) 布局）
         Variable concat = mergeHeads(attention, batchSize, seqLen);
 
         // 5. 输出投影
@@ -161,11 +174,53 @@ public class MultiHeadAttention extends Module {
         }
     }
 
+    /**
+     * 带KV缓存的因果自注意力（推理用）
+     * <p>
+     * 只对新token做Q、K、V投影，K、V追加到缓存后与缓存中的全部历史计算注意力，
+     * 结果与对完整前缀使用因果掩码的 {@link #forward} 在新位置上的输出一致。
+     * 应在 {@code GradMode.noGrad()} 下调用。
+     *
+     * @param x     新token的输入 (batch, new_len, d_model)
+     * @param cache 本层的KV缓存，调用后追加 new_len 个位置
+     * @return 新token的注意力输出 (batch, new_len, d_model)
+     */
+    public Variable forwardWithCache(Variable x, KVCache cache) {
+        int[] shape = x.getValue().getShape().getShapeDims();
+        int batchSize = shape[0];
+        int seqLen = shape[1];
+
+        Variable Q = splitHeads(queryProjection.forward(x), batchSize, seqLen);
+        Variable K = splitHeads(keyProjection.forward(x), batchSize, seqLen);
+        Variable V = splitHeads(valueProjection.forward(x), batchSize, seqLen);
+
+        // 缓存按 (batch, heads, seq, d_k) 存放，只需重排新token的少量数据
+        cache.append(K.getValue().transpose(HEAD_ORDER), V.getValue().transpose(HEAD_ORDER));
+        float scale = (float) (1.0 / Math.sqrt(dK));
+        NdArray output = cache.attention(Q.getValue().transpose(HEAD_ORDER), scale);
+        Variable attention = new Variable(output.transpose(HEAD_ORDER));
+
+        return outputProjection.forward(mergeHeads(attention, batchSize, seqLen));
+    }
+
+    /**
+     * 创建与本层形状匹配的KV缓存
+     *
+     * @param batchSize 批次大小
+     * @param maxSeqLen 最大序列长度
+     * @return 空的KV缓存
+     */
+    public KVCache createKVCache(int batchSize, int maxSeqLen) {
+        return new KVCache(batchSize, numHeads, dK, maxSeqLen);
+    }
+
     /**
      * 分割成多头
      * <p>
      * 输入: (batch, seq_len, d_model)
-     * 输出: (batch, num_heads, seq_len, d_k)
+     * 输出: (batch, seq_len, num_heads, d_k)，与输入共享数据
+     * <p>
+     * 各头由 {@link PermutedMatMul} 按步长直接读取，无需转置为 (batch, num_heads, seq_len, d_k)。
      *
      * @param x         输入变量
      * @param batchSize 批次大小
@@ -173,16 +228,15 @@ public class MultiHeadAttention extends Module {
      * @return 分割后的张量
      */
     private Variable splitHeads(Variable x, int batchSize, int seqLen) {
-        // (batch, seq_len, d_model) -> (batch, num_heads, seq_len, d_k)
-        Variable reshaped = x.reshape(Shape.of(batchSize, seqLen, numHeads, dK));
-        return new Permute(0, 2, 1, 3).call(reshaped);
+        // (batch, seq_len, d_model) -> (batch, seq_len, num_heads, d_k)
+        return x.reshape(Shape.of(batchSize, seqLen, numHeads, dK));
     }
 
     /**
      * 合并多头
      * <p>
-     * 输入: (batch, num_heads, seq_len, d_v)
-     * 输出: (batch, seq_len, d_model)
+     * 输入: (batch, seq_len, num_heads, d_v)
+     * 输出: (batch, seq_len, d_model)，与输入共享数据
      *
      * @param x         输入变量
      * @param batchSize 批次大小
@@ -190,9 +244,8 @@ public class MultiHeadAttention extends Module {
      * @return 合并后的张量
      */
     private Variable mergeHeads(Variable x, int batchSize, int seqLen) {
-        // (batch, num_heads, seq_len, d_v) -> (batch, seq_len, d_model)
-        Variable permuted = new Permute(0, 2, 1, 3).call(x);
-        return permuted.reshape(Shape.of(batchSize, seqLen, dModel));
+        // (batch, seq_len, num_heads, d_v) -> (batch, seq_len, d_model)
+        return x.reshape(Shape.of(batchSize, seqLen, dModel));
     }
 
     /**
@@ -200,49 +253,40 @@ public class MultiHeadAttention extends Module {
      * <p>
      * Attention(Q, K, V) = softmax(QK^T / sqrt(d_k) + mask) V
      *
-     * @param Q              查询张量 (batch, heads, seq_len, d_k)
-     * @param K              键张量 (batch, heads, key_seq_len, d_k)
-     * @param V              值张量 (batch, heads, key_seq_len, d_v)
+     * @param Q              查询张量 (batch, seq_len, heads, d_k)
+     * @param K              键张量 (batch, key_seq_len, heads, d_k)
+     * @param V              值张量 (batch, key_seq_len, heads, d_v)
      * @param attnMask       注意力掩码（可选）- 添加到注意力分数上
      * @param keyPaddingMask 键填充掩码（可选）- 标记padding位置
-     * @return 注意力输出
+     * @return 注意力输出 (batch, seq_len, heads, d_v)
      */
     private Variable scaledDotProductAttention(Variable Q, Variable K, Variable V,
                                                 Variable attnMask, Variable keyPaddingMask) {
-        // 1. 计算 Q * K^T
-        Variable kTransposed = new Permute(0, 1, 3, 2).call(K);
-        Variable scores = Q.matMul(kTransposed);  // (batch, heads, seq_len, key_seq_len)
-
-        // 2. 缩放
-        double scale = Math.sqrt(dK);
-        Variable scaledScores = scores.div(new Variable((float) scale));
+        // 1. 计算各头的 Q * K^T（按步长读取Q和K^T，不生成分头或转置的中间数组）
+        Variable scores = new PermutedMatMul(HEAD_ORDER, HEAD_ORDER_T, null).call(Q, K);  // (batch, heads, seq_len, key_seq_len)
 
-        // 3. 应用注意力掩码（如因果掩码）
+        // 2~5. 缩放、加掩码与Softmax（在最后一维）在一个融合函数中完成
         // attnMask: 通常是 (seq_len, key_seq_len) 或 (batch, heads, seq_len, key_seq_len)
         // 掩码位置应该是 -inf（或很大的负数），softmax后会变成0
+        // keyPaddingMask: (batch, key_seq_len)，标记哪些位置是padding，转换为加法掩码（padding位置为很大的负数）
+        List<Variable> softmaxInputs = new ArrayList<>(3);
+        softmaxInputs.add(scores);
         if (attnMask != null) {
-            scaledScores = scaledScores.add(attnMask);
+            softmaxInputs.add(attnMask);
         }
-
-        // 4. 应用键填充掩码
-        // keyPaddingMask: (batch, key_seq_len)，标记哪些位置是padding
-        // 需要扩展为 (batch, 1, 1, key_seq_len) 以便广播
         if (keyPaddingMask != null) {
-            // 将padding位置设为很大的负数
-            Variable paddingMask = createPaddingMaskFromBoolean(keyPaddingMask);
-            scaledScores = scaledScores.add(paddingMask);
+            softmaxInputs.add(createPaddingMaskFromBoolean(keyPaddingMask));
         }
-
-        // 5. Softmax（在最后一维）
-        Variable attentionWeights = scaledScores.softMax();
+        float scale = (float) (1.0 / Math.sqrt(dK));
+        Variable attentionWeights = new ScaleMaskSoftmax(scale).call(softmaxInputs.toArray(new Variable[0]));
 
         // 6. 应用dropout（训练模式）
         if (isTraining() && dropout > 0) {
             attentionWeights = attnDropout.forward(attentionWeights);
         }
 
-        // 7. 计算注意力输出: attention_weights * V
-        Variable output = attentionWeights.matMul(V);
+        // 7. 计算注意力输出: attention_weights * V，结果直接写成 (batch, seq_len, heads, d_v)
+        Variable output = new PermutedMatMul(null, HEAD_ORDER, HEAD_ORDER).call(attentionWeights, V);
 
         return output;
     }
@@ -1,8 +1,8 @@
 package io.leavesfly.tinyai.nnet.v2.layer.transformer;
 
 import io.leavesfly.tinyai.func.Variable;
+import io.leavesfly.tinyai.func.fused.FusedLinear;
 import io.leavesfly.tinyai.nnet.v2.core.Module;
-import io.leavesfly.tinyai.nnet.v2.layer.activation.ReLU;
 import io.leavesfly.tinyai.nnet.v2.layer.dnn.Linear;
 import io.leavesfly.tinyai.nnet.v2.layer.norm.LayerNorm;
 
@@ -38,7 +38,6 @@ public class TransformerDecoderLayer extends Module {
     private MultiHeadAttention crossAttention;     // 编码器-解码器注意力
     private LayerNorm norm2;
     private Linear ffn1;
-    private ReLU activation;
     private Linear ffn2;
     private LayerNorm norm3;
 
@@ -70,7 +69,6 @@ public class TransformerDecoderLayer extends Module {
 
         // 前馈网络
         ffn1 = new Linear("ffn1", dModel, dFF, true);
-        activation = new ReLU();
         ffn2 = new Linear("ffn2", dFF, dModel, true);
         norm3 = new LayerNorm("norm3", dModel);
 
@@ -80,7 +78,6 @@ public class TransformerDecoderLayer extends Module {
         registerModule("cross_attn", crossAttention);
         registerModule("norm2", norm2);
         registerModule("ffn1", ffn1);
-        registerModule("activation", activation);
         registerModule("ffn2", ffn2);
         registerModule("norm3", norm3);
 
@@ -167,21 +164,18 @@ public class TransformerDecoderLayer extends Module {
     private Variable forwardPostNorm(Variable x, Variable memory) {
         // 1. 掩码自注意力子层（Post-LN）
         Variable self_attn_out = selfAttention.forward(x, x, x);
-        Variable residual1 = x.add(self_attn_out);
-        Variable norm1_out = norm1.forward(residual1);
+        Variable norm1_out = norm1.forwardWithResidual(x, self_attn_out);
 
         // 2. 编码器-解码器注意力子层（Post-LN）
         Variable current = norm1_out;
         if (memory != null) {
             Variable cross_attn_out = crossAttention.forward(current, memory, memory);
-            Variable residual2 = current.add(cross_attn_out);
-            current = norm2.forward(residual2);
+            current = norm2.forwardWithResidual(current, cross_attn_out);
         }
 
         // 3. 前馈网络子层（Post-LN）
         Variable ffn_out = forwardFFN(current);
-        Variable residual3 = current.add(ffn_out);
-        Variable output = norm3.forward(residual3);
+        Variable output = norm3.forwardWithResidual(current, ffn_out);
 
         return output;
     }
@@ -193,8 +187,8 @@ public class TransformerDecoderLayer extends Module {
      * @return 输出
      */
     private Variable forwardFFN(Variable x) {
-        Variable h = ffn1.forward(x);
-        h = activation.forward(h);
+        // ReLU与ffn1的矩阵乘、偏置融合在同一个计算图节点中
+        Variable h = ffn1.forward(x, FusedLinear.Activation.RELU);
         Variable output = ffn2.forward(h);
         return output;
     }
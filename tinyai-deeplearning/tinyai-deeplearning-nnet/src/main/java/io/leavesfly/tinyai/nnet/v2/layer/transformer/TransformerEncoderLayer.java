@@ -1,8 +1,8 @@
 package io.leavesfly.tinyai.nnet.v2.layer.transformer;
 
 import io.leavesfly.tinyai.func.Variable;
+import io.leavesfly.tinyai.func.fused.FusedLinear;
 import io.leavesfly.tinyai.nnet.v2.core.Module;
-import io.leavesfly.tinyai.nnet.v2.layer.activation.ReLU;
 import io.leavesfly.tinyai.nnet.v2.layer.dnn.Linear;
 import io.leavesfly.tinyai.nnet.v2.layer.norm.LayerNorm;
 
@@ -38,7 +38,6 @@ public class TransformerEncoderLayer extends Module {
     private MultiHeadAttention selfAttention;
     private LayerNorm norm1;
     private Linear ffn1;
-    private ReLU activation;
     private Linear ffn2;
     private LayerNorm norm2;
 
@@ -67,7 +66,6 @@ public class TransformerEncoderLayer extends Module {
 
         // 前馈网络: d_model -> d_ff -> d_model
         ffn1 = new Linear("ffn1", dModel, dFF, true);
-        activation = new ReLU();
         ffn2 = new Linear("ffn2", dFF, dModel, true);
         norm2 = new LayerNorm("norm2", dModel);
 
@@ -75,7 +73,6 @@ public class TransformerEncoderLayer extends Module {
         registerModule("self_attn", selfAttention);
         registerModule("norm1", norm1);
         registerModule("ffn1", ffn1);
-        registerModule("activation", activation);
         registerModule("ffn2", ffn2);
         registerModule("norm2", norm2);
 
@@ -158,13 +155,11 @@ public class TransformerEncoderLayer extends Module {
     private Variable forwardPostNorm(Variable x) {
         // 自注意力子层（Post-LN）
         Variable attn_out = selfAttention.forward(x, x, x);
-        Variable residual1 = x.add(attn_out);
-        Variable norm1_out = norm1.forward(residual1);
+        Variable norm1_out = norm1.forwardWithResidual(x, attn_out);
 
         // 前馈网络子层（Post-LN）
         Variable ffn_out = forwardFFN(norm1_out);
-        Variable residual2 = norm1_out.add(ffn_out);
-        Variable output = norm2.forward(residual2);
+        Variable output = norm2.forwardWithResidual(norm1_out, ffn_out);
 
         return output;
     }
@@ -178,8 +173,8 @@ public class TransformerEncoderLayer extends Module {
      * @return 输出
      */
     private Variable forwardFFN(Variable x) {
-        Variable h = ffn1.forward(x);
-        h = activation.forward(h);
+        // ReLU与ffn1的矩阵乘、偏置融合在同一个计算图节点中
+        Variable h = ffn1.forward(x, FusedLinear.Activation.RELU);
         Variable output = ffn2.forward(h);
         return output;
     }
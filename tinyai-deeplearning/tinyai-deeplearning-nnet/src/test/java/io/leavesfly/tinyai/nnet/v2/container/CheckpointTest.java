@@ -0,0 +1,97 @@
+package io.leavesfly.tinyai.nnet.v2.container;
+
+import io.leavesfly.tinyai.func.Variable;
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.nnet.v2.core.Parameter;
+import io.leavesfly.tinyai.nnet.v2.layer.activation.ReLU;
+import io.leavesfly.tinyai.nnet.v2.layer.dnn.Dropout;
+import io.leavesfly.tinyai.nnet.v2.layer.dnn.Linear;
+import io.leavesfly.tinyai.util.GradMode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checkpoint容器的单元测试
+ */
+public class CheckpointTest {
+
+    private static Sequential createModel(Dropout dropout) {
+        return new Sequential("block")
+            .add(new Linear("fc1", 4, 8))
+            .add(new ReLU())
+            .add(dropout)
+            .add(new Linear("fc2", 8, 3));
+    }
+
+    private static List<NdArray> paramGrads(Sequential model) {
+        List<NdArray> grads = new ArrayList<>();
+        for (Parameter param : model.parameters()) {
+            grads.add(param.getGrad());
+        }
+        return grads;
+    }
+
+    @Test
+    public void testGradientsMatchPlainForward() {
+        Dropout dropout = new Dropout("drop", 0.3f);
+        Sequential model = createModel(dropout);
+        NdArray data = NdArray.randn(Shape.of(5, 4));
+        long state = dropout.getRandomState();
+
+        GradMode.withEnableGrad(() -> {
+            Variable x1 = new Variable(data);
+            Variable plain = model.forward(x1);
+            plain.sum().backward();
+            List<NdArray> expected = paramGrads(model);
+            NdArray expectedInputGrad = x1.getGrad();
+
+            model.clearGrads();
+            dropout.setRandomState(state);
+            Variable x2 = new Variable(data);
+            Variable checkpointed = Checkpoint.checkpoint(model, x2);
+            // 前向之后、反向之前的其他dropout调用不影响重计算
+            dropout.forward(new Variable(NdArray.ones(Shape.of(3, 3))));
+            checkpointed.sum().backward();
+
+            assertArrayEquals(plain.getValue().getArray(), checkpointed.getValue().getArray(), 1e-6f);
+            assertArrayEquals(expectedInputGrad.getArray(), x2.getGrad().getArray(), 1e-5f);
+            List<NdArray> actual = paramGrads(model);
+            for (int i = 0; i < expected.size(); i++) {
+                assertArrayEquals(expected.get(i).getArray(), actual.get(i).getArray(), 1e-5f);
+            }
+        });
+    }
+
+    @Test
+    public void testParametersReceiveGradWhenInputDoesNot() {
+        Sequential model = createModel(new Dropout("drop", 0f));
+        Checkpoint checkpoint = new Checkpoint("ckpt", model);
+        assertEquals(model.parameters().size(), checkpoint.parameters().size());
+
+        GradMode.withEnableGrad(() -> {
+            Variable x = new Variable(NdArray.randn(Shape.of(2, 4)));
+            x.setRequireGrad(false);
+            checkpoint.forward(x).sum().backward();
+
+            assertNull(x.getGrad());
+            for (Parameter param : model.parameters()) {
+                assertNotNull(param.getGrad());
+            }
+        });
+    }
+
+    @Test
+    public void testNoGradRunsModuleDirectly() {
+        Sequential model = createModel(new Dropout("drop", 0f));
+        GradMode.withNoGrad(() -> {
+            Variable y = new Checkpoint(model).forward(new Variable(NdArray.randn(Shape.of(2, 4))));
+            assertEquals(Shape.of(2, 3), y.getShape());
+            assertNull(y.getCreator());
+        });
+    }
+}
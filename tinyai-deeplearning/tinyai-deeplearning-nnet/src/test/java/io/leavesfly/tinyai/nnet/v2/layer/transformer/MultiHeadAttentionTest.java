@@ -4,6 +4,7 @@ import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.ndarr.Shape;
 import io.leavesfly.tinyai.nnet.v2.util.GradientChecker;
+import io.leavesfly.tinyai.util.GradMode;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -48,5 +49,46 @@ public class MultiHeadAttentionTest {
         // 使用 GradientChecker 检查计算图连通性（自注意力：Q=K=V）
         GradientChecker.checkGraphConnectivity(attention, input, input, input);
     }
-}
 
+    @Test
+    public void testForwardWithCacheMatchesCausalForward() {
+        MultiHeadAttention attention = new MultiHeadAttention("attn", 32, 4, 0.0f);
+        attention.eval();
+
+        NdArray inputData = NdArray.randn(Shape.of(2, 6, 32));
+        Variable full = attention.forward(new Variable(inputData), MultiHeadAttention.generateCausalMaskBatched(6));
+
+        // 先预填充前3个位置，再逐个追加，每步只计算新位置
+        KVCache cache = attention.createKVCache(2, 6);
+        float[] expected = full.getValue().getArray();
+        GradMode.withNoGrad(() -> {
+            int pos = 0;
+            for (int len : new int[]{3, 1, 1, 1}) {
+                NdArray chunk = sliceSeq(inputData, pos, len);
+                float[] actual = attention.forwardWithCache(new Variable(chunk), cache).getValue().getArray();
+                for (int b = 0; b < 2; b++) {
+                    for (int i = 0; i < len * 32; i++) {
+                        assertEquals(expected[(b * 6 + pos) * 32 + i], actual[b * len * 32 + i], 1e-4f);
+                    }
+                }
+                pos += len;
+            }
+        });
+        assertEquals(6, cache.getSeqLen());
+        assertThrows(IllegalStateException.class,
+                () -> attention.forwardWithCache(new Variable(NdArray.randn(Shape.of(2, 1, 32))), cache));
+    }
+
+    /**
+     * 取出 (batch, seq_len, d) 张量中 [start, start + len) 的位置
+     */
+    private static NdArray sliceSeq(NdArray x, int start, int len) {
+        int[] dims = x.getShape().getShapeDims();
+        float[] data = x.getArray();
+        float[] out = new float[dims[0] * len * dims[2]];
+        for (int b = 0; b < dims[0]; b++) {
+            System.arraycopy(data, (b * dims[1] + start) * dims[2], out, b * len * dims[2], len * dims[2]);
+        }
+        return NdArray.of(out, Shape.of(dims[0], len, dims[2]));
+    }
+}
@@ -5,6 +5,7 @@ import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.nnet.v2.core.Module;
 import io.leavesfly.tinyai.nnet.v2.layer.dnn.Linear;
 import io.leavesfly.tinyai.nnet.v2.layer.norm.LayerNorm;
+import io.leavesfly.tinyai.nnet.v2.layer.transformer.KVCache;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -147,6 +148,50 @@ public class DeepSeekR1Block extends Module {
             x = block.forward(x);
         }
         
+        return finishDetails(x);
+    }
+    
+    /**
+     * 带KV缓存的前向传播（推理用）
+     * 
+     * 只处理尚未缓存的新token：位置嵌入从已缓存长度开始，各层注意力读取缓存中的历史K、V。
+     * 推理模块和反思模块逐位置计算，置信度与质量评分只取最后一个位置，因此结果与完整前向一致。
+     * 预填充时传入完整提示词，之后每步只传入上一步生成的token。
+     * 
+     * @param tokenIds 新token的ID [batch_size, new_len]
+     * @param kvCaches 每层一个KV缓存，见 {@link #createKVCaches}
+     * @return 详细输出结果，logits只包含新token的位置
+     */
+    public DetailedForwardResult forwardWithDetails(Variable tokenIds, List<KVCache> kvCaches) {
+        validateInput(tokenIds);
+        if (kvCaches.size() != transformerBlocks.size()) {
+            throw new IllegalArgumentException(
+                String.format("KV缓存数(%d)与层数(%d)不一致", kvCaches.size(), transformerBlocks.size()));
+        }
+        
+        Variable x = tokenEmbedding.forward(tokenIds, kvCaches.get(0).getSeqLen());
+        for (int i = 0; i < transformerBlocks.size(); i++) {
+            x = transformerBlocks.get(i).forwardWithCache(x, kvCaches.get(i));
+        }
+        
+        return finishDetails(x);
+    }
+    
+    /**
+     * 为每一层创建空的KV缓存
+     */
+    public List<KVCache> createKVCaches(int batchSize) {
+        List<KVCache> caches = new ArrayList<>(transformerBlocks.size());
+        for (DeepSeekR1TransformerBlock block : transformerBlocks) {
+            caches.add(block.createKVCache(batchSize));
+        }
+        return caches;
+    }
+    
+    /**
+     * Transformer层之后的部分：推理 -> 反思 -> 最终LayerNorm -> 输出投影
+     */
+    private DetailedForwardResult finishDetails(Variable x) {
         // 3. 推理模块（获取详细结果）
         DeepSeekR1ReasoningBlock.ReasoningResult reasoningResult = 
             reasoningBlock.performMultiStepReasoning(x);
@@ -3,6 +3,10 @@ package io.leavesfly.tinyai.deepseek.rx;
 import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.ml.model.Model;
 import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.nnet.v2.layer.transformer.KVCache;
+import io.leavesfly.tinyai.util.GradMode;
+
+import java.util.List;
 
 /**
  * DeepSeek-R1模型类
@@ -117,7 +121,39 @@ public class DeepSeekR1Model extends Model {
      * @return 推理结果对象
      */
     public ReasoningOutput performReasoning(Variable tokenIds) {
-        DeepSeekR1Block.DetailedForwardResult result = r1Block.forwardWithDetails(tokenIds);
+        return toReasoningOutput(r1Block.forwardWithDetails(tokenIds));
+    }
+    
+    /**
+     * 带KV缓存的多步推理：只计算尚未缓存的新token，见 {@link DeepSeekR1Block#forwardWithDetails(Variable, List)}
+     * 
+     * @param tokenIds 新token的ID [batch_size, new_len]
+     * @param kvCaches 每层的KV缓存
+     * @return 推理结果对象，logits只包含新token的位置
+     */
+    public ReasoningOutput performReasoning(Variable tokenIds, List<KVCache> kvCaches) {
+        return toReasoningOutput(r1Block.forwardWithDetails(tokenIds, kvCaches));
+    }
+    
+    /**
+     * 带KV缓存的预测
+     * 
+     * @param tokenIds 新token的ID [batch_size, new_len]
+     * @param kvCaches 每层的KV缓存
+     * @return 新token位置的logits [batch_size, new_len, vocab_size]
+     */
+    public Variable predictWithCache(Variable tokenIds, List<KVCache> kvCaches) {
+        return r1Block.forwardWithDetails(tokenIds, kvCaches).logits;
+    }
+    
+    /**
+     * 为每一层创建空的KV缓存
+     */
+    public List<KVCache> createKVCaches(int batchSize) {
+        return r1Block.createKVCaches(batchSize);
+    }
+    
+    private ReasoningOutput toReasoningOutput(DeepSeekR1Block.DetailedForwardResult result) {
         return new ReasoningOutput(
             result.logits,
             result.reasoningResult.numSteps,
@@ -146,24 +182,27 @@ public class DeepSeekR1Model extends Model {
             }
         }
         
-        // 自回归生成
-        for (int i = 0; i < maxNewTokens; i++) {
-            int currentLen = promptLen + i;
-            float[][] currentInput = new float[batchSize][currentLen];
-            for (int b = 0; b < batchSize; b++) {
-                System.arraycopy(generatedSeq[b], 0, currentInput[b], 0, currentLen);
+        // 自回归生成：预填充提示词后每步只输入上一步生成的token
+        GradMode.withNoGrad(() -> {
+            List<KVCache> kvCaches = createKVCaches(batchSize);
+            Variable input = new Variable(promptIds);
+            for (int i = 0; i < maxNewTokens; i++) {
+                int currentLen = promptLen + i;
+                
+                // 预测下一个token
+                NdArray logitsArray = predictWithCache(input, kvCaches).getValue();
+                int lastPos = logitsArray.getShape().getDimension(1) - 1;
+                
+                // 贪婪选择（选择概率最大的token）
+                float[][] nextTokens = new float[batchSize][1];
+                for (int b = 0; b < batchSize; b++) {
+                    int nextToken = argmax(logitsArray, b, lastPos);
+                    generatedSeq[b][currentLen] = nextToken;
+                    nextTokens[b][0] = nextToken;
+                }
+                input = new Variable(NdArray.of(nextTokens));
             }
-            
-            // 预测下一个token
-            Variable logits = predict(new Variable(NdArray.of(currentInput)));
-            NdArray logitsArray = logits.getValue();
-            
-            // 贪婪选择（选择概率最大的token）
-            for (int b = 0; b < batchSize; b++) {
-                int nextToken = argmax(logitsArray, b, currentLen - 1);
-                generatedSeq[b][currentLen] = nextToken;
-            }
-        }
+        });
         
         return NdArray.of(generatedSeq);
     }
@@ -79,7 +79,17 @@ public class DeepSeekR1TokenEmbedding extends Module {
             throw new IllegalArgumentException("输入不能为空");
         }
         
-        Variable tokenIds = inputs[0];
+        return forward(inputs[0], 0);
+    }
+    
+    /**
+     * 从指定位置开始的嵌入（KV缓存增量推理时新token的位置紧接在已缓存的前缀之后）
+     * 
+     * @param tokenIds token ID序列 [batch_size, seq_len]
+     * @param startPos 第一个token的位置
+     * @return 嵌入向量 [batch_size, seq_len, embeddingDim]
+     */
+    public Variable forward(Variable tokenIds, int startPos) {
         NdArray tokenData = tokenIds.getValue();
         
         // 验证输入维度
@@ -93,9 +103,9 @@ public class DeepSeekR1TokenEmbedding extends Module {
         int sequenceLength = tokenData.getShape().getDimension(1);
         
         // 验证序列长度
-        if (sequenceLength > maxPositions) {
+        if (startPos + sequenceLength > maxPositions) {
             throw new IllegalArgumentException(
-                String.format("序列长度(%d)超过最大位置数(%d)", sequenceLength, maxPositions)
+                String.format("序列长度(%d)超过最大位置数(%d)", startPos + sequenceLength, maxPositions)
             );
         }
         
@@ -104,7 +114,7 @@ public class DeepSeekR1TokenEmbedding extends Module {
         Variable tokenEmbeds = getTokenEmbeddingsV2(tokenIds, tokenEmbedParam, batchSize, sequenceLength);
         
         Variable posEmbedParam = new Variable(positionEmbedding.data());
-        Variable positionEmbeds = getPositionEmbeddingsV2(posEmbedParam, batchSize, sequenceLength);
+        Variable positionEmbeds = getPositionEmbeddingsV2(posEmbedParam, startPos, sequenceLength);
         
         // 合并嵌入并应用dropout
         Variable combined = tokenEmbeds.add(positionEmbeds);
@@ -132,16 +142,16 @@ public class DeepSeekR1TokenEmbedding extends Module {
      * 获取位置嵌入向量 (使用Variable算子)
      * 
      * @param posEmbedParam 位置嵌入参数
-     * @param batchSize 批次大小
+     * @param startPos 起始位置
      * @param sequenceLength 序列长度
      * @return 位置嵌入变量 [1, seq_len, embeddingDim] - 依赖广播机制自动扩展
      */
-    private Variable getPositionEmbeddingsV2(Variable posEmbedParam, int batchSize, int sequenceLength) {
+    private Variable getPositionEmbeddingsV2(Variable posEmbedParam, int startPos, int sequenceLength) {
         // ✅ 使用indexSelect算子，不使用repeat以节省内存
         // 返回 [1, seq_len, embeddingDim] 形状，依赖add的广播机制自动扩展
         float[] posIndices = new float[sequenceLength];
         for (int i = 0; i < sequenceLength; i++) {
-            posIndices[i] = i;
+            posIndices[i] = startPos + i;
         }
         Variable posIds = new Variable(NdArray.of(posIndices));
         posIds.setRequireGrad(false);
@@ -6,6 +6,7 @@ import io.leavesfly.tinyai.nnet.v2.layer.activation.GELU;
 import io.leavesfly.tinyai.nnet.v2.layer.dnn.Dropout;
 import io.leavesfly.tinyai.nnet.v2.layer.dnn.Linear;
 import io.leavesfly.tinyai.nnet.v2.layer.norm.LayerNorm;
+import io.leavesfly.tinyai.nnet.v2.layer.transformer.KVCache;
 import io.leavesfly.tinyai.nnet.v2.layer.transformer.MultiHeadAttention;
 
 /**
@@ -100,6 +101,25 @@ public class DeepSeekR1TransformerBlock extends Module {
         // LN -> MultiHeadAttention -> Dropout -> Add
         Variable normalized1 = layerNorm1.forward(x);
         Variable attnOutput = attention.forward(normalized1, normalized1, normalized1, causalMask, null);
+        return addAndFeedForward(x, attnOutput);
+    }
+    
+    /**
+     * 带KV缓存的前向传播（推理用），只计算新token的位置
+     * 
+     * @param x 新token的隐藏状态 [batch_size, new_len, d_model]
+     * @param cache 本层的KV缓存
+     * @return 新token的输出 [batch_size, new_len, d_model]
+     */
+    public Variable forwardWithCache(Variable x, KVCache cache) {
+        Variable attnOutput = attention.forwardWithCache(layerNorm1.forward(x), cache);
+        return addAndFeedForward(x, attnOutput);
+    }
+    
+    /**
+     * 注意力之后的部分: Dropout -> Add(x) -> LN -> FFN -> Dropout -> Add
+     */
+    private Variable addAndFeedForward(Variable x, Variable attnOutput) {
         attnOutput = attnDropout.forward(attnOutput);
         Variable residual1 = x.add(attnOutput);
         
@@ -115,6 +135,13 @@ public class DeepSeekR1TransformerBlock extends Module {
         return output;
     }
     
+    /**
+     * 创建本层的KV缓存
+     */
+    public KVCache createKVCache(int batchSize) {
+        return attention.createKVCache(batchSize, config.getNPositions());
+    }
+    
     /**
      * 获取配置对象
      */
@@ -4,6 +4,8 @@ import io.leavesfly.tinyai.deepseek.rx.DeepSeekR1Model;
 import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.nnet.v2.layer.transformer.KVCache;
+import io.leavesfly.tinyai.util.GradMode;
 
 import java.util.*;
 
@@ -11,6 +13,7 @@ import java.util.*;
  * DeepSeek-R1推理引擎
  * 
  * 提供多种文本生成策略,支持推理过程展示
+ * 生成时使用KV缓存：先预填充提示词，之后每步只输入上一步生成的token
  * 
  * @author leavesfly
  * @version 1.0
@@ -33,19 +36,16 @@ public class DeepSeekR1Inference {
         for (int id : promptIds) generated.add(id);
         
         List<ReasoningStep> reasoningSteps = new ArrayList<>();
+        List<KVCache> kvCaches = model.createKVCaches(1);
         
         for (int i = 0; i < maxNewTokens; i++) {
             if (generated.size() >= maxSeqLen) break;
             
-            int[] currentSeq = toArray(generated);
-            NdArray inputArray = createInputArray(currentSeq);
-            Variable inputVar = new Variable(inputArray);
-            
             // 执行推理
-            DeepSeekR1Model.ReasoningOutput result = model.performReasoning(inputVar);
+            DeepSeekR1Model.ReasoningOutput result = reasonNext(generated, kvCaches);
             NdArray logits = result.logits.getValue();
             
-            int lastPos = currentSeq.length - 1;
+            int lastPos = logits.getShape().getDimension(1) - 1;
             int nextToken = argmaxSkipPad(logits, 0, lastPos);  // 跳过PAD token
             
             // 如果没有有效token可选，终止生成
@@ -74,17 +74,15 @@ public class DeepSeekR1Inference {
         
         List<ReasoningStep> reasoningSteps = new ArrayList<>();
         Random random = new Random();
+        List<KVCache> kvCaches = model.createKVCaches(1);
         
         for (int i = 0; i < maxNewTokens; i++) {
             if (generated.size() >= maxSeqLen) break;
             
-            int[] currentSeq = toArray(generated);
-            Variable inputVar = new Variable(createInputArray(currentSeq));
-            
-            DeepSeekR1Model.ReasoningOutput result = model.performReasoning(inputVar);
+            DeepSeekR1Model.ReasoningOutput result = reasonNext(generated, kvCaches);
             NdArray logits = result.logits.getValue();
             
-            int lastPos = currentSeq.length - 1;
+            int lastPos = logits.getShape().getDimension(1) - 1;
             int vocabSize = logits.getShape().getDimension(2);
             
             // 应用温度，跳过PAD token(id=0)
@@ -143,6 +141,16 @@ public class DeepSeekR1Inference {
     
     // ========== 辅助方法 ==========
     
+    /**
+     * 只把尚未缓存的token送入模型（首次为整个提示词，之后为上一步生成的token）
+     */
+    private DeepSeekR1Model.ReasoningOutput reasonNext(List<Integer> tokens, List<KVCache> kvCaches) {
+        int cached = kvCaches.get(0).getSeqLen();
+        int[] newTokens = toArray(tokens.subList(cached, tokens.size()));
+        return GradMode.withNoGrad(() ->
+                model.performReasoning(new Variable(createInputArray(newTokens)), kvCaches));
+    }
+    
     private NdArray createInputArray(int[] sequence) {
         float[] data = new float[sequence.length];
         for (int i = 0; i < sequence.length; i++) {
@@ -5,6 +5,7 @@ import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.nnet.v2.core.Module;
 import io.leavesfly.tinyai.nnet.v2.layer.dnn.Linear;
 import io.leavesfly.tinyai.nnet.v2.layer.norm.LayerNorm;
+import io.leavesfly.tinyai.nnet.v2.layer.transformer.KVCache;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -153,6 +154,81 @@ public class DeepSeekV3Block extends Module {
         }
         double avgMoELoss = totalMoELoss / transformerBlocks.size();
         
+        return finishDetails(x, taskType, avgMoELoss);
+    }
+    
+    /**
+     * 带KV缓存的前向传播（推理用）
+     * 
+     * 只处理尚未缓存的新token：位置嵌入从已缓存长度开始，各层注意力读取缓存中的历史K、V。
+     * 推理模块和代码模块逐位置计算，因此新token的logits与完整前向一致。
+     * 预填充时传入完整提示词，之后每步只传入上一步生成的token。
+     * 
+     * @param tokenIds 新token的ID [batch_size, new_len]
+     * @param kvCaches 每层一个KV缓存，见 {@link #createKVCaches}
+     * @return 新token位置的logits [batch_size, new_len, vocab_size]
+     */
+    public Variable forwardWithCache(Variable tokenIds, List<KVCache> kvCaches) {
+        Variable x = embedWithCache(tokenIds, kvCaches);
+        for (int i = 0; i < transformerBlocks.size(); i++) {
+            x = transformerBlocks.get(i).forwardWithCache(x, kvCaches.get(i));
+        }
+        
+        Variable codeOutput = codeBlock.forward(reasoningBlock.forward(x));
+        return outputProjection.forward(finalLayerNorm.forward(codeOutput));
+    }
+    
+    /**
+     * 带KV缓存和详细输出的前向传播（推理用）
+     * 
+     * 置信度、任务类型和MoE损失只基于本次传入的新token统计。
+     * 
+     * @param tokenIds 新token的ID [batch_size, new_len]
+     * @param taskType 任务类型（可选）
+     * @param kvCaches 每层一个KV缓存
+     * @return 详细输出结果
+     */
+    public DetailedForwardResult forwardWithDetails(Variable tokenIds, TaskType taskType, List<KVCache> kvCaches) {
+        Variable x = embedWithCache(tokenIds, kvCaches);
+        
+        double totalMoELoss = 0.0;
+        for (int i = 0; i < transformerBlocks.size(); i++) {
+            DeepSeekV3TransformerBlock.DetailedForwardResult blockResult = 
+                transformerBlocks.get(i).forwardWithDetails(x, taskType, kvCaches.get(i));
+            x = blockResult.output;
+            totalMoELoss += blockResult.getLoadBalanceLoss();
+        }
+        
+        return finishDetails(x, taskType, totalMoELoss / transformerBlocks.size());
+    }
+    
+    /**
+     * 为每一层创建空的KV缓存
+     */
+    public List<KVCache> createKVCaches(int batchSize) {
+        List<KVCache> caches = new ArrayList<>(transformerBlocks.size());
+        for (DeepSeekV3TransformerBlock block : transformerBlocks) {
+            caches.add(block.createKVCache(batchSize));
+        }
+        return caches;
+    }
+    
+    /**
+     * 校验输入与缓存，并从已缓存长度处开始嵌入新token
+     */
+    private Variable embedWithCache(Variable tokenIds, List<KVCache> kvCaches) {
+        validateInput(tokenIds);
+        if (kvCaches.size() != transformerBlocks.size()) {
+            throw new IllegalArgumentException(
+                String.format("KV缓存数(%d)与层数(%d)不一致", kvCaches.size(), transformerBlocks.size()));
+        }
+        return tokenEmbedding.forward(tokenIds, kvCaches.get(0).getSeqLen());
+    }
+    
+    /**
+     * Transformer层之后的部分：推理模块 -> 代码分析 -> 最终LayerNorm -> 输出投影
+     */
+    private DetailedForwardResult finishDetails(Variable x, TaskType taskType, double avgMoELoss) {
         // 3. 推理模块（获取详细结果）
         DeepSeekV3ReasoningBlock.ReasoningResult reasoningResult = 
             reasoningBlock.performReasoning(x, taskType);
@@ -3,6 +3,10 @@ package io.leavesfly.tinyai.deepseek.v3;
 import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.ml.model.Model;
 import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.nnet.v2.layer.transformer.KVCache;
+import io.leavesfly.tinyai.util.GradMode;
+
+import java.util.List;
 
 /**
  * DeepSeek-V3模型类
@@ -113,6 +117,37 @@ public class DeepSeekV3Model extends Model {
         return v3Block.forwardWithDetails(tokenIds, taskType);
     }
     
+    /**
+     * 带KV缓存的预测：只计算尚未缓存的新token，见 {@link DeepSeekV3Block#forwardWithCache}
+     * 
+     * @param tokenIds 新token的ID [batch_size, new_len]
+     * @param kvCaches 每层的KV缓存
+     * @return 新token位置的logits [batch_size, new_len, vocab_size]
+     */
+    public Variable predictWithCache(Variable tokenIds, List<KVCache> kvCaches) {
+        return v3Block.forwardWithCache(tokenIds, kvCaches);
+    }
+    
+    /**
+     * 带KV缓存和详细信息的预测
+     * 
+     * @param tokenIds 新token的ID [batch_size, new_len]
+     * @param taskType 任务类型（可选）
+     * @param kvCaches 每层的KV缓存
+     * @return 详细推理结果（统计信息只覆盖新token）
+     */
+    public DeepSeekV3Block.DetailedForwardResult predictWithDetails(Variable tokenIds, TaskType taskType,
+                                                                   List<KVCache> kvCaches) {
+        return v3Block.forwardWithDetails(tokenIds, taskType, kvCaches);
+    }
+    
+    /**
+     * 为每一层创建空的KV缓存
+     */
+    public List<KVCache> createKVCaches(int batchSize) {
+        return v3Block.createKVCaches(batchSize);
+    }
+    
     /**
      * 代码生成任务（专门优化）
      * 
@@ -187,29 +222,33 @@ public class DeepSeekV3Model extends Model {
             }
         }
         
-        // 自回归生成
-        for (int i = 0; i < maxNewTokens; i++) {
-            int currentLen = promptLen + i;
-            float[][] currentInput = new float[batchSize][currentLen];
-            for (int b = 0; b < batchSize; b++) {
-                System.arraycopy(generatedSeq[b], 0, currentInput[b], 0, currentLen);
-            }
-            
-            // 预测下一个token（使用任务类型信息）
-            Variable logits;
-            if (taskType != null) {
-                logits = predictWithDetails(new Variable(NdArray.of(currentInput)), taskType).logits;
-            } else {
-                logits = predict(new Variable(NdArray.of(currentInput)));
+        // 自回归生成：预填充提示词后每步只输入上一步生成的token
+        GradMode.withNoGrad(() -> {
+            List<KVCache> kvCaches = createKVCaches(batchSize);
+            Variable input = new Variable(promptIds);
+            for (int i = 0; i < maxNewTokens; i++) {
+                int currentLen = promptLen + i;
+                
+                // 预测下一个token（使用任务类型信息）
+                Variable logits;
+                if (taskType != null) {
+                    logits = predictWithDetails(input, taskType, kvCaches).logits;
+                } else {
+                    logits = predictWithCache(input, kvCaches);
+                }
+                NdArray logitsArray = logits.getValue();
+                int lastPos = logitsArray.getShape().getDimension(1) - 1;
+                
+                // 贪婪选择
+                float[][] nextTokens = new float[batchSize][1];
+                for (int b = 0; b < batchSize; b++) {
+                    int nextToken = argmax(logitsArray, b, lastPos);
+                    generatedSeq[b][currentLen] = nextToken;
+                    nextTokens[b][0] = nextToken;
+                }
+                input = new Variable(NdArray.of(nextTokens));
             }
-            NdArray logitsArray = logits.getValue();
-            
-            // 贪婪选择
-            for (int b = 0; b < batchSize; b++) {
-                int nextToken = argmax(logitsArray, b, currentLen - 1);
-                generatedSeq[b][currentLen] = nextToken;
-            }
-        }
+        });
         
         return NdArray.of(generatedSeq);
     }
@@ -93,7 +93,17 @@ public class DeepSeekV3TokenEmbedding extends Module {
             throw new IllegalArgumentException("输入不能为空");
         }
         
-        Variable tokenIds = inputs[0];
+        return forward(inputs[0], 0);
+    }
+    
+    /**
+     * 从指定位置开始的嵌入（KV缓存增量推理时新token的位置紧接在已缓存的前缀之后）
+     * 
+     * @param tokenIds token ID序列 [batch_size, seq_len]
+     * @param startPos 第一个token的位置
+     * @return 嵌入向量 [batch_size, seq_len, nEmbd]
+     */
+    public Variable forward(Variable tokenIds, int startPos) {
         NdArray tokenIdsArray = tokenIds.getValue();
         
         // 验证输入维度
@@ -107,9 +117,9 @@ public class DeepSeekV3TokenEmbedding extends Module {
         int batchSize = tokenIdsArray.getShape().getDimension(0);
         int seqLen = tokenIdsArray.getShape().getDimension(1);
         
-        if (seqLen > config.getNPositions()) {
+        if (startPos + seqLen > config.getNPositions()) {
             throw new IllegalArgumentException(
-                String.format("序列长度(%d)超过最大位置数(%d)", seqLen, config.getNPositions())
+                String.format("序列长度(%d)超过最大位置数(%d)", startPos + seqLen, config.getNPositions())
             );
         }
         
@@ -120,7 +130,7 @@ public class DeepSeekV3TokenEmbedding extends Module {
         
         // 2. 获取位置嵌入 - 使用indexSelect算子
         Variable posEmbedParam = new Variable(positionEmbeddings.data());
-        Variable positionEmbeds = getPositionEmbeddingsV2(posEmbedParam, batchSize, seqLen);
+        Variable positionEmbeds = getPositionEmbeddingsV2(posEmbedParam, startPos, batchSize, seqLen);
         
         // 3. 相加并应用dropout
         Variable combined = tokenEmbeds.add(positionEmbeds);
@@ -157,18 +167,19 @@ public class DeepSeekV3TokenEmbedding extends Module {
      * 获取位置嵌入 (使用Variable算子)
      * 
      * @param posEmbedParam 位置嵌入参数 [nPositions, nEmbd]
+     * @param startPos 起始位置
      * @param batchSize 批大小
      * @param seqLen 序列长度
      * @return 位置嵌入 [batch_size, seq_len, nEmbd]
      */
-    private Variable getPositionEmbeddingsV2(Variable posEmbedParam, int batchSize, int seqLen) {
+    private Variable getPositionEmbeddingsV2(Variable posEmbedParam, int startPos, int batchSize, int seqLen) {
         // ✅ 使用indexSelect + repeat算子在Variable层面操作
         // posEmbedParam: [nPositions, nEmbd]
         
-        // 1. 创建位置索引 [0, 1, 2, ..., seqLen-1]
+        // 1. 创建位置索引 [startPos, startPos+1, ..., startPos+seqLen-1]
         float[] posIndices = new float[seqLen];
         for (int i = 0; i < seqLen; i++) {
-            posIndices[i] = i;
+            posIndices[i] = startPos + i;
         }
         Variable posIds = new Variable(NdArray.of(posIndices));
         
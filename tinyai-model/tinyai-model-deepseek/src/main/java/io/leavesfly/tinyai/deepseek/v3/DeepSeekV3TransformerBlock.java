@@ -4,6 +4,7 @@ import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.nnet.v2.core.Module;
 import io.leavesfly.tinyai.nnet.v2.layer.dnn.Dropout;
 import io.leavesfly.tinyai.nnet.v2.layer.norm.LayerNorm;
+import io.leavesfly.tinyai.nnet.v2.layer.transformer.KVCache;
 import io.leavesfly.tinyai.nnet.v2.layer.transformer.MultiHeadAttention;
 
 /**
@@ -146,6 +147,50 @@ public class DeepSeekV3TransformerBlock extends Module {
         return new DetailedForwardResult(output, moeResult);
     }
     
+    /**
+     * 带KV缓存的前向传播（推理用），只计算新token的位置
+     * 
+     * 注意力读取缓存中的历史K、V，MoE按token独立路由，结果与完整前向一致。
+     * 
+     * @param x 新token的隐藏状态 [batch_size, new_len, d_model]
+     * @param cache 本层的KV缓存
+     * @return 新token的输出 [batch_size, new_len, d_model]
+     */
+    public Variable forwardWithCache(Variable x, KVCache cache) {
+        Variable residual1 = attendWithCache(x, cache);
+        Variable moeOutput = moeLayer.forward(layerNorm2.forward(residual1));
+        return residual1.add(moeOutput);
+    }
+    
+    /**
+     * 带KV缓存和详细输出的前向传播（推理用）
+     * 
+     * @param input 新token的隐藏状态 [batch_size, new_len, d_model]
+     * @param taskType 任务类型（可选）
+     * @param cache 本层的KV缓存
+     * @return 详细输出结果（MoE统计只覆盖新token）
+     */
+    public DetailedForwardResult forwardWithDetails(Variable input, TaskType taskType, KVCache cache) {
+        Variable residual1 = attendWithCache(input, cache);
+        DeepSeekV3MoELayer.MoEOutput moeResult = moeLayer.computeMoE(layerNorm2.forward(residual1), taskType);
+        return new DetailedForwardResult(residual1.add(moeResult.output), moeResult);
+    }
+    
+    /**
+     * 注意力子层的缓存版本: x -> LN -> Attn(缓存) -> Dropout -> Add(x)
+     */
+    private Variable attendWithCache(Variable x, KVCache cache) {
+        Variable attnOutput = attention.forwardWithCache(layerNorm1.forward(x), cache);
+        return x.add(attnDropout.forward(attnOutput));
+    }
+    
+    /**
+     * 创建本层的KV缓存
+     */
+    public KVCache createKVCache(int batchSize) {
+        return attention.createKVCache(batchSize, config.getNPositions());
+    }
+    
     /**
      * 获取配置对象
      */
@@ -1,9 +1,14 @@
 package io.leavesfly.tinyai.deepseek.v3.training;
 
 import io.leavesfly.tinyai.deepseek.v3.TaskType;
+import io.leavesfly.tinyai.ml.dataset.token.MappedTokenDataset;
 import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
@@ -29,6 +34,11 @@ public class DeepSeekV3Dataset {
     private int currentIndex;
     private List<Integer> indices;
     
+    // 内存映射的Token文件（为null时使用内存中的序列）
+    private MappedTokenDataset tokenData;
+    private boolean shuffleWindows;
+    private final Random random = new Random();
+    
     /**
      * 构造函数（预训练模式）
      * 
@@ -93,6 +103,27 @@ public class DeepSeekV3Dataset {
         initIndices();
     }
     
+    /**
+     * 从预分词的二进制Token文件创建预训练数据集（内存映射，不重新分词）
+     * <p>
+     * 每个样本是Token流上长度为 maxSeqLength + 1 的窗口，顺序遍历时窗口不重叠，
+     * 打乱时在映射区域上随机取窗口起点。Token文件由
+     * {@link io.leavesfly.tinyai.ml.dataset.token.TokenFileWriter} 生成。
+     * 
+     * @param tokenPath Token文件路径
+     * @param maxSeqLength 最大序列长度
+     * @param batchSize 批次大小
+     * @param shuffle 是否打乱数据
+     * @return 数据集
+     * @throws IOException 文件不存在或格式不正确时
+     */
+    public static DeepSeekV3Dataset fromTokenFile(String tokenPath, int maxSeqLength,
+                                      int batchSize, boolean shuffle) throws IOException {
+        DeepSeekV3Dataset dataset = new DeepSeekV3Dataset(new ArrayList<>(), maxSeqLength, batchSize, shuffle);
+        dataset.tokenData = new MappedTokenDataset(Paths.get(tokenPath));
+        return dataset;
+    }
+    
     /**
      * 初始化索引
      */
@@ -107,6 +138,11 @@ public class DeepSeekV3Dataset {
      * 准备数据集（打乱或重置）
      */
     public void prepare(boolean shouldShuffle) {
+        if (tokenData != null) {
+            shuffleWindows = shouldShuffle && shuffle;
+            currentIndex = 0;
+            return;
+        }
         if (shouldShuffle && shuffle) {
             Collections.shuffle(indices, new Random());
         }
@@ -117,7 +153,7 @@ public class DeepSeekV3Dataset {
      * 是否还有下一批数据
      */
     public boolean hasNext() {
-        return currentIndex < sequences.size();
+        return currentIndex < getSampleCount();
     }
     
     /**
@@ -126,6 +162,9 @@ public class DeepSeekV3Dataset {
      * @return 批次数据
      */
     public Batch nextBatch() {
+        if (tokenData != null) {
+            return nextMappedBatch();
+        }
         int endIndex = Math.min(currentIndex + batchSize, sequences.size());
         int actualBatchSize = endIndex - currentIndex;
         
@@ -173,6 +212,29 @@ public class DeepSeekV3Dataset {
         return new Batch(inputIds, targetIds, batchTaskTypes, batchLanguages);
     }
     
+    /**
+     * 从映射的Token文件生成下一批数据
+     */
+    private Batch nextMappedBatch() {
+        int actualBatchSize = Math.min(batchSize, getSampleCount() - currentIndex);
+        float[] inputData = new float[actualBatchSize * maxSeqLength];
+        float[] targetData = new float[actualBatchSize * maxSeqLength];
+        
+        for (int i = 0; i < actualBatchSize; i++) {
+            long start = shuffleWindows
+                ? tokenData.randomWindowStart(random, maxSeqLength)
+                : tokenData.windowStart(currentIndex + i, maxSeqLength);
+            tokenData.fillWindow(start, maxSeqLength, inputData, targetData, i);
+        }
+        currentIndex += actualBatchSize;
+        
+        NdArray inputIds = NdArray.of(inputData, Shape.of(actualBatchSize, maxSeqLength));
+        NdArray targetIds = NdArray.of(targetData, Shape.of(actualBatchSize, maxSeqLength));
+        TaskType[] batchTaskTypes = new TaskType[actualBatchSize];
+        Arrays.fill(batchTaskTypes, TaskType.GENERAL);
+        return new Batch(inputIds, targetIds, batchTaskTypes, new String[actualBatchSize]);
+    }
+    
     /**
      * 重置数据集
      */
@@ -184,6 +246,9 @@ public class DeepSeekV3Dataset {
      * 获取样本数量
      */
     public int getSampleCount() {
+        if (tokenData != null) {
+            return (int) Math.min(Integer.MAX_VALUE, tokenData.getWindowCount(maxSeqLength));
+        }
         return sequences.size();
     }
     
@@ -191,7 +256,7 @@ public class DeepSeekV3Dataset {
      * 获取批次数量
      */
     public int getBatchCount() {
-        return (sequences.size() + batchSize - 1) / batchSize;
+        return (getSampleCount() + batchSize - 1) / batchSize;
     }
     
     /**
@@ -1,10 +1,13 @@
 package io.leavesfly.tinyai.deepseek.v3.training;
 
+import io.leavesfly.tinyai.deepseek.v3.DeepSeekV3Block;
 import io.leavesfly.tinyai.deepseek.v3.DeepSeekV3Model;
 import io.leavesfly.tinyai.deepseek.v3.TaskType;
 import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.nnet.v2.layer.transformer.KVCache;
+import io.leavesfly.tinyai.util.GradMode;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -21,6 +24,8 @@ import java.util.Random;
  * 3. Top-K采样 - 从Top-K个候选中采样
  * 4. Top-P(Nucleus)采样 - 累积概率采样
  * 
+ * 所有策略都使用KV缓存：先预填充提示词，之后每步只输入上一步生成的token。
+ * 
  * @author leavesfly
  * @version 1.0
  */
@@ -65,18 +70,16 @@ public class DeepSeekV3Inference {
         }
         
         List<ReasoningStep> reasoningSteps = new ArrayList<>();
+        List<KVCache> kvCaches = model.createKVCaches(1);
         
         for (int i = 0; i < maxNewTokens; i++) {
-            int[] currentSeq = toIntArray(generated);
-            Variable inputVar = new Variable(createInputArray(currentSeq));
-            
             // 推理（带详细信息）
-            var result = model.predictWithDetails(inputVar, taskType);
+            var result = forwardNext(generated, kvCaches, taskType);
             NdArray logits = result.logits.getValue();
             
             // 选择最后一个位置的logits
-            int seqLen = currentSeq.length;
-            int nextToken = argmax(logits, 0, seqLen - 1);
+            int lastPos = logits.getShape().getDimension(1) - 1;
+            int nextToken = argmax(logits, 0, lastPos);
             
             generated.add(nextToken);
             
@@ -110,15 +113,13 @@ public class DeepSeekV3Inference {
         }
         
         List<ReasoningStep> reasoningSteps = new ArrayList<>();
+        List<KVCache> kvCaches = model.createKVCaches(1);
         
         for (int i = 0; i < maxNewTokens; i++) {
-            int[] currentSeq = toIntArray(generated);
-            Variable inputVar = new Variable(createInputArray(currentSeq));
-            
-            var result = model.predictWithDetails(inputVar, taskType);
+            var result = forwardNext(generated, kvCaches, taskType);
             NdArray logits = result.logits.getValue();
             
-            int seqLen = currentSeq.length;
+            int lastPos = logits.getShape().getDimension(1) - 1;
             int vocabSize = logits.getShape().getDimension(2);
             
             // 应用temperature，跳过PAD token (id=0)
@@ -126,7 +127,7 @@ public class DeepSeekV3Inference {
             probs[0] = 0.0f;  // PAD token概率设为0
             float sum = 0.0f;
             for (int j = 1; j < vocabSize; j++) {
-                float logit = logits.get(0, seqLen - 1, j);
+                float logit = logits.get(0, lastPos, j);
                 probs[j] = (float) Math.exp(logit / temperature);
                 sum += probs[j];
             }
@@ -169,22 +170,20 @@ public class DeepSeekV3Inference {
         }
         
         List<ReasoningStep> reasoningSteps = new ArrayList<>();
+        List<KVCache> kvCaches = model.createKVCaches(1);
         
         for (int i = 0; i < maxNewTokens; i++) {
-            int[] currentSeq = toIntArray(generated);
-            Variable inputVar = new Variable(createInputArray(currentSeq));
-            
-            var result = model.predictWithDetails(inputVar, taskType);
+            var result = forwardNext(generated, kvCaches, taskType);
             NdArray logits = result.logits.getValue();
             
-            int seqLen = currentSeq.length;
+            int lastPos = logits.getShape().getDimension(1) - 1;
             int vocabSize = logits.getShape().getDimension(2);
             
             // 获取logits，PAD token (id=0)设为负无穷大
             float[] logitArray = new float[vocabSize];
             logitArray[0] = Float.NEGATIVE_INFINITY;  // 排除PAD token
             for (int j = 1; j < vocabSize; j++) {
-                logitArray[j] = logits.get(0, seqLen - 1, j);
+                logitArray[j] = logits.get(0, lastPos, j);
             }
             
             // Top-K过滤
@@ -235,15 +234,13 @@ public class DeepSeekV3Inference {
         }
         
         List<ReasoningStep> reasoningSteps = new ArrayList<>();
+        List<KVCache> kvCaches = model.createKVCaches(1);
         
         for (int i = 0; i < maxNewTokens; i++) {
-            int[] currentSeq = toIntArray(generated);
-            Variable inputVar = new Variable(createInputArray(currentSeq));
-            
-            var result = model.predictWithDetails(inputVar, taskType);
+            var result = forwardNext(generated, kvCaches, taskType);
             NdArray logits = result.logits.getValue();
             
-            int seqLen = currentSeq.length;
+            int lastPos = logits.getShape().getDimension(1) - 1;
             int vocabSize = logits.getShape().getDimension(2);
             
             // 获取并排序概率，跳过PAD token (id=0)
@@ -251,7 +248,7 @@ public class DeepSeekV3Inference {
             probs[0] = 0.0f;  // PAD token概率设为0
             float sum = 0.0f;
             for (int j = 1; j < vocabSize; j++) {
-                float logit = logits.get(0, seqLen - 1, j);
+                float logit = logits.get(0, lastPos, j);
                 probs[j] = (float) Math.exp(logit);
                 sum += probs[j];
             }
@@ -304,6 +301,17 @@ public class DeepSeekV3Inference {
     
     // ==================== 辅助方法 ====================
     
+    /**
+     * 只把尚未缓存的token送入模型（首次为整个提示词，之后为上一步生成的token）
+     */
+    private DeepSeekV3Block.DetailedForwardResult forwardNext(List<Integer> tokens, List<KVCache> kvCaches,
+                                                             TaskType taskType) {
+        int cached = kvCaches.get(0).getSeqLen();
+        int[] newTokens = toIntArray(tokens.subList(cached, tokens.size()));
+        return GradMode.withNoGrad(() ->
+                model.predictWithDetails(new Variable(createInputArray(newTokens)), taskType, kvCaches));
+    }
+    
     private int argmax(NdArray array, int b, int t) {
         int vocabSize = array.getShape().getDimension(2);
         int maxIdx = -1;
@@ -2,10 +2,15 @@ package io.leavesfly.tinyai.deepseek.rx;
 
 import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.nnet.v2.layer.transformer.KVCache;
+import io.leavesfly.tinyai.util.GradMode;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * DeepSeekR1Model单元测试
  * 
@@ -181,6 +186,39 @@ public class DeepSeekR1ModelTest {
                     "序列长度应为prompt长度+新生成token数");
     }
     
+    @Test
+    public void testReasoningWithCacheMatchesFullForward() {
+        // 测试KV缓存增量推理与完整前向一致
+        DeepSeekR1Model model = new DeepSeekR1Model("test-model", tinyConfig);
+        model.getModule().eval();
+        
+        float[][] tokens = {{1, 15, 23, 42, 7, 9}};
+        List<KVCache> kvCaches = model.createKVCaches(1);
+        GradMode.withNoGrad(() -> {
+            DeepSeekR1Model.ReasoningOutput full = model.performReasoning(new Variable(NdArray.of(tokens)));
+            NdArray fullLogits = full.logits.getValue();
+            
+            // 预填充前4个token，再逐个输入剩余token
+            int pos = 0;
+            DeepSeekR1Model.ReasoningOutput last = null;
+            for (int len : new int[]{4, 1, 1}) {
+                float[][] chunk = {Arrays.copyOfRange(tokens[0], pos, pos + len)};
+                last = model.performReasoning(new Variable(NdArray.of(chunk)), kvCaches);
+                NdArray logits = last.logits.getValue();
+                for (int t = 0; t < len; t++) {
+                    for (int v = 0; v < tinyConfig.getVocabSize(); v++) {
+                        assertEquals(fullLogits.get(0, pos + t, v), logits.get(0, t, v), 1e-4f,
+                                    "缓存推理的logits应与完整前向一致");
+                    }
+                }
+                pos += len;
+            }
+            // 置信度只取最后一个位置，与完整前向一致
+            assertEquals(full.averageConfidence, last.averageConfidence, 1e-4, "置信度应与完整前向一致");
+        });
+        assertEquals(6, kvCaches.get(0).getSeqLen(), "缓存长度应为已处理的token数");
+    }
+    
     @Test
     public void testGenerateSequenceWithDifferentLengths() {
         // 测试不同长度的序列生成
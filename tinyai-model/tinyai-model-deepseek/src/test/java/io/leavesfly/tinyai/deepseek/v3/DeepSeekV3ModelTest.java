@@ -2,10 +2,15 @@ package io.leavesfly.tinyai.deepseek.v3;
 
 import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.nnet.v2.layer.transformer.KVCache;
+import io.leavesfly.tinyai.util.GradMode;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * DeepSeekV3Model单元测试
  * 
@@ -205,6 +210,34 @@ public class DeepSeekV3ModelTest {
                     "序列长度应为prompt长度+新生成token数");
     }
     
+    @Test
+    public void testPredictWithCacheMatchesFullForward() {
+        // 测试KV缓存增量推理与完整前向一致
+        DeepSeekV3Model model = new DeepSeekV3Model("test-model", tinyConfig);
+        model.getModule().eval();
+        
+        float[][] tokens = {{1, 15, 23, 42, 7, 9}};
+        List<KVCache> kvCaches = model.createKVCaches(1);
+        GradMode.withNoGrad(() -> {
+            NdArray fullLogits = model.predict(new Variable(NdArray.of(tokens))).getValue();
+            
+            // 预填充前4个token，再逐个输入剩余token
+            int pos = 0;
+            for (int len : new int[]{4, 1, 1}) {
+                float[][] chunk = {Arrays.copyOfRange(tokens[0], pos, pos + len)};
+                NdArray logits = model.predictWithCache(new Variable(NdArray.of(chunk)), kvCaches).getValue();
+                for (int t = 0; t < len; t++) {
+                    for (int v = 0; v < tinyConfig.getVocabSize(); v++) {
+                        assertEquals(fullLogits.get(0, pos + t, v), logits.get(0, t, v), 1e-4f,
+                                    "缓存推理的logits应与完整前向一致");
+                    }
+                }
+                pos += len;
+            }
+        });
+        assertEquals(6, kvCaches.get(0).getSeqLen(), "缓存长度应为已处理的token数");
+    }
+    
     @Test
     public void testGenerateSequenceWithDifferentTaskTypes() {
         // 测试不同任务类型的序列生成
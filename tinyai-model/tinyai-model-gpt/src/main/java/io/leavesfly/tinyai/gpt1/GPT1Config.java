@@ -65,6 +65,11 @@ public class GPT1Config implements Serializable {
     /** 权重初始化范围，默认0.02 */
     private double initializerRange = 0.02;
     
+    // ==================== 训练配置 ====================
+    
+    /** 是否启用梯度检查点（反向时重计算Transformer块以降低激活内存），默认false */
+    private boolean gradientCheckpointing = false;
+    
     /**
      * 默认构造函数，创建标准GPT-1配置
      */
@@ -322,6 +327,14 @@ public class GPT1Config implements Serializable {
         this.initializerRange = initializerRange;
     }
     
+    public boolean isGradientCheckpointing() {
+        return gradientCheckpointing;
+    }
+    
+    public void setGradientCheckpointing(boolean gradientCheckpointing) {
+        this.gradientCheckpointing = gradientCheckpointing;
+    }
+    
     @Override
     public String toString() {
         return String.format(
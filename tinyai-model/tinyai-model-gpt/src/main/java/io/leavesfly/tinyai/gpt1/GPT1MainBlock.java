@@ -2,9 +2,11 @@ package io.leavesfly.tinyai.gpt1;
 
 import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.nnet.v2.container.Checkpoint;
 import io.leavesfly.tinyai.nnet.v2.core.Module;
 import io.leavesfly.tinyai.nnet.v2.layer.dnn.Linear;
 import io.leavesfly.tinyai.nnet.v2.layer.norm.LayerNorm;
+import io.leavesfly.tinyai.nnet.v2.layer.transformer.KVCache;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -64,7 +66,8 @@ public class GPT1MainBlock extends Module {
         Variable x = tokenEmbedding.forward(tokenIds);
         
         for (GPT1TransformerBlock block : transformerBlocks) {
-            x = block.forward(x);
+            // 梯度检查点：只保留块的输入，反向时重计算块内激活
+            x = config.isGradientCheckpointing() ? Checkpoint.checkpoint(block, x) : block.forward(x);
         }
         
         x = finalLayerNorm.forward(x);
@@ -73,6 +76,43 @@ public class GPT1MainBlock extends Module {
         return logits;
     }
     
+    /**
+     * 带KV缓存的前向传播（推理用）
+     * <p>
+     * 只处理尚未缓存的新token：位置编码从已缓存长度开始，各层注意力读取缓存中的历史K、V。
+     * 预填充时传入完整提示词，之后每步只传入上一步生成的token。
+     * 
+     * @param tokenIds 新token的ID (batch_size, new_len)
+     * @param kvCaches 每层一个KV缓存，见 {@link #createKVCaches}
+     * @return 新token位置的logits (batch_size, new_len, vocab_size)
+     */
+    public Variable forwardWithCache(Variable tokenIds, List<KVCache> kvCaches) {
+        validateInput(tokenIds);
+        if (kvCaches.size() != transformerBlocks.size()) {
+            throw new IllegalArgumentException(
+                String.format("KV缓存数(%d)与层数(%d)不一致", kvCaches.size(), transformerBlocks.size()));
+        }
+        
+        Variable x = tokenEmbedding.forward(tokenIds, kvCaches.get(0).getSeqLen());
+        for (int i = 0; i < transformerBlocks.size(); i++) {
+            x = transformerBlocks.get(i).forwardWithCache(x, kvCaches.get(i));
+        }
+        
+        x = finalLayerNorm.forward(x);
+        return outputProjection.forward(x);
+    }
+    
+    /**
+     * 为每一层创建空的KV缓存
+     */
+    public List<KVCache> createKVCaches(int batchSize) {
+        List<KVCache> caches = new ArrayList<>(transformerBlocks.size());
+        for (GPT1TransformerBlock block : transformerBlocks) {
+            caches.add(block.createKVCache(batchSize));
+        }
+        return caches;
+    }
+    
     private void validateInput(Variable tokenIds) {
         NdArray data = tokenIds.getValue();
         if (data.getShape().getDimNum() != 2) {
@@ -3,6 +3,10 @@ package io.leavesfly.tinyai.gpt1;
 import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.ml.model.Model;
 import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.nnet.v2.layer.transformer.KVCache;
+import io.leavesfly.tinyai.util.GradMode;
+
+import java.util.List;
 
 /**
  * GPT-1模型类
@@ -56,6 +60,21 @@ public class GPT1Model extends Model {
         return forward(tokenIds);
     }
     
+    /**
+     * 带KV缓存的预测：只计算尚未缓存的新token，见 {@link GPT1MainBlock#forwardWithCache}
+     * 
+     * @param tokenIds 新token的ID (batch_size, new_len)
+     * @param kvCaches 每层的KV缓存
+     * @return 新token位置的logits (batch_size, new_len, vocab_size)
+     */
+    public Variable predictWithCache(Variable tokenIds, List<KVCache> kvCaches) {
+        return gpt1Block.forwardWithCache(tokenIds, kvCaches);
+    }
+    
+    public List<KVCache> createKVCaches(int batchSize) {
+        return gpt1Block.createKVCaches(batchSize);
+    }
+    
     public NdArray generateSequence(NdArray promptIds, int maxNewTokens) {
         int batchSize = promptIds.getShape().getDimension(0);
         int promptLen = promptIds.getShape().getDimension(1);
@@ -68,21 +87,24 @@ public class GPT1Model extends Model {
             }
         }
         
-        for (int i = 0; i < maxNewTokens; i++) {
-            int currentLen = promptLen + i;
-            float[][] currentInput = new float[batchSize][currentLen];
-            for (int b = 0; b < batchSize; b++) {
-                System.arraycopy(generatedSeq[b], 0, currentInput[b], 0, currentLen);
-            }
-            
-            Variable logits = predict(new Variable(NdArray.of(currentInput)));
-            NdArray logitsArray = logits.getValue();
-            
-            for (int b = 0; b < batchSize; b++) {
-                int nextToken = argmax(logitsArray, b, currentLen - 1);
-                generatedSeq[b][currentLen] = nextToken;
+        // 预填充提示词后每步只输入上一步生成的token
+        GradMode.withNoGrad(() -> {
+            List<KVCache> kvCaches = createKVCaches(batchSize);
+            Variable input = new Variable(promptIds);
+            for (int i = 0; i < maxNewTokens; i++) {
+                int currentLen = promptLen + i;
+                NdArray logitsArray = predictWithCache(input, kvCaches).getValue();
+                int lastPos = logitsArray.getShape().getDimension(1) - 1;
+                
+                float[][] nextTokens = new float[batchSize][1];
+                for (int b = 0; b < batchSize; b++) {
+                    int nextToken = argmax(logitsArray, b, lastPos);
+                    generatedSeq[b][currentLen] = nextToken;
+                    nextTokens[b][0] = nextToken;
+                }
+                input = new Variable(NdArray.of(nextTokens));
             }
-        }
+        });
         
         return NdArray.of(generatedSeq);
     }
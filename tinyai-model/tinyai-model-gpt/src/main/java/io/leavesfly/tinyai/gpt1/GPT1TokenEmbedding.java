@@ -47,19 +47,29 @@ public class GPT1TokenEmbedding extends Module {
     
     @Override
     public Variable forward(Variable... inputs) {
-        Variable tokenIds = inputs[0];
+        return forward(inputs[0], 0);
+    }
+    
+    /**
+     * 从指定位置开始的嵌入（KV缓存增量推理时新token的位置紧接在已缓存的前缀之后）
+     * 
+     * @param tokenIds Token ID变量 (batchSize, sequenceLength)
+     * @param startPos 第一个token的位置
+     * @return 嵌入变量 (batchSize, sequenceLength, embeddingDim)
+     */
+    public Variable forward(Variable tokenIds, int startPos) {
         NdArray tokenData = tokenIds.getValue();
         
         int batchSize = tokenData.getShape().getDimension(0);
         int sequenceLength = tokenData.getShape().getDimension(1);
         
-        if (sequenceLength > maxPositions) {
+        if (startPos + sequenceLength > maxPositions) {
             throw new IllegalArgumentException(
-                String.format("序列长度(%d)超过最大位置数(%d)", sequenceLength, maxPositions));
+                String.format("序列长度(%d)超过最大位置数(%d)", startPos + sequenceLength, maxPositions));
         }
         
         Variable tokenEmbeds = getTokenEmbeddings(tokenIds, batchSize, sequenceLength);
-        Variable positionEmbeds = getPositionEmbeddings(sequenceLength, batchSize);
+        Variable positionEmbeds = getPositionEmbeddings(startPos, sequenceLength, batchSize);
         return dropout.forward(tokenEmbeds.add(positionEmbeds));
     }
     
@@ -95,22 +105,23 @@ public class GPT1TokenEmbedding extends Module {
     /**
      * 获取位置嵌入（使用Variable算子）
      * 
+     * @param startPos 起始位置
      * @param sequenceLength 序列长度
      * @param batchSize 批次大小
      * @return 位置嵌入变量
      */
-    private Variable getPositionEmbeddings(int sequenceLength, int batchSize) {
+    private Variable getPositionEmbeddings(int startPos, int sequenceLength, int batchSize) {
         // 使用IndexSelect算子实现position embedding lookup
         // positionEmbedding: (maxPositions, embeddingDim)
-        // 需要选择前sequenceLength个位置，然后扩展到batchSize
+        // 需要选择[startPos, startPos + sequenceLength)的位置，然后扩展到batchSize
         
         Variable positionEmbedVar = new Variable(positionEmbedding.data());
         positionEmbedVar.setRequireGrad(false);
         
-        // 创建位置索引: [0, 1, 2, ..., sequenceLength-1]
+        // 创建位置索引: [startPos, startPos+1, ..., startPos+sequenceLength-1]
         float[] posIndices = new float[sequenceLength];
         for (int i = 0; i < sequenceLength; i++) {
-            posIndices[i] = i;
+            posIndices[i] = startPos + i;
         }
         Variable posIndexVar = new Variable(NdArray.of(posIndices));
         posIndexVar.setRequireGrad(false);
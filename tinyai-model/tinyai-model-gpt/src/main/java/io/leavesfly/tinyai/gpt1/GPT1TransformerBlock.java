@@ -6,6 +6,7 @@ import io.leavesfly.tinyai.nnet.v2.layer.activation.GELU;
 import io.leavesfly.tinyai.nnet.v2.layer.dnn.Dropout;
 import io.leavesfly.tinyai.nnet.v2.layer.dnn.Linear;
 import io.leavesfly.tinyai.nnet.v2.layer.norm.LayerNorm;
+import io.leavesfly.tinyai.nnet.v2.layer.transformer.KVCache;
 import io.leavesfly.tinyai.nnet.v2.layer.transformer.MultiHeadAttention;
 
 /**
@@ -62,6 +63,24 @@ public class GPT1TransformerBlock extends Module {
         
         // Post-LayerNorm: Attention -> Add -> LN -> FFN -> Add -> LN
         Variable attnOutput = attention.forward(x, x, x, causalMask, null);
+        return addAndFeedForward(x, attnOutput);
+    }
+    
+    /**
+     * 带KV缓存的前向传播（推理用），只计算新token的位置
+     * 
+     * @param x 新token的隐藏状态 (batch, new_len, nEmbd)
+     * @param cache 本层的KV缓存
+     * @return 新token的输出 (batch, new_len, nEmbd)
+     */
+    public Variable forwardWithCache(Variable x, KVCache cache) {
+        return addAndFeedForward(x, attention.forwardWithCache(x, cache));
+    }
+    
+    /**
+     * 注意力之后的部分: Add -> LN -> FFN -> Add -> LN
+     */
+    private Variable addAndFeedForward(Variable x, Variable attnOutput) {
         attnOutput = attnDropout.forward(attnOutput);
         Variable residual1 = layerNorm1.forward(x.add(attnOutput));
         
@@ -74,5 +93,12 @@ public class GPT1TransformerBlock extends Module {
         return output;
     }
     
+    /**
+     * 创建本层的KV缓存
+     */
+    public KVCache createKVCache(int batchSize) {
+        return attention.createKVCache(batchSize, config.getNPositions());
+    }
+    
     public GPT1Config getConfig() { return config; }
 }
@@ -1,5 +1,7 @@
 package io.leavesfly.tinyai.gpt1.training;
 
+import io.leavesfly.tinyai.ml.dataset.token.MappedTokenDataset;
+import io.leavesfly.tinyai.ml.dataset.token.TokenFileWriter;
 import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.ndarr.Shape;
 
@@ -16,6 +18,9 @@ import java.util.*;
  * 支持预训练和微调两种模式的数据加载
  * 实现因果语言建模的数据处理
  * 
+ * 预训练语料可先用 {@link #convertToTokenFile} 分词为二进制Token文件,
+ * 再通过 {@link #loadFromTokenFile} 内存映射加载, 批次在取用时直接从映射区域切窗口生成
+ * 
  * @author TinyAI
  * @since 2024
  */
@@ -30,6 +35,11 @@ public class GPT1Dataset {
     private List<Batch> batches;
     private int currentBatchIndex;
     
+    // 内存映射的Token文件(为null时使用内存中的样本)
+    private MappedTokenDataset tokenData;
+    private boolean shuffleWindows;
+    private Random random = new Random();
+    
     /**
      * 批次数据结构
      */
@@ -93,6 +103,7 @@ public class GPT1Dataset {
      */
     public void loadFromTexts(List<String> texts, SimpleTokenizer tokenizer) {
         samples.clear();
+        tokenData = null;
         
         for (String text : texts) {
             if (text == null || text.trim().isEmpty()) {
@@ -109,6 +120,41 @@ public class GPT1Dataset {
         System.out.println("数据加载完成,共 " + samples.size() + " 个训练样本");
     }
     
+    /**
+     * 把文本文件分词后写为二进制Token文件(每个非空行作为一个文档)
+     * 
+     * @param textPath 文本文件路径
+     * @param tokenPath 输出的Token文件路径
+     * @param tokenizer 分词器
+     * @param vocabSize 词汇表大小上限(决定每个token的存储字节数)
+     * @return 写入的文档数
+     * @throws IOException 文件读写异常
+     */
+    public static int convertToTokenFile(String textPath, String tokenPath,
+                                         SimpleTokenizer tokenizer, int vocabSize) throws IOException {
+        Path path = Paths.get(textPath);
+        if (!Files.exists(path)) {
+            throw new FileNotFoundException("数据文件不存在: " + textPath);
+        }
+        return TokenFileWriter.convertTextFile(path, Paths.get(tokenPath), vocabSize, tokenizer::encode);
+    }
+    
+    /**
+     * 从二进制Token文件加载数据(内存映射, 不重新分词)
+     * 
+     * @param tokenPath Token文件路径
+     * @throws IOException 文件读取异常
+     */
+    public void loadFromTokenFile(String tokenPath) throws IOException {
+        tokenData = new MappedTokenDataset(Paths.get(tokenPath));
+        samples.clear();
+        batches.clear();
+        currentBatchIndex = 0;
+        
+        System.out.println("Token文件映射完成,共 " + tokenData.getTokenCount() + " 个token, "
+            + getSampleCount() + " 个训练样本");
+    }
+    
     /**
      * 将长序列切分为固定长度的训练样本
      * 
@@ -140,6 +186,13 @@ public class GPT1Dataset {
      * @param shuffle 是否打乱数据
      */
     public void prepare(boolean shuffle) {
+        if (tokenData != null) {
+            // 映射模式: 批次在取用时生成, 打乱时随机取窗口起点
+            shuffleWindows = shuffle;
+            currentBatchIndex = 0;
+            return;
+        }
+        
         if (shuffle) {
             Collections.shuffle(samples, new Random(System.currentTimeMillis()));
         }
@@ -204,6 +257,29 @@ public class GPT1Dataset {
         return new Batch(inputArray, targetArray, actualBatchSize, maxLen - 1);
     }
     
+    /**
+     * 从映射的Token文件生成第batchIndex个批次
+     * 
+     * @param batchIndex 批次索引
+     * @return 批次对象
+     */
+    private Batch createMappedBatch(int batchIndex) {
+        int first = batchIndex * batchSize;
+        int actualBatchSize = Math.min(batchSize, getSampleCount() - first);
+        float[] inputData = new float[actualBatchSize * maxSeqLen];
+        float[] targetData = new float[actualBatchSize * maxSeqLen];
+        
+        for (int i = 0; i < actualBatchSize; i++) {
+            long start = shuffleWindows
+                ? tokenData.randomWindowStart(random, maxSeqLen)
+                : tokenData.windowStart(first + i, maxSeqLen);
+            tokenData.fillWindow(start, maxSeqLen, inputData, targetData, i);
+        }
+        
+        return new Batch(NdArray.of(inputData, Shape.of(actualBatchSize, maxSeqLen)),
+            NdArray.of(targetData, Shape.of(actualBatchSize, maxSeqLen)), actualBatchSize, maxSeqLen);
+    }
+    
     /**
      * 创建NdArray
      * 
@@ -227,7 +303,7 @@ public class GPT1Dataset {
      * 是否有下一个批次
      */
     public boolean hasNext() {
-        return currentBatchIndex < batches.size();
+        return currentBatchIndex < getBatchCount();
     }
     
     /**
@@ -237,6 +313,9 @@ public class GPT1Dataset {
         if (!hasNext()) {
             return null;
         }
+        if (tokenData != null) {
+            return createMappedBatch(currentBatchIndex++);
+        }
         return batches.get(currentBatchIndex++);
     }
     
@@ -251,6 +330,9 @@ public class GPT1Dataset {
      * 获取样本数量
      */
     public int getSampleCount() {
+        if (tokenData != null) {
+            return (int) Math.min(Integer.MAX_VALUE, tokenData.getWindowCount(maxSeqLen));
+        }
         return samples.size();
     }
     
@@ -258,6 +340,9 @@ public class GPT1Dataset {
      * 获取批次数量
      */
     public int getBatchCount() {
+        if (tokenData != null) {
+            return (getSampleCount() + batchSize - 1) / batchSize;
+        }
         return batches.size();
     }
     
@@ -249,7 +249,7 @@ public class GPT1Finetune {
         float lossValue = loss.getValue().getNumber().floatValue();
         
         model.clearGrads();
-        loss.backward();
+        loss.backward(false);
         
         // 梯度裁剪
         clipGradients();
@@ -4,6 +4,8 @@ import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.gpt1.GPT1Model;
 import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.nnet.v2.layer.transformer.KVCache;
+import io.leavesfly.tinyai.util.GradMode;
 
 import java.util.*;
 
@@ -48,23 +50,15 @@ public class GPT1Inference {
             generated.add(id);
         }
         
+        List<KVCache> kvCaches = model.createKVCaches(1);
         for (int i = 0; i < maxNewTokens; i++) {
             if (generated.size() >= maxSeqLen) {
                 break;
             }
             
-            // 准备输入
-            int[] currentSeq = toArray(generated);
-            NdArray inputArray = createInputArray(currentSeq);
-            Variable inputVar = new Variable(inputArray);
-            
-            // 前向传播
-            Variable logits = model.predict(inputVar);
-            NdArray logitsArray = logits.getValue();
-            
-            // 获取最后一个位置的logits
-            int lastPos = currentSeq.length - 1;
-            int nextToken = argmax(logitsArray, 0, lastPos);
+            // 前向传播（只计算尚未缓存的token），获取最后一个位置的logits
+            float[] logits = nextTokenLogits(generated, kvCaches);
+            int nextToken = argmax(logits);
             
             generated.add(nextToken);
         }
@@ -88,27 +82,21 @@ public class GPT1Inference {
         
         Random random = new Random();
         
+        List<KVCache> kvCaches = model.createKVCaches(1);
         for (int i = 0; i < maxNewTokens; i++) {
             if (generated.size() >= maxSeqLen) {
                 break;
             }
             
-            int[] currentSeq = toArray(generated);
-            NdArray inputArray = createInputArray(currentSeq);
-            Variable inputVar = new Variable(inputArray);
-            
-            Variable logits = model.predict(inputVar);
-            NdArray logitsArray = logits.getValue();
-            
-            int lastPos = currentSeq.length - 1;
-            int vocabSize = logitsArray.getShape().getDimension(2);
+            float[] logits = nextTokenLogits(generated, kvCaches);
+            int vocabSize = logits.length;
             
             // 应用温度并计算softmax
             float[] probs = new float[vocabSize];
             float maxLogit = Float.NEGATIVE_INFINITY;
             
             for (int j = 0; j < vocabSize; j++) {
-                float logit = logitsArray.get(0, lastPos, j) / temperature;
+                float logit = logits[j] / temperature;
                 probs[j] = logit;
                 maxLogit = Math.max(maxLogit, logit);
             }
@@ -149,25 +137,19 @@ public class GPT1Inference {
         
         Random random = new Random();
         
+        List<KVCache> kvCaches = model.createKVCaches(1);
         for (int i = 0; i < maxNewTokens; i++) {
             if (generated.size() >= maxSeqLen) {
                 break;
             }
             
-            int[] currentSeq = toArray(generated);
-            NdArray inputArray = createInputArray(currentSeq);
-            Variable inputVar = new Variable(inputArray);
-            
-            Variable logits = model.predict(inputVar);
-            NdArray logitsArray = logits.getValue();
-            
-            int lastPos = currentSeq.length - 1;
-            int vocabSize = logitsArray.getShape().getDimension(2);
+            float[] logits = nextTokenLogits(generated, kvCaches);
+            int vocabSize = logits.length;
             
             // 获取logits并应用温度
             float[] logitsArr = new float[vocabSize];
             for (int j = 0; j < vocabSize; j++) {
-                logitsArr[j] = logitsArray.get(0, lastPos, j) / temperature;
+                logitsArr[j] = logits[j] / temperature;
             }
             
             // 获取top-k索引
@@ -217,25 +199,19 @@ public class GPT1Inference {
         
         Random random = new Random();
         
+        List<KVCache> kvCaches = model.createKVCaches(1);
         for (int i = 0; i < maxNewTokens; i++) {
             if (generated.size() >= maxSeqLen) {
                 break;
             }
             
-            int[] currentSeq = toArray(generated);
-            NdArray inputArray = createInputArray(currentSeq);
-            Variable inputVar = new Variable(inputArray);
-            
-            Variable logits = model.predict(inputVar);
-            NdArray logitsArray = logits.getValue();
-            
-            int lastPos = currentSeq.length - 1;
-            int vocabSize = logitsArray.getShape().getDimension(2);
+            float[] logits = nextTokenLogits(generated, kvCaches);
+            int vocabSize = logits.length;
             
             // 获取logits并应用温度
             float[] logitsArr = new float[vocabSize];
             for (int j = 0; j < vocabSize; j++) {
-                logitsArr[j] = logitsArray.get(0, lastPos, j) / temperature;
+                logitsArr[j] = logits[j] / temperature;
             }
             
             // 计算概率分布
@@ -310,6 +286,7 @@ public class GPT1Inference {
             initialBeam.tokens.add(id);
         }
         initialBeam.score = 0.0f;
+        initialBeam.kvCaches = model.createKVCaches(1);
         beams.add(initialBeam);
         
         // Beam search循环
@@ -322,21 +299,14 @@ public class GPT1Inference {
                     continue;
                 }
                 
-                int[] currentSeq = toArray(beam.tokens);
-                NdArray inputArray = createInputArray(currentSeq);
-                Variable inputVar = new Variable(inputArray);
-                
-                Variable logits = model.predict(inputVar);
-                NdArray logitsArray = logits.getValue();
-                
-                int lastPos = currentSeq.length - 1;
-                int vocabSize = logitsArray.getShape().getDimension(2);
+                float[] logits = nextTokenLogits(beam.tokens, beam.kvCaches);
+                int vocabSize = logits.length;
                 
                 // 计算log概率
                 float[] logProbs = new float[vocabSize];
                 float maxLogit = Float.NEGATIVE_INFINITY;
                 for (int j = 0; j < vocabSize; j++) {
-                    float logit = logitsArray.get(0, lastPos, j);
+                    float logit = logits[j];
                     logProbs[j] = logit;
                     maxLogit = Math.max(maxLogit, logit);
                 }
@@ -358,6 +328,8 @@ public class GPT1Inference {
                     newBeam.tokens.addAll(beam.tokens);
                     newBeam.tokens.add(idx);
                     newBeam.score = beam.score + logProbs[idx];
+                    // 扩展出的候选先共享父beam的缓存（缓存中不含新token），入选后再按需复制
+                    newBeam.kvCaches = beam.kvCaches;
                     candidates.add(newBeam);
                 }
             }
@@ -365,6 +337,14 @@ public class GPT1Inference {
             // 选择top-k beams
             candidates.sort((a, b) -> Float.compare(b.score, a.score));
             beams = candidates.subList(0, Math.min(beamSize, candidates.size()));
+            
+            // 同一父beam的多个候选入选时，除第一个外各自复制缓存，避免后续追加互相覆盖
+            Set<List<KVCache>> claimed = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Beam beam : beams) {
+                if (!claimed.add(beam.kvCaches)) {
+                    beam.kvCaches = copyCaches(beam.kvCaches);
+                }
+            }
         }
         
         // 返回得分最高的序列
@@ -379,31 +359,57 @@ public class GPT1Inference {
     private static class Beam {
         List<Integer> tokens = new ArrayList<>();
         float score = 0.0f;
+        List<KVCache> kvCaches;
     }
     
     /**
-     * 创建输入数组
+     * 计算下一个token的logits
+     * <p>
+     * 只把序列中尚未写入KV缓存的token送入模型：首次调用时预填充整个提示词，
+     * 之后每步只计算上一步新生成的token。
+     * 推理期间只在当前线程上关闭计算图构建，不影响同一进程中其他线程的训练
+     *
+     * @param tokens 当前完整序列
+     * @param kvCaches 该序列的KV缓存，调用后包含全部token
+     * @return 最后一个位置的logits
      */
-    private NdArray createInputArray(int[] sequence) {
-        float[] data = new float[sequence.length];
-        for (int i = 0; i < sequence.length; i++) {
-            data[i] = sequence[i];
+    private float[] nextTokenLogits(List<Integer> tokens, List<KVCache> kvCaches) {
+        int cachedLen = kvCaches.get(0).getSeqLen();
+        int newLen = tokens.size() - cachedLen;
+        float[] data = new float[newLen];
+        for (int i = 0; i < newLen; i++) {
+            data[i] = tokens.get(cachedLen + i);
         }
-        return NdArray.of(data, Shape.of(1, sequence.length));
+        
+        NdArray logits = GradMode.withNoGrad(() ->
+                model.predictWithCache(new Variable(NdArray.of(data, Shape.of(1, newLen))), kvCaches).getValue());
+        int vocabSize = logits.getShape().getDimension(2);
+        float[] lastLogits = new float[vocabSize];
+        System.arraycopy(logits.getArray(), (newLen - 1) * vocabSize, lastLogits, 0, vocabSize);
+        return lastLogits;
+    }
+    
+    /**
+     * 复制每层的KV缓存
+     */
+    private List<KVCache> copyCaches(List<KVCache> kvCaches) {
+        List<KVCache> copies = new ArrayList<>(kvCaches.size());
+        for (KVCache cache : kvCaches) {
+            copies.add(cache.copy());
+        }
+        return copies;
     }
     
     /**
      * 获取最大值索引
      */
-    private int argmax(NdArray logits, int batchIdx, int seqIdx) {
-        int vocabSize = logits.getShape().getDimension(2);
+    private int argmax(float[] logits) {
         int maxIdx = 0;
-        float maxVal = logits.get(batchIdx, seqIdx, 0);
+        float maxVal = logits[0];
         
-        for (int i = 1; i < vocabSize; i++) {
-            float val = logits.get(batchIdx, seqIdx, i);
-            if (val > maxVal) {
-                maxVal = val;
+        for (int i = 1; i < logits.length; i++) {
+            if (logits[i] > maxVal) {
+                maxVal = logits[i];
                 maxIdx = i;
             }
         }
@@ -238,7 +238,7 @@ public class GPT1Pretrain {
         model.clearGrads();
         
         // 反向传播
-        loss.backward();
+        loss.backward(false);
         
         // 梯度裁剪
         clipGradients();
@@ -2,6 +2,7 @@ package io.leavesfly.tinyai.gpt3;
 
 import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.nnet.v2.container.Checkpoint;
 import io.leavesfly.tinyai.nnet.v2.core.Module;
 import io.leavesfly.tinyai.nnet.v2.layer.dnn.Linear;
 import io.leavesfly.tinyai.nnet.v2.layer.norm.LayerNorm;
@@ -105,11 +106,12 @@ public class GPT3MainBlock extends Module {
         // 2. 通过所有Transformer块
         for (int i = 0; i < transformerBlocks.size(); i++) {
             GPT3TransformerBlock block = transformerBlocks.get(i);
-            x = block.forward(x);
             
-            // 可选：梯度检查点（暂不实现）
+            // 可选：梯度检查点，只保留块的输入，反向时重计算块内激活
             if (config.isGradientCheckpointing()) {
-                // TODO: 实现梯度检查点逻辑
+                x = Checkpoint.checkpoint(block, x);
+            } else {
+                x = block.forward(x);
             }
         }
         
@@ -1,9 +1,16 @@
 package io.leavesfly.tinyai.gpt1.training;
 
+import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.gpt1.GPT1Config;
 import io.leavesfly.tinyai.gpt1.GPT1Model;
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.util.GradMode;
 import org.junit.Test;
 import org.junit.Before;
+
+import java.util.Arrays;
+
 import static org.junit.Assert.*;
 
 /**
@@ -90,6 +97,35 @@ public class GPT1InferenceTest {
         assertArrayEquals("相同输入的贪婪解码应产生相同结果", generated1, generated2);
     }
     
+    @Test
+    public void testGreedyWithCacheMatchesFullForward() {
+        // 关闭dropout，使两种前向传播可以逐位比较
+        model.getModule().eval();
+        int[] promptIds = {7, 8, 9, 10};
+        int[] generated = inference.generateGreedy(promptIds, 6);
+        
+        // 不使用缓存：每步对完整前缀前向传播，取最后一个位置的argmax
+        int[] expected = Arrays.copyOf(promptIds, promptIds.length + 6);
+        for (int len = promptIds.length; len < expected.length; len++) {
+            float[] input = new float[len];
+            for (int i = 0; i < len; i++) {
+                input[i] = expected[i];
+            }
+            Variable prefix = new Variable(NdArray.of(input, Shape.of(1, len)));
+            NdArray logits = GradMode.withNoGrad(() -> model.predict(prefix).getValue());
+            int vocabSize = logits.getShape().getDimension(2);
+            int best = 0;
+            for (int v = 1; v < vocabSize; v++) {
+                if (logits.get(0, len - 1, v) > logits.get(0, len - 1, best)) {
+                    best = v;
+                }
+            }
+            expected[len] = best;
+        }
+        
+        assertArrayEquals("增量解码应与完整前向传播结果一致", expected, generated);
+    }
+    
     // ==================== Temperature采样测试 ====================
     
     @Test
@@ -259,6 +295,15 @@ public class GPT1InferenceTest {
         assertTrue("单beam应能生成", generated.length >= promptIds.length);
     }
     
+    @Test
+    public void testBeamSearchSingleBeamMatchesGreedy() {
+        model.getModule().eval();
+        int[] promptIds = {4, 6, 8};
+        
+        assertArrayEquals("beamSize=1时应与贪婪解码一致",
+            inference.generateGreedy(promptIds, 6), inference.generateBeamSearch(promptIds, 6, 1));
+    }
+    
     @Test
     public void testBeamSearchLargeBeam() {
         int[] promptIds = {1, 2};
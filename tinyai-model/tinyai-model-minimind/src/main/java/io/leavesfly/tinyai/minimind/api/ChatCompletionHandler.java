@@ -2,12 +2,13 @@ package io.leavesfly.tinyai.minimind.api;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
-import io.leavesfly.tinyai.minimind.model.MiniMindConfig;
-import io.leavesfly.tinyai.minimind.model.MiniMindModel;
+import io.leavesfly.tinyai.minimind.model.ContinuousBatchingEngine;
 import io.leavesfly.tinyai.minimind.tokenizer.MiniMindTokenizer;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 
 /**
  * Chat Completion API处理器
@@ -36,23 +37,22 @@ import java.util.*;
  */
 public class ChatCompletionHandler implements HttpHandler {
     
-    // 共享的模型实例
-    private static MiniMindModel sharedModel;
-    private static MiniMindTokenizer sharedTokenizer;
+    // 与服务器的其他生成端点共用同一个模型、引擎（含前缀缓存）和准入许可
+    private final ContinuousBatchingEngine engine;
+    private final MiniMindTokenizer tokenizer;
+    private final Semaphore generationPermits;
     
-    static {
-        // 初始化共享模型
-        try {
-            MiniMindConfig config = MiniMindConfig.createSmallConfig();
-            sharedModel = new MiniMindModel("minimind-chat-api", config);
-            sharedTokenizer = MiniMindTokenizer.createCharLevelTokenizer(
-                config.getVocabSize(), config.getMaxSeqLen()
-            );
-            sharedModel.setTraining(false);
-            System.out.println("Chat API模型初始化完成");
-        } catch (Exception e) {
-            System.err.println("Chat模型初始化失败: " + e.getMessage());
-        }
+    /**
+     * 构造函数
+     * 
+     * @param engine 连续批处理引擎，模型未初始化时为null
+     * @param tokenizer 分词器，模型未初始化时为null
+     * @param generationPermits 生成请求准入许可，获得后必须归还
+     */
+    public ChatCompletionHandler(ContinuousBatchingEngine engine, MiniMindTokenizer tokenizer, Semaphore generationPermits) {
+        this.engine = engine;
+        this.tokenizer = tokenizer;
+        this.generationPermits = generationPermits;
     }
     
     @Override
@@ -97,15 +97,30 @@ public class ChatCompletionHandler implements HttpHandler {
             // 转换消息格式
             List<ChatMessage> messages = parseMessages(messagesList);
             
-            // 生成回复
-            String reply = generateChatReply(messages, maxTokens, temperature, topP);
-            
-            // 构建响应
-            Map<String, Object> response = buildChatResponse(model, messages, reply);
-            
-            // 发送响应
-            String json = SimpleJSON.toJSON(response);
-            MiniMindAPIServer.sendJSONResponse(exchange, 200, json);
+            // 准入控制：进行中的生成请求过多时直接拒绝
+            if (!generationPermits.tryAcquire()) {
+                sendError(exchange, 503, "Server busy, too many concurrent requests");
+                return;
+            }
+            try {
+                if (stream) {
+                    // 流式输出：每生成一个token发送一个SSE事件
+                    streamChatReply(exchange, model, messages, maxTokens, temperature, topP);
+                    return;
+                }
+                
+                // 生成回复
+                String reply = generateChatReply(messages, maxTokens, temperature, topP);
+                
+                // 构建响应
+                Map<String, Object> response = buildChatResponse(model, messages, reply);
+                
+                // 发送响应
+                String json = SimpleJSON.toJSON(response);
+                MiniMindAPIServer.sendJSONResponse(exchange, 200, json);
+            } finally {
+                generationPermits.release();
+            }
             
         } catch (Exception e) {
             e.printStackTrace();
@@ -138,46 +153,29 @@ public class ChatCompletionHandler implements HttpHandler {
     private String generateChatReply(List<ChatMessage> messages, int maxTokens, 
                                     double temperature, double topP) {
         try {
-            if (sharedModel == null || sharedTokenizer == null) {
+            if (engine == null || tokenizer == null) {
                 return "[Error: Model not initialized]";
             }
             
-            // 1. 构建对话上下文
-            StringBuilder context = new StringBuilder();
-            
-            // 保留最近10轮对话
-            int startIdx = Math.max(0, messages.size() - 10);
-            for (int i = startIdx; i < messages.size(); i++) {
-                ChatMessage msg = messages.get(i);
-                if ("system".equals(msg.role)) {
-                    context.append("系统: ").append(msg.content).append("\n");
-                } else if ("user".equals(msg.role)) {
-                    context.append("用户: ").append(msg.content).append("\n");
-                } else if ("assistant".equals(msg.role)) {
-                    context.append("助手: ").append(msg.content).append("\n");
-                }
-            }
-            context.append("助手: ");
-            
-            // 2. 编码输入
-            List<Integer> promptIds = sharedTokenizer.encode(context.toString(), false, false);
-            int[] promptArray = promptIds.stream().mapToInt(i -> i).toArray();
+            // 1-2. 构建对话上下文并编码
+            int[] promptArray = encodeContext(messages);
             
             // 3. 调用模型生成
-            int[] generated = sharedModel.generate(
+            int[] generated = engine.submit(
                 promptArray,
                 maxTokens,
                 (float) temperature,
                 0,  // topK
-                (float) topP
-            );
+                (float) topP,
+                1.2f  // 重复惩罚
+            ).join();
             
             // 4. 解码输出
             List<Integer> genIds = new ArrayList<>();
             for (int id : generated) {
                 genIds.add(id);
             }
-            String fullResponse = sharedTokenizer.decode(genIds, true);
+            String fullResponse = tokenizer.decode(genIds, true);
             
             // 5. 提取助手回复部分
             String response = fullResponse;
@@ -202,6 +200,81 @@ public class ChatCompletionHandler implements HttpHandler {
         }
     }
     
+    /**
+     * 构建对话上下文并编码为token IDs
+     */
+    private int[] encodeContext(List<ChatMessage> messages) {
+        StringBuilder context = new StringBuilder();
+        
+        // 保留最近10轮对话
+        int startIdx = Math.max(0, messages.size() - 10);
+        for (int i = startIdx; i < messages.size(); i++) {
+            ChatMessage msg = messages.get(i);
+            if ("system".equals(msg.role)) {
+                context.append("系统: ").append(msg.content).append("\n");
+            } else if ("user".equals(msg.role)) {
+                context.append("用户: ").append(msg.content).append("\n");
+            } else if ("assistant".equals(msg.role)) {
+                context.append("助手: ").append(msg.content).append("\n");
+            }
+        }
+        context.append("助手: ");
+        
+        List<Integer> promptIds = tokenizer.encode(context.toString(), false, false);
+        return promptIds.stream().mapToInt(i -> i).toArray();
+    }
+    
+    /**
+     * 流式生成对话回复（Server-Sent Events）
+     */
+    private void streamChatReply(HttpExchange exchange, String model, List<ChatMessage> messages,
+                                 int maxTokens, double temperature, double topP) throws IOException {
+        if (engine == null || tokenizer == null) {
+            sendError(exchange, 500, "Model not initialized");
+            return;
+        }
+        
+        TokenEventStream events = new TokenEventStream();
+        CompletableFuture<int[]> generation = engine.submit(
+            encodeContext(messages),
+            maxTokens,
+            (float) temperature,
+            0,  // topK
+            (float) topP,
+            1.2f,  // 重复惩罚
+            events
+        );
+        
+        String id = "chatcmpl-" + UUID.randomUUID().toString();
+        long created = System.currentTimeMillis() / 1000;
+        events.send(exchange, generation, maxTokens,
+            token -> {
+                String text = tokenizer.decode(List.of(token), true);
+                return text.isEmpty() ? null
+                    : SimpleJSON.toJSON(buildStreamChunk(id, created, model, Map.of("content", text), null));
+            },
+            finishReason -> SimpleJSON.toJSON(buildStreamChunk(id, created, model, Map.of(), finishReason)));
+    }
+    
+    /**
+     * 构建流式响应的一个事件(chat.completion.chunk)
+     */
+    private Map<String, Object> buildStreamChunk(String id, long created, String model,
+                                                 Map<String, Object> delta, String finishReason) {
+        Map<String, Object> chunk = new LinkedHashMap<>();
+        chunk.put("id", id);
+        chunk.put("object", "chat.completion.chunk");
+        chunk.put("created", created);
+        chunk.put("model", model);
+        
+        Map<String, Object> choice = new LinkedHashMap<>();
+        choice.put("index", 0);
+        choice.put("delta", delta);
+        choice.put("finish_reason", finishReason);
+        chunk.put("choices", List.of(choice));
+        return chunk;
+    }
+    
     /**
      * 构建OpenAI格式响应
      */
@@ -2,12 +2,13 @@ package io.leavesfly.tinyai.minimind.api;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
-import io.leavesfly.tinyai.minimind.model.MiniMindConfig;
-import io.leavesfly.tinyai.minimind.model.MiniMindModel;
+import io.leavesfly.tinyai.minimind.model.ContinuousBatchingEngine;
 import io.leavesfly.tinyai.minimind.tokenizer.MiniMindTokenizer;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 
 /**
  * Completion API处理器
@@ -33,23 +34,22 @@ import java.util.*;
  */
 public class CompletionHandler implements HttpHandler {
     
-    // 共享的模型实例（避免重复加载）
-    private static MiniMindModel sharedModel;
-    private static MiniMindTokenizer sharedTokenizer;
+    // 与服务器的其他生成端点共用同一个模型、引擎（含前缀缓存）和准入许可
+    private final ContinuousBatchingEngine engine;
+    private final MiniMindTokenizer tokenizer;
+    private final Semaphore generationPermits;
     
-    static {
-        // 初始化共享模型
-        try {
-            MiniMindConfig config = MiniMindConfig.createSmallConfig();
-            sharedModel = new MiniMindModel("minimind-api", config);
-            sharedTokenizer = MiniMindTokenizer.createCharLevelTokenizer(
-                config.getVocabSize(), config.getMaxSeqLen()
-            );
-            sharedModel.setTraining(false);
-            System.out.println("API模型初始化完成");
-        } catch (Exception e) {
-            System.err.println("模型初始化失败: " + e.getMessage());
-        }
+    /**
+     * 构造函数
+     * 
+     * @param engine 连续批处理引擎，模型未初始化时为null
+     * @param tokenizer 分词器，模型未初始化时为null
+     * @param generationPermits 生成请求准入许可，获得后必须归还
+     */
+    public CompletionHandler(ContinuousBatchingEngine engine, MiniMindTokenizer tokenizer, Semaphore generationPermits) {
+        this.engine = engine;
+        this.tokenizer = tokenizer;
+        this.generationPermits = generationPermits;
     }
     
     @Override
@@ -97,15 +97,30 @@ public class CompletionHandler implements HttpHandler {
                 return;
             }
             
-            // 生成文本
-            String generatedText = generateText(prompt, maxTokens, temperature, topP);
-            
-            // 构建响应
-            Map<String, Object> response = buildResponse(model, prompt, generatedText, maxTokens);
-            
-            // 发送响应
-            String json = SimpleJSON.toJSON(response);
-            MiniMindAPIServer.sendJSONResponse(exchange, 200, json);
+            // 准入控制：进行中的生成请求过多时直接拒绝
+            if (!generationPermits.tryAcquire()) {
+                sendError(exchange, 503, "Server busy, too many concurrent requests");
+                return;
+            }
+            try {
+                if (stream) {
+                    // 流式输出：每生成一个token发送一个SSE事件
+                    streamText(exchange, model, prompt, maxTokens, temperature, topP);
+                    return;
+                }
+                
+                // 生成文本
+                String generatedText = generateText(prompt, maxTokens, temperature, topP);
+                
+                // 构建响应
+                Map<String, Object> response = buildResponse(model, prompt, generatedText, maxTokens);
+                
+                // 发送响应
+                String json = SimpleJSON.toJSON(response);
+                MiniMindAPIServer.sendJSONResponse(exchange, 200, json);
+            } finally {
+                generationPermits.release();
+            }
             
         } catch (Exception e) {
             e.printStackTrace();
@@ -118,29 +133,30 @@ public class CompletionHandler implements HttpHandler {
      */
     private String generateText(String prompt, int maxTokens, double temperature, double topP) {
         try {
-            if (sharedModel == null || sharedTokenizer == null) {
+            if (engine == null || tokenizer == null) {
                 return "[Error: Model not initialized]";
             }
                 
             // 1. 编码输入
-            List<Integer> promptIds = sharedTokenizer.encode(prompt, false, false);
+            List<Integer> promptIds = tokenizer.encode(prompt, false, false);
             int[] promptArray = promptIds.stream().mapToInt(i -> i).toArray();
                 
             // 2. 调用模型生成
-            int[] generated = sharedModel.generate(
+            int[] generated = engine.submit(
                 promptArray,
                 maxTokens,
                 (float) temperature,
                 0,  // topK
-                (float) topP
-            );
+                (float) topP,
+                1.2f  // 重复惩罚
+            ).join();
                 
             // 3. 解码输出
             List<Integer> genIds = new ArrayList<>();
             for (int id : generated) {
                 genIds.add(id);
             }
-            String fullText = sharedTokenizer.decode(genIds, true);
+            String fullText = tokenizer.decode(genIds, true);
                 
             // 4. 提取生成部分（移除prompt）
             String generatedPart = fullText;
@@ -156,6 +172,60 @@ public class CompletionHandler implements HttpHandler {
         }
     }
     
+    /**
+     * 流式生成文本（Server-Sent Events）
+     */
+    private void streamText(HttpExchange exchange, String model, String prompt, int maxTokens,
+                            double temperature, double topP) throws IOException {
+        if (engine == null || tokenizer == null) {
+            sendError(exchange, 500, "Model not initialized");
+            return;
+        }
+        
+        List<Integer> promptIds = tokenizer.encode(prompt, false, false);
+        int[] promptArray = promptIds.stream().mapToInt(i -> i).toArray();
+        
+        TokenEventStream events = new TokenEventStream();
+        CompletableFuture<int[]> generation = engine.submit(
+            promptArray,
+            maxTokens,
+            (float) temperature,
+            0,  // topK
+            (float) topP,
+            1.2f,  // 重复惩罚
+            events
+        );
+        
+        String id = "cmpl-" + UUID.randomUUID().toString();
+        long created = System.currentTimeMillis() / 1000;
+        events.send(exchange, generation, maxTokens,
+            token -> {
+                String text = tokenizer.decode(List.of(token), true);
+                return text.isEmpty() ? null : SimpleJSON.toJSON(buildStreamChunk(id, created, model, text, null));
+            },
+            finishReason -> SimpleJSON.toJSON(buildStreamChunk(id, created, model, "", finishReason)));
+    }
+    
+    /**
+     * 构建流式响应的一个事件
+     */
+    private Map<String, Object> buildStreamChunk(String id, long created, String model,
+                                                 String text, String finishReason) {
+        Map<String, Object> chunk = new LinkedHashMap<>();
+        chunk.put("id", id);
+        chunk.put("object", "text_completion");
+        chunk.put("created", created);
+        chunk.put("model", model);
+        
+        Map<String, Object> choice = new LinkedHashMap<>();
+        choice.put("text", text);
+        choice.put("index", 0);
+        choice.put("logprobs", null);
+        choice.put("finish_reason", finishReason);
+        chunk.put("choices", List.of(choice));
+        return chunk;
+    }
+    
     /**
      * 构建OpenAI格式响应
      */
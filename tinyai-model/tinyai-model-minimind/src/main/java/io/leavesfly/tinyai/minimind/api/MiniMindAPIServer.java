@@ -3,6 +3,11 @@ package io.leavesfly.tinyai.minimind.api;
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
+import io.leavesfly.tinyai.minimind.model.ContinuousBatchingEngine;
+import io.leavesfly.tinyai.minimind.model.MiniMindConfig;
+import io.leavesfly.tinyai.minimind.model.MiniMindModel;
+import io.leavesfly.tinyai.minimind.model.PrefixCache;
+import io.leavesfly.tinyai.minimind.tokenizer.MiniMindTokenizer;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -10,6 +15,9 @@ import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * MiniMind API服务器
@@ -28,9 +36,35 @@ import java.util.concurrent.Executors;
  */
 public class MiniMindAPIServer {
     
+    /**
+     * 连续批处理引擎每步合并解码的最大请求数
+     */
+    static final int MAX_BATCH_SIZE = 32;
+    
+    /**
+     * 批次已满时允许排队等待的生成请求数，超过后直接返回503
+     */
+    static final int MAX_PENDING_REQUESTS = 64;
+    
+    /**
+     * 提示词前缀缓存上限(字节)，由各生成端点共用，多轮对话的历史消息无需重复预填充
+     */
+    static final long PREFIX_CACHE_BYTES = 64L * 1024 * 1024;
+    
     private final HttpServer server;
     private final int port;
     
+    /**
+     * 生成请求准入许可（解码中 + 排队中），由本服务器的各生成端点共用
+     */
+    private final Semaphore generationPermits = new Semaphore(MAX_BATCH_SIZE + MAX_PENDING_REQUESTS);
+    
+    /**
+     * 各生成端点共用的分词器与连续批处理引擎，模型初始化失败时为null
+     */
+    private MiniMindTokenizer tokenizer;
+    private ContinuousBatchingEngine engine;
+    
     /**
      * 构造函数
      * 
@@ -40,19 +74,51 @@ public class MiniMindAPIServer {
         this.port = port;
         this.server = HttpServer.create(new InetSocketAddress(port), 0);
         
-        // 设置线程池
-        server.setExecutor(Executors.newFixedThreadPool(10));
+        // 每个请求一个线程：线程只解析请求并等待/转发生成结果，模型计算由连续批处理引擎完成，
+        // 并发的生成请求数由准入许可限制
+        server.setExecutor(Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "minimind-api-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
         
-        // 注册路由
+        // 初始化模型并注册路由
+        initializeModel();
         registerHandlers();
     }
     
+    /**
+     * 初始化共享的模型、分词器和连续批处理引擎
+     * 
+     * 补全与对话端点共用一个引擎，前缀缓存的大小上限因此对整个服务器生效
+     */
+    private void initializeModel() {
+        try {
+            MiniMindConfig config = MiniMindConfig.createSmallConfig();
+            MiniMindModel model = new MiniMindModel("minimind-api", config);
+            model.setTraining(false);
+            tokenizer = MiniMindTokenizer.createCharLevelTokenizer(
+                config.getVocabSize(), config.getMaxSeqLen()
+            );
+            engine = new ContinuousBatchingEngine(model, MAX_BATCH_SIZE, new PrefixCache(PREFIX_CACHE_BYTES));
+            engine.start();
+            System.out.println("API模型初始化完成");
+        } catch (Exception e) {
+            System.err.println("模型初始化失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 注册处理器
      */
     private void registerHandlers() {
-        server.createContext("/v1/completions", new CompletionHandler());
-        server.createContext("/v1/chat/completions", new ChatCompletionHandler());
+        server.createContext("/v1/completions", new CompletionHandler(engine, tokenizer, generationPermits));
+        server.createContext("/v1/chat/completions", new ChatCompletionHandler(engine, tokenizer, generationPermits));
         server.createContext("/v1/models", new ModelsHandler());
         server.createContext("/health", new HealthHandler());
         server.createContext("/", new RootHandler());
@@ -80,6 +146,9 @@ public class MiniMindAPIServer {
      */
     public void stop() {
         server.stop(0);
+        if (engine != null) {
+            engine.close();
+        }
         System.out.println("MiniMind API Server Stopped");
     }
     
@@ -0,0 +1,108 @@
+package io.leavesfly.tinyai.minimind.api;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+/**
+ * Server-Sent Events 流式输出
+ *
+ * 作为生成引擎的token回调：调度线程只把新token放入队列，
+ * 请求处理线程从队列取出token，逐个写成 "data: {...}" 事件并立即flush，
+ * 最后发送带finish_reason的事件和 "data: [DONE]"。
+ * 写入失败（客户端断开）时取消生成，引擎在下一轮把该序列移出批次。
+ *
+ * @author leavesfly
+ * @since 2024
+ */
+class TokenEventStream implements IntConsumer {
+
+    /**
+     * 等待新token的轮询间隔(毫秒)
+     */
+    private static final long POLL_MILLIS = 50;
+
+    private final BlockingQueue<Integer> tokens = new LinkedBlockingQueue<>();
+
+    @Override
+    public void accept(int token) {
+        tokens.add(token);
+    }
+
+    /**
+     * 发送事件流直到生成结束
+     *
+     * @param exchange    HTTP交换对象
+     * @param generation  生成任务
+     * @param maxTokens   最大生成token数，用于判断finish_reason
+     * @param tokenEvent  token对应的事件JSON，返回null时跳过(如结束符)
+     * @param finishEvent 根据finish_reason构建结束事件JSON
+     */
+    void send(HttpExchange exchange, CompletableFuture<int[]> generation, int maxTokens,
+              IntFunction<String> tokenEvent, Function<String, String> finishEvent) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=UTF-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        MiniMindAPIServer.addCORSHeaders(exchange);
+        exchange.sendResponseHeaders(200, 0);
+
+        OutputStream os = exchange.getResponseBody();
+        try {
+            int count = 0;
+            while (true) {
+                Integer token = tokens.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (token == null) {
+                    // 回调先于Future完成执行，Future完成时所有token都已入队
+                    if (generation.isDone() && tokens.isEmpty()) {
+                        break;
+                    }
+                    continue;
+                }
+                count++;
+                String event = tokenEvent.apply(token);
+                if (event != null) {
+                    writeEvent(os, event);
+                }
+            }
+
+            if (generation.isCompletedExceptionally()) {
+                Map<String, Object> error = new LinkedHashMap<>();
+                error.put("error", Map.of("message", "Generation failed", "type", "server_error"));
+                writeEvent(os, SimpleJSON.toJSON(error));
+            } else {
+                writeEvent(os, finishEvent.apply(count >= maxTokens ? "length" : "stop"));
+            }
+            writeEvent(os, "[DONE]");
+        } catch (IOException e) {
+            // 客户端断开连接
+            generation.cancel(false);
+        } catch (InterruptedException e) {
+            generation.cancel(false);
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                os.close();
+            } catch (IOException ignored) {
+                // 连接已断开
+            }
+        }
+    }
+
+    /**
+     * 写入一个SSE事件并立即发送
+     */
+    private static void writeEvent(OutputStream os, String data) throws IOException {
+        os.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        os.flush();
+    }
+}
@@ -24,6 +24,12 @@ import java.io.File;
  *   --output-dir output/pretrain
  * ```
  * 
+ * 大语料可先一次性转换为预分词的Token文件, 之后训练直接映射加载:
+ * ```bash
+ * minimind train-pretrain --train-file data/train.txt --convert-to data/train.bin
+ * minimind train-pretrain --train-file data/train.bin
+ * ```
+ * 
  * @author leavesfly
  * @since 2024
  */
@@ -46,6 +52,15 @@ public class TrainPretrainCommand implements Command {
         int epochs = parser.getInt("epochs", 10);
         int batchSize = parser.getInt("batch-size", 32);
         float learningRate = parser.getFloat("learning-rate", 0.001f);
+        int gradAccum = parser.getInt("grad-accum", 1);
+        String convertTo = parser.get("convert-to", null);
+        
+        if (convertTo != null) {
+            // 只做分词转换, 不训练
+            MiniMindTokenizer tokenizer = MiniMindTokenizer.createCharLevelTokenizer(vocabSize, 512);
+            new PretrainDataset(tokenizer, 512, batchSize).convertToTokenFile(trainFile, convertTo);
+            return;
+        }
         
         System.out.println("=".repeat(60));
         System.out.println("MiniMind 预训练");
@@ -123,6 +138,7 @@ public class TrainPretrainCommand implements Command {
                 
                 // 配置检查点
                 trainer.setCheckpoint(outputDir, 500);
+                trainer.setGradientAccumulation(gradAccum);
                 
                 // 5. 开始训练
                 System.out.println("\n开始训练...");
@@ -144,7 +160,12 @@ public class TrainPretrainCommand implements Command {
                 PretrainDataset dataset = new PretrainDataset(
                     tokenizer, config.getMaxSeqLen(), batchSize
                 );
-                dataset.loadFromFile(trainFile);
+                if (trainFile.endsWith(".bin")) {
+                    // 预分词的Token文件, 内存映射加载
+                    dataset.loadFromTokenFile(trainFile);
+                } else {
+                    dataset.loadFromFile(trainFile);
+                }
                 
                 System.out.println("样本数量: " + dataset.getSampleCount());
                 System.out.println("批次数量: " + dataset.getBatchCount());
@@ -152,6 +173,7 @@ public class TrainPretrainCommand implements Command {
                 PretrainTrainer trainer = new PretrainTrainer(model, dataset);
                 trainer.configure(epochs, learningRate, 1000, 1.0f);
                 trainer.setCheckpoint(outputDir, 1000);
+                trainer.setGradientAccumulation(gradAccum);
                 
                 System.out.println("\n开始训练...");
                 trainer.train();
@@ -179,12 +201,14 @@ public class TrainPretrainCommand implements Command {
         System.out.println("预训练MiniMind模型");
         System.out.println();
         System.out.println("选项:");
-        System.out.println("  --train-file FILE      训练数据文件 (default: data/train.txt)");
+        System.out.println("  --train-file FILE      训练数据文件, .bin为预分词的Token文件 (default: data/train.txt)");
         System.out.println("  --output-dir DIR       输出目录 (default: output/pretrain)");
         System.out.println("  --vocab-size INT       词表大小 (default: 6400)");
         System.out.println("  --epochs INT           训练轮数 (default: 10)");
         System.out.println("  --batch-size INT       批次大小 (default: 32)");
         System.out.println("  --learning-rate FLOAT  学习率 (default: 0.001)");
+        System.out.println("  --grad-accum INT       梯度累积步数 (default: 1)");
+        System.out.println("  --convert-to FILE      把训练文件分词为Token文件后退出");
         System.out.println("  --help, -h             显示此帮助信息");
     }
 }
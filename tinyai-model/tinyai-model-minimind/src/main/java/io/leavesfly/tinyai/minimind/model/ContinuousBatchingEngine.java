@@ -0,0 +1,498 @@
+package io.leavesfly.tinyai.minimind.model;
+
+import io.leavesfly.tinyai.func.Variable;
+import io.leavesfly.tinyai.minimind.model.attention.KVCache;
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.ndarr.cpu.pool.BufferScope;
+import io.leavesfly.tinyai.util.GradMode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * MiniMind 连续批处理推理引擎
+ * <p>
+ * 多个生成请求共享同一个模型：调度器每一轮把所有活跃序列合并为一次批量解码
+ * （{@link MiniMindBlock#forwardBatchedDecode}）,而不是每个请求各自进行批大小为 1 的解码。
+ * 每一轮的流程:
+ * 1. 接纳:在批次未满时从等待队列取出新请求,单独预填充提示词并采样第一个 token
+ * 2. 解码:所有活跃序列的最新 token 组成 [batch, 1] 一次前向,再按序列各自采样
+ * 3. 退出:遇到结束符、达到最大生成长度、序列达到 maxSeqLen 或请求被取消的序列立即移出批次,
+ * 其 KV-Cache 归还缓存池供后续请求复用
+ * <p>
+ * 每个序列保存独立的 KV-Cache 与采样状态（温度、Top-K、Top-P、重复惩罚、已出现 token）,
+ * 因此不同长度、不同参数的请求可以同批解码,结果与单独调用 {@link MiniMindModel#generate} 一致。
+ * <p>
+ * 可选的 {@link PrefixCache} 在请求之间共享提示词前缀的 KV:接纳时挂接最长的已缓存前缀,
+ * 只预填充剩余部分;预填充和生成结束后把写满的页加入前缀缓存,供后续请求（如多轮对话的下一轮）复用。
+ * <p>
+ * 所有模型计算都在调度线程上串行执行,提交请求的线程只需等待返回的 Future。
+ * 也可以不启动调度线程,由调用方反复执行 {@link #step()} 驱动。
+ *
+ * @author leavesfly
+ * @version 1.0
+ */
+public class ContinuousBatchingEngine implements AutoCloseable {
+
+    /**
+     * 结束符 token ID
+     */
+    public static final int EOS_TOKEN_ID = 2;
+
+    private final MiniMindModel model;
+
+    private final MiniMindBlock block;
+
+    /**
+     * 同时参与解码的最大序列数
+     */
+    private final int maxBatchSize;
+
+    /**
+     * 等待接纳的请求
+     */
+    private final BlockingQueue<Sequence> pending = new LinkedBlockingQueue<>();
+
+    /**
+     * 正在解码的序列（仅由执行 step 的线程访问）
+     */
+    private final List<Sequence> active = new ArrayList<>();
+
+    /**
+     * 已退出序列归还的 KV-Cache,页面保留以便复用
+     */
+    private final Deque<List<KVCache>> cachePool = new ArrayDeque<>();
+
+    /**
+     * 跨请求共享的提示词前缀缓存（可为 null）
+     */
+    private final PrefixCache prefixCache;
+
+    private volatile boolean running;
+
+    private Thread scheduler;
+
+    /**
+     * 构造连续批处理引擎
+     *
+     * @param model        MiniMind 模型
+     * @param maxBatchSize 同时解码的最大序列数
+     */
+    public ContinuousBatchingEngine(MiniMindModel model, int maxBatchSize) {
+        this(model, maxBatchSize, null);
+    }
+
+    /**
+     * 构造带提示词前缀缓存的连续批处理引擎
+     *
+     * @param model        MiniMind 模型
+     * @param maxBatchSize 同时解码的最大序列数
+     * @param prefixCache  前缀缓存（可为 null）,只应被一个引擎使用
+     */
+    public ContinuousBatchingEngine(MiniMindModel model, int maxBatchSize, PrefixCache prefixCache) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive, got: " + maxBatchSize);
+        }
+        this.model = model;
+        this.block = model.getMiniMindBlock();
+        this.maxBatchSize = maxBatchSize;
+        this.prefixCache = prefixCache;
+    }
+
+    /**
+     * 提交生成请求
+     *
+     * @param promptTokenIds    提示词 token IDs
+     * @param maxNewTokens      最大生成 token 数量
+     * @param temperature       温度参数（0.0 = 贪婪）
+     * @param topK              Top-K 采样参数（0 表示不使用）
+     * @param topP              Top-P 采样参数（0.0 表示不使用）
+     * @param repetitionPenalty 重复惩罚系数（1.0 表示不使用）
+     * @return 完成时给出提示词加生成结果的 token IDs;取消该 Future 会在下一轮让序列退出
+     */
+    public CompletableFuture<int[]> submit(int[] promptTokenIds, int maxNewTokens, float temperature,
+                                           int topK, float topP, float repetitionPenalty) {
+        return submit(promptTokenIds, maxNewTokens, temperature, topK, topP, repetitionPenalty, null);
+    }
+
+    /**
+     * 提交生成请求,每采样出一个 token 立即回调
+     * <p>
+     * 回调在调度线程上执行,会阻塞整个批次,因此只应做入队等轻量操作;
+     * 回调抛出异常时该请求以此异常结束并移出批次,不影响其他序列。
+     *
+     * @param promptTokenIds    提示词 token IDs
+     * @param maxNewTokens      最大生成 token 数量
+     * @param temperature       温度参数（0.0 = 贪婪）
+     * @param topK              Top-K 采样参数（0 表示不使用）
+     * @param topP              Top-P 采样参数（0.0 表示不使用）
+     * @param repetitionPenalty 重复惩罚系数（1.0 表示不使用）
+     * @param onToken           新 token 回调（可为 null）,在 Future 完成之前收到全部 token
+     * @return 完成时给出提示词加生成结果的 token IDs;取消该 Future 会在下一轮让序列退出
+     */
+    public CompletableFuture<int[]> submit(int[] promptTokenIds, int maxNewTokens, float temperature,
+                                           int topK, float topP, float repetitionPenalty, IntConsumer onToken) {
+        int maxSeqLen = block.getConfig().getMaxSeqLen();
+        if (promptTokenIds == null || promptTokenIds.length == 0 || promptTokenIds.length > maxSeqLen) {
+            throw new IllegalArgumentException(String.format("Prompt length must be in [1, %d], got %d",
+                    maxSeqLen, promptTokenIds == null ? 0 : promptTokenIds.length));
+        }
+        if (maxNewTokens < 0) {
+            throw new IllegalArgumentException("maxNewTokens must be non-negative, got: " + maxNewTokens);
+        }
+        Sequence sequence = new Sequence(promptTokenIds, Math.min(promptTokenIds.length + maxNewTokens, maxSeqLen),
+                temperature, topK, topP, repetitionPenalty, onToken);
+        pending.add(sequence);
+        return sequence.future;
+    }
+
+    /**
+     * 启动后台调度线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        scheduler = new Thread(this::schedulerLoop, "minimind-batching-scheduler");
+        scheduler.setDaemon(true);
+        scheduler.start();
+    }
+
+    /**
+     * 停止调度线程,尚未完成的请求以异常结束
+     */
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = scheduler;
+            scheduler = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            IllegalStateException closed = new IllegalStateException("Engine closed");
+            failAll(closed);
+            for (Sequence sequence; (sequence = pending.poll()) != null; ) {
+                sequence.future.completeExceptionally(closed);
+            }
+        }
+    }
+
+    /**
+     * 执行一轮调度：接纳新请求、合批解码一步、移出已完成的序列
+     *
+     * @return 本轮结束后仍在解码的序列数
+     */
+    public synchronized int step() {
+        try {
+            GradMode.withNoGrad(() -> {
+                block.setTraining(false);
+                admit();
+                removeCancelled();
+                if (!active.isEmpty()) {
+                    decode();
+                }
+            });
+        } catch (RuntimeException e) {
+            // 批次中任一序列出错时整批失败,避免残留状态不一致的缓存
+            failAll(e);
+        }
+        return active.size();
+    }
+
+    /**
+     * 获取正在解码的序列数
+     */
+    public synchronized int getActiveCount() {
+        return active.size();
+    }
+
+    /**
+     * 获取等待接纳的请求数
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 获取最大批大小
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * 获取前缀缓存（未启用时为 null）
+     */
+    public PrefixCache getPrefixCache() {
+        return prefixCache;
+    }
+
+    private void schedulerLoop() {
+        while (running) {
+            try {
+                if (getActiveCount() == 0) {
+                    // 空闲时阻塞等待新请求,取到后直接接纳
+                    Sequence first = pending.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    synchronized (this) {
+                        admitSequence(first);
+                    }
+                }
+                step();
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 在批次未满时接纳等待中的请求
+     */
+    private void admit() {
+        while (active.size() < maxBatchSize) {
+            Sequence sequence = pending.poll();
+            if (sequence == null) {
+                break;
+            }
+            admitSequence(sequence);
+        }
+    }
+
+    /**
+     * 预填充提示词并采样第一个 token;立即完成的请求不进入批次
+     * <p>
+     * 启用前缀缓存时先挂接已缓存的前缀页,只对剩余 token 预填充。
+     */
+    private void admitSequence(Sequence sequence) {
+        if (sequence.future.isDone()) {
+            return;
+        }
+        if (sequence.length >= sequence.maxLength) {
+            sequence.future.complete(sequence.result());
+            return;
+        }
+        try {
+            GradMode.withNoGrad(() -> prefill(sequence));
+        } catch (RuntimeException e) {
+            retire(sequence);
+            sequence.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 为新序列分配 KV-Cache,复用前缀缓存后预填充剩余提示词并采样第一个 token
+     */
+    private void prefill(Sequence sequence) {
+        sequence.caches = cachePool.isEmpty() ? block.createKVCaches(1) : cachePool.pop();
+        int cached = 0;
+        if (prefixCache != null) {
+            sequence.prefix = prefixCache.acquire(sequence.tokens, sequence.length);
+            cached = sequence.prefix.attachTo(sequence.caches);
+        }
+        float[] prompt = new float[sequence.length - cached];
+        for (int i = 0; i < prompt.length; i++) {
+            prompt[i] = sequence.tokens[cached + i];
+        }
+        Variable logits = block.forwardWithCache(
+                new Variable(NdArray.of(prompt, Shape.of(1, prompt.length))), sequence.caches, cached);
+        if (prefixCache != null) {
+            prefixCache.insert(sequence.tokens, sequence.length, sequence.caches);
+        }
+        if (accept(sequence, model.extractLastLogits(logits.getValue()))) {
+            active.add(sequence);
+        }
+    }
+
+    /**
+     * 移出已被取消的序列,不再为其计算
+     */
+    private void removeCancelled() {
+        Iterator<Sequence> iterator = active.iterator();
+        while (iterator.hasNext()) {
+            Sequence sequence = iterator.next();
+            if (sequence.future.isDone()) {
+                retire(sequence);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 所有活跃序列合并为一次前向,各自采样下一个 token
+     */
+    private void decode() {
+        int batchSize = active.size();
+        float[] tokens = new float[batchSize];
+        int[] positions = new int[batchSize];
+        List<List<KVCache>> caches = new ArrayList<>(batchSize);
+        for (int b = 0; b < batchSize; b++) {
+            Sequence sequence = active.get(b);
+            positions[b] = sequence.length - 1;
+            tokens[b] = sequence.tokens[positions[b]];
+            caches.add(sequence.caches);
+        }
+
+        Variable logits = block.forwardBatchedDecode(
+                new Variable(NdArray.of(tokens, Shape.of(batchSize, 1))), caches, positions);
+        float[] logitsData = logits.getValue().getArray();
+        int vocabSize = logits.getValue().getShape().getShapeDims()[2];
+
+        // 每个序列的 logits 行只在本步采样时使用,从缓冲池获取,本步结束即归还供下一步复用
+        try (BufferScope scope = BufferScope.open()) {
+            Iterator<Sequence> iterator = active.iterator();
+            for (int b = 0; iterator.hasNext(); b++) {
+                Sequence sequence = iterator.next();
+                NdArray row = scope.zeros(Shape.of(vocabSize));
+                System.arraycopy(logitsData, b * vocabSize, row.getArray(), 0, vocabSize);
+                if (!accept(sequence, row)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * 按序列的采样参数选出下一个 token 并追加
+     *
+     * @return 序列是否继续解码;已完成的序列会被结束并归还缓存
+     */
+    private boolean accept(Sequence sequence, NdArray lastLogits) {
+        if (sequence.future.isDone()) {
+            // 请求已被取消
+            retire(sequence);
+            return false;
+        }
+        if (sequence.repetitionPenalty != 1.0f) {
+            lastLogits = model.applyRepetitionPenalty(lastLogits, sequence.seen, sequence.repetitionPenalty);
+        }
+        int next = model.sampleToken(lastLogits, sequence.temperature, sequence.topK, sequence.topP);
+        sequence.tokens[sequence.length++] = next;
+        sequence.seen.add(next);
+        if (sequence.onToken != null) {
+            try {
+                sequence.onToken.accept(next);
+            } catch (RuntimeException e) {
+                retire(sequence);
+                sequence.future.completeExceptionally(e);
+                return false;
+            }
+        }
+        if (next == EOS_TOKEN_ID || sequence.length >= sequence.maxLength) {
+            if (prefixCache != null) {
+                // 最后一个 token 尚未前向,缓存中只有它之前的 KV
+                prefixCache.insert(sequence.tokens, sequence.length - 1, sequence.caches);
+            }
+            retire(sequence);
+            sequence.future.complete(sequence.result());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 归还序列的 KV-Cache 并释放其引用的前缀缓存块
+     */
+    private void retire(Sequence sequence) {
+        if (sequence.prefix != null) {
+            prefixCache.release(sequence.prefix);
+            sequence.prefix = null;
+        }
+        if (sequence.caches != null) {
+            block.clearKVCaches(sequence.caches);
+            if (cachePool.size() < maxBatchSize) {
+                cachePool.push(sequence.caches);
+            }
+            sequence.caches = null;
+        }
+    }
+
+    private void failAll(RuntimeException e) {
+        for (Sequence sequence : active) {
+            retire(sequence);
+            sequence.future.completeExceptionally(e);
+        }
+        active.clear();
+    }
+
+    /**
+     * 单个生成序列的状态
+     */
+    private static final class Sequence {
+
+        final int[] tokens;
+
+        final int maxLength;
+
+        final float temperature;
+
+        final int topK;
+
+        final float topP;
+
+        final float repetitionPenalty;
+
+        /**
+         * 提示词与已生成的 token,用于重复惩罚
+         */
+        final Set<Integer> seen = new HashSet<>();
+
+        /**
+         * 新 token 回调（可为 null）
+         */
+        final IntConsumer onToken;
+
+        final CompletableFuture<int[]> future = new CompletableFuture<>();
+
+        int length;
+
+        List<KVCache> caches;
+
+        /**
+         * 引用的前缀缓存块（未启用前缀缓存时为 null）
+         */
+        PrefixCache.Match prefix;
+
+        Sequence(int[] prompt, int maxLength, float temperature, int topK, float topP, float repetitionPenalty,
+                 IntConsumer onToken) {
+            this.tokens = Arrays.copyOf(prompt, maxLength);
+            this.length = prompt.length;
+            this.maxLength = maxLength;
+            this.temperature = temperature;
+            this.topK = topK;
+            this.topP = topP;
+            this.repetitionPenalty = repetitionPenalty;
+            this.onToken = onToken;
+            for (int id : prompt) {
+                seen.add(id);
+            }
+        }
+
+        int[] result() {
+            return Arrays.copyOf(tokens, length);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import io.leavesfly.tinyai.minimind.model.embedding.TokenEmbedding;
 import io.leavesfly.tinyai.minimind.model.transformer.MiniMindTransformerLayer;
 import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.nnet.v2.container.Checkpoint;
 import io.leavesfly.tinyai.nnet.v2.core.Module;
 import io.leavesfly.tinyai.nnet.v2.layer.dnn.Linear;
 import io.leavesfly.tinyai.nnet.v2.layer.norm.LayerNorm;
@@ -69,7 +70,8 @@ public class MiniMindBlock extends Module {
         this.config = config;
 
         // 1. 创建 Token Embedding 层
-        this.tokenEmbedding = new TokenEmbedding(config.getVocabSize(), config.getHiddenSize());
+        this.tokenEmbedding = new TokenEmbedding(config.getVocabSize(), config.getHiddenSize(),
+                config.isUseOffHeapStorage());
         registerModule("token_embedding", tokenEmbedding);
 
         // 2. 创建 Transformer 层列表
@@ -129,7 +131,12 @@ public class MiniMindBlock extends Module {
         for (int i = 0; i < layers.size(); i++) {
             MiniMindTransformerLayer layer = layers.get(i);
             KVCache kvCache = (kvCaches != null && i < kvCaches.size()) ? kvCaches.get(i) : null;
-            x = layer.forwardWithCache(x, kvCache, startPos);
+            if (kvCache == null && startPos == 0 && config.isUseGradientCheckpointing()) {
+                // 梯度检查点：只保留层的输入，反向时重计算层内激活（仅无缓存的整序列前向）
+                x = Checkpoint.checkpoint(layer, x);
+            } else {
+                x = layer.forwardWithCache(x, kvCache, startPos);
+            }
         }
 
         // 3. 最终归一化
@@ -155,6 +162,30 @@ public class MiniMindBlock extends Module {
         return forwardWithCache(tokenId, kvCaches, position);
     }
 
+    /**
+     * 多序列合批的单步解码（连续批处理）
+     * <p>
+     * 每个序列各有一组 KV-Cache（批大小为 1）,序列的位置可以互不相同。
+     * Embedding、投影、前馈网络与 LM Head 对整个批次一次计算,注意力按序列读取各自的缓存。
+     *
+     * @param tokenIds  每个序列的当前 token,形状 [batch, 1]
+     * @param kvCaches  每个序列的 KV-Cache 列表（每层一个）
+     * @param positions 每个序列当前 token 的位置
+     * @return 输出 logits,形状 [batch, 1, vocab_size]
+     */
+    public Variable forwardBatchedDecode(Variable tokenIds, List<List<KVCache>> kvCaches, int[] positions) {
+        Variable x = tokenEmbedding.forward(tokenIds);
+        List<KVCache> layerCaches = new ArrayList<>(kvCaches.size());
+        for (int i = 0; i < layers.size(); i++) {
+            layerCaches.clear();
+            for (List<KVCache> sequenceCaches : kvCaches) {
+                layerCaches.add(sequenceCaches.get(i));
+            }
+            x = layers.get(i).forwardBatchedDecode(x, layerCaches, positions);
+        }
+        return lmHead.forward(finalNorm.forward(x));
+    }
+
     /**
      * 创建 KV-Cache 列表
      *
@@ -168,7 +199,8 @@ public class MiniMindBlock extends Module {
                 batchSize,
                 config.getNumHeads(),
                 config.getHiddenSize() / config.getNumHeads(),
-                config.getMaxSeqLen()
+                config.getMaxSeqLen(),
+                config.isUseOffHeapStorage()
             );
             kvCaches.add(cache);
         }
@@ -1,5 +1,7 @@
 package io.leavesfly.tinyai.minimind.model;
 
+import java.io.Serializable;
+
 /**
  * MiniMind 模型配置类
  * <p>
@@ -11,7 +13,9 @@ package io.leavesfly.tinyai.minimind.model;
  * @version 1.0
  * @since 2025-01-01
  */
-public class MiniMindConfig {
+public class MiniMindConfig implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     // ========== 基础配置 ==========
 
@@ -123,6 +127,13 @@ public class MiniMindConfig {
      */
     private boolean useGradientCheckpointing = false;
 
+    // ========== 存储相关配置 ==========
+
+    /**
+     * 是否将嵌入矩阵和 KV-Cache 放在堆外内存(降低大词表、长上下文时的堆占用和 GC 停顿)
+     */
+    private boolean useOffHeapStorage = false;
+
     // ========== 预设配置工厂方法 ==========
 
     /**
@@ -382,6 +393,9 @@ public class MiniMindConfig {
         this.useGradientCheckpointing = useGradientCheckpointing;
     }
 
+    public boolean isUseOffHeapStorage() { return useOffHeapStorage; }
+    public void setUseOffHeapStorage(boolean useOffHeapStorage) { this.useOffHeapStorage = useOffHeapStorage; }
+
     @Override
     public String toString() {
         return "MiniMindConfig{" +
@@ -2,7 +2,6 @@ package io.leavesfly.tinyai.minimind.model;
 
 import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.ml.model.Model;
-import io.leavesfly.tinyai.minimind.model.attention.KVCache;
 import io.leavesfly.tinyai.minimind.model.attention.MultiHeadAttention;
 import io.leavesfly.tinyai.minimind.model.transformer.MiniMindTransformerLayer;
 import io.leavesfly.tinyai.minimind.training.lora.LoRAConfig;
@@ -13,9 +12,11 @@ import io.leavesfly.tinyai.nnet.v2.core.Parameter;
 import io.leavesfly.tinyai.nnet.v2.layer.dnn.Linear;
 
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.IntConsumer;
 
 /**
  * MiniMind 语言模型
@@ -131,80 +132,54 @@ public class MiniMindModel extends Model {
     
     /**
      * 生成文本（带重复惩罚）
+     * <p>
+     * 与 {@link ContinuousBatchingEngine} 共用同一套预填充/解码/采样逻辑：
+     * 提示词预填充后直接用最后位置的 logits 采样第一个新 token,之后每步只输入上一步生成的 token。
+     * 序列总长度不超过 maxSeqLen。需要同时服务多个请求时应使用连续批处理引擎。
      */
     public int[] generate(int[] promptTokenIds, int maxNewTokens, 
                          float temperature, int topK, float topP, float repetitionPenalty) {
-        // 设置为推理模式
-        miniMindBlock.setTraining(false);
-
-        // 创建 KV-Cache
-        List<KVCache> kvCaches = miniMindBlock.createKVCaches(1);
-
-        // 初始化输出序列
-        int[] outputTokens = new int[promptTokenIds.length + maxNewTokens];
-        System.arraycopy(promptTokenIds, 0, outputTokens, 0, promptTokenIds.length);
+        return generate(promptTokenIds, maxNewTokens, temperature, topK, topP, repetitionPenalty, null);
+    }
 
-        int currentLen = promptTokenIds.length;
-        
-        // 记录已生成的 token 用于重复惩罚
-        Set<Integer> generatedTokens = new HashSet<>();
-        for (int id : promptTokenIds) {
-            generatedTokens.add(id);
+    /**
+     * 生成文本,每采样出一个 token 立即回调（流式输出）
+     *
+     * @param onToken 新 token 回调（可为 null）,在当前线程上按生成顺序调用,抛出异常会中止生成
+     * @return 生成的完整 token IDs（提示词 + 新 token）
+     */
+    public int[] generate(int[] promptTokenIds, int maxNewTokens, float temperature, int topK,
+                          float topP, float repetitionPenalty, IntConsumer onToken) {
+        ContinuousBatchingEngine engine = new ContinuousBatchingEngine(this, 1);
+        CompletableFuture<int[]> result = engine.submit(promptTokenIds, maxNewTokens,
+                temperature, topK, topP, repetitionPenalty, onToken);
+        while (!result.isDone()) {
+            engine.step();
         }
-
-        // 首次前向传播（处理完整提示词）
-        NdArray promptNdArray = createTokenIdsArray(promptTokenIds);
-        Variable promptVar = new Variable(promptNdArray);
-        miniMindBlock.forwardWithCache(promptVar, kvCaches, 0);
-
-        // 自回归生成
-        for (int i = 0; i < maxNewTokens; i++) {
-            int position = currentLen;
-
-            // 获取当前最后一个 token
-            int lastToken = outputTokens[currentLen - 1];
-            NdArray tokenNdArray = NdArray.of(new float[]{lastToken}, Shape.of(1, 1));
-            Variable tokenVar = new Variable(tokenNdArray);
-
-            // 前向传播（仅处理新 token）
-            Variable logits = miniMindBlock.forwardGeneration(tokenVar, kvCaches, position);
-
-            // 获取最后一个位置的 logits: [1, vocab_size]
-            NdArray lastLogits = extractLastLogits(logits.getValue());
-
-            // 应用重复惩罚
-            if (repetitionPenalty != 1.0f) {
-                lastLogits = applyRepetitionPenalty(lastLogits, generatedTokens, repetitionPenalty);
-            }
-
-            // 采样下一个 token
-            int nextToken = sampleToken(lastLogits, temperature, topK, topP);
-
-            // 添加到输出序列
-            outputTokens[currentLen] = nextToken;
-            currentLen++;
-            generatedTokens.add(nextToken);
-
-            // 检查是否遇到结束符（假设 EOS token ID 为 2）
-            if (nextToken == 2) {
-                break;
-            }
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw TokenStream.unwrap(e);
         }
+    }
 
-        // 截取有效部分
-        int[] result = new int[currentLen];
-        System.arraycopy(outputTokens, 0, result, 0, currentLen);
-
-        // 清空缓存
-        miniMindBlock.clearKVCaches(kvCaches);
-
-        return result;
+    /**
+     * 以迭代器形式逐个取出新生成的 token
+     * <p>
+     * 生成是惰性的：每次 hasNext 只在缓冲为空时推进一步解码,调用方可以随时 close 放弃剩余生成。
+     *
+     * @return 新 token 的迭代器（不含提示词）
+     */
+    public TokenStream generateStream(int[] promptTokenIds, int maxNewTokens, float temperature,
+                                      int topK, float topP, float repetitionPenalty) {
+        return new TokenStream(new ContinuousBatchingEngine(this, 1),
+                promptTokenIds, maxNewTokens, temperature, topK, topP, repetitionPenalty);
     }
-    
+
     /**
      * 应用重复惩罚
      */
-    private NdArray applyRepetitionPenalty(NdArray logits, Set<Integer> generatedTokens, float penalty) {
+    NdArray applyRepetitionPenalty(NdArray logits, Set<Integer> generatedTokens, float penalty) {
         float[] logitsArray = logits.getArray().clone();
         
         for (int tokenId : generatedTokens) {
@@ -220,27 +195,13 @@ public class MiniMindModel extends Model {
         return NdArray.of(logitsArray, logits.getShape());
     }
 
-    /**
-     * 创建 token IDs 的 NdArray
-     *
-     * @param tokenIds Token IDs 数组
-     * @return NdArray,形状 [1, seq_len]
-     */
-    private NdArray createTokenIdsArray(int[] tokenIds) {
-        float[] data = new float[tokenIds.length];
-        for (int i = 0; i < tokenIds.length; i++) {
-            data[i] = tokenIds[i];
-        }
-        return NdArray.of(data, Shape.of(1, tokenIds.length));
-    }
-
     /**
      * 提取最后一个位置的 logits
      *
      * @param logits 完整 logits,形状 [batch, seq_len, vocab_size]
      * @return 最后位置的 logits,形状 [vocab_size]
      */
-    private NdArray extractLastLogits(NdArray logits) {
+    NdArray extractLastLogits(NdArray logits) {
         int[] shape = logits.getShape().getShapeDims();
         int batchSize = shape[0];
         int seqLen = shape[1];
@@ -265,7 +226,7 @@ public class MiniMindModel extends Model {
      * @param topP        Top-P 参数
      * @return 采样的 token ID
      */
-    private int sampleToken(NdArray logits, float temperature, int topK, float topP) {
+    int sampleToken(NdArray logits, float temperature, int topK, float topP) {
         float[] logitsArray = logits.getArray();
 
         // 应用温度
@@ -0,0 +1,346 @@
+package io.leavesfly.tinyai.minimind.model;
+
+import io.leavesfly.tinyai.minimind.model.attention.KVCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * 跨请求共享的提示词前缀 KV 缓存
+ * <p>
+ * 多轮对话和模板化提示词的开头（系统提示词、历史消息）在各请求之间完全相同,
+ * 预填充时重复计算这部分 KV 是浪费。本缓存按 {@link KVCache#PAGE_SIZE} 个 token 一块保存每层的 K、V 页:
+ * - 块以「父块 + 本块 token」为键,相当于按页组织的前缀树,同一前缀只保存一份
+ * - 新请求从头逐块匹配最长的已缓存前缀,直接挂接这些页,只对剩余 token 预填充
+ * - 页以写时复制方式共享（见 {@link KVCache#attachSharedPages}）,并发请求读取同一份数据
+ * - 按最近最少使用（LRU）淘汰,总大小不超过 maxBytes;被活跃请求引用（引用计数大于 0）的块不会被淘汰
+ * - 只淘汰没有子块的叶子块:子块以父块 ID 为键,父块先被淘汰会使子块再也无法匹配却继续占用空间
+ * <p>
+ * 只缓存写满的整页,并且至少保留提示词的最后一个 token 做预填充,以便得到下一个 token 的 logits。
+ *
+ * @author leavesfly
+ * @version 1.0
+ */
+public class PrefixCache {
+
+    /**
+     * 每块的 token 数
+     */
+    public static final int BLOCK_SIZE = KVCache.PAGE_SIZE;
+
+    /**
+     * 缓存总大小上限（字节）
+     */
+    private final long maxBytes;
+
+    /**
+     * 按访问顺序排列的块,最久未使用的在最前面
+     */
+    private final LinkedHashMap<BlockKey, Block> blocks = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long usedBytes;
+
+    private long nextBlockId = 1;
+
+    /**
+     * 统计：查询的提示词 token 数与命中（免预填充）的 token 数
+     */
+    private long queriedTokens;
+
+    private long hitTokens;
+
+    /**
+     * 构造前缀缓存
+     *
+     * @param maxBytes 缓存总大小上限（字节）
+     */
+    public PrefixCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive, got: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 查找最长的已缓存前缀并增加这些块的引用计数
+     * <p>
+     * 使用完毕（请求结束）后必须调用 {@link #release} 释放。
+     *
+     * @param tokens 提示词 token IDs
+     * @param length 提示词长度
+     * @return 匹配结果,可能不包含任何块
+     */
+    public synchronized Match acquire(int[] tokens, int length) {
+        queriedTokens += length;
+        // 至少留一个 token 做预填充
+        int maxBlocks = (length - 1) / BLOCK_SIZE;
+        List<Block> matched = new ArrayList<>();
+        long parentId = 0;
+        for (int i = 0; i < maxBlocks; i++) {
+            Block block = blocks.get(new BlockKey(parentId, tokens, i * BLOCK_SIZE));
+            if (block == null) {
+                break;
+            }
+            block.refCount++;
+            matched.add(block);
+            parentId = block.id;
+        }
+        // 按从后往前的顺序再访问一次,使父块比子块更晚被淘汰
+        for (int i = matched.size() - 1; i >= 0; i--) {
+            blocks.get(matched.get(i).key);
+        }
+        hitTokens += (long) matched.size() * BLOCK_SIZE;
+        return new Match(matched);
+    }
+
+    /**
+     * 释放 {@link #acquire} 得到的块引用
+     *
+     * @param match 匹配结果
+     */
+    public synchronized void release(Match match) {
+        for (Block block : match.blocks) {
+            block.refCount--;
+        }
+        match.blocks = Collections.emptyList();
+    }
+
+    /**
+     * 把序列前 length 个 token 中写满的页加入缓存（已存在的块只更新访问顺序）
+     *
+     * @param tokens   序列 token IDs
+     * @param length   KV 已写入缓存的 token 数
+     * @param kvCaches 序列的 KV-Cache（每层一个）
+     */
+    public synchronized void insert(int[] tokens, int length, List<KVCache> kvCaches) {
+        int fullBlocks = Math.min(length, kvCaches.get(0).getCurrentSeqLen()) / BLOCK_SIZE;
+        Block parent = null;
+        for (int i = 0; i < fullBlocks; i++) {
+            BlockKey key = new BlockKey(parent == null ? 0 : parent.id, tokens, i * BLOCK_SIZE);
+            Block block = blocks.get(key);
+            if (block == null) {
+                float[][] keyPages = new float[kvCaches.size()][];
+                float[][] valuePages = new float[kvCaches.size()][];
+                for (int layer = 0; layer < kvCaches.size(); layer++) {
+                    float[][] page = kvCaches.get(layer).sharePage(i);
+                    keyPages[layer] = page[0];
+                    valuePages[layer] = page[1];
+                }
+                block = new Block(nextBlockId++, key, parent, keyPages, valuePages);
+                // 先登记子块,使父块在腾空间时不会被当作叶子淘汰
+                if (parent != null) {
+                    parent.childCount++;
+                }
+                if (!reserve(block.bytes)) {
+                    if (parent != null) {
+                        parent.childCount--;
+                    }
+                    return;
+                }
+                blocks.put(key, block);
+                usedBytes += block.bytes;
+            }
+            parent = block;
+        }
+    }
+
+    /**
+     * 按最久未使用的顺序淘汰空闲的叶子块,为新块腾出空间
+     * <p>
+     * 淘汰子块后父块可能成为叶子,因此空间不足时会重新扫描,直到空间足够或没有可淘汰的块。
+     *
+     * @return 是否有足够的空间
+     */
+    private boolean reserve(long bytes) {
+        if (bytes > maxBytes) {
+            return false;
+        }
+        boolean evicted = true;
+        while (usedBytes + bytes > maxBytes && evicted) {
+            evicted = false;
+            Iterator<Block> iterator = blocks.values().iterator();
+            while (usedBytes + bytes > maxBytes && iterator.hasNext()) {
+                Block block = iterator.next();
+                if (block.refCount == 0 && block.childCount == 0) {
+                    iterator.remove();
+                    usedBytes -= block.bytes;
+                    if (block.parent != null) {
+                        block.parent.childCount--;
+                    }
+                    evicted = true;
+                }
+            }
+        }
+        return usedBytes + bytes <= maxBytes;
+    }
+
+    /**
+     * 清空缓存（仍被请求引用的页由请求继续持有）
+     */
+    public synchronized void clear() {
+        blocks.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * 获取缓存的块数
+     */
+    public synchronized int getBlockCount() {
+        return blocks.size();
+    }
+
+    /**
+     * 获取缓存占用的字节数
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * 获取缓存总大小上限（字节）
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * 获取命中率：免于预填充的 token 数占查询 token 总数的比例
+     */
+    public synchronized double getHitRate() {
+        return queriedTokens == 0 ? 0.0 : (double) hitTokens / queriedTokens;
+    }
+
+    /**
+     * 获取命中（免于预填充）的 token 总数
+     */
+    public synchronized long getHitTokens() {
+        return hitTokens;
+    }
+
+    /**
+     * 前缀匹配结果：按顺序排列的已缓存块
+     */
+    public static final class Match {
+
+        private List<Block> blocks;
+
+        private Match(List<Block> blocks) {
+            this.blocks = blocks;
+        }
+
+        /**
+         * 匹配的 token 数
+         */
+        public int getTokenCount() {
+            return blocks.size() * BLOCK_SIZE;
+        }
+
+        /**
+         * 把匹配的页挂接到空的 KV-Cache 上
+         *
+         * @param kvCaches 序列的 KV-Cache（每层一个）
+         * @return 挂接的 token 数,即后续预填充的起始位置
+         */
+        public int attachTo(List<KVCache> kvCaches) {
+            if (blocks.isEmpty()) {
+                return 0;
+            }
+            for (int layer = 0; layer < kvCaches.size(); layer++) {
+                float[][] keys = new float[blocks.size()][];
+                float[][] values = new float[blocks.size()][];
+                for (int i = 0; i < blocks.size(); i++) {
+                    keys[i] = blocks.get(i).keyPages[layer];
+                    values[i] = blocks.get(i).valuePages[layer];
+                }
+                kvCaches.get(layer).attachSharedPages(keys, values);
+            }
+            return getTokenCount();
+        }
+    }
+
+    /**
+     * 缓存块：一页 token 在每层的 K、V
+     */
+    private static final class Block {
+
+        final long id;
+
+        final BlockKey key;
+
+        /**
+         * 前一页的块,null 表示序列开头
+         */
+        final Block parent;
+
+        /**
+         * 每层的 Key/Value 页（只读）
+         */
+        final float[][] keyPages;
+
+        final float[][] valuePages;
+
+        final long bytes;
+
+        /**
+         * 正在使用该块的请求数
+         */
+        int refCount;
+
+        /**
+         * 缓存中以该块为父块的块数,不为 0 时不能淘汰
+         */
+        int childCount;
+
+        Block(long id, BlockKey key, Block parent, float[][] keyPages, float[][] valuePages) {
+            this.id = id;
+            this.key = key;
+            this.parent = parent;
+            this.keyPages = keyPages;
+            this.valuePages = valuePages;
+            long floats = 0;
+            for (int layer = 0; layer < keyPages.length; layer++) {
+                floats += keyPages[layer].length + valuePages[layer].length;
+            }
+            this.bytes = floats * Float.BYTES;
+        }
+    }
+
+    /**
+     * 块的键：父块 ID（0 表示序列开头）与本块的 token
+     */
+    private static final class BlockKey {
+
+        final long parentId;
+
+        final int[] tokens;
+
+        final int hash;
+
+        BlockKey(long parentId, int[] sequence, int from) {
+            this.parentId = parentId;
+            this.tokens = Arrays.copyOfRange(sequence, from, from + BLOCK_SIZE);
+            this.hash = 31 * Long.hashCode(parentId) + Arrays.hashCode(tokens);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BlockKey)) {
+                return false;
+            }
+            BlockKey other = (BlockKey) o;
+            return parentId == other.parentId && Arrays.equals(tokens, other.tokens);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package io.leavesfly.tinyai.minimind.model;
+
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 逐 token 输出的生成结果
+ * <p>
+ * 由 {@link MiniMindModel#generateStream} 创建,持有一个批大小为 1 的 {@link ContinuousBatchingEngine}。
+ * 不启动调度线程：hasNext 在缓冲为空时于调用线程上推进一步解码,因此首个 token 在预填充完成后即可取得。
+ * <p>
+ * 使用示例:
+ * <pre>
+ * try (TokenStream stream = model.generateStream(prompt, 50, 0.7f, 0, 0.9f, 1.2f)) {
+ *     while (stream.hasNext()) {
+ *         System.out.print(tokenizer.decode(List.of(stream.nextInt()), true));
+ *     }
+ * }
+ * </pre>
+ *
+ * @author leavesfly
+ * @version 1.0
+ */
+public class TokenStream implements PrimitiveIterator.OfInt, AutoCloseable {
+
+    private final ContinuousBatchingEngine engine;
+
+    private final CompletableFuture<int[]> result;
+
+    /**
+     * 已生成但尚未取出的 token
+     */
+    private final Queue<Integer> buffer = new ArrayDeque<>();
+
+    TokenStream(ContinuousBatchingEngine engine, int[] promptTokenIds, int maxNewTokens, float temperature,
+                int topK, float topP, float repetitionPenalty) {
+        this.engine = engine;
+        this.result = engine.submit(promptTokenIds, maxNewTokens, temperature, topK, topP,
+                repetitionPenalty, buffer::add);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (buffer.isEmpty() && !result.isDone()) {
+            engine.step();
+        }
+        if (buffer.isEmpty() && result.isCompletedExceptionally() && !result.isCancelled()) {
+            try {
+                result.join();
+            } catch (CompletionException e) {
+                throw unwrap(e);
+            }
+        }
+        return !buffer.isEmpty();
+    }
+
+    @Override
+    public int nextInt() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return buffer.poll();
+    }
+
+    /**
+     * 是否已生成完毕（缓冲中可能仍有未取出的 token）
+     */
+    public boolean isFinished() {
+        return result.isDone();
+    }
+
+    /**
+     * 取出剩余 token 后返回完整序列（提示词 + 新 token）
+     *
+     * @return 完整 token IDs
+     * @throws CancellationException 生成已被 close 取消
+     */
+    public int[] getResult() {
+        while (hasNext()) {
+            nextInt();
+        }
+        return result.join();
+    }
+
+    /**
+     * 放弃剩余生成并释放 KV-Cache
+     */
+    @Override
+    public void close() {
+        if (result.cancel(false)) {
+            engine.step();
+        }
+        buffer.clear();
+    }
+
+    /**
+     * 取出 Future 异常中的原始运行时异常
+     */
+    static RuntimeException unwrap(CompletionException e) {
+        return e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+    }
+}
@@ -2,6 +2,11 @@ package io.leavesfly.tinyai.minimind.model.attention;
 
 import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.ndarr.cpu.pool.BufferScope;
+import io.leavesfly.tinyai.ndarr.offheap.OffHeapBuffer;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 /**
  * KV-Cache 增量推理缓存管理
@@ -11,32 +16,47 @@ import io.leavesfly.tinyai.ndarr.Shape;
  * - 支持增量添加新 token 的 K、V
  * - 动态维护缓存序列长度
  * <p>
+ * 存储结构：
+ * - 按固定大小的页（{@link #PAGE_SIZE} 个 token）分配，页在首次写入时才创建，之后一直复用，
+ *   生成过程中不再为拼接历史分配新数组
+ * - 所有页组成容量为 maxCacheLen 的环形缓冲区：新 token 原地写入，超出最大长度时覆盖最旧的位置（滑动窗口）
+ * - 注意力直接按页读取缓存计算（{@link #attention}），不把历史拼接为连续数组
+ * - 可选堆外存储：页分配在堆外，计算时逐页读入线程内的临时缓冲区
+ * - 写满的页可以与其他缓存共享（{@link #sharePage} / {@link #attachSharedPages}），
+ *   共享页只读，需要写入时先复制（写时复制）
+ * <p>
  * 应用场景：
  * - 自回归文本生成
  * - 减少重复的注意力计算开销
+ * <p>
+ * nnet中的 {@link io.leavesfly.tinyai.nnet.v2.layer.transformer.KVCache} 是不分页的连续缓存，
+ * 供其他模型的注意力层使用；两者的分工见该类的说明。
  *
  * @author leavesfly
- * @version 1.0
+ * @version 2.0
  */
 public class KVCache {
 
     /**
-     * 缓存的 Key 向量
-     * Shape: [batchSize, numHeads, seqLen, headDim]
+     * 每页容纳的 token 数
      */
-    private NdArray cachedK;
+    public static final int PAGE_SIZE = 64;
 
     /**
-     * 缓存的 Value 向量
-     * Shape: [batchSize, numHeads, seqLen, headDim]
+     * 注意力计算启用多线程的最小计算量（批次×头数×查询数×缓存长度×头维度）
      */
-    private NdArray cachedV;
+    private static final long PARALLEL_THRESHOLD = 1L << 18;
 
     /**
      * 当前缓存的序列长度
      */
     private int currentSeqLen;
 
+    /**
+     * 最旧 token 所在的环形位置
+     */
+    private int start;
+
     /**
      * 批次大小
      */
@@ -57,6 +77,28 @@ public class KVCache {
      */
     private final int maxCacheLen;
 
+    /**
+     * 每页的元素数，页内布局为 [batchSize * numHeads, PAGE_SIZE, headDim]
+     */
+    private final int pageFloats;
+
+    /**
+     * 堆内存储的 Key/Value 页；堆外模式下为 null
+     */
+    private final float[][] keyPages;
+    private final float[][] valuePages;
+
+    /**
+     * 堆内页是否与其他缓存共享（只读）；堆外模式下为 null
+     */
+    private final boolean[] sharedPages;
+
+    /**
+     * 堆外存储的 Key/Value 页；堆内模式下为 null
+     */
+    private OffHeapBuffer[] offHeapKeyPages;
+    private OffHeapBuffer[] offHeapValuePages;
+
     /**
      * 构造 KVCache
      *
@@ -66,134 +108,369 @@ public class KVCache {
      * @param maxCacheLen 最大缓存序列长度
      */
     public KVCache(int batchSize, int numHeads, int headDim, int maxCacheLen) {
+        this(batchSize, numHeads, headDim, maxCacheLen, false);
+    }
+
+    /**
+     * 构造 KVCache
+     *
+     * @param batchSize   批次大小
+     * @param numHeads    注意力头数
+     * @param headDim     每个头的维度
+     * @param maxCacheLen 最大缓存序列长度
+     * @param offHeap     是否使用堆外存储
+     */
+    public KVCache(int batchSize, int numHeads, int headDim, int maxCacheLen, boolean offHeap) {
+        if (maxCacheLen <= 0) {
+            throw new IllegalArgumentException("maxCacheLen must be positive: " + maxCacheLen);
+        }
         this.batchSize = batchSize;
         this.numHeads = numHeads;
         this.headDim = headDim;
         this.maxCacheLen = maxCacheLen;
-        this.currentSeqLen = 0;
-        this.cachedK = null;
-        this.cachedV = null;
+        this.pageFloats = batchSize * numHeads * PAGE_SIZE * headDim;
+        int pageCount = (maxCacheLen + PAGE_SIZE - 1) / PAGE_SIZE;
+        if (offHeap) {
+            this.keyPages = null;
+            this.valuePages = null;
+            this.offHeapKeyPages = new OffHeapBuffer[pageCount];
+            this.offHeapValuePages = new OffHeapBuffer[pageCount];
+            this.sharedPages = null;
+        } else {
+            this.keyPages = new float[pageCount][];
+            this.valuePages = new float[pageCount][];
+            this.sharedPages = new boolean[pageCount];
+        }
     }
 
     /**
-     * 更新缓存：添加新的 K、V
+     * 更新缓存：添加新的 K、V，并返回更新后的完整 K、V
+     * <p>
+     * 返回值是按时间顺序拷贝出的连续数组，仅用于需要显式历史的场景；
+     * 注意力计算应使用 {@link #append} + {@link #attention}，不产生拷贝。
      *
      * @param newK 新的 Key 向量，Shape: [batchSize, numHeads, newSeqLen, headDim]
      * @param newV 新的 Value 向量，Shape: [batchSize, numHeads, newSeqLen, headDim]
      * @return 更新后的完整 K、V 数组
      */
     public NdArray[] update(NdArray newK, NdArray newV) {
-        if (cachedK == null || cachedV == null) {
-            // 首次初始化缓存
-            cachedK = newK;
-            cachedV = newV;
-            currentSeqLen = newK.getShape().getShapeDims()[2];
-        } else {
-            // 拼接新的 K、V 到缓存
-            cachedK = concatenateSeqDim(cachedK, newK);
-            cachedV = concatenateSeqDim(cachedV, newV);
-            currentSeqLen += newK.getShape().getShapeDims()[2];
-
-            // 如果超出最大长度，截断旧数据
-            if (currentSeqLen > maxCacheLen) {
-                int excessLen = currentSeqLen - maxCacheLen;
-                cachedK = sliceSeqDim(cachedK, excessLen, maxCacheLen);
-                cachedV = sliceSeqDim(cachedV, excessLen, maxCacheLen);
-                currentSeqLen = maxCacheLen;
+        append(newK, newV);
+        return new NdArray[]{getCachedK(), getCachedV()};
+    }
+
+    /**
+     * 原地追加新的 K、V
+     * <p>
+     * 超出最大长度时覆盖最旧的 token；新数据本身超过最大长度时只保留最后 maxCacheLen 个位置。
+     *
+     * @param newK 新的 Key 向量，Shape: [batchSize, numHeads, newSeqLen, headDim]
+     * @param newV 新的 Value 向量，Shape: [batchSize, numHeads, newSeqLen, headDim]
+     */
+    public void append(NdArray newK, NdArray newV) {
+        int[] newShape = newK.getShape().getShapeDims();
+        if (newShape.length != 4 || newShape[0] != batchSize || newShape[1] != numHeads || newShape[3] != headDim
+                || !newK.getShape().equals(newV.getShape())) {
+            throw new IllegalArgumentException(String.format(
+                "KVCache expects [%d, %d, *, %d], got K %s, V %s",
+                batchSize, numHeads, headDim, newK.getShape(), newV.getShape()));
+        }
+        int newSeqLen = newShape[2];
+        float[] kData = newK.getArray();
+        float[] vData = newV.getArray();
+
+        int skip = Math.max(0, newSeqLen - maxCacheLen);
+        for (int s = skip; s < newSeqLen; s++) {
+            int slot;
+            if (currentSeqLen < maxCacheLen) {
+                slot = (start + currentSeqLen) % maxCacheLen;
+                currentSeqLen++;
+            } else {
+                // 缓存已满：覆盖最旧的位置
+                slot = start;
+                start = (start + 1) % maxCacheLen;
             }
+            writeSlot(slot, kData, vData, s, newSeqLen);
         }
+    }
+
+    /**
+     * 把第 s 个新 token 的所有 (批次, 头) 写入环形位置 slot
+     */
+    private void writeSlot(int slot, float[] kData, float[] vData, int s, int newSeqLen) {
+        int page = slot / PAGE_SIZE;
+        int offset = slot % PAGE_SIZE;
+        ensurePage(page);
+        for (int bh = 0; bh < batchSize * numHeads; bh++) {
+            int src = (bh * newSeqLen + s) * headDim;
+            int dst = (bh * PAGE_SIZE + offset) * headDim;
+            if (keyPages != null) {
+                System.arraycopy(kData, src, keyPages[page], dst, headDim);
+                System.arraycopy(vData, src, valuePages[page], dst, headDim);
+            } else {
+                offHeapKeyPages[page].write(dst, kData, src, headDim);
+                offHeapValuePages[page].write(dst, vData, src, headDim);
+            }
+        }
+    }
 
-        return new NdArray[]{cachedK, cachedV};
+    private void ensurePage(int page) {
+        if (keyPages != null) {
+            if (keyPages[page] == null) {
+                keyPages[page] = new float[pageFloats];
+                valuePages[page] = new float[pageFloats];
+            } else if (sharedPages[page]) {
+                // 写时复制：共享页可能被其他缓存读取
+                keyPages[page] = keyPages[page].clone();
+                valuePages[page] = valuePages[page].clone();
+                sharedPages[page] = false;
+            }
+        } else if (offHeapKeyPages[page] == null) {
+            offHeapKeyPages[page] = OffHeapBuffer.allocate(pageFloats);
+            offHeapValuePages[page] = OffHeapBuffer.allocate(pageFloats);
+        }
     }
 
     /**
-     * 在序列维度(dim=2)上拼接两个 NdArray
+     * 以缓存中的 K、V 计算缩放点积注意力（推理用，不构建计算图）
+     * <p>
+     * 查询对应缓存中最后 qLen 个 token（即调用前刚 {@link #append} 的部分），
+     * 第 i 个查询只能看到缓存中不晚于它自身的位置（因果掩码）。
+     * 按页直接读取缓存，各 (批次, 头) 之间并行计算。
      *
-     * @param cached 已缓存的数据
-     * @param newData 新数据
-     * @return 拼接后的数组
+     * @param q     Query，Shape: [batchSize, numHeads, qLen, headDim]
+     * @param scale 注意力分数的缩放系数，通常为 1/sqrt(headDim)
+     * @return 注意力输出，Shape: [batchSize, numHeads, qLen, headDim]
      */
-    private NdArray concatenateSeqDim(NdArray cached, NdArray newData) {
-        int[] cachedShape = cached.getShape().getShapeDims();
-        int[] newShape = newData.getShape().getShapeDims();
+    public NdArray attention(NdArray q, float scale) {
+        int[] qShape = q.getShape().getShapeDims();
+        if (qShape.length != 4 || qShape[0] != batchSize || qShape[1] != numHeads || qShape[3] != headDim) {
+            throw new IllegalArgumentException(String.format(
+                "KVCache attention expects query [%d, %d, *, %d], got %s", batchSize, numHeads, headDim, q.getShape()));
+        }
+        int qLen = qShape[2];
+        if (qLen > currentSeqLen) {
+            throw new IllegalStateException(String.format(
+                "Query length %d exceeds cached length %d; append K/V before attention", qLen, currentSeqLen));
+        }
+        float[] qData = q.getArray();
+        float[] output = new float[qData.length];
+        int heads = batchSize * numHeads;
 
-        int batch = cachedShape[0];
-        int heads = cachedShape[1];
-        int oldSeqLen = cachedShape[2];
-        int newSeqLen = newShape[2];
-        int dim = cachedShape[3];
-
-        int totalSeqLen = oldSeqLen + newSeqLen;
-
-        // 创建拼接后的数组
-        float[] result = new float[batch * heads * totalSeqLen * dim];
-        float[] cachedData = ((io.leavesfly.tinyai.ndarr.cpu.NdArrayCpu) cached).buffer;
-        float[] newDataArr = ((io.leavesfly.tinyai.ndarr.cpu.NdArrayCpu) newData).buffer;
-
-        // 按序列维度拼接
-        for (int b = 0; b < batch; b++) {
-            for (int h = 0; h < heads; h++) {
-                for (int s = 0; s < oldSeqLen; s++) {
-                    for (int d = 0; d < dim; d++) {
-                        int srcIdx = ((b * heads + h) * oldSeqLen + s) * dim + d;
-                        int dstIdx = ((b * heads + h) * totalSeqLen + s) * dim + d;
-                        result[dstIdx] = cachedData[srcIdx];
+        IntStream range = IntStream.range(0, heads);
+        long work = (long) heads * qLen * currentSeqLen * headDim;
+        if (work >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1 && heads > 1) {
+            range = range.parallel();
+        }
+        range.forEach(bh -> attendHead(bh, qData, qLen, scale, output));
+        return NdArray.of(output, Shape.of(batchSize, numHeads, qLen, headDim));
+    }
+
+    /**
+     * 计算一个 (批次, 头) 上所有查询的注意力
+     */
+    private void attendHead(int bh, float[] qData, int qLen, float scale, float[] output) {
+        int len = currentSeqLen;
+        // 分数缓冲按缓存容量申请，长度不随解码步变化，各步可从缓冲池复用；作用域在执行该头的线程上打开和关闭
+        try (BufferScope scope = BufferScope.open()) {
+            float[] scores = scope.allocate(maxCacheLen);
+            float[] kScratch = keyPages == null ? scope.allocate(PAGE_SIZE * headDim) : null;
+            float[] vScratch = keyPages == null ? scope.allocate(PAGE_SIZE * headDim) : null;
+            int pageBase = bh * PAGE_SIZE * headDim;
+
+            for (int i = 0; i < qLen; i++) {
+                int qBase = (bh * qLen + i) * headDim;
+                // 第 i 个查询位于缓存的第 len - qLen + i 个位置，只能看到它之前（含）的 token
+                int visible = len - qLen + i + 1;
+
+                // 分数：q · k
+                float max = Float.NEGATIVE_INFINITY;
+                for (int j = 0; j < visible; ) {
+                    int slot = (start + j) % maxCacheLen;
+                    int page = slot / PAGE_SIZE;
+                    int offset = slot % PAGE_SIZE;
+                    int count = Math.min(Math.min(PAGE_SIZE - offset, maxCacheLen - slot), visible - j);
+                    float[] keys = pageData(keyPages, offHeapKeyPages, page, pageBase, offset, count, kScratch);
+                    int base = keys == kScratch ? 0 : pageBase + offset * headDim;
+                    for (int t = 0; t < count; t++, j++) {
+                        float dot = 0f;
+                        int kBase = base + t * headDim;
+                        for (int d = 0; d < headDim; d++) {
+                            dot += qData[qBase + d] * keys[kBase + d];
+                        }
+                        float score = dot * scale;
+                        scores[j] = score;
+                        if (score > max) {
+                            max = score;
+                        }
                     }
                 }
-                for (int s = 0; s < newSeqLen; s++) {
-                    for (int d = 0; d < dim; d++) {
-                        int srcIdx = ((b * heads + h) * newSeqLen + s) * dim + d;
-                        int dstIdx = ((b * heads + h) * totalSeqLen + (oldSeqLen + s)) * dim + d;
-                        result[dstIdx] = newDataArr[srcIdx];
+
+                float sum = 0f;
+                for (int j = 0; j < visible; j++) {
+                    scores[j] = (float) Math.exp(scores[j] - max);
+                    sum += scores[j];
+                }
+                float inv = 1f / sum;
+
+                // 输出：Σ p_j · v_j
+                int outBase = qBase;
+                for (int j = 0; j < visible; ) {
+                    int slot = (start + j) % maxCacheLen;
+                    int page = slot / PAGE_SIZE;
+                    int offset = slot % PAGE_SIZE;
+                    int count = Math.min(Math.min(PAGE_SIZE - offset, maxCacheLen - slot), visible - j);
+                    float[] values = pageData(valuePages, offHeapValuePages, page, pageBase, offset, count, vScratch);
+                    int base = values == vScratch ? 0 : pageBase + offset * headDim;
+                    for (int t = 0; t < count; t++, j++) {
+                        float p = scores[j] * inv;
+                        int vBase = base + t * headDim;
+                        for (int d = 0; d < headDim; d++) {
+                            output[outBase + d] += p * values[vBase + d];
+                        }
                     }
                 }
             }
         }
+    }
 
-        return NdArray.of(result, Shape.of(batch, heads, totalSeqLen, dim));
+    /**
+     * 获取页中 [offset, offset + count) 的数据：堆内直接返回页数组，堆外读入临时缓冲区
+     */
+    private float[] pageData(float[][] heapPages, OffHeapBuffer[] offHeapPages, int page,
+                             int pageBase, int offset, int count, float[] scratch) {
+        if (heapPages != null) {
+            return heapPages[page];
+        }
+        offHeapPages[page].read(pageBase + offset * headDim, scratch, 0, count * headDim);
+        return scratch;
     }
 
     /**
-     * 在序列维度上切片
-     *
-     * @param data 原始数据
-     * @param start 起始位置
-     * @param end 结束位置
-     * @return 切片后的数组
-     */
-    private NdArray sliceSeqDim(NdArray data, int start, int end) {
-        int[] shape = data.getShape().getShapeDims();
-        int batch = shape[0];
-        int heads = shape[1];
-        int seqLen = shape[2];
-        int dim = shape[3];
-
-        int newSeqLen = end - start;
-        float[] result = new float[batch * heads * newSeqLen * dim];
-        float[] srcData = ((io.leavesfly.tinyai.ndarr.cpu.NdArrayCpu) data).buffer;
-
-        for (int b = 0; b < batch; b++) {
-            for (int h = 0; h < heads; h++) {
-                for (int s = start; s < end; s++) {
-                    for (int d = 0; d < dim; d++) {
-                        int srcIdx = ((b * heads + h) * seqLen + s) * dim + d;
-                        int dstIdx = ((b * heads + h) * newSeqLen + (s - start)) * dim + d;
-                        result[dstIdx] = srcData[srcIdx];
-                    }
+     * 将当前缓存按时间顺序拷贝为 [batchSize, numHeads, currentSeqLen, headDim] 的连续数组
+     */
+    private NdArray materialize(float[][] heapPages, OffHeapBuffer[] offHeapPages) {
+        float[] result = new float[batchSize * numHeads * currentSeqLen * headDim];
+        for (int bh = 0; bh < batchSize * numHeads; bh++) {
+            int pageBase = bh * PAGE_SIZE * headDim;
+            for (int j = 0; j < currentSeqLen; ) {
+                int slot = (start + j) % maxCacheLen;
+                int page = slot / PAGE_SIZE;
+                int offset = slot % PAGE_SIZE;
+                int count = Math.min(Math.min(PAGE_SIZE - offset, maxCacheLen - slot), currentSeqLen - j);
+                int dst = (bh * currentSeqLen + j) * headDim;
+                if (heapPages != null) {
+                    System.arraycopy(heapPages[page], pageBase + offset * headDim, result, dst, count * headDim);
+                } else {
+                    offHeapPages[page].read(pageBase + offset * headDim, result, dst, count * headDim);
                 }
+                j += count;
             }
         }
+        return NdArray.of(result, Shape.of(batchSize, numHeads, currentSeqLen, headDim));
+    }
+
+    /**
+     * 共享第 page 页的 K、V（如前缀缓存保存提示词的 KV）
+     * <p>
+     * 该页必须已写满且缓存未发生环形覆盖。堆内存储直接返回页数组（不拷贝），
+     * 之后本缓存再写入该页时先复制；堆外存储返回拷贝。
+     *
+     * @param page 页号
+     * @return {keyPage, valuePage},布局为 [batchSize * numHeads, PAGE_SIZE, headDim],调用方只能读取
+     */
+    public float[][] sharePage(int page) {
+        if (start != 0 || page < 0 || (page + 1) * PAGE_SIZE > currentSeqLen) {
+            throw new IllegalStateException(String.format(
+                "Page %d is not a full page of an unwrapped cache (length %d, start %d)", page, currentSeqLen, start));
+        }
+        if (keyPages != null) {
+            sharedPages[page] = true;
+            return new float[][]{keyPages[page], valuePages[page]};
+        }
+        float[] keys = new float[pageFloats];
+        float[] values = new float[pageFloats];
+        offHeapKeyPages[page].read(0, keys, 0, pageFloats);
+        offHeapValuePages[page].read(0, values, 0, pageFloats);
+        return new float[][]{keys, values};
+    }
 
-        return NdArray.of(result, Shape.of(batch, heads, newSeqLen, dim));
+    /**
+     * 把共享的页依次挂接为缓存最前面的页,挂接后缓存长度为 页数 × PAGE_SIZE
+     * <p>
+     * 堆内存储直接引用这些页（只读,写入前复制）,堆外存储把数据写入自己的页。
+     *
+     * @param sharedKeys   按顺序排列的 Key 页
+     * @param sharedValues 按顺序排列的 Value 页
+     * @throws IllegalStateException 缓存不为空
+     */
+    public void attachSharedPages(float[][] sharedKeys, float[][] sharedValues) {
+        if (currentSeqLen != 0) {
+            throw new IllegalStateException("Shared pages can only be attached to an empty cache");
+        }
+        if (sharedKeys.length != sharedValues.length || sharedKeys.length * PAGE_SIZE > maxCacheLen) {
+            throw new IllegalArgumentException(String.format(
+                "Cannot attach %d key / %d value pages to a cache of %d tokens",
+                sharedKeys.length, sharedValues.length, maxCacheLen));
+        }
+        for (int page = 0; page < sharedKeys.length; page++) {
+            if (sharedKeys[page].length != pageFloats || sharedValues[page].length != pageFloats) {
+                throw new IllegalArgumentException(String.format(
+                    "Shared page %d has %d/%d floats, expected %d",
+                    page, sharedKeys[page].length, sharedValues[page].length, pageFloats));
+            }
+            if (keyPages != null) {
+                keyPages[page] = sharedKeys[page];
+                valuePages[page] = sharedValues[page];
+                sharedPages[page] = true;
+            } else {
+                ensurePage(page);
+                offHeapKeyPages[page].write(0, sharedKeys[page], 0, pageFloats);
+                offHeapValuePages[page].write(0, sharedValues[page], 0, pageFloats);
+            }
+        }
+        start = 0;
+        currentSeqLen = sharedKeys.length * PAGE_SIZE;
     }
 
     /**
-     * 清空缓存
+     * 清空缓存（保留已分配的页供后续复用,共享页只解除引用）
      */
     public void clear() {
-        cachedK = null;
-        cachedV = null;
         currentSeqLen = 0;
+        start = 0;
+        if (sharedPages != null) {
+            for (int page = 0; page < sharedPages.length; page++) {
+                if (sharedPages[page]) {
+                    keyPages[page] = null;
+                    valuePages[page] = null;
+                    sharedPages[page] = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * 释放堆外存储,之后不能再使用该缓存
+     */
+    public void release() {
+        clear();
+        if (offHeapKeyPages != null) {
+            for (int page = 0; page < offHeapKeyPages.length; page++) {
+                if (offHeapKeyPages[page] != null) {
+                    offHeapKeyPages[page].release();
+                    offHeapValuePages[page].release();
+                }
+            }
+            offHeapKeyPages = null;
+            offHeapValuePages = null;
+        }
+    }
+
+    /**
+     * 判断是否使用堆外存储
+     */
+    public boolean isOffHeap() {
+        return offHeapKeyPages != null;
     }
 
     /**
@@ -204,23 +481,46 @@ public class KVCache {
     }
 
     /**
-     * 获取缓存的 Key
+     * 获取最大缓存长度
+     */
+    public int getMaxCacheLen() {
+        return maxCacheLen;
+    }
+
+    /**
+     * 获取已分配的页数
+     */
+    public int getAllocatedPages() {
+        int count = 0;
+        Object[] pages = keyPages != null ? keyPages : offHeapKeyPages;
+        if (pages != null) {
+            for (Object page : pages) {
+                if (page != null) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 获取缓存的 Key（按时间顺序拷贝为连续数组）
      */
     public NdArray getCachedK() {
-        return cachedK;
+        return currentSeqLen == 0 ? null : materialize(keyPages, offHeapKeyPages);
     }
 
     /**
-     * 获取缓存的 Value
+     * 获取缓存的 Value（按时间顺序拷贝为连续数组）
      */
     public NdArray getCachedV() {
-        return cachedV;
+        return currentSeqLen == 0 ? null : materialize(valuePages, offHeapValuePages);
     }
 
     /**
      * 判断缓存是否为空
      */
     public boolean isEmpty() {
-        return cachedK == null || cachedV == null;
+        return currentSeqLen == 0;
     }
 }
@@ -8,6 +8,11 @@ import io.leavesfly.tinyai.nnet.v2.core.Module;
 import io.leavesfly.tinyai.nnet.v2.core.Parameter;
 import io.leavesfly.tinyai.nnet.v2.layer.dnn.Linear;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
 /**
  * 多头注意力机制（Multi-Head Attention）
  * <p>
@@ -161,20 +166,18 @@ public class MultiHeadAttention extends Module {
         qSplit = rope.forward(qSplit, new Variable(NdArray.of(new float[]{startPos})));
         kSplit = rope.forward(kSplit, new Variable(NdArray.of(new float[]{startPos})));
 
-        // 4. KV-Cache 处理
+        // 4. KV-Cache 处理：新 K、V 原地追加到缓存，注意力直接按页读取缓存计算（推理路径，不构建计算图）
+        Variable attnOutput;
         if (kvCache != null) {
-            NdArray[] updated = kvCache.update(kSplit.getValue(), vSplit.getValue());
-            kSplit = new Variable(updated[0]);
-            vSplit = new Variable(updated[1]);
+            kvCache.append(kSplit.getValue(), vSplit.getValue());
+            float scale = (float) (1.0 / Math.sqrt(headDim));
+            attnOutput = new Variable(kvCache.attention(qSplit.getValue(), scale));
+        } else {
+            // 5-9. 注意力计算：使用 Variable 层面操作
+            attnOutput = computeAttentionWithVariable(qSplit, kSplit, vSplit,
+                                                      batchSize, seqLen, seqLen, startPos, true);
         }
 
-        int kvSeqLen = kSplit.getShape().getShapeDims()[2];
-
-        // 5-9. 注意力计算：使用 Variable 层面操作
-        Variable attnOutput = computeAttentionWithVariable(qSplit, kSplit, vSplit, 
-                                                   batchSize, seqLen, kvSeqLen, startPos, 
-                                                   kvCache == null);
-
         // 10. 多头合并：[batch, numHeads, seqLen, headDim] -> [batch, seqLen, hiddenSize]
         Variable merged = mergeMultiHead(attnOutput, batchSize, seqLen);
 
@@ -184,6 +187,56 @@ public class MultiHeadAttention extends Module {
         return output;
     }
 
+    /**
+     * 多序列合批的单步解码（连续批处理推理路径）
+     * <p>
+     * 批次中每一行属于不同的序列,各自拥有独立的 KV-Cache 与位置：
+     * Q、K、V 投影与输出投影对整个批次一次完成,RoPE、缓存追加与注意力按序列分别计算。
+     * 单 token 时 [batch, 1, numHeads, headDim] 与 [batch, numHeads, 1, headDim] 内存布局相同,
+     * 每个序列的 Q/K/V 正好是一段连续的 hiddenSize 个元素,无需转置。
+     *
+     * @param x         输入 Variable,形状 [batch, 1, hiddenSize]
+     * @param kvCaches  每个序列的 KV-Cache（批大小均为 1）,长度等于 batch
+     * @param positions 每个序列当前 token 的位置
+     * @return 输出 Variable,形状 [batch, 1, hiddenSize]
+     */
+    public Variable forwardBatchedDecode(Variable x, List<KVCache> kvCaches, int[] positions) {
+        int batchSize = x.getValue().getShape().getShapeDims()[0];
+        if (kvCaches.size() != batchSize || positions.length != batchSize) {
+            throw new IllegalArgumentException(String.format(
+                    "Expected %d caches and positions, got %d and %d",
+                    batchSize, kvCaches.size(), positions.length));
+        }
+
+        float[] qAll = queryProj.forward(x).getValue().getArray();
+        float[] kAll = keyProj.forward(x).getValue().getArray();
+        float[] vAll = valueProj.forward(x).getValue().getArray();
+
+        // RoPE 与缓存追加按序列顺序执行（RoPE 函数对象不可并发调用）
+        Shape rowShape = Shape.of(1, numHeads, 1, headDim);
+        NdArray[] queries = new NdArray[batchSize];
+        for (int b = 0; b < batchSize; b++) {
+            int from = b * hiddenSize;
+            Variable pos = new Variable(NdArray.of(new float[]{positions[b]}));
+            Variable q = new Variable(NdArray.of(Arrays.copyOfRange(qAll, from, from + hiddenSize), rowShape));
+            Variable k = new Variable(NdArray.of(Arrays.copyOfRange(kAll, from, from + hiddenSize), rowShape));
+            queries[b] = rope.forward(q, pos).getValue();
+            kvCaches.get(b).append(rope.forward(k, pos).getValue(),
+                    NdArray.of(Arrays.copyOfRange(vAll, from, from + hiddenSize), rowShape));
+        }
+
+        // 各序列的注意力互不依赖,多线程时并行读取各自的缓存
+        float scale = (float) (1.0 / Math.sqrt(headDim));
+        float[] merged = new float[batchSize * hiddenSize];
+        IntStream range = IntStream.range(0, batchSize);
+        (batchSize > 1 && ForkJoinPool.getCommonPoolParallelism() > 1 ? range.parallel() : range).forEach(b -> {
+            float[] out = kvCaches.get(b).attention(queries[b], scale).getArray();
+            System.arraycopy(out, 0, merged, b * hiddenSize, hiddenSize);
+        });
+
+        return outputProj.forward(new Variable(NdArray.of(merged, Shape.of(batchSize, 1, hiddenSize))));
+    }
+
     /**
      * 使用 Variable 层面操作计算注意力
      */
@@ -3,6 +3,7 @@ package io.leavesfly.tinyai.minimind.model.embedding;
 import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.ndarr.offheap.NdArrayOffHeap;
 import io.leavesfly.tinyai.nnet.v2.core.Module;
 import io.leavesfly.tinyai.nnet.v2.core.Parameter;
 
@@ -29,6 +30,17 @@ public class TokenEmbedding extends Module {
      * @param embeddingDim 嵌入维度
      */
     public TokenEmbedding(int vocabSize, int embeddingDim) {
+        this(vocabSize, embeddingDim, false);
+    }
+
+    /**
+     * 构造 Token 嵌入层
+     *
+     * @param vocabSize    词汇表大小
+     * @param embeddingDim 嵌入维度
+     * @param offHeap      是否将嵌入矩阵放在堆外内存,查找时只拷贝被选中的行
+     */
+    public TokenEmbedding(int vocabSize, int embeddingDim, boolean offHeap) {
         super("TokenEmbedding");
         this.vocabSize = vocabSize;
         this.embeddingDim = embeddingDim;
@@ -37,6 +49,9 @@ public class TokenEmbedding extends Module {
         NdArray embeddingMatrix = NdArray.likeRandomN(Shape.of(vocabSize, embeddingDim));
         // 缩放到合适的标准差 0.02
         embeddingMatrix = embeddingMatrix.mulNum(0.02f);
+        if (offHeap) {
+            embeddingMatrix = NdArrayOffHeap.of(embeddingMatrix);
+        }
         this.weight = registerParameter("weight", new Parameter(embeddingMatrix, true));
     }
 
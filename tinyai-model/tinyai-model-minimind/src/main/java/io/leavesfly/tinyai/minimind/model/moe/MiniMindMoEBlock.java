@@ -87,7 +87,8 @@ public class MiniMindMoEBlock extends Module {
         this.moeConfig = createMoEConfig(config);
 
         // 1. 创建 Token Embedding 层
-        this.tokenEmbedding = new TokenEmbedding(config.getVocabSize(), config.getHiddenSize());
+        this.tokenEmbedding = new TokenEmbedding(config.getVocabSize(), config.getHiddenSize(),
+                config.isUseOffHeapStorage());
         registerModule("token_embedding", tokenEmbedding);
 
         // 2. 创建 MoE Transformer 层列表
@@ -204,7 +205,8 @@ public class MiniMindMoEBlock extends Module {
                 batchSize,
                 config.getNumHeads(),
                 config.getHiddenSize() / config.getNumHeads(),
-                config.getMaxSeqLen()
+                config.getMaxSeqLen(),
+                config.isUseOffHeapStorage()
             );
             kvCaches.add(cache);
         }
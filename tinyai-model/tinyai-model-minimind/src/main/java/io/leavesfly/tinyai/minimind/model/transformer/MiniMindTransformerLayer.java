@@ -8,6 +8,8 @@ import io.leavesfly.tinyai.nnet.v2.layer.activation.SiLU;
 import io.leavesfly.tinyai.nnet.v2.layer.dnn.Linear;
 import io.leavesfly.tinyai.nnet.v2.layer.norm.LayerNorm;
 
+import java.util.List;
+
 /**
  * MiniMind Transformer 层
  * <p>
@@ -155,6 +157,21 @@ public class MiniMindTransformerLayer extends Module {
         return x;
     }
 
+    /**
+     * 多序列合批的单步解码
+     * <p>
+     * LayerNorm、前馈网络与残差连接对整个批次一次完成,注意力按序列读取各自的 KV-Cache
+     *
+     * @param x         输入 Variable,形状 [batch, 1, hiddenSize]
+     * @param kvCaches  每个序列在本层的 KV-Cache
+     * @param positions 每个序列当前 token 的位置
+     * @return 输出 Variable,形状 [batch, 1, hiddenSize]
+     */
+    public Variable forwardBatchedDecode(Variable x, List<KVCache> kvCaches, int[] positions) {
+        x = x.add(attention.forwardBatchedDecode(attentionNorm.forward(x), kvCaches, positions));
+        return x.add(feedForward(ffnNorm.forward(x)));
+    }
+
     /**
      * 前馈网络 (Feed-Forward Network)
      * <p>
@@ -20,7 +20,7 @@ import java.util.List;
  * MiniMind预训练Trainer
  * 
  * 实现因果语言建模(Causal Language Modeling)预训练
- * 支持学习率调度、梯度裁剪、检查点保存等功能
+ * 支持学习率调度、梯度裁剪、梯度累积、检查点保存等功能
  * 
  * @author leavesfly
  * @since 2024
@@ -41,6 +41,7 @@ public class PretrainTrainer {
     private int logInterval;     // 日志打印间隔
     private int saveInterval;    // 检查点保存间隔
     private String checkpointDir; // 检查点目录
+    private int accumulationSteps; // 梯度累积步数(每N个micro-batch更新一次参数)
     
     // 训练状态
     private int currentEpoch;
@@ -68,6 +69,7 @@ public class PretrainTrainer {
         this.logInterval = 100;
         this.saveInterval = 1000;
         this.checkpointDir = "./checkpoints";
+        this.accumulationSteps = 1;
         
         // 创建优化器(AdamW)
         this.optimizer = new Adam(model, initialLearningRate, 0.9f, 0.999f, 1e-8f);
@@ -110,6 +112,23 @@ public class PretrainTrainer {
         return this;
     }
     
+    /**
+     * 设置梯度累积步数
+     * 
+     * 每accumulationSteps个micro-batch执行一次参数更新, 等效批次大小为 批次大小 × accumulationSteps,
+     * 峰值激活内存只取决于单个micro-batch. 学习率调度、日志和检查点均按参数更新步数计算
+     * 
+     * @param accumulationSteps 累积步数(1表示不累积)
+     * @return this
+     */
+    public PretrainTrainer setGradientAccumulation(int accumulationSteps) {
+        if (accumulationSteps < 1) {
+            throw new IllegalArgumentException("梯度累积步数必须大于等于1: " + accumulationSteps);
+        }
+        this.accumulationSteps = accumulationSteps;
+        return this;
+    }
+    
     /**
      * 开始训练
      */
@@ -130,6 +149,7 @@ public class PretrainTrainer {
         System.out.println("批次数量: " + dataset.getBatchCount());
         System.out.println("最大轮次: " + maxEpochs);
         System.out.println("初始学习率: " + initialLearningRate);
+        System.out.println("梯度累积步数: " + accumulationSteps);
         System.out.println("=".repeat(60));
         
         // 创建检查点目录
@@ -156,14 +176,35 @@ public class PretrainTrainer {
         
         long epochStartTime = System.currentTimeMillis();
         
+        int accumulated = 0;
+        double windowLoss = 0.0;
+        
         while (dataset.hasNextBatch()) {
             PretrainDataset.Batch batch = dataset.getNextBatch();
             
-            // 训练一步
-            float stepLoss = trainStep(batch);
+            // 累积窗口开始时清除梯度
+            if (accumulated == 0) {
+                model.clearGrads();
+            }
             
-            epochLoss += stepLoss;
+            // 前向与反向传播, 梯度在窗口内累加
+            float microLoss = accumulateStep(batch);
+            
+            epochLoss += microLoss;
             batchCount++;
+            windowLoss += microLoss;
+            accumulated++;
+            
+            // 窗口未满且还有数据时继续累积
+            if (accumulated < accumulationSteps && dataset.hasNextBatch()) {
+                continue;
+            }
+            
+            // 更新参数
+            applyGradients(accumulated);
+            float stepLoss = (float) (windowLoss / accumulated);
+            accumulated = 0;
+            windowLoss = 0.0;
             currentStep++;
             
             // 记录损失
@@ -199,15 +240,14 @@ public class PretrainTrainer {
     }
     
     /**
-     * 训练一步
+     * 对一个micro-batch做前向和反向传播, 梯度累加到参数上
+     * 
+     * 损失按1/accumulationSteps缩放, 窗口内梯度之和即为平均梯度
      * 
      * @param batch 批次数据
-     * @return 损失值
+     * @return 损失值(未缩放)
      */
-    private float trainStep(PretrainDataset.Batch batch) {
-        // 更新学习率
-        updateLearningRate();
-        
+    private float accumulateStep(PretrainDataset.Batch batch) {
         // 获取输入和目标
         NdArray inputArray = batch.getInput();
         NdArray targetArray = batch.getTarget();
@@ -230,22 +270,42 @@ public class PretrainTrainer {
         Variable loss = lossFunction.loss(targetReshaped, logitsReshaped);
         float lossValue = loss.getValue().getNumber().floatValue();
         
-        // 清除梯度
-        model.clearGrads();
+        // 反向传播(损失缩放)
+        if (accumulationSteps > 1) {
+            loss.setGrad(NdArray.like(loss.getValue().getShape(), 1.0f / accumulationSteps));
+        }
+        loss.backward(false);
+        
+        // 断开计算图
+        loss.unChainBackward();
         
-        // 反向传播
-        loss.backward();
+        return lossValue;
+    }
+    
+    /**
+     * 用累积的梯度更新一次参数
+     * 
+     * @param accumulated 本次窗口内的micro-batch数
+     */
+    private void applyGradients(int accumulated) {
+        // 更新学习率
+        updateLearningRate();
+        
+        // epoch末尾窗口不满时, 补偿为实际micro-batch数上的平均梯度
+        if (accumulated < accumulationSteps) {
+            float scale = (float) accumulationSteps / accumulated;
+            for (var param : model.getAllParams().values()) {
+                if (param.getGrad() != null) {
+                    param.setGrad(param.getGrad().mulNum(scale));
+                }
+            }
+        }
         
         // 梯度裁剪
         clipGradients();
         
         // 更新参数
         optimizer.update();
-        
-        // 断开计算图
-        loss.unChainBackward();
-        
-        return lossValue;
     }
     
     /**
@@ -257,7 +317,8 @@ public class PretrainTrainer {
             currentLearningRate = initialLearningRate * ((float) currentStep / warmupSteps);
         } else {
             // 余弦退火
-            int totalSteps = maxEpochs * dataset.getBatchCount();
+            int stepsPerEpoch = (dataset.getBatchCount() + accumulationSteps - 1) / accumulationSteps;
+            int totalSteps = maxEpochs * stepsPerEpoch;
             int decaySteps = totalSteps - warmupSteps;
             int currentDecayStep = currentStep - warmupSteps;
             
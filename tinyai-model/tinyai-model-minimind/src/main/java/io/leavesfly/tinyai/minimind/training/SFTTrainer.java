@@ -38,6 +38,7 @@ public class SFTTrainer {
     private int logInterval;
     private int saveInterval;
     private String checkpointDir;
+    private int accumulationSteps;
     
     private int currentEpoch;
     private int currentStep;
@@ -58,6 +59,7 @@ public class SFTTrainer {
         this.logInterval = 50;
         this.saveInterval = 500;
         this.checkpointDir = "./checkpoints/minimind_sft_checkpoints";
+        this.accumulationSteps = 1;
         
         // 创建优化器
         this.optimizer = new Adam(model, learningRate, 0.9f, 0.999f, 1e-8f);
@@ -79,6 +81,22 @@ public class SFTTrainer {
         return this;
     }
     
+    /**
+     * 设置梯度累积步数
+     * 
+     * 每accumulationSteps个micro-batch执行一次参数更新, 日志和检查点按参数更新步数计算
+     * 
+     * @param accumulationSteps 累积步数(1表示不累积)
+     * @return this
+     */
+    public SFTTrainer setGradientAccumulation(int accumulationSteps) {
+        if (accumulationSteps < 1) {
+            throw new IllegalArgumentException("梯度累积步数必须大于等于1: " + accumulationSteps);
+        }
+        this.accumulationSteps = accumulationSteps;
+        return this;
+    }
+    
     /**
      * 开始训练
      */
@@ -90,6 +108,7 @@ public class SFTTrainer {
         System.out.println("批次数量: " + dataset.getBatchCount());
         System.out.println("最大轮次: " + maxEpochs);
         System.out.println("学习率: " + learningRate);
+        System.out.println("梯度累积步数: " + accumulationSteps);
         System.out.println("=".repeat(60));
         
         createCheckpointDir();
@@ -113,12 +132,33 @@ public class SFTTrainer {
         
         long epochStartTime = System.currentTimeMillis();
         
+        int accumulated = 0;
+        double windowLoss = 0.0;
+        
         while (dataset.hasNextBatch()) {
             SFTDataset.Batch batch = dataset.getNextBatch();
-            float stepLoss = trainStep(batch);
             
-            epochLoss += stepLoss;
-            batchCount++;
+            if (accumulated == 0) {
+                model.clearGrads();
+            }
+            
+            Float microLoss = accumulateStep(batch);
+            if (microLoss != null) {
+                epochLoss += microLoss;
+                batchCount++;
+                windowLoss += microLoss;
+                accumulated++;
+            }
+            
+            // 窗口未满且还有数据时继续累积
+            if (accumulated == 0 || (accumulated < accumulationSteps && dataset.hasNextBatch())) {
+                continue;
+            }
+            
+            applyGradients(accumulated);
+            float stepLoss = (float) (windowLoss / accumulated);
+            accumulated = 0;
+            windowLoss = 0.0;
             currentStep++;
             
             lossHistory.add(stepLoss);
@@ -149,9 +189,11 @@ public class SFTTrainer {
     }
     
     /**
-     * 训练一步
+     * 对一个micro-batch做前向和反向传播, 梯度累加到参数上
+     * 
+     * @return 损失值, 损失异常而跳过时返回null
      */
-    private float trainStep(SFTDataset.Batch batch) {
+    private Float accumulateStep(SFTDataset.Batch batch) {
         NdArray inputArray = batch.getInput();
         NdArray labelArray = batch.getLabels();
         // 注: 掩码暂不使用，SoftmaxCE 已计算平均损失
@@ -178,25 +220,42 @@ public class SFTTrainer {
         // 检查异常值
         if (Float.isNaN(lossValue) || Float.isInfinite(lossValue)) {
             System.err.println("警告: 损失值异常 (" + lossValue + "), 跳过此步");
-            return 0.0f;
+            return null;
+        }
+        
+        // 反向传播(损失按1/accumulationSteps缩放, 窗口内梯度之和即为平均梯度)
+        if (accumulationSteps > 1) {
+            loss.setGrad(NdArray.like(loss.getValue().getShape(), 1.0f / accumulationSteps));
         }
+        loss.backward(false);
         
-        // 清除梯度
-        model.clearGrads();
+        // 断开计算图
+        loss.unChainBackward();
         
-        // 反向传播
-        loss.backward();
+        return lossValue;
+    }
+    
+    /**
+     * 用累积的梯度更新一次参数
+     * 
+     * @param accumulated 本次窗口内的有效micro-batch数
+     */
+    private void applyGradients(int accumulated) {
+        // 窗口不满时补偿为实际micro-batch数上的平均梯度
+        if (accumulated < accumulationSteps) {
+            float scale = (float) accumulationSteps / accumulated;
+            for (var param : model.getAllParams().values()) {
+                if (param.getGrad() != null) {
+                    param.setGrad(param.getGrad().mulNum(scale));
+                }
+            }
+        }
         
         // 梯度裁剪
         clipGradients();
         
         // 更新参数
         optimizer.update();
-        
-        // 断开计算图
-        loss.unChainBackward();
-        
-        return lossValue;
     }
     
     /**
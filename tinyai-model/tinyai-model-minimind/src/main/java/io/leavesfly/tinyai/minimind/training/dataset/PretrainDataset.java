@@ -1,6 +1,8 @@
 package io.leavesfly.tinyai.minimind.training.dataset;
 
 import io.leavesfly.tinyai.minimind.tokenizer.MiniMindTokenizer;
+import io.leavesfly.tinyai.ml.dataset.token.MappedTokenDataset;
+import io.leavesfly.tinyai.ml.dataset.token.TokenFileWriter;
 import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.ndarr.Shape;
 
@@ -18,6 +20,10 @@ import java.util.stream.Collectors;
  * 负责加载文本数据并转换为模型训练所需的Token序列
  * 支持因果语言建模(Causal Language Modeling)任务
  * 
+ * 大语料建议先用 {@link #convertToTokenFile(String, String)} 一次性分词为二进制Token文件,
+ * 之后通过 {@link #loadFromTokenFile(String)} 内存映射加载, 启动时无需重新分词,
+ * 批次在取用时直接从映射区域切窗口生成
+ * 
  * @author leavesfly
  * @since 2024
  */
@@ -36,6 +42,11 @@ public class PretrainDataset implements Serializable {
     private List<Batch> batches;
     private int currentBatchIndex;
     
+    // 内存映射的Token文件(为null时使用内存中的样本)
+    private transient MappedTokenDataset tokenData;
+    private transient Random random;
+    private boolean shuffleWindows;
+    
     /**
      * 构造函数
      * 
@@ -75,6 +86,7 @@ public class PretrainDataset implements Serializable {
      */
     public void loadFromTexts(List<String> texts) {
         samples.clear();
+        tokenData = null;
         
         for (String text : texts) {
             if (text == null || text.trim().isEmpty()) {
@@ -91,6 +103,41 @@ public class PretrainDataset implements Serializable {
         System.out.println("数据加载完成,共 " + samples.size() + " 个训练样本");
     }
     
+    /**
+     * 把文本文件分词后写为二进制Token文件(每个非空行作为一个文档)
+     * 
+     * @param textPath 文本文件路径
+     * @param tokenPath 输出的Token文件路径
+     * @return 写入的文档数
+     * @throws IOException IO异常
+     */
+    public int convertToTokenFile(String textPath, String tokenPath) throws IOException {
+        Path path = Paths.get(textPath);
+        if (!Files.exists(path)) {
+            throw new FileNotFoundException("数据文件不存在: " + textPath);
+        }
+        int documents = TokenFileWriter.convertTextFile(path, Paths.get(tokenPath),
+            tokenizer.getVocabSize(), text -> tokenizer.encode(text, true, true));
+        System.out.println("Token文件写入完成,共 " + documents + " 个文档: " + tokenPath);
+        return documents;
+    }
+    
+    /**
+     * 从二进制Token文件加载数据(内存映射, 不重新分词)
+     * 
+     * @param tokenPath Token文件路径
+     * @throws IOException IO异常
+     */
+    public void loadFromTokenFile(String tokenPath) throws IOException {
+        tokenData = new MappedTokenDataset(Paths.get(tokenPath));
+        samples.clear();
+        batches.clear();
+        currentBatchIndex = 0;
+        
+        System.out.println("Token文件映射完成,共 " + tokenData.getTokenCount() + " 个token, "
+            + getSampleCount() + " 个训练样本");
+    }
+    
     /**
      * 将Token序列切分为固定长度的训练样本
      * 
@@ -131,6 +178,17 @@ public class PretrainDataset implements Serializable {
      * @param shuffle 是否打乱数据
      */
     public void prepare(boolean shuffle) {
+        if (tokenData != null) {
+            // 映射模式: 批次在取用时生成, 打乱时随机取窗口起点
+            if (getSampleCount() == 0) {
+                throw new IllegalStateException("Token文件过短,不足一个训练样本");
+            }
+            shuffleWindows = shuffle;
+            random = new Random();
+            currentBatchIndex = 0;
+            return;
+        }
+        
         if (samples.isEmpty()) {
             throw new IllegalStateException("数据集为空,请先加载数据");
         }
@@ -203,6 +261,30 @@ public class PretrainDataset implements Serializable {
         return new Batch(inputArray, targetArray, actualBatchSize, maxLen - 1);
     }
     
+    /**
+     * 从映射的Token文件生成第batchIndex个批次
+     * 
+     * @param batchIndex 批次索引
+     * @return 批次对象
+     */
+    private Batch createMappedBatch(int batchIndex) {
+        int windows = getSampleCount();
+        int first = batchIndex * batchSize;
+        int actualBatchSize = Math.min(batchSize, windows - first);
+        float[] inputData = new float[actualBatchSize * maxSeqLen];
+        float[] targetData = new float[actualBatchSize * maxSeqLen];
+        
+        for (int i = 0; i < actualBatchSize; i++) {
+            long start = shuffleWindows
+                ? tokenData.randomWindowStart(random, maxSeqLen)
+                : tokenData.windowStart(first + i, maxSeqLen);
+            tokenData.fillWindow(start, maxSeqLen, inputData, targetData, i);
+        }
+        
+        return new Batch(NdArray.of(inputData, Shape.of(actualBatchSize, maxSeqLen)),
+            NdArray.of(targetData, Shape.of(actualBatchSize, maxSeqLen)), actualBatchSize, maxSeqLen);
+    }
+    
     /**
      * 创建NdArray
      * 
@@ -228,7 +310,7 @@ public class PretrainDataset implements Serializable {
      * @return true如果还有批次
      */
     public boolean hasNextBatch() {
-        return currentBatchIndex < batches.size();
+        return currentBatchIndex < getBatchCount();
     }
     
     /**
@@ -240,6 +322,9 @@ public class PretrainDataset implements Serializable {
         if (!hasNextBatch()) {
             throw new NoSuchElementException("没有更多批次数据");
         }
+        if (tokenData != null) {
+            return createMappedBatch(currentBatchIndex++);
+        }
         return batches.get(currentBatchIndex++);
     }
     
@@ -256,6 +341,9 @@ public class PretrainDataset implements Serializable {
      * @return 批次数量
      */
     public int getBatchCount() {
+        if (tokenData != null) {
+            return (getSampleCount() + batchSize - 1) / batchSize;
+        }
         return batches.size();
     }
     
@@ -265,6 +353,9 @@ public class PretrainDataset implements Serializable {
      * @return 样本数量
      */
     public int getSampleCount() {
+        if (tokenData != null) {
+            return (int) Math.min(Integer.MAX_VALUE, tokenData.getWindowCount(maxSeqLen));
+        }
         return samples.size();
     }
     
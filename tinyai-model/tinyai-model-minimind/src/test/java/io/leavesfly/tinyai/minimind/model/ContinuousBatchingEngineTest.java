@@ -0,0 +1,132 @@
+package io.leavesfly.tinyai.minimind.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ContinuousBatchingEngine单元测试
+ *
+ * @author leavesfly
+ */
+public class ContinuousBatchingEngineTest {
+
+    private MiniMindModel model;
+
+    @BeforeEach
+    public void setUp() {
+        MiniMindConfig config = new MiniMindConfig();
+        config.setVocabSize(100);
+        config.setMaxSeqLen(32);
+        config.setHiddenSize(64);
+        config.setNumLayers(2);
+        config.setNumHeads(4);
+        config.setFfnHiddenSize(128);
+        config.setDropout(0.0f);
+        model = new MiniMindModel("test-batching", config);
+    }
+
+    @Test
+    public void testBatchedDecodeMatchesSequentialGenerate() {
+        // 不同长度的提示词与生成长度合批解码,贪婪采样结果应与逐个调用 generate 一致
+        int[][] prompts = {{5, 17, 42}, {9}, {3, 8, 13, 21, 34, 55}, {60, 61}, {7, 7, 7, 7}};
+        int[] maxNewTokens = {6, 9, 4, 12, 7};
+
+        ContinuousBatchingEngine engine = new ContinuousBatchingEngine(model, 3);
+        List<CompletableFuture<int[]>> futures = new ArrayList<>();
+        for (int i = 0; i < prompts.length; i++) {
+            futures.add(engine.submit(prompts[i], maxNewTokens[i], 0.0f, 0, 0.0f, 1.2f));
+        }
+        int steps = 0;
+        while (futures.stream().anyMatch(f -> !f.isDone())) {
+            engine.step();
+            assertTrue(engine.getActiveCount() <= 3, "活跃序列数不应超过最大批大小");
+            assertTrue(++steps < 100, "所有请求应在有限步内完成");
+        }
+
+        for (int i = 0; i < prompts.length; i++) {
+            int[] expected = model.generate(prompts[i], maxNewTokens[i], 0.0f, 0, 0.0f, 1.2f);
+            assertArrayEquals(expected, futures.get(i).join(), "请求" + i + "的生成结果");
+        }
+    }
+
+    @Test
+    public void testQueuedRequestsAdmittedAsOthersFinish() {
+        ContinuousBatchingEngine engine = new ContinuousBatchingEngine(model, 2);
+        CompletableFuture<int[]> shortRequest = engine.submit(new int[]{4, 5}, 1, 0.0f, 0, 0.0f, 1.0f);
+        CompletableFuture<int[]> longRequest = engine.submit(new int[]{6}, 8, 0.0f, 0, 0.0f, 1.0f);
+        CompletableFuture<int[]> queued = engine.submit(new int[]{7, 8, 9}, 3, 0.0f, 0, 0.0f, 1.0f);
+
+        // 只生成 1 个 token 的请求在预填充后即完成,空出的位置在同一轮接纳排队的请求
+        engine.step();
+        assertTrue(shortRequest.isDone());
+        assertEquals(3, shortRequest.join().length);
+        assertEquals(0, engine.getPendingCount());
+        assertEquals(2, engine.getActiveCount());
+
+        while (!longRequest.isDone() || !queued.isDone()) {
+            engine.step();
+        }
+        assertTrue(longRequest.join().length <= 9);
+        assertTrue(queued.join().length <= 6);
+        assertEquals(0, engine.getActiveCount());
+    }
+
+    @Test
+    public void testCancelledRequestLeavesBatch() {
+        ContinuousBatchingEngine engine = new ContinuousBatchingEngine(model, 4);
+        CompletableFuture<int[]> cancelled = engine.submit(new int[]{10, 11}, 20, 0.0f, 0, 0.0f, 1.0f);
+        CompletableFuture<int[]> kept = engine.submit(new int[]{12, 13}, 5, 0.0f, 0, 0.0f, 1.0f);
+        engine.step();
+        int before = engine.getActiveCount();
+
+        cancelled.cancel(false);
+        engine.step();
+        assertTrue(engine.getActiveCount() < before || kept.isDone(), "被取消的请求应移出批次");
+        while (!kept.isDone()) {
+            engine.step();
+        }
+        assertEquals(0, engine.getActiveCount());
+    }
+
+    @Test
+    public void testLengthLimitedByMaxSeqLen() {
+        ContinuousBatchingEngine engine = new ContinuousBatchingEngine(model, 2);
+        int[] prompt = new int[30];
+        for (int i = 0; i < prompt.length; i++) {
+            prompt[i] = 10 + i;
+        }
+        CompletableFuture<int[]> result = engine.submit(prompt, 10, 0.0f, 0, 0.0f, 1.0f);
+        while (!result.isDone()) {
+            engine.step();
+        }
+        assertTrue(result.join().length <= 32, "序列总长度不应超过maxSeqLen");
+
+        assertThrows(IllegalArgumentException.class,
+            () -> engine.submit(new int[33], 1, 0.0f, 0, 0.0f, 1.0f));
+    }
+
+    @Test
+    public void testSchedulerThreadServesConcurrentRequests() throws Exception {
+        try (ContinuousBatchingEngine engine = new ContinuousBatchingEngine(model, 8)) {
+            engine.start();
+            List<CompletableFuture<int[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                futures.add(engine.submit(new int[]{20 + i, 30 + i}, 5, 0.8f, 10, 0.9f, 1.1f));
+            }
+            for (CompletableFuture<int[]> future : futures) {
+                int[] tokens = future.get(60, TimeUnit.SECONDS);
+                assertTrue(tokens.length > 2 && tokens.length <= 7);
+                for (int token : tokens) {
+                    assertTrue(token >= 0 && token < 100);
+                }
+            }
+        }
+    }
+}
@@ -1,10 +1,17 @@
 package io.leavesfly.tinyai.minimind.model;
 
 import io.leavesfly.tinyai.func.Variable;
+import io.leavesfly.tinyai.ml.model.Model;
+import io.leavesfly.tinyai.ml.model.ModelSerializer;
+import io.leavesfly.tinyai.ml.model.parameter.ParameterManager;
 import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.ndarr.offheap.NdArrayOffHeap;
+import io.leavesfly.tinyai.nnet.v2.core.Parameter;
 import org.junit.Test;
 
+import java.io.File;
+
 import static org.junit.Assert.*;
 
 /**
@@ -148,4 +155,53 @@ public class MiniMindModelTest {
         System.out.println("Small model: " + smallParams + " parameters");
         System.out.println("Medium model: " + mediumParams + " parameters");
     }
+
+    @Test
+    public void testOffHeapModelSaveAndLoad() throws Exception {
+        // 堆外嵌入矩阵需要能随模型保存、加载,并且加载后仍位于堆外
+        MiniMindModel model = new MiniMindModel("offheap-save", offHeapConfig());
+        NdArray embedding = offHeapParameter(model).getValue();
+
+        File modelFile = File.createTempFile("minimind-offheap", ".model");
+        File paramsFile = File.createTempFile("minimind-offheap", ".params");
+        try {
+            ModelSerializer.saveModel(model, modelFile.getPath());
+            Model loaded = ModelSerializer.loadModel(modelFile.getPath());
+            assertTrue(ParameterManager.compareParameters(model, loaded));
+            assertArrayEquals(embedding.getArray(), offHeapParameter(loaded).getValue().getArray(), 0f);
+
+            // 只加载参数时写入目标模型已有的堆外存储
+            ModelSerializer.saveParameters(model, paramsFile.getPath());
+            MiniMindModel target = new MiniMindModel("offheap-load", offHeapConfig());
+            NdArray targetEmbedding = offHeapParameter(target).getValue();
+            ModelSerializer.loadParameters(target, paramsFile.getPath());
+            assertSame(targetEmbedding, offHeapParameter(target).getValue());
+            assertArrayEquals(embedding.getArray(), targetEmbedding.getArray(), 0f);
+            assertTrue(ParameterManager.compareParameters(model, target));
+        } finally {
+            modelFile.delete();
+            paramsFile.delete();
+        }
+    }
+
+    private static MiniMindConfig offHeapConfig() {
+        MiniMindConfig config = new MiniMindConfig();
+        config.setVocabSize(100);
+        config.setMaxSeqLen(32);
+        config.setHiddenSize(32);
+        config.setNumLayers(1);
+        config.setNumHeads(4);
+        config.setFfnHiddenSize(64);
+        config.setUseOffHeapStorage(true);
+        return config;
+    }
+
+    private static Parameter offHeapParameter(Model model) {
+        for (Parameter parameter : model.getAllParams().values()) {
+            if (parameter.getValue() instanceof NdArrayOffHeap) {
+                return parameter;
+            }
+        }
+        throw new AssertionError("模型中应存在堆外参数");
+    }
 }
@@ -0,0 +1,210 @@
+package io.leavesfly.tinyai.minimind.model;
+
+import io.leavesfly.tinyai.minimind.model.attention.KVCache;
+import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PrefixCache单元测试
+ *
+ * @author leavesfly
+ */
+public class PrefixCacheTest {
+
+    private static final int PAGE = PrefixCache.BLOCK_SIZE;
+
+    private final int numHeads = 2;
+    private final int headDim = 4;
+
+    private MiniMindModel model;
+
+    @BeforeEach
+    public void setUp() {
+        MiniMindConfig config = new MiniMindConfig();
+        config.setVocabSize(100);
+        config.setMaxSeqLen(160);
+        config.setHiddenSize(64);
+        config.setNumLayers(2);
+        config.setNumHeads(4);
+        config.setFfnHiddenSize(128);
+        config.setDropout(0.0f);
+        model = new MiniMindModel("test-prefix", config);
+    }
+
+    @Test
+    public void testSharedPrefixSkipsPrefillAndMatchesGenerate() {
+        // 两个请求共享前两页提示词,第二个请求只需预填充剩余部分,结果仍与 generate 一致
+        int[] first = prompt(2 * PAGE + 3, 1);
+        int[] second = Arrays.copyOf(first, 2 * PAGE + 6);
+        for (int i = 2 * PAGE; i < second.length; i++) {
+            second[i] = 90 - i % 7;
+        }
+
+        PrefixCache prefixCache = new PrefixCache(16L * 1024 * 1024);
+        ContinuousBatchingEngine engine = new ContinuousBatchingEngine(model, 2, prefixCache);
+        int[] firstResult = runToCompletion(engine, engine.submit(first, 5, 0.0f, 0, 0.0f, 1.2f));
+        assertEquals(0, prefixCache.getHitTokens(), "首个请求没有可复用的前缀");
+        assertEquals(2, prefixCache.getBlockCount(), "应缓存两个整页");
+
+        int[] secondResult = runToCompletion(engine, engine.submit(second, 5, 0.0f, 0, 0.0f, 1.2f));
+        assertEquals(2 * PAGE, prefixCache.getHitTokens(), "第二个请求应复用两页前缀");
+        assertTrue(prefixCache.getHitRate() > 0, "命中率应大于0");
+
+        assertArrayEquals(model.generate(first, 5, 0.0f, 0, 0.0f, 1.2f), firstResult);
+        assertArrayEquals(model.generate(second, 5, 0.0f, 0, 0.0f, 1.2f), secondResult);
+    }
+
+    @Test
+    public void testLastPromptTokenIsAlwaysPrefilled() {
+        // 提示词恰好是整页时,最后一页不能命中,否则无法得到下一个token的logits
+        PrefixCache prefixCache = new PrefixCache(1L << 20);
+        int[] tokens = prompt(PAGE, 3);
+        prefixCache.insert(tokens, PAGE, filledCaches(2, PAGE, 1));
+
+        PrefixCache.Match match = prefixCache.acquire(tokens, PAGE);
+        assertEquals(0, match.getTokenCount());
+        prefixCache.release(match);
+
+        match = prefixCache.acquire(Arrays.copyOf(tokens, PAGE + 1), PAGE + 1);
+        assertEquals(PAGE, match.getTokenCount());
+        prefixCache.release(match);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedWithinBudget() {
+        long blockBytes = 2L * 2 * numHeads * PAGE * headDim * Float.BYTES;
+        PrefixCache prefixCache = new PrefixCache(2 * blockBytes);
+
+        int[] a = prompt(PAGE, 10);
+        int[] b = prompt(PAGE, 20);
+        int[] c = prompt(PAGE, 30);
+        prefixCache.insert(a, PAGE, filledCaches(2, PAGE, 1));
+        prefixCache.insert(b, PAGE, filledCaches(2, PAGE, 2));
+        // 访问 a,使 b 成为最久未使用的块
+        prefixCache.release(prefixCache.acquire(Arrays.copyOf(a, PAGE + 1), PAGE + 1));
+        prefixCache.insert(c, PAGE, filledCaches(2, PAGE, 3));
+
+        assertEquals(2, prefixCache.getBlockCount());
+        assertTrue(prefixCache.getUsedBytes() <= prefixCache.getMaxBytes(), "占用不应超过上限");
+        assertEquals(PAGE, hitTokens(prefixCache, a), "最近访问的块应保留");
+        assertEquals(0, hitTokens(prefixCache, b), "最久未使用的块应被淘汰");
+        assertEquals(PAGE, hitTokens(prefixCache, c), "新插入的块应保留");
+    }
+
+    @Test
+    public void testReferencedBlocksAreNotEvicted() {
+        long blockBytes = 2L * 2 * numHeads * PAGE * headDim * Float.BYTES;
+        PrefixCache prefixCache = new PrefixCache(blockBytes);
+
+        int[] a = prompt(PAGE, 10);
+        prefixCache.insert(a, PAGE, filledCaches(2, PAGE, 1));
+        PrefixCache.Match match = prefixCache.acquire(Arrays.copyOf(a, PAGE + 1), PAGE + 1);
+
+        int[] b = prompt(PAGE, 20);
+        prefixCache.insert(b, PAGE, filledCaches(2, PAGE, 2));
+        assertEquals(1, prefixCache.getBlockCount(), "被引用的块不能淘汰,新块放不下时不缓存");
+        assertEquals(0, hitTokens(prefixCache, b));
+
+        prefixCache.release(match);
+        prefixCache.insert(b, PAGE, filledCaches(2, PAGE, 2));
+        assertEquals(PAGE, hitTokens(prefixCache, b), "释放后旧块可被淘汰");
+        assertEquals(0, hitTokens(prefixCache, a));
+    }
+
+    @Test
+    public void testEvictsLeafBlocksBeforeParents() {
+        // 子块以父块ID为键,父块被淘汰后子块再也无法匹配,因此只能先淘汰叶子
+        long blockBytes = 2L * 2 * numHeads * PAGE * headDim * Float.BYTES;
+        PrefixCache prefixCache = new PrefixCache(2 * blockBytes);
+
+        int[] a = prompt(2 * PAGE, 10);
+        prefixCache.insert(a, 2 * PAGE, filledCaches(2, 2 * PAGE, 1));
+        int[] b = prompt(PAGE, 20);
+        prefixCache.insert(b, PAGE, filledCaches(2, PAGE, 2));
+
+        assertEquals(2, prefixCache.getBlockCount());
+        assertEquals(PAGE, hitTokens(prefixCache, a), "应淘汰a的第二页而保留其第一页");
+        assertEquals(PAGE, hitTokens(prefixCache, b));
+    }
+
+    @Test
+    public void testParentIsNotEvictedForItsOwnChild() {
+        long blockBytes = 2L * 2 * numHeads * PAGE * headDim * Float.BYTES;
+        PrefixCache prefixCache = new PrefixCache(blockBytes);
+
+        int[] a = prompt(2 * PAGE, 10);
+        prefixCache.insert(a, PAGE, filledCaches(2, PAGE, 1));
+        prefixCache.insert(a, 2 * PAGE, filledCaches(2, 2 * PAGE, 1));
+
+        assertEquals(1, prefixCache.getBlockCount(), "放不下子块时不应淘汰它的父块");
+        assertEquals(blockBytes, prefixCache.getUsedBytes());
+        assertEquals(PAGE, hitTokens(prefixCache, a));
+    }
+
+    @Test
+    public void testCopyOnWriteKeepsSharedPagesIntact() {
+        // 缓存绕回覆盖共享页时应先复制,前缀缓存中的数据保持不变
+        KVCache source = new KVCache(1, numHeads, headDim, PAGE);
+        append(source, PAGE, 1);
+        float[][] page = source.sharePage(0);
+        float[] savedKeys = page[0].clone();
+
+        append(source, 3, 2);
+        assertArrayEquals(savedKeys, page[0], "写入共享页前应复制");
+
+        KVCache target = new KVCache(1, numHeads, headDim, 2 * PAGE);
+        target.attachSharedPages(new float[][]{page[0]}, new float[][]{page[1]});
+        assertEquals(PAGE, target.getCurrentSeqLen());
+        append(target, 2, 3);
+        target.clear();
+        assertArrayEquals(savedKeys, page[0], "清空后共享页不应被复用");
+        assertThrows(IllegalStateException.class, () -> source.sharePage(0), "绕回后的缓存不能共享页");
+    }
+
+    private int[] runToCompletion(ContinuousBatchingEngine engine, CompletableFuture<int[]> future) {
+        int steps = 0;
+        while (!future.isDone()) {
+            engine.step();
+            assertTrue(++steps < 100, "请求应在有限步内完成");
+        }
+        return future.join();
+    }
+
+    private long hitTokens(PrefixCache prefixCache, int[] prompt) {
+        PrefixCache.Match match = prefixCache.acquire(Arrays.copyOf(prompt, prompt.length + 1), prompt.length + 1);
+        int tokens = match.getTokenCount();
+        prefixCache.release(match);
+        return tokens;
+    }
+
+    private static int[] prompt(int length, int seed) {
+        int[] tokens = new int[length];
+        for (int i = 0; i < length; i++) {
+            tokens[i] = 1 + (i * 7 + seed) % 97;
+        }
+        return tokens;
+    }
+
+    private List<KVCache> filledCaches(int layers, int length, long seed) {
+        KVCache[] caches = new KVCache[layers];
+        for (int layer = 0; layer < layers; layer++) {
+            caches[layer] = new KVCache(1, numHeads, headDim, 2 * PAGE);
+            append(caches[layer], length, seed * 10 + layer);
+        }
+        return Collections.unmodifiableList(Arrays.asList(caches));
+    }
+
+    private void append(KVCache cache, int length, long seed) {
+        Shape shape = Shape.of(1, numHeads, length, headDim);
+        cache.append(NdArray.likeRandom(-1f, 1f, shape, seed), NdArray.likeRandom(-1f, 1f, shape, seed + 1));
+    }
+}
@@ -0,0 +1,88 @@
+package io.leavesfly.tinyai.minimind.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 逐token生成（回调与迭代器）单元测试
+ *
+ * @author leavesfly
+ */
+public class TokenStreamTest {
+
+    private MiniMindModel model;
+
+    @BeforeEach
+    public void setUp() {
+        MiniMindConfig config = new MiniMindConfig();
+        config.setVocabSize(100);
+        config.setMaxSeqLen(32);
+        config.setHiddenSize(64);
+        config.setNumLayers(2);
+        config.setNumHeads(4);
+        config.setFfnHiddenSize(128);
+        config.setDropout(0.0f);
+        model = new MiniMindModel("test-stream", config);
+    }
+
+    @Test
+    public void testCallbackReceivesEachNewToken() {
+        int[] prompt = {5, 17, 42};
+        List<Integer> received = new ArrayList<>();
+        int[] result = model.generate(prompt, 8, 0.0f, 0, 0.0f, 1.2f, received::add);
+
+        int[] expected = Arrays.copyOfRange(result, prompt.length, result.length);
+        assertArrayEquals(expected, received.stream().mapToInt(Integer::intValue).toArray());
+        assertArrayEquals(result, model.generate(prompt, 8, 0.0f, 0, 0.0f, 1.2f));
+    }
+
+    @Test
+    public void testIteratorYieldsGeneratedTokens() {
+        int[] prompt = {3, 8, 13};
+        int[] full = model.generate(prompt, 6, 0.0f, 0, 0.0f, 1.2f);
+
+        List<Integer> streamed = new ArrayList<>();
+        try (TokenStream stream = model.generateStream(prompt, 6, 0.0f, 0, 0.0f, 1.2f)) {
+            assertTrue(stream.hasNext());
+            // 预填充后即可取得第一个token,此时生成尚未结束
+            streamed.add(stream.nextInt());
+            assertTrue(full.length - prompt.length == 1 || !stream.isFinished());
+            stream.forEachRemaining((int token) -> streamed.add(token));
+            assertArrayEquals(full, stream.getResult());
+        }
+        assertEquals(full.length - prompt.length, streamed.size());
+    }
+
+    @Test
+    public void testCloseStopsGeneration() {
+        TokenStream stream = model.generateStream(new int[]{1, 4, 9}, 20, 0.0f, 0, 0.0f, 1.0f);
+        assertTrue(stream.hasNext());
+        stream.nextInt();
+        stream.close();
+        assertFalse(stream.hasNext());
+        assertThrows(CancellationException.class, stream::getResult);
+    }
+
+    @Test
+    public void testFailingCallbackOnlyStopsItsOwnRequest() {
+        ContinuousBatchingEngine engine = new ContinuousBatchingEngine(model, 4);
+        CompletableFuture<int[]> failing = engine.submit(new int[]{10, 11}, 10, 0.0f, 0, 0.0f, 1.0f,
+            token -> {
+                throw new IllegalStateException("client disconnected");
+            });
+        CompletableFuture<int[]> healthy = engine.submit(new int[]{10, 11}, 5, 0.0f, 0, 0.0f, 1.0f);
+        while (!failing.isDone() || !healthy.isDone()) {
+            engine.step();
+        }
+        assertTrue(failing.isCompletedExceptionally());
+        assertArrayEquals(model.generate(new int[]{10, 11}, 5, 0.0f, 0, 0.0f, 1.0f), healthy.join());
+    }
+}
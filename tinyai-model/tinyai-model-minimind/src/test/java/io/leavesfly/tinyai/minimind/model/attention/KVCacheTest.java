@@ -5,6 +5,9 @@ import io.leavesfly.tinyai.ndarr.Shape;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -123,4 +126,138 @@ public class KVCacheTest {
         kvCache.update(k, v);
         assertEquals(seqLen, kvCache.getCurrentSeqLen(), "应能缓存到最大长度-1");
     }
+    
+    @Test
+    public void testOffHeapMatchesHeap() {
+        // 堆外缓存在追加与超长截断时应与堆内缓存结果一致
+        int smallMax = 6;
+        KVCache heap = new KVCache(batchSize, numHeads, headDim, smallMax);
+        KVCache offHeap = new KVCache(batchSize, numHeads, headDim, smallMax, true);
+        assertTrue(offHeap.isOffHeap(), "应使用堆外存储");
+        assertTrue(offHeap.isEmpty(), "初始应为空");
+        
+        int[] steps = {3, 1, 2, 1, 1};
+        for (int i = 0; i < steps.length; i++) {
+            Shape shape = Shape.of(batchSize, numHeads, steps[i], headDim);
+            NdArray k = NdArray.likeRandom(-1f, 1f, shape, 10 + i);
+            NdArray v = NdArray.likeRandom(-1f, 1f, shape, 20 + i);
+            
+            NdArray[] expected = heap.update(k, v);
+            NdArray[] actual = offHeap.update(k, v);
+            
+            assertEquals(heap.getCurrentSeqLen(), offHeap.getCurrentSeqLen(), "第" + i + "步长度应一致");
+            assertEquals(expected[0].getShape(), actual[0].getShape(), "第" + i + "步形状应一致");
+            assertArrayEquals(expected[0].getArray(), actual[0].getArray(), "第" + i + "步K应一致");
+            assertArrayEquals(expected[1].getArray(), actual[1].getArray(), "第" + i + "步V应一致");
+        }
+        
+        offHeap.release();
+        assertFalse(offHeap.isOffHeap(), "释放后不再持有堆外存储");
+    }
+
+    @Test
+    public void testRingEvictionKeepsLatestTokens() {
+        // 跨越页边界并多次绕回，结果应等于"拼接全部历史后取最后maxCacheLen个"
+        int smallMax = KVCache.PAGE_SIZE + 5;
+        KVCache cache = new KVCache(1, 2, 3, smallMax);
+        List<float[]> history = new ArrayList<>();
+        int[] steps = {40, 30, 1, 1, 50, 7, 200};
+        for (int i = 0; i < steps.length; i++) {
+            Shape shape = Shape.of(1, 2, steps[i], 3);
+            NdArray k = NdArray.likeRandom(-1f, 1f, shape, 100 + i);
+            cache.append(k, k.mulNum(2f));
+            for (int s = 0; s < steps[i]; s++) {
+                float[] token = new float[2 * 3];
+                for (int h = 0; h < 2; h++) {
+                    System.arraycopy(k.getArray(), (h * steps[i] + s) * 3, token, h * 3, 3);
+                }
+                history.add(token);
+            }
+
+            int len = Math.min(history.size(), smallMax);
+            assertEquals(len, cache.getCurrentSeqLen(), "第" + i + "步长度");
+            float[] expected = new float[2 * len * 3];
+            for (int j = 0; j < len; j++) {
+                float[] token = history.get(history.size() - len + j);
+                for (int h = 0; h < 2; h++) {
+                    System.arraycopy(token, h * 3, expected, (h * len + j) * 3, 3);
+                }
+            }
+            assertArrayEquals(expected, cache.getCachedK().getArray(), "第" + i + "步K");
+            assertArrayEquals(NdArray.of(expected).mulNum(2f).getArray(), cache.getCachedV().getArray(), "第" + i + "步V");
+        }
+        assertEquals(2, cache.getAllocatedPages(), "页数不超过容量所需");
+    }
+
+    @Test
+    public void testPagesAllocatedOnDemand() {
+        KVCache cache = new KVCache(1, numHeads, headDim, 1024);
+        assertEquals(0, cache.getAllocatedPages(), "未写入时不分配页");
+        cache.append(NdArray.of(Shape.of(1, numHeads, KVCache.PAGE_SIZE + 1, headDim)),
+                NdArray.of(Shape.of(1, numHeads, KVCache.PAGE_SIZE + 1, headDim)));
+        assertEquals(2, cache.getAllocatedPages(), "按需分配页");
+        cache.clear();
+        cache.append(NdArray.of(Shape.of(1, numHeads, 1, headDim)), NdArray.of(Shape.of(1, numHeads, 1, headDim)));
+        assertEquals(2, cache.getAllocatedPages(), "清空后复用已分配的页");
+    }
+
+    @Test
+    public void testAttentionMatchesReference() {
+        int smallMax = 70;
+        float scale = 0.25f;
+        KVCache heap = new KVCache(batchSize, numHeads, headDim, smallMax);
+        KVCache offHeap = new KVCache(batchSize, numHeads, headDim, smallMax, true);
+        int[] steps = {50, 4, 1, 30, 1};
+        for (int i = 0; i < steps.length; i++) {
+            Shape shape = Shape.of(batchSize, numHeads, steps[i], headDim);
+            NdArray k = NdArray.likeRandom(-1f, 1f, shape, 30 + i);
+            NdArray v = NdArray.likeRandom(-1f, 1f, shape, 40 + i);
+            NdArray q = NdArray.likeRandom(-1f, 1f, shape, 50 + i);
+            heap.append(k, v);
+            offHeap.append(k, v);
+
+            NdArray expected = referenceAttention(q, heap.getCachedK(), heap.getCachedV(), scale);
+            assertArrayEquals(expected.getArray(), heap.attention(q, scale).getArray(), 1e-5f, "第" + i + "步堆内");
+            assertArrayEquals(expected.getArray(), offHeap.attention(q, scale).getArray(), 1e-5f, "第" + i + "步堆外");
+        }
+        offHeap.release();
+    }
+
+    /**
+     * 朴素实现：查询对应缓存中的最后qLen个位置，带因果掩码
+     */
+    private static NdArray referenceAttention(NdArray q, NdArray k, NdArray v, float scale) {
+        int[] qs = q.getShape().getShapeDims();
+        int heads = qs[0] * qs[1];
+        int qLen = qs[2];
+        int dim = qs[3];
+        int len = k.getShape().getShapeDims()[2];
+        float[] out = new float[q.getArray().length];
+        for (int bh = 0; bh < heads; bh++) {
+            for (int i = 0; i < qLen; i++) {
+                int visible = len - qLen + i + 1;
+                double[] w = new double[visible];
+                double max = Double.NEGATIVE_INFINITY;
+                for (int j = 0; j < visible; j++) {
+                    double dot = 0;
+                    for (int d = 0; d < dim; d++) {
+                        dot += q.getArray()[(bh * qLen + i) * dim + d] * k.getArray()[(bh * len + j) * dim + d];
+                    }
+                    w[j] = dot * scale;
+                    max = Math.max(max, w[j]);
+                }
+                double sum = 0;
+                for (int j = 0; j < visible; j++) {
+                    w[j] = Math.exp(w[j] - max);
+                    sum += w[j];
+                }
+                for (int j = 0; j < visible; j++) {
+                    for (int d = 0; d < dim; d++) {
+                        out[(bh * qLen + i) * dim + d] += (float) (w[j] / sum * v.getArray()[(bh * len + j) * dim + d]);
+                    }
+                }
+            }
+        }
+        return NdArray.of(out, q.getShape());
+    }
 }
@@ -7,6 +7,8 @@ import io.leavesfly.tinyai.nnet.v2.util.GradientChecker;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 
+import java.util.Arrays;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -151,4 +153,27 @@ public class MultiHeadAttentionTest {
         // 使用 GradientChecker 检查计算图连通性
         GradientChecker.checkGraphConnectivity(attention, input);
     }
+
+    @Test
+    public void testCachedDecodingMatchesFullForward() {
+        // 预填充 + 逐 token 解码的输出应与整序列因果注意力一致
+        int seqLen = 6;
+        int prefill = 4;
+        NdArray input = NdArray.likeRandom(-1f, 1f, Shape.of(1, seqLen, dimModel), 9);
+        float[] full = attention.forwardWithCache(new Variable(input), null, 0).getValue().getArray();
+
+        KVCache kvCache = new KVCache(1, numHeads, headDim, maxSeqLen);
+        float[] prefillOut = attention.forwardWithCache(
+            new Variable(NdArray.of(Arrays.copyOf(input.getArray(), prefill * dimModel),
+                Shape.of(1, prefill, dimModel))), kvCache, 0).getValue().getArray();
+        assertArrayEquals(Arrays.copyOf(full, prefill * dimModel), prefillOut, 1e-4f, "预填充输出");
+
+        for (int pos = prefill; pos < seqLen; pos++) {
+            float[] token = Arrays.copyOfRange(input.getArray(), pos * dimModel, (pos + 1) * dimModel);
+            float[] out = attention.forwardWithCache(
+                new Variable(NdArray.of(token, Shape.of(1, 1, dimModel))), kvCache, pos).getValue().getArray();
+            assertArrayEquals(Arrays.copyOfRange(full, pos * dimModel, (pos + 1) * dimModel), out, 1e-4f,
+                "位置" + pos + "的解码输出");
+        }
+    }
 }
@@ -129,7 +129,7 @@ public class CrossModalAttention extends Module {
         Variable scaledScores = scores.div(new Variable((float) scale));
         Variable attnWeights = scaledScores.softMax();
         
-        if (io.leavesfly.tinyai.util.Config.train && dropout > 0) {
+        if (io.leavesfly.tinyai.util.GradMode.isEnabled() && dropout > 0) {
             attnWeights = attnDropout.forward(attnWeights);
         }
         
@@ -1,9 +1,15 @@
 package io.leavesfly.tinyai.qwen3;
 
 import io.leavesfly.tinyai.func.Variable;
+import io.leavesfly.tinyai.func.fused.ScaleMaskSoftmax;
+import io.leavesfly.tinyai.func.matrix.MatMul;
+import io.leavesfly.tinyai.func.matrix.Permute;
+import io.leavesfly.tinyai.func.matrix.RotaryEmbedding;
 import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
 import io.leavesfly.tinyai.nnet.v2.core.Module;
 import io.leavesfly.tinyai.nnet.v2.layer.dnn.Linear;
+import io.leavesfly.tinyai.nnet.v2.layer.transformer.KVCache;
 
 /**
  * Qwen3注意力块（分组查询注意力GQA + RoPE）
@@ -23,6 +29,9 @@ public class Qwen3AttentionBlock extends Module {
     private final int numKeyValueHeads;
     private final int headDim;
     
+    /** 带缓存解码共用的RoPE表，按需倍增直至maxPositionEmbeddings（不随模型保存） */
+    private transient volatile RotaryEmbedding decodeRotary;
+    
     private Linear qProj;   // 查询投影
     private Linear kProj;   // 键投影
     private Linear vProj;   // 值投影
@@ -40,6 +49,10 @@ public class Qwen3AttentionBlock extends Module {
         this.numHeads = config.getNumAttentionHeads();
         this.numKeyValueHeads = config.getNumKeyValueHeads();
         this.headDim = config.getHeadDim();
+        if (numHeads % numKeyValueHeads != 0) {
+            throw new IllegalArgumentException(
+                String.format("注意力头数(%d)必须是KV头数(%d)的整数倍", numHeads, numKeyValueHeads));
+        }
         
         initializeLayers();
     }
@@ -86,7 +99,13 @@ public class Qwen3AttentionBlock extends Module {
     }
     
     /**
-     * 前向传播（简化版本，不实现完整的RoPE和GQA）
+     * 前向传播
+     * 
+     * 流程：QKV投影 -> 分头 -> 对Q、K应用RoPE -> 分组查询的因果注意力 -> 合并多头 -> 输出投影
+     * 
+     * GQA的实现：每组 num_heads / num_kv_heads 个查询头共享一个KV头。
+     * 把Q从 [batch, num_heads, seq_len, head_dim] 重塑为 [batch, num_kv_heads, group * seq_len, head_dim]，
+     * 同组查询头排在同一个KV头下，直接与该KV头做矩阵乘法，无需复制K、V。
      * 
      * @param inputs inputs[0]为输入隐藏状态 [batch_size, seq_len, hidden_size]
      * @return 输出隐藏状态 [batch_size, seq_len, hidden_size]
@@ -98,30 +117,126 @@ public class Qwen3AttentionBlock extends Module {
         }
         
         Variable hiddenStates = inputs[0];
+        int[] shape = hiddenStates.getValue().getShape().getShapeDims();
+        int batchSize = shape[0];
+        int seqLen = shape[1];
+        int groupSize = numHeads / numKeyValueHeads;
+        
+        // 1. QKV投影并分头
+        Variable query = splitHeads(qProj.forward(hiddenStates), batchSize, seqLen, numHeads);
+        Variable key = splitHeads(kProj.forward(hiddenStates), batchSize, seqLen, numKeyValueHeads);
+        Variable value = splitHeads(vProj.forward(hiddenStates), batchSize, seqLen, numKeyValueHeads);
         
-        // 1. QKV投影
-        Variable query = qProj.forward(hiddenStates);
-        Variable key = kProj.forward(hiddenStates);
-        Variable value = vProj.forward(hiddenStates);
+        // 2. RoPE位置编码（RotaryEmbedding函数保存反向传播所需状态，每次调用新建）
+        float theta = (float) config.getRopeTheta();
+        Variable startPos = new Variable(NdArray.of(0f));
+        startPos.setRequireGrad(false);
+        query = new RotaryEmbedding(headDim, seqLen, theta).call(query, startPos);
+        key = new RotaryEmbedding(headDim, seqLen, theta).call(key, startPos);
         
-        // 2. 简化的自注意力计算（完整实现需要RoPE和GQA）
-        // 这里使用简化版本：直接使用投影结果
-        // 实际应用中需要：
-        // - 重塑为多头形状
-        // - 应用RoPE位置编码
-        // - 计算注意力分数
-        // - 应用因果掩码
-        // - Softmax归一化
-        // - 与Value加权求和
+        // 3. 分组查询的因果注意力
+        Variable groupedQuery = query.reshape(Shape.of(batchSize, numKeyValueHeads, groupSize * seqLen, headDim));
+        Variable scores = new MatMul(false, true).call(groupedQuery, key);
+        float scale = (float) (1.0 / Math.sqrt(headDim));
+        Variable weights = new ScaleMaskSoftmax(scale).call(scores, groupedCausalMask(groupSize, seqLen));
+        Variable attnOutput = weights.matMul(value)
+            .reshape(Shape.of(batchSize, numHeads, seqLen, headDim));
+        
+        // 4. 合并多头并输出投影
+        return oProj.forward(mergeHeads(attnOutput, batchSize, seqLen));
+    }
+    
+    /**
+     * 带KV缓存的前向传播（推理用）
+     * 
+     * 只对新token做投影和RoPE（位置从已缓存长度开始），旋转后的K与V追加到缓存，
+     * 注意力按GQA分组读取缓存中的全部历史。应在 {@code GradMode.noGrad()} 下调用。
+     * 
+     * @param hiddenStates 新token的隐藏状态 [batch_size, new_len, hidden_size]
+     * @param cache 本层的KV缓存（num_kv_heads个头）
+     * @return 新token的输出 [batch_size, new_len, hidden_size]
+     */
+    public Variable forwardWithCache(Variable hiddenStates, KVCache cache) {
+        int[] shape = hiddenStates.getValue().getShape().getShapeDims();
+        int batchSize = shape[0];
+        int seqLen = shape[1];
+        int startPos = cache.getSeqLen();
         
-        // 简化版本：直接使用Query作为注意力输出的近似
-        // （仅用于演示框架结构，实际应用需要完整实现）
-        Variable attnOutput = query;
+        Variable query = splitHeads(qProj.forward(hiddenStates), batchSize, seqLen, numHeads);
+        Variable key = splitHeads(kProj.forward(hiddenStates), batchSize, seqLen, numKeyValueHeads);
+        Variable value = splitHeads(vProj.forward(hiddenStates), batchSize, seqLen, numKeyValueHeads);
         
-        // 3. 输出投影
-        Variable output = oProj.forward(attnOutput);
+        RotaryEmbedding rotary = decodeRotary(startPos + seqLen);
+        NdArray rotatedQuery = rotary.rotate(query.getValue(), startPos);
+        cache.append(rotary.rotate(key.getValue(), startPos), value.getValue());
+        NdArray attnOutput = cache.attention(rotatedQuery, (float) (1.0 / Math.sqrt(headDim)));
         
-        return output;
+        return oProj.forward(mergeHeads(new Variable(attnOutput), batchSize, seqLen));
+    }
+    
+    /**
+     * 创建本层的KV缓存
+     */
+    public KVCache createKVCache(int batchSize) {
+        return new KVCache(batchSize, numKeyValueHeads, headDim, config.getMaxPositionEmbeddings());
+    }
+    
+    /**
+     * [batch, seq_len, heads * head_dim] -> [batch, heads, seq_len, head_dim]
+     */
+    private Variable splitHeads(Variable x, int batchSize, int seqLen, int heads) {
+        Variable reshaped = x.reshape(Shape.of(batchSize, seqLen, heads, headDim));
+        return new Permute(0, 2, 1, 3).call(reshaped);
+    }
+    
+    /**
+     * [batch, num_heads, seq_len, head_dim] -> [batch, seq_len, num_heads * head_dim]
+     */
+    private Variable mergeHeads(Variable x, int batchSize, int seqLen) {
+        Variable permuted = new Permute(0, 2, 1, 3).call(x);
+        return permuted.reshape(Shape.of(batchSize, seqLen, numHeads * headDim));
+    }
+    
+    /**
+     * 分组后的因果掩码 [1, 1, group * seq_len, seq_len]：第 g * seq_len + i 行对应位置i的查询
+     */
+    private Variable groupedCausalMask(int groupSize, int seqLen) {
+        float[] mask = new float[groupSize * seqLen * seqLen];
+        for (int row = 0; row < groupSize * seqLen; row++) {
+            int i = row % seqLen;
+            for (int j = i + 1; j < seqLen; j++) {
+                mask[row * seqLen + j] = -1e9f;
+            }
+        }
+        Variable maskVar = new Variable(NdArray.of(mask, Shape.of(1, 1, groupSize * seqLen, seqLen)));
+        maskVar.setRequireGrad(false);
+        return maskVar;
+    }
+    
+    /**
+     * 获取覆盖前length个位置的RoPE表
+     * 
+     * 各解码步共用同一个 {@link RotaryEmbedding}，只在序列超出当前表长时按倍增重建，
+     * 避免每步重新计算全部位置的三角函数。
+     */
+    private RotaryEmbedding decodeRotary(int length) {
+        RotaryEmbedding rotary = decodeRotary;
+        if (rotary != null && rotary.getMaxSeqLen() >= length) {
+            return rotary;
+        }
+        synchronized (this) {
+            rotary = decodeRotary;
+            if (rotary == null || rotary.getMaxSeqLen() < length) {
+                int tableLen = rotary == null ? 64 : rotary.getMaxSeqLen();
+                while (tableLen < length) {
+                    tableLen *= 2;
+                }
+                tableLen = Math.max(length, Math.min(tableLen, config.getMaxPositionEmbeddings()));
+                rotary = new RotaryEmbedding(headDim, tableLen, (float) config.getRopeTheta());
+                decodeRotary = rotary;
+            }
+            return rotary;
+        }
     }
     
     @Override
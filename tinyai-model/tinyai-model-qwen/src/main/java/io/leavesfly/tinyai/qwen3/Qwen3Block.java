@@ -2,9 +2,12 @@ package io.leavesfly.tinyai.qwen3;
 
 import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.nnet.v2.container.Checkpoint;
 import io.leavesfly.tinyai.nnet.v2.core.Module;
 import io.leavesfly.tinyai.nnet.v2.layer.dnn.Linear;
 import io.leavesfly.tinyai.nnet.v2.layer.embedding.Embedding;
+import io.leavesfly.tinyai.nnet.v2.layer.transformer.KVCache;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -105,11 +108,13 @@ public class Qwen3Block extends Module {
         validateInput(inputIds);
         
         // 1. Token嵌入
-        Variable hiddenStates = embedTokens.forward(inputIds);
+        Variable hiddenStates = embed(inputIds);
         
         // 2. 通过所有Transformer层
         for (Qwen3TransformerBlock layer : layers) {
-            hiddenStates = layer.forward(hiddenStates);
+            // 梯度检查点：只保留层的输入，反向时重计算层内激活
+            hiddenStates = config.isGradientCheckpointing()
+                    ? Checkpoint.checkpoint(layer, hiddenStates) : layer.forward(hiddenStates);
         }
         
         // 3. 最终归一化
@@ -123,6 +128,59 @@ public class Qwen3Block extends Module {
         return hiddenStates;
     }
     
+    /**
+     * 带KV缓存的前向传播（推理用）
+     * 
+     * 只处理尚未缓存的新token：各层注意力从已缓存长度处继续RoPE位置，并读取缓存中的历史K、V。
+     * 预填充时传入完整提示词，之后每步只传入上一步生成的token。
+     * 
+     * @param inputIds 新token的ID [batch_size, new_len]
+     * @param kvCaches 每层一个KV缓存，见 {@link #createKVCaches}
+     * @return 新token位置的logits或隐藏状态
+     */
+    public Variable forwardWithCache(Variable inputIds, List<KVCache> kvCaches) {
+        validateInput(inputIds);
+        if (kvCaches.size() != layers.size()) {
+            throw new IllegalArgumentException(
+                String.format("KV缓存数(%d)与层数(%d)不一致", kvCaches.size(), layers.size()));
+        }
+        
+        Variable hiddenStates = embed(inputIds);
+        for (int i = 0; i < layers.size(); i++) {
+            hiddenStates = layers.get(i).forwardWithCache(hiddenStates, kvCaches.get(i));
+        }
+        hiddenStates = norm.forward(hiddenStates);
+        
+        if (includeLMHead && lmHead != null) {
+            return lmHead.forward(hiddenStates);
+        }
+        return hiddenStates;
+    }
+    
+    /**
+     * 为每一层创建空的KV缓存
+     */
+    public List<KVCache> createKVCaches(int batchSize) {
+        List<KVCache> caches = new ArrayList<>(layers.size());
+        for (Qwen3TransformerBlock layer : layers) {
+            caches.add(layer.createKVCache(batchSize));
+        }
+        return caches;
+    }
+    
+    /**
+     * Token嵌入，保证输出为 [batch_size, seq_len, hidden_size]
+     * （Embedding对长度为1的序列会去掉seq_len维，逐token解码时需要补回）
+     */
+    private Variable embed(Variable inputIds) {
+        int[] idShape = inputIds.getValue().getShape().getShapeDims();
+        Variable embedded = embedTokens.forward(inputIds);
+        if (embedded.getValue().getShape().getDimNum() != 3) {
+            embedded = embedded.reshape(Shape.of(idShape[0], idShape[1], config.getHiddenSize()));
+        }
+        return embedded;
+    }
+    
     /**
      * 验证输入
      */
@@ -88,6 +88,11 @@ public class Qwen3Config {
     /** 权重初始化标准差，默认0.02 */
     private double initializerRange = 0.02;
     
+    // ==================== 训练配置 ====================
+    
+    /** 是否启用梯度检查点（反向时重计算Transformer块以降低激活内存），默认false */
+    private boolean gradientCheckpointing = false;
+    
     /**
      * 默认构造函数
      */
@@ -353,6 +358,14 @@ public class Qwen3Config {
         this.tieWordEmbeddings = tieWordEmbeddings;
     }
     
+    public boolean isGradientCheckpointing() {
+        return gradientCheckpointing;
+    }
+    
+    public void setGradientCheckpointing(boolean gradientCheckpointing) {
+        this.gradientCheckpointing = gradientCheckpointing;
+    }
+    
     public double getInitializerRange() {
         return initializerRange;
     }
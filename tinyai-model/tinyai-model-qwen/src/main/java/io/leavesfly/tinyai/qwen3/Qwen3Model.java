@@ -3,6 +3,10 @@ package io.leavesfly.tinyai.qwen3;
 import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.ml.model.Model;
 import io.leavesfly.tinyai.ndarr.NdArray;
+import io.leavesfly.tinyai.nnet.v2.layer.transformer.KVCache;
+import io.leavesfly.tinyai.util.GradMode;
+
+import java.util.List;
 
 /**
  * Qwen3模型类
@@ -95,9 +99,29 @@ public class Qwen3Model extends Model {
         return forward(tokenIds);
     }
     
+    /**
+     * 带KV缓存的预测：只计算尚未缓存的新token，见 {@link Qwen3Block#forwardWithCache}
+     * 
+     * @param tokenIds 新token的ID [batch_size, new_len]
+     * @param kvCaches 每层的KV缓存
+     * @return 新token位置的logits [batch_size, new_len, vocab_size]
+     */
+    public Variable predictWithCache(Variable tokenIds, List<KVCache> kvCaches) {
+        return ((Qwen3Block) getModule()).forwardWithCache(tokenIds, kvCaches);
+    }
+    
+    /**
+     * 为每一层创建空的KV缓存
+     */
+    public List<KVCache> createKVCaches(int batchSize) {
+        return ((Qwen3Block) getModule()).createKVCaches(batchSize);
+    }
+    
     /**
      * 生成序列（简化版贪婪解码）
      * 
+     * 预填充提示词后每步只输入上一步生成的token，历史K、V从缓存读取。
+     * 
      * @param promptIds 提示词token ID序列 [batch_size, prompt_len]
      * @param maxNewTokens 最大生成token数量
      * @return 生成的完整序列 [batch_size, prompt_len + maxNewTokens]
@@ -116,23 +140,26 @@ public class Qwen3Model extends Model {
         }
         
         // 自回归生成
-        for (int i = 0; i < maxNewTokens; i++) {
-            int currentLen = promptLen + i;
-            float[][] currentInput = new float[batchSize][currentLen];
-            for (int b = 0; b < batchSize; b++) {
-                System.arraycopy(generatedSeq[b], 0, currentInput[b], 0, currentLen);
-            }
-            
-            // 预测下一个token
-            Variable logits = predict(new Variable(NdArray.of(currentInput)));
-            NdArray logitsArray = logits.getValue();
-            
-            // 贪婪选择
-            for (int b = 0; b < batchSize; b++) {
-                int nextToken = argmax(logitsArray, b, currentLen - 1);
-                generatedSeq[b][currentLen] = nextToken;
+        GradMode.withNoGrad(() -> {
+            List<KVCache> kvCaches = createKVCaches(batchSize);
+            Variable input = new Variable(promptIds);
+            for (int i = 0; i < maxNewTokens; i++) {
+                int currentLen = promptLen + i;
+                
+                // 预测下一个token
+                NdArray logitsArray = predictWithCache(input, kvCaches).getValue();
+                int lastPos = logitsArray.getShape().getDimension(1) - 1;
+                
+                // 贪婪选择
+                float[][] nextTokens = new float[batchSize][1];
+                for (int b = 0; b < batchSize; b++) {
+                    int nextToken = argmax(logitsArray, b, lastPos);
+                    generatedSeq[b][currentLen] = nextToken;
+                    nextTokens[b][0] = nextToken;
+                }
+                input = new Variable(NdArray.of(nextTokens));
             }
-        }
+        });
         
         return NdArray.of(generatedSeq);
     }
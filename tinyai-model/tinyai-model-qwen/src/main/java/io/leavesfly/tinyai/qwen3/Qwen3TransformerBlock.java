@@ -2,6 +2,7 @@ package io.leavesfly.tinyai.qwen3;
 
 import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.nnet.v2.core.Module;
+import io.leavesfly.tinyai.nnet.v2.layer.transformer.KVCache;
 
 /**
  * Qwen3 Transformer解码器块
@@ -95,9 +96,33 @@ public class Qwen3TransformerBlock extends Module {
         // 1. 自注意力子层：LayerNorm -> SelfAttention -> Residual
         Variable normed1 = inputLayerNorm.forward(hiddenStates);
         Variable attnOutput = selfAttention.forward(normed1);
-        Variable residual1 = hiddenStates.add(attnOutput);
-        
-        // 2. MLP/MoE子层：LayerNorm -> MLP/MoE -> Residual
+        return feedForward(hiddenStates.add(attnOutput));
+    }
+    
+    /**
+     * 带KV缓存的前向传播（推理用），只计算新token的位置
+     * 
+     * @param hiddenStates 新token的隐藏状态 [batch_size, new_len, hidden_size]
+     * @param cache 本层的KV缓存
+     * @return 新token的输出 [batch_size, new_len, hidden_size]
+     */
+    public Variable forwardWithCache(Variable hiddenStates, KVCache cache) {
+        Variable normed1 = inputLayerNorm.forward(hiddenStates);
+        Variable attnOutput = selfAttention.forwardWithCache(normed1, cache);
+        return feedForward(hiddenStates.add(attnOutput));
+    }
+    
+    /**
+     * 创建本层的KV缓存
+     */
+    public KVCache createKVCache(int batchSize) {
+        return selfAttention.createKVCache(batchSize);
+    }
+    
+    /**
+     * MLP/MoE子层：LayerNorm -> MLP/MoE -> Residual
+     */
+    private Variable feedForward(Variable residual1) {
         Variable normed2 = postAttentionLayerNorm.forward(residual1);
         Variable ffnOutput;
         if (config.isEnableMoE()) {
@@ -3,7 +3,9 @@ package io.leavesfly.tinyai.qwen3.training;
 import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.nnet.v2.layer.transformer.KVCache;
 import io.leavesfly.tinyai.qwen3.Qwen3Model;
+import io.leavesfly.tinyai.util.GradMode;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -54,8 +56,9 @@ public class Qwen3Inference {
             tokens.add(id);
         }
         
+        List<KVCache> kvCaches = model.createKVCaches(1);
         for (int i = 0; i < maxNewTokens; i++) {
-            int nextToken = predictNext(tokens, Strategy.GREEDY, 0.0f, 0, 0.0f);
+            int nextToken = predictNext(tokens, kvCaches, Strategy.GREEDY, 0.0f, 0, 0.0f);
             if (nextToken == getEosToken()) {
                 break;
             }
@@ -79,8 +82,9 @@ public class Qwen3Inference {
             tokens.add(id);
         }
         
+        List<KVCache> kvCaches = model.createKVCaches(1);
         for (int i = 0; i < maxNewTokens; i++) {
-            int nextToken = predictNext(tokens, Strategy.TOP_K, 0.0f, topK, 0.0f);
+            int nextToken = predictNext(tokens, kvCaches, Strategy.TOP_K, 0.0f, topK, 0.0f);
             if (nextToken == getEosToken()) {
                 break;
             }
@@ -104,8 +108,9 @@ public class Qwen3Inference {
             tokens.add(id);
         }
         
+        List<KVCache> kvCaches = model.createKVCaches(1);
         for (int i = 0; i < maxNewTokens; i++) {
-            int nextToken = predictNext(tokens, Strategy.TOP_P, 0.0f, 0, topP);
+            int nextToken = predictNext(tokens, kvCaches, Strategy.TOP_P, 0.0f, 0, topP);
             if (nextToken == getEosToken()) {
                 break;
             }
@@ -129,8 +134,9 @@ public class Qwen3Inference {
             tokens.add(id);
         }
         
+        List<KVCache> kvCaches = model.createKVCaches(1);
         for (int i = 0; i < maxNewTokens; i++) {
-            int nextToken = predictNext(tokens, Strategy.TEMPERATURE, temperature, 0, 0.0f);
+            int nextToken = predictNext(tokens, kvCaches, Strategy.TEMPERATURE, temperature, 0, 0.0f);
             if (nextToken == getEosToken()) {
                 break;
             }
@@ -142,29 +148,28 @@ public class Qwen3Inference {
     
     /**
      * 预测下一个token
+     * 
+     * 只把尚未写入KV缓存的token送入模型：首次调用时预填充整个提示词，之后每步只计算新生成的token
      */
-    private int predictNext(List<Integer> tokens, Strategy strategy, 
+    private int predictNext(List<Integer> tokens, List<KVCache> kvCaches, Strategy strategy,
                            float temperature, int topK, float topP) {
         // 准备输入
-        float[][] inputData = new float[1][tokens.size()];
-        for (int i = 0; i < tokens.size(); i++) {
-            inputData[0][i] = tokens.get(i);
+        int cachedLen = kvCaches.get(0).getSeqLen();
+        int newLen = tokens.size() - cachedLen;
+        float[] inputData = new float[newLen];
+        for (int i = 0; i < newLen; i++) {
+            inputData[i] = tokens.get(cachedLen + i);
         }
         
-        NdArray inputIds = NdArray.of(inputData);
-        Variable inputVar = new Variable(inputIds);
+        Variable inputVar = new Variable(NdArray.of(inputData, Shape.of(1, newLen)));
         
-        // 前向传播
-        Variable logits = model.forward(inputVar);
+        // 前向传播（推理期间只在当前线程上关闭计算图构建）
+        NdArray logitsArray = GradMode.withNoGrad(() -> model.predictWithCache(inputVar, kvCaches).getValue());
         
         // 获取最后一个位置的logits
-        NdArray logitsArray = logits.getValue();
         int vocabSize = logitsArray.getShape().getDimension(2);
         float[] lastLogits = new float[vocabSize];
-        
-        for (int i = 0; i < vocabSize; i++) {
-            lastLogits[i] = logitsArray.get(0, tokens.size() - 1, i);
-        }
+        System.arraycopy(logitsArray.getArray(), (newLen - 1) * vocabSize, lastLogits, 0, vocabSize);
         
         // 根据策略选择token
         switch (strategy) {
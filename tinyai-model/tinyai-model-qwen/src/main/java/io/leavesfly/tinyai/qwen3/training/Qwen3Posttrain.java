@@ -179,7 +179,7 @@ public class Qwen3Posttrain {
         float lossValue = loss.getValue().getNumber().floatValue();
         
         model.clearGrads();
-        loss.backward();
+        loss.backward(false);
         clipGradients();
         optimizer.update();
         loss.unChainBackward();
@@ -244,7 +244,7 @@ public class Qwen3Pretrain {
         
         // 反向传播
         System.out.println("[DEBUG] 开始反向传播...");
-        loss.backward();
+        loss.backward(false);
         System.out.println("[DEBUG] 反向传播完成");
         
         // 梯度裁剪
@@ -3,7 +3,13 @@ package io.leavesfly.tinyai.qwen3;
 import io.leavesfly.tinyai.func.Variable;
 import io.leavesfly.tinyai.ndarr.NdArray;
 import io.leavesfly.tinyai.ndarr.Shape;
+import io.leavesfly.tinyai.nnet.v2.layer.transformer.KVCache;
+import io.leavesfly.tinyai.util.GradMode;
 import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
 import static org.junit.Assert.*;
 
 /**
@@ -121,6 +127,54 @@ public class Qwen3ModelTest {
         assertEquals(config.getVocabSize(), output.getShape().getDimension(2));
     }
     
+    @Test
+    public void testPredictWithCacheMatchesFullForward() {
+        // GQA配置：4个查询头共享2个KV头
+        Qwen3Config config = new Qwen3Config();
+        config.setVocabSize(100);
+        config.setHiddenSize(64);
+        config.setIntermediateSize(128);
+        config.setNumHiddenLayers(2);
+        config.setNumAttentionHeads(4);
+        config.setNumKeyValueHeads(2);
+        config.setMaxPositionEmbeddings(16);
+        Qwen3Model model = new Qwen3Model("test-cache", config);
+        
+        float[] tokens = {3, 14, 15, 92, 65, 35};
+        NdArray fullLogits = GradMode.withNoGrad(() ->
+                model.predict(new Variable(NdArray.of(tokens, Shape.of(1, 6)))).getValue());
+        
+        // 预填充前4个token，再逐个输入剩余token
+        List<KVCache> kvCaches = model.createKVCaches(1);
+        int pos = 0;
+        for (int len : new int[]{4, 1, 1}) {
+            float[] chunk = Arrays.copyOfRange(tokens, pos, pos + len);
+            NdArray logits = GradMode.withNoGrad(() ->
+                    model.predictWithCache(new Variable(NdArray.of(chunk, Shape.of(1, len))), kvCaches).getValue());
+            for (int t = 0; t < len; t++) {
+                for (int v = 0; v < config.getVocabSize(); v++) {
+                    assertEquals(fullLogits.get(0, pos + t, v), logits.get(0, t, v), 1e-4f);
+                }
+            }
+            pos += len;
+        }
+        assertEquals(6, kvCaches.get(0).getSeqLen());
+    }
+    
+    @Test
+    public void testAttentionIsCausal() {
+        Qwen3Config config = Qwen3Config.createSmallConfig();
+        config.setNumKeyValueHeads(2);
+        Qwen3Model model = new Qwen3Model("test-causal", config);
+        
+        // 只改变最后一个token，前面位置的输出不应受影响
+        NdArray a = model.predict(new Variable(NdArray.of(new float[]{1, 2, 3, 4}, Shape.of(1, 4)))).getValue();
+        NdArray b = model.predict(new Variable(NdArray.of(new float[]{1, 2, 3, 9}, Shape.of(1, 4)))).getValue();
+        for (int v = 0; v < config.getVocabSize(); v += 50) {
+            assertEquals(a.get(0, 2, v), b.get(0, 2, v), 1e-5f);
+        }
+    }
+    
     @Test
     public void testModelInfo() {
         Qwen3Model model = Qwen3Model.createSmallModel("info-test");
@@ -1,7 +1,12 @@
 package io.leavesfly.tinyai.qwen3.training;
 
+import io.leavesfly.tinyai.ml.dataset.token.TokenFileWriter;
 import io.leavesfly.tinyai.qwen3.Qwen3Config;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import static org.junit.Assert.*;
@@ -14,6 +19,9 @@ import static org.junit.Assert.*;
  */
 public class Qwen3DatasetTest {
     
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
     @Test
     public void testDatasetCreation() {
         List<int[]> sequences = new ArrayList<>();
@@ -172,4 +180,42 @@ public class Qwen3DatasetTest {
         assertEquals("Hello", batch.getPrompts()[0]);
         assertEquals("World", batch.getResponses()[0]);
     }
+    
+    @Test
+    public void testFromTokenFile() throws IOException {
+        Path file = folder.newFile("pretrain.bin").toPath();
+        try (TokenFileWriter writer = new TokenFileWriter(file, 1000)) {
+            for (int d = 0; d < 5; d++) {
+                int[] doc = new int[8];
+                for (int j = 0; j < doc.length; j++) {
+                    doc[j] = d * 8 + j;
+                }
+                writer.addDocument(doc);
+            }
+        }
+        
+        // 40个token, 窗口长度4+1, 步长4 -> 9个样本
+        Qwen3Dataset dataset = Qwen3Dataset.fromTokenFile(file.toString(), 4, 4, true);
+        assertEquals(9, dataset.getSampleCount());
+        assertEquals(3, dataset.getBatchCount());
+        
+        dataset.prepare(false);
+        Qwen3Dataset.Batch first = dataset.nextBatch();
+        assertArrayEquals(new int[]{4, 4}, first.getInputIds().getShape().getShapeDims());
+        assertEquals(4f, first.getInputIds().get(1, 0), 0f);
+        assertEquals(8f, first.getTargetIds().get(1, 3), 0f);
+        
+        dataset.prepare(true);
+        int samples = 0;
+        while (dataset.hasNext()) {
+            Qwen3Dataset.Batch batch = dataset.nextBatch();
+            float[] inputs = batch.getInputIds().getArray();
+            float[] targets = batch.getTargetIds().getArray();
+            for (int i = 0; i < inputs.length; i++) {
+                assertEquals(inputs[i] + 1, targets[i], 0f);
+            }
+            samples += batch.getBatchSize();
+        }
+        assertEquals(9, samples);
+    }
 }